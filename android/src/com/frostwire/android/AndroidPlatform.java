@@ -209,11 +209,10 @@ public final class AndroidPlatform extends AbstractPlatform {
             File src = new File(oldpath);
             File dest = new File(newpath);
 
-            if (fs.copy(src, dest)) {
-                fs.delete(src);
+            if (fs.move(src, dest, null)) {
                 return 0;
             } else {
-                LOG.info("posix wrapper failed to copy file: " + oldpath + " -> " + newpath);
+                LOG.info("posix wrapper failed to move file: " + oldpath + " -> " + newpath);
                 return -1;
             }
         }
@@ -33,6 +33,7 @@ import com.frostwire.util.Logger;
 import com.frostwire.platform.DefaultFileSystem;
 import com.frostwire.platform.FileFilter;
 import com.frostwire.platform.FileSystem;
+import com.frostwire.platform.MoveListener;
 import com.frostwire.platform.Platforms;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -234,6 +235,37 @@ public final class LollipopFileSystem implements FileSystem {
         return copy(app, srcF, destF);
     }
 
+    @Override
+    public boolean move(File src, File dest, MoveListener listener) {
+        if (DefaultFileSystem.renameFile(src, dest)) {
+            return true;
+        }
+
+        FileInputStream inStream = null;
+        FileOutputStream outStream = null;
+        try {
+            inStream = openInputStream(app, src);
+            outStream = openOutputStream(app, dest);
+
+            DefaultFileSystem.transferFile(inStream.getChannel(), outStream.getChannel(), listener);
+
+        } catch (Throwable e) {
+            LOG.error("Error when moving file from " + src + " to " + dest, e);
+            IOUtils.closeQuietly(outStream);
+            delete(dest);
+            return false;
+        } finally {
+            IOUtils.closeQuietly(inStream);
+            IOUtils.closeQuietly(outStream);
+        }
+
+        if (!delete(src)) {
+            LOG.warn("Error deleting source file while moving: " + src);
+        }
+
+        return true;
+    }
+
     @Override
     public boolean write(File file, byte[] data) {
         try {
@@ -755,7 +787,38 @@ public final class LollipopFileSystem implements FileSystem {
         return true;
     }
 
-    private static OutputStream openOutputStream(Context context, DocumentFile f) throws IOException {
+    private static FileInputStream openInputStream(Context context, File file) throws IOException {
+        try {
+            return new FileInputStream(file);
+        } catch (IOException e) {
+            // ignore, try with SAF
+        }
+
+        DocumentFile f = getFile(context, file, false);
+        if (f == null) {
+            throw new IOException("Unable to obtain document for file: " + file);
+        }
+
+        ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(f.getUri(), "r");
+        return new ParcelFileDescriptor.AutoCloseInputStream(pfd);
+    }
+
+    private static FileOutputStream openOutputStream(Context context, File file) throws IOException {
+        try {
+            return new FileOutputStream(file);
+        } catch (IOException e) {
+            // ignore, try with SAF
+        }
+
+        DocumentFile f = getFile(context, file, true);
+        if (f == null) {
+            throw new IOException("Unable to obtain or create document for file: " + file);
+        }
+
+        return openOutputStream(context, f);
+    }
+
+    private static FileOutputStream openOutputStream(Context context, DocumentFile f) throws IOException {
         ContentResolver cr = context.getContentResolver();
         ParcelFileDescriptor pfd = cr.openFileDescriptor(f.getUri(), "rw");
 
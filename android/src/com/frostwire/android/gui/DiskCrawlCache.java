@@ -26,10 +26,25 @@ import com.frostwire.search.CrawlCache;
 import com.frostwire.util.Ref;
 import org.apache.commons.io.IOUtils;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
 
 /**
+ * The disk cache is already bounded by size (in bytes) and LRU, on top of
+ * that every value is stored with a small header with the expiration time
+ * and the negative flag:
+ * <pre>
+ * magic (4 bytes) | flags (1 byte) | expiresAt (8 bytes) | data
+ * </pre>
+ * Values without the magic are from older versions and never expire.
+ *
  * @author gubatron
  * @author aldenml
  */
@@ -40,12 +55,26 @@ public final class DiskCrawlCache implements CrawlCache {
     private static final int MIN_DISK_CACHE_SIZE = 5 * 1024 * 1024; // 5MB
     private static final int MAX_DISK_CACHE_SIZE = 50 * 1024 * 1024; // 50MB
 
+    private static final long SWEEP_INTERVAL = 10 * 60 * 1000; // 10 minutes
+
+    private static final byte[] MAGIC = {'F', 'W', 'C', '1'};
+    private static final int HEADER_SIZE = MAGIC.length + 1 + 8;
+    private static final byte FLAG_NEGATIVE = 1;
+
     private final WeakReference<Context> contextRef;
     private DiskCache cache;
 
     public DiskCrawlCache(Context context) {
         contextRef = Ref.weak(context);
         initDiskCache();
+
+        Timer sweeper = new Timer("DiskCrawlCache-sweeper", true);
+        sweeper.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        }, SWEEP_INTERVAL, SWEEP_INTERVAL);
     }
 
     private void initDiskCache() {
@@ -59,35 +88,42 @@ public final class DiskCrawlCache implements CrawlCache {
 
     @Override
     public byte[] get(String key) {
-        byte[] data = null;
+        byte[] value = read(key);
+        if (value == null) {
+            return null;
+        }
 
-        if (cache != null) {
-            try {
-                Entry e = cache.get(key);
-                if (e != null) {
-                    try {
-                        data = IOUtils.toByteArray(e.getInputStream());
-                    } finally {
-                        e.close();
-                    }
-                }
-            } catch (Throwable e) {
-                // ignore
-            }
+        if (!hasHeader(value)) {
+            return value;
         }
 
-        return data;
+        if (isNegative(value) || isExpired(value, System.currentTimeMillis())) {
+            return null;
+        }
+
+        return Arrays.copyOfRange(value, HEADER_SIZE, value.length);
     }
 
     @Override
     public void put(String key, byte[] data) {
-        if (cache != null) {
-            try {
-                cache.put(key, data);
-            } catch (Throwable e) {
-                // ignore
-            }
-        }
+        put(key, data, 0);
+    }
+
+    @Override
+    public void put(String key, byte[] data, long ttl) {
+        write(key, (byte) 0, ttl, data);
+    }
+
+    @Override
+    public void putNegative(String key, long ttl) {
+        write(key, FLAG_NEGATIVE, ttl, null);
+    }
+
+    @Override
+    public boolean isNegative(String key) {
+        byte[] value = read(key);
+        return value != null && hasHeader(value) &&
+                isNegative(value) && !isExpired(value, System.currentTimeMillis());
     }
 
     @Override
@@ -127,6 +163,100 @@ public final class DiskCrawlCache implements CrawlCache {
         return size;
     }
 
+    /**
+     * Removes all the expired entries, reading only the header of each one.
+     */
+    public void sweep() {
+        if (cache != null) {
+            try {
+                final long now = System.currentTimeMillis();
+                int removed = cache.removeIf(new DiskCache.EntryFilter() {
+                    @Override
+                    public boolean accept(Entry entry) throws IOException {
+                        InputStream in = entry.getInputStream();
+                        if (in == null) {
+                            return false;
+                        }
+                        byte[] header = new byte[HEADER_SIZE];
+                        try {
+                            new DataInputStream(in).readFully(header);
+                        } catch (IOException e) {
+                            return false; // too short, not our format
+                        } finally {
+                            IOUtils.closeQuietly(in);
+                        }
+                        return hasHeader(header) && isExpired(header, now);
+                    }
+                });
+                if (removed > 0) {
+                    LOG.info("Crawl cache sweep, expired: " + removed);
+                }
+            } catch (Throwable e) {
+                LOG.error("Unable to sweep the crawl cache", e);
+            }
+        }
+    }
+
+    private byte[] read(String key) {
+        byte[] value = null;
+
+        if (cache != null) {
+            try {
+                Entry e = cache.get(key);
+                if (e != null) {
+                    try {
+                        value = IOUtils.toByteArray(e.getInputStream());
+                    } finally {
+                        e.close();
+                    }
+                }
+            } catch (Throwable e) {
+                // ignore
+            }
+        }
+
+        return value;
+    }
+
+    private void write(String key, byte flags, long ttl, byte[] data) {
+        if (cache != null) {
+            try {
+                int length = data != null ? data.length : 0;
+                ByteBuffer value = ByteBuffer.allocate(HEADER_SIZE + length);
+                value.put(MAGIC);
+                value.put(flags);
+                value.putLong(ttl > 0 ? System.currentTimeMillis() + ttl : 0);
+                if (data != null) {
+                    value.put(data);
+                }
+                cache.put(key, value.array());
+            } catch (Throwable e) {
+                // ignore
+            }
+        }
+    }
+
+    private static boolean hasHeader(byte[] value) {
+        if (value.length < HEADER_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (value[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNegative(byte[] value) {
+        return (value[MAGIC.length] & FLAG_NEGATIVE) != 0;
+    }
+
+    private static boolean isExpired(byte[] value, long now) {
+        long expiresAt = ByteBuffer.wrap(value, MAGIC.length + 1, 8).getLong();
+        return expiresAt != 0 && expiresAt <= now;
+    }
+
     private DiskCache createDiskCache(File directory, long diskSize) {
         try {
             return new DiskCache(directory, diskSize);
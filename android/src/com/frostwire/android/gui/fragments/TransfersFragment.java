@@ -254,7 +254,7 @@ public class TransfersFragment extends AbstractFragment implements TimerObserver
 
     private void updateButtonMenuVisibility() {
         if (buttonMenu != null) {
-            buttonMenu.setVisibility(TransferManager.instance().getTransfers().size() > 0 ? View.VISIBLE : View.GONE);
+            buttonMenu.setVisibility(TransferManager.instance().snapshot().transfers().size() > 0 ? View.VISIBLE : View.GONE);
         }
     }
 
@@ -42,6 +42,7 @@ import com.frostwire.android.offers.PlayStore;
 import com.frostwire.android.util.ImageLoader;
 import com.frostwire.android.util.SystemUtils;
 import com.frostwire.bittorrent.BTEngine;
+import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.Logger;
 import com.frostwire.util.ThreadPool;
 import com.squareup.okhttp.ConnectionPool;
@@ -112,6 +113,13 @@ public class EngineService extends Service implements IEngineService {
     // what a bad design to properly shutdown the framework threads!
     // TODO: deal with potentially active connections
     private void stopOkHttp() {
+        for (HttpClientFactory.HttpContext context : HttpClientFactory.HttpContext.values()) {
+            try {
+                HttpClientFactory.getConnectionPool(context).evictAll();
+            } catch (Throwable e) {
+                LOG.error("Error evicting connections of " + context + " pool", e);
+            }
+        }
         ConnectionPool pool = ConnectionPool.getDefault();
         try {
             pool.evictAll();
@@ -57,9 +57,9 @@ public final class TransferManager {
 
     private final List<Transfer> httpDownloads;
     private final List<BittorrentDownload> bittorrentDownloads;
+    private final TransferRegistry<Transfer> registry;
     private int downloadsToReview;
     private int startedTransfers = 0;
-    private final Object alreadyDownloadingMonitor = new Object();
     private volatile static TransferManager instance;
     private final ConfigurationManager CM;
 
@@ -75,6 +75,7 @@ public final class TransferManager {
         CM = ConfigurationManager.instance();
         this.httpDownloads = new CopyOnWriteArrayList<>();
         this.bittorrentDownloads = new CopyOnWriteArrayList<>();
+        this.registry = new TransferRegistry<>(new RegistryAdapter());
         this.downloadsToReview = 0;
         loadTorrents();
     }
@@ -90,45 +91,28 @@ public final class TransferManager {
         return !primaryPath.equals(currentPath);
     }
 
+    /**
+     * Returns a new list with all the transfers, free to modify.
+     */
     public List<Transfer> getTransfers() {
-        List<Transfer> transfers = new ArrayList<>();
-
-        if (httpDownloads != null) {
-            transfers.addAll(httpDownloads);
-        }
-
-        if (bittorrentDownloads != null) {
-            transfers.addAll(bittorrentDownloads);
-        }
+        return new ArrayList<>(registry.snapshot().transfers());
+    }
 
-        return transfers;
+    /**
+     * Returns an immutable view of the transfers and the aggregated
+     * counters, cheap to call in each UI refresh.
+     */
+    public TransferRegistry.Snapshot<Transfer> snapshot() {
+        return registry.snapshot();
     }
 
     private boolean alreadyDownloading(String detailsUrl) {
-        synchronized (alreadyDownloadingMonitor) {
-            for (Transfer dt : httpDownloads) {
-                if (dt.isDownloading()) {
-                    if (dt.getName() != null && dt.getName().equals(detailsUrl)) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        Transfer t = registry.findByUrl(detailsUrl);
+        return t != null && !(t instanceof TorrentFetcherDownload) && t.isDownloading();
     }
 
     private boolean isAlreadyDownloadingTorrentByUri(String uri) {
-        synchronized (alreadyDownloadingMonitor) {
-            for (Transfer dt : httpDownloads) {
-                if (dt instanceof TorrentFetcherDownload) {
-                    String torrentUri = ((TorrentFetcherDownload) dt).getTorrentUri();
-                    if (torrentUri != null && torrentUri.equals(uri)) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        return registry.findByUrl(uri) instanceof TorrentFetcherDownload;
     }
 
     public Transfer download(SearchResult sr) {
@@ -178,36 +162,16 @@ public final class TransferManager {
     }
 
     public int getActiveDownloads() {
-        int count = 0;
-        for (BittorrentDownload d : bittorrentDownloads) {
-            if (!d.isComplete() && d.isDownloading()) {
-                count++;
-            }
-        }
-        for (Transfer d : httpDownloads) {
-            if (!d.isComplete() && d.isDownloading()) {
-                count++;
-            }
-        }
-        return count;
+        return registry.snapshot().downloading();
     }
 
     public int getActiveUploads() {
-        int count = 0;
-        for (BittorrentDownload d : bittorrentDownloads) {
-            if (!d.isComplete() && d.isSeeding()) {
-                count++;
-            }
-        }
-        return count;
+        return registry.snapshot().seeding();
     }
 
     public long getDownloadsBandwidth() {
         long torrentDownloadsBandwidth = BTEngine.getInstance().downloadRate();
-        long peerDownloadsBandwidth = 0;
-        for (Transfer d : httpDownloads) {
-            peerDownloadsBandwidth += d.getDownloadSpeed();
-        }
+        long peerDownloadsBandwidth = registry.snapshot().downloadSpeed();
         return torrentDownloadsBandwidth + peerDownloadsBandwidth;
     }
 
@@ -236,6 +200,9 @@ public final class TransferManager {
     }
 
     public void loadTorrents() {
+        for (BittorrentDownload d : bittorrentDownloads) {
+            registry.remove(d);
+        }
         bittorrentDownloads.clear();
 
         BTEngine engine = BTEngine.getInstance();
@@ -253,35 +220,36 @@ public final class TransferManager {
                     return;
                 }
 
-                bittorrentDownloads.add(new UIBittorrentDownload(TransferManager.this, dl));
+                addBittorrentDownload(new UIBittorrentDownload(TransferManager.this, dl));
             }
 
             @Override
             public void downloadUpdate(BTEngine engine, BTDownload dl) {
                 try {
-                    int count = bittorrentDownloads.size();
-                    for (int i = 0; i < count; i++) {
-                        if (i < bittorrentDownloads.size()) {
-                            BittorrentDownload download = bittorrentDownloads.get(i);
-                            if (download instanceof UIBittorrentDownload) {
-                                UIBittorrentDownload bt = (UIBittorrentDownload) download;
-                                if (bt.getInfoHash().equals(dl.getInfoHash())) {
-                                    bt.updateUI(dl);
-                                    break;
-                                }
-                            }
-                        }
+                    Transfer t = registry.findByInfoHash(dl.getInfoHash());
+                    if (t instanceof UIBittorrentDownload) {
+                        ((UIBittorrentDownload) t).updateUI(dl);
+                        registry.update(t);
                     }
                 } catch (Throwable e) {
                     LOG.error("Error updating bittorrent download", e);
                 }
             }
+
+            @Override
+            public void downloadsUpdated(BTEngine engine, List<String> infoHashes) {
+                for (String infoHash : infoHashes) {
+                    registry.update(registry.findByInfoHash(infoHash));
+                }
+            }
         });
 
         engine.restoreDownloads();
     }
 
     public boolean remove(Transfer transfer) {
+        registry.remove(transfer);
+
         if (transfer instanceof BittorrentDownload) {
             return bittorrentDownloads.remove(transfer);
         } else if (transfer instanceof Transfer) {
@@ -290,6 +258,16 @@ public final class TransferManager {
         return false;
     }
 
+    private void addBittorrentDownload(BittorrentDownload download) {
+        bittorrentDownloads.add(download);
+        registry.add(download);
+    }
+
+    private void addHttpDownload(Transfer download) {
+        httpDownloads.add(download);
+        registry.add(download);
+    }
+
     public void pauseTorrents() {
         for (BittorrentDownload d : bittorrentDownloads) {
             d.pause();
@@ -329,7 +307,7 @@ public final class TransferManager {
                     BTEngine.getInstance().download(new File(u.getPath()), null, null);
                 } else if (u.getScheme().equalsIgnoreCase("http") || u.getScheme().equalsIgnoreCase("https") || u.getScheme().equalsIgnoreCase("magnet")) {
                     download = new TorrentFetcherDownload(this, new TorrentUrlInfo(u.toString()));
-                    bittorrentDownloads.add(download);
+                    addBittorrentDownload(download);
                 }
             } else {
                 if (u.getScheme().equalsIgnoreCase("file")) {
@@ -365,7 +343,7 @@ public final class TransferManager {
         try {
             BittorrentDownload bittorrentDownload = createBittorrentDownload(this, sr);
             if (bittorrentDownload != null) {
-                bittorrentDownloads.add(bittorrentDownload);
+                addBittorrentDownload(bittorrentDownload);
             }
             return null;
         } catch (Throwable e) {
@@ -377,7 +355,7 @@ public final class TransferManager {
     private HttpDownload newHttpDownload(HttpSlideSearchResult sr) {
         HttpDownload download = new UIHttpDownload(this, sr.slide());
 
-        httpDownloads.add(download);
+        addHttpDownload(download);
         download.start();
 
         return download;
@@ -386,7 +364,7 @@ public final class TransferManager {
     private Transfer newYouTubeDownload(YouTubeCrawledSearchResult sr) {
         YouTubeDownload download = new UIYouTubeDownload(this, sr);
 
-        httpDownloads.add(download);
+        addHttpDownload(download);
         download.start();
 
         return download;
@@ -395,7 +373,7 @@ public final class TransferManager {
     private Transfer newSoundcloudDownload(SoundcloudSearchResult sr) {
         SoundcloudDownload download = new UISoundcloudDownload(this, sr);
 
-        httpDownloads.add(download);
+        addHttpDownload(download);
         download.start();
 
         return download;
@@ -404,7 +382,7 @@ public final class TransferManager {
     private Transfer newHttpDownload(HttpSearchResult sr) {
         HttpDownload download = new UIHttpDownload(this, sr);
 
-        httpDownloads.add(download);
+        addHttpDownload(download);
         download.start();
 
         return download;
@@ -475,8 +453,8 @@ public final class TransferManager {
     }
 
     public boolean isHttpDownloadInProgress() {
-        for (Transfer httpDownload : httpDownloads) {
-            if(httpDownload.isDownloading()) {
+        for (Transfer t : registry.transfers(TransferState.DOWNLOADING)) {
+            if (!(t instanceof BittorrentDownload)) {
                 return true;
             }
         }
@@ -520,6 +498,43 @@ public final class TransferManager {
         return ((long) stat.getBlockSize() * (long) stat.getAvailableBlocks());
     }
 
+    private static final class RegistryAdapter implements TransferRegistry.Adapter<Transfer> {
+
+        @Override
+        public String infoHash(Transfer t) {
+            return t instanceof UIBittorrentDownload ? ((UIBittorrentDownload) t).getInfoHash() : null;
+        }
+
+        @Override
+        public String url(Transfer t) {
+            if (t instanceof TorrentFetcherDownload) {
+                return ((TorrentFetcherDownload) t).getTorrentUri();
+            }
+            return t instanceof BittorrentDownload ? null : t.getName();
+        }
+
+        @Override
+        public TransferState state(Transfer t) {
+            return t.getState();
+        }
+
+        @Override
+        public long downloadSpeed(Transfer t) {
+            // torrents are accounted by the engine
+            return t instanceof BittorrentDownload ? 0 : t.getDownloadSpeed();
+        }
+
+        @Override
+        public long uploadSpeed(Transfer t) {
+            return 0;
+        }
+
+        @Override
+        public boolean isPolled(Transfer t) {
+            return !(t instanceof UIBittorrentDownload);
+        }
+    }
+
     private void registerPreferencesChangeListener() {
         OnSharedPreferenceChangeListener preferenceListener = new OnSharedPreferenceChangeListener() {
             public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
@@ -23,7 +23,7 @@ public final class Transfers {
 
     public static Set<File> getSkipedFiles() {
         Set<File> set = new HashSet<File>();
-        List<Transfer> transfers = TransferManager.instance().getTransfers();
+        List<Transfer> transfers = TransferManager.instance().snapshot().transfers();
 
         for (Transfer t : transfers) {
             if (t instanceof UIBittorrentDownload) {
@@ -51,7 +51,7 @@ public final class Transfers {
 
     public static Set<File> getIncompleteFiles() {
         Set<File> set = new HashSet<File>();
-        List<Transfer> transfers = TransferManager.instance().getTransfers();
+        List<Transfer> transfers = TransferManager.instance().snapshot().transfers();
 
         for (Transfer t : transfers) {
             if (t instanceof UIBittorrentDownload) {
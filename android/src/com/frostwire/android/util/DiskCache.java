@@ -32,6 +32,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
 
 /**
  * @author gubatron
@@ -143,6 +144,37 @@ public final class DiskCache {
         return cache.getMaxSize();
     }
 
+    /**
+     * Walks all the entries in the cache, removing the ones accepted by
+     * the filter.
+     *
+     * @return the number of entries removed
+     */
+    public int removeIf(EntryFilter filter) {
+        int removed = 0;
+
+        try {
+            Iterator<Snapshot> it = cache.snapshots();
+            while (it.hasNext()) {
+                Entry entry = new Entry(it.next());
+                try {
+                    if (filter.accept(entry)) {
+                        it.remove();
+                        removed++;
+                    }
+                } catch (Throwable e) {
+                    LOG.warn("Error filtering disk cache entry", e);
+                } finally {
+                    entry.close();
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Error walking disk cache entries", e);
+        }
+
+        return removed;
+    }
+
     public void delete() throws IOException {
         cache.delete();
     }
@@ -170,6 +202,11 @@ public final class DiskCache {
         return Util.md5Hex(key);
     }
 
+    public interface EntryFilter {
+
+        boolean accept(Entry entry) throws IOException;
+    }
+
     public static final class Entry implements Closeable {
 
         private final Snapshot snapshot;
@@ -0,0 +1,178 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.mp4;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracts the audio track of a synthetic interleaved mp4.
+ * <p>
+ * {@code chunksBuffered} and {@code chunksZeroCopy} run the chunk copy
+ * loop of the demuxer, the first one hides the file channels, which forces
+ * the old read/skip/copy through the heap buffer, the second one lets the
+ * channels use {@link FileChannel#transferTo}. {@code audio} runs the whole
+ * {@link Mp4Demuxer#audio} and {@code head} only parses the boxes, with
+ * the sample tables.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class Mp4DemuxerBenchmark {
+
+    @Param({"268435456"})
+    public long size;
+
+    private File input;
+    private File output;
+
+    private long[] offsets;
+    private long chunkSize;
+
+    @Setup
+    public void setup() throws IOException {
+        input = Mp4Fixtures.interleaved(size);
+        output = File.createTempFile("mp4benchmark", ".m4a");
+        output.deleteOnExit();
+
+        RandomAccessFile in = new RandomAccessFile(input, "r");
+        try {
+            LinkedList<Box> head = IsoFile.head(in, ByteBuffer.allocate(100 * 1024));
+            SoundMediaHeaderBox smhd = Box.findFirst(head, Box.smhd);
+            ChunkOffsetBox stco = smhd.parent.findFirst(Box.stco);
+            offsets = new long[stco.entry_count];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = stco.offset(i);
+            }
+            chunkSize = Mp4Fixtures.AUDIO_SAMPLES_PER_CHUNK * Mp4Fixtures.AUDIO_SAMPLE_SIZE;
+        } finally {
+            in.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        input.delete();
+        output.delete();
+    }
+
+    @Benchmark
+    public long chunksBuffered() throws IOException {
+        return chunks(true);
+    }
+
+    @Benchmark
+    public long chunksZeroCopy() throws IOException {
+        return chunks(false);
+    }
+
+    @Benchmark
+    public long audio() throws IOException {
+        Mp4Info inf = new Mp4Info();
+        inf.majorBrand = Box.M4A_;
+        inf.compatibleBrands = new int[]{Box.M4A_, Box.mp42, Box.isom, Box.zero};
+        Mp4Demuxer.audio(input, output, inf, null);
+        return output.length();
+    }
+
+    @Benchmark
+    public int head() throws IOException {
+        RandomAccessFile in = new RandomAccessFile(input, "r");
+        try {
+            return IsoFile.head(in, ByteBuffer.allocate(100 * 1024)).size();
+        } finally {
+            in.close();
+        }
+    }
+
+    private long chunks(boolean buffered) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(input, "r");
+        RandomAccessFile out = new RandomAccessFile(output, "rw");
+        out.setLength(0);
+        try {
+            InputChannel ich = new InputChannel(buffered ? hideInput(in.getChannel()) : in.getChannel());
+            OutputChannel och = new OutputChannel(buffered ? hideOutput(out.getChannel()) : out.getChannel());
+            ByteBuffer buf = ByteBuffer.allocate(100 * 1024);
+
+            for (long offset : offsets) {
+                long skp = offset - ich.count();
+                if (skp > 0) {
+                    IO.skip(ich, skp, buf);
+                }
+                IO.transfer(ich, och, chunkSize, buf);
+            }
+            return och.count();
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    private static ReadableByteChannel hideInput(final FileChannel ch) {
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                return ch.read(dst);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return ch.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                ch.close();
+            }
+        };
+    }
+
+    private static WritableByteChannel hideOutput(final FileChannel ch) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                return ch.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return ch.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                ch.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.search.torrent.AbstractTorrentSearchResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PerformersHelper#crawlTorrent} over the .torrent fixture:
+ * the bdecode and the creation of the file results, with and without the
+ * album detection. Needs the jlibtorrent native library in the path.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CrawlTorrentBenchmark {
+
+    @Param({"false", "true"})
+    public boolean detectAlbums;
+
+    private SearchPerformer performer;
+    private FixtureTorrentSearchResult sr;
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        performer = SearchManager.TPB.newPerformer(0, "fixture");
+        sr = new FixtureTorrentSearchResult();
+        data = SearchFixtures.torrent();
+
+        int n = crawlTorrent().size();
+        if (n < SearchFixtures.TRACKS || (detectAlbums && n == SearchFixtures.TRACKS + 2)) {
+            throw new IllegalStateException("Unexpected results from the torrent fixture: " + n);
+        }
+    }
+
+    @Benchmark
+    public List<? extends SearchResult> crawlTorrent() {
+        return PerformersHelper.crawlTorrent(performer, sr, data, detectAlbums);
+    }
+
+    private static final class FixtureTorrentSearchResult extends AbstractTorrentSearchResult {
+
+        @Override
+        public String getTorrentUrl() {
+            return "http://example.com/album.torrent";
+        }
+
+        @Override
+        public int getSeeds() {
+            return 100;
+        }
+
+        @Override
+        public String getHash() {
+            return "0000000000000000000000000000000000000000";
+        }
+
+        @Override
+        public String getFilename() {
+            return "album.torrent";
+        }
+
+        @Override
+        public long getSize() {
+            return SearchFixtures.TRACKS * 8 * 1024 * 1024;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Fixture Artist - Fixture Album (2017)";
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return "http://example.com/album";
+        }
+
+        @Override
+        public String getSource() {
+            return "Fixture";
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the search page fixture of each engine with the real performer:
+ * the regex and {@code fromMatcher} for the HTML engines, the JSON mapping
+ * and {@code fromItem} for the JSON engines. Run it with {@code -prof gc}
+ * (the default of the gradle task) to get the allocation rate per page.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PerformerBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"tpb", "monova", "yify", "torlock", "torrentdownloads", "limetorrents", "eztv",
+            "extratorrent", "mininova", "soundcloud", "archiveorg"})
+    public String engine;
+
+    private PagedWebSearchPerformer performer;
+    private String page;
+
+    @Setup
+    public void setup() {
+        performer = (PagedWebSearchPerformer) SearchFixtures.engine(engine).newPerformer(0, "fixture");
+        page = new String(SearchFixtures.page(engine), UTF_8);
+
+        if (searchPage().isEmpty()) {
+            throw new IllegalStateException("Fixture of " + engine + " doesn't produce results");
+        }
+    }
+
+    @Benchmark
+    public List<? extends SearchResult> searchPage() {
+        return performer.searchPage(page);
+    }
+}
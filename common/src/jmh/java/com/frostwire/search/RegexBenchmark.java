@@ -0,0 +1,85 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.regex.Matcher;
+import com.frostwire.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@code com.frostwire.regex} layer over re2j with the Monova
+ * search page fixture: the compilation of a pattern with named groups,
+ * done every time a torrent regex performer is created, and the cost of
+ * the named group lookup against the numbered one.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RegexBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private String regex;
+    private Pattern pattern;
+    private int itemid;
+    private int filename;
+    private String page;
+
+    @Setup
+    public void setup() {
+        RegexSearchPerformer<?> performer = (RegexSearchPerformer<?>) SearchFixtures.engine("monova").newPerformer(0, "fixture");
+        pattern = performer.getPattern();
+        regex = pattern.namedPattern();
+        itemid = pattern.indexOf("itemid") + 1;
+        filename = pattern.indexOf("filename") + 1;
+        page = new String(SearchFixtures.page("monova"), UTF_8);
+    }
+
+    @Benchmark
+    public Pattern compile() {
+        return Pattern.compile(regex);
+    }
+
+    @Benchmark
+    public void findNamedGroups(Blackhole bh) {
+        Matcher m = pattern.matcher(page);
+        while (m.find()) {
+            bh.consume(m.group("itemid"));
+            bh.consume(m.group("filename"));
+        }
+    }
+
+    @Benchmark
+    public void findNumberedGroups(Blackhole bh) {
+        Matcher m = pattern.matcher(page);
+        while (m.find()) {
+            bh.consume(m.group(itemid));
+            bh.consume(m.group(filename));
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+
+/**
+ * The search pages (HTML or JSON) of every engine and a .torrent file.
+ * <p>
+ * A recorded response placed in the jmh resources as
+ * {@code fixtures/<engine>.html}, {@code fixtures/<engine>.json} or
+ * {@code fixtures/album.torrent} is used as is. Otherwise the fixture is
+ * generated: the rows follow the markup or the JSON fields each engine
+ * relies on, and the rest of the page is filler of a similar size, so
+ * the benchmarks run without network.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class SearchFixtures {
+
+    static final int ROWS = 50;
+    static final int TRACKS = 12;
+
+    static final String[] HTML_ENGINES = {"tpb", "monova", "yify", "torlock", "torrentdownloads", "limetorrents", "eztv"};
+    static final String[] JSON_ENGINES = {"extratorrent", "mininova", "soundcloud", "archiveorg"};
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private SearchFixtures() {
+    }
+
+    static boolean isJson(String name) {
+        return asList(JSON_ENGINES).contains(name);
+    }
+
+    /**
+     * The raw search page of the engine.
+     */
+    static byte[] page(String name) {
+        byte[] recorded = recorded(name + (isJson(name) ? ".json" : ".html"));
+        if (recorded != null) {
+            return recorded;
+        }
+        return isJson(name) ? json(name) : html(name);
+    }
+
+    static SearchEngine engine(String name) {
+        if ("tpb".equals(name)) {
+            return SearchManager.TPB;
+        } else if ("monova".equals(name)) {
+            return SearchManager.MONOVA;
+        } else if ("yify".equals(name)) {
+            return SearchManager.YIFY;
+        } else if ("torlock".equals(name)) {
+            return SearchManager.TORLOCK;
+        } else if ("torrentdownloads".equals(name)) {
+            return SearchManager.TORRENTDOWNLOADS;
+        } else if ("limetorrents".equals(name)) {
+            return SearchManager.LIMETORRENTS;
+        } else if ("eztv".equals(name)) {
+            return SearchManager.EZTV;
+        } else if ("extratorrent".equals(name)) {
+            return SearchManager.EXTRATORRENT;
+        } else if ("mininova".equals(name)) {
+            return SearchManager.MININOVA;
+        } else if ("soundcloud".equals(name)) {
+            return SearchManager.SOUNCLOUD;
+        } else if ("archiveorg".equals(name)) {
+            return SearchManager.ARCHIVE;
+        }
+        throw new IllegalArgumentException("No fixture for engine: " + name);
+    }
+
+    /**
+     * A music album: a folder with {@link #TRACKS} mp3 files, the cover
+     * and a text file.
+     */
+    static byte[] torrent() {
+        byte[] recorded = recorded("album.torrent");
+        if (recorded != null) {
+            return recorded;
+        }
+
+        List<Object> files = new ArrayList<>();
+        for (int i = 1; i <= TRACKS; i++) {
+            files.add(file(8 * 1024 * 1024 + i, String.format("%02d - Fixture Artist - Track %d.mp3", i, i)));
+        }
+        files.add(file(120 * 1024, "cover.jpg"));
+        files.add(file(2 * 1024, "info.txt"));
+
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("files", files);
+        info.put("name", "Fixture Artist - Fixture Album (2017)");
+        info.put("piece length", 256 * 1024L);
+        info.put("pieces", new byte[20 * (TRACKS * 32 + 1)]);
+
+        Map<String, Object> torrent = new LinkedHashMap<>();
+        torrent.put("announce", "udp://tracker.example.com:80/announce");
+        torrent.put("info", info);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bencode(out, torrent);
+        return out.toByteArray();
+    }
+
+    private static byte[] html(String name) {
+        StringBuilder sb = new StringBuilder(256 * 1024);
+
+        sb.append("<!DOCTYPE html><html><head><title>Search results</title></head><body>");
+        filler(sb, 400);
+
+        if ("monova".equals(name)) {
+            sb.append("<div class=\"nav-wrapper\">");
+        }
+
+        for (int i = 0; i < ROWS; i++) {
+            row(sb, name, i);
+            filler(sb, 4);
+        }
+
+        filler(sb, 150);
+        sb.append("</body></html>");
+
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    private static void row(StringBuilder sb, String name, int i) {
+        String hash = String.format("%040x", 0xabcdef00L + i);
+        String title = "Fixture Título " + i;
+        String slug = "Fixture-Titulo-" + i;
+
+        if ("tpb".equals(name)) {
+            sb.append("<tr>\n<td class=\"vertTh\"><center><a href=\"/browse/100\" title=\"More from this category\">Audio</a><br />")
+                    .append("(<a href=\"/browse/101\" title=\"More from this category\">Music</a>)</center></td>\n")
+                    .append("<td><div class=\"detName\"><a href=\"/torrent/").append(1000 + i).append('/').append(slug)
+                    .append("\" class=\"detLink\" title=\"Details for ").append(title).append("\">").append(title).append("</a></div>\n")
+                    .append("<a href=\"magnet:?xt=urn:btih:").append(hash).append("&dn=").append(slug)
+                    .append("\" title=\"Download this torrent using magnet\"><img src=\"/static/img/icon-magnet.gif\" alt=\"Magnet link\" /></a>\n")
+                    .append("<font class=\"detDesc\">Uploaded Today&nbsp;10:15, Size 700.5&nbsp;MiB, ULed by <a class=\"detDesc\" href=\"/user/fixture/\">fixture</a></font></td>\n")
+                    .append("<td align=\"right\">").append(100 + i).append("</td>\n")
+                    .append("<td align=\"right\">12</td>\n</tr>\n");
+        } else if ("monova".equals(name)) {
+            sb.append("<tr><td class=\"torrent_name\"><a href=\"//monova.org/torrent/").append(1000 + i).append('/').append(slug)
+                    .append(".html\">").append(title).append("</a></td><td class=\"size\">700 MB</td></tr>\n");
+        } else if ("yify".equals(name)) {
+            sb.append("<div class=\"mv\"><div class=\"cover\"><img src=\"/img/").append(i).append(".jpg\" /></div>")
+                    .append("<h3><a href=\"/movie/").append(1000 + i).append('/').append(slug).append(".html\" target=\"_blank\" title=\"")
+                    .append(title).append("\">").append(title).append("</a></h3></div>\n");
+        } else if ("torlock".equals(name)) {
+            sb.append("<tr><td><div><a href=/torrent/").append(1000 + i).append('/').append(slug).append(".html><b>")
+                    .append(title).append("</b></a></div></td><td class=\"td\">700 MB</td></tr>\n");
+        } else if ("torrentdownloads".equals(name)) {
+            sb.append("<div class=\"grey_bar3\"><p><a href=\"/torrent/").append(1000 + i).append('/').append(slug).append("\">")
+                    .append(title).append("</a></p><span>700 MB</span></div>\n");
+        } else if ("limetorrents".equals(name)) {
+            sb.append("<tr><td class=\"tdleft\"><div class=\"tt-name\"><a href=\"http://itorrents.org/torrent/").append(hash.toUpperCase())
+                    .append(".torrent?title=").append(slug).append("\" rel=\"nofollow\" class=\"csprite_dl14\"></a><a href=\"/")
+                    .append(slug).append("-torrent-").append(1000 + i).append(".html\">").append(title).append("</a></div></td></tr>\n");
+        } else if ("eztv".equals(name)) {
+            sb.append("<tr name=\"hover\" class=\"forum_header_border\"><td class=\"forum_thread_post\"><a href=\"/ep/").append(1000 + i)
+                    .append('/').append(slug).append("/\" title=\"").append(title).append("\" class=\"epinfo\">").append(title).append("</a></td></tr>\n");
+        } else {
+            throw new IllegalArgumentException("No fixture for engine: " + name);
+        }
+    }
+
+    private static byte[] json(String name) {
+        StringBuilder sb = new StringBuilder(64 * 1024);
+
+        if ("extratorrent".equals(name)) {
+            sb.append("{\"title\":\"Extratorrent Search: fixture\",\"link\":\"http://extratorrent.com\",\"total_results\":").append(ROWS).append(",\"list\":[");
+        } else if ("mininova".equals(name)) {
+            sb.append("{\"results\":[");
+        } else if ("soundcloud".equals(name)) {
+            sb.append("{\"collection\":[");
+        } else if ("archiveorg".equals(name)) {
+            sb.append("{\"responseHeader\":{\"status\":0,\"QTime\":12},\"response\":{\"numFound\":").append(ROWS).append(",\"start\":0,\"docs\":[");
+        } else {
+            throw new IllegalArgumentException("No fixture for engine: " + name);
+        }
+
+        for (int i = 0; i < ROWS; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            item(sb, name, i);
+        }
+
+        if ("archiveorg".equals(name)) {
+            sb.append("]}}");
+        } else {
+            sb.append("]}");
+        }
+
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    private static void item(StringBuilder sb, String name, int i) {
+        String hash = String.format("%040x", 0xabcdef00L + i);
+        String title = "Fixture Título " + i;
+        String slug = "fixture-titulo-" + i;
+
+        if ("extratorrent".equals(name)) {
+            sb.append("{\"title\":\"<b>").append(title).append("</b>\",\"category\":\"Music\",\"subcategory\":\"Albums\",")
+                    .append("\"link\":\"http://extratorrent.com/torrent/").append(1000 + i).append('/').append(slug).append(".html\",")
+                    .append("\"guid\":\"http://extratorrent.com/torrent/").append(1000 + i).append("\",")
+                    .append("\"pubDate\":\"Wed, 09 Jun 2010 18:08:27 +0100\",")
+                    .append("\"torrentLink\":\"http://extratorrent.com/download/").append(1000 + i).append('/').append(slug).append(".torrent\",")
+                    .append("\"files\":12,\"comments\":3,\"hash\":\"").append(hash).append("\",")
+                    .append("\"peers\":").append(200 + i).append(",\"seeds\":").append(150 + i).append(",\"leechs\":50,\"size\":").append(101146107L + i).append('}');
+        } else if ("mininova".equals(name)) {
+            // the real responses miss the comma before the hash, parseJson fixes it
+            sb.append("{\"title\":\"").append(title).append("\",\"date\":\"Wed, 09 Jun 2010 18:08:27 +0100\",")
+                    .append("\"peers\":").append(200 + i).append(",\"seeds\":").append(150 + i).append(",\"superseeds\":2,")
+                    .append("\"cdp\":\"http://www.mininova.org/tor/").append(1000 + i).append("\",\"size\":").append(101146107L + i).append(',')
+                    .append("\"download\":\"http://www.mininova.org/get/").append(1000 + i).append("\"\"hash\":\"").append(hash).append("\"}");
+        } else if ("soundcloud".equals(name)) {
+            sb.append("{\"id\":").append(1000 + i).append(",\"user\":{\"id\":").append(i).append(",\"kind\":\"user\",\"username\":\"fixture")
+                    .append(i).append("\",\"uri\":\"https://api.soundcloud.com/users/").append(i).append("\",\"avatar_url\":\"https://i1.sndcdn.com/avatars-").append(i).append("-large.jpg\"},")
+                    .append("\"uri\":\"https://api.soundcloud.com/tracks/").append(1000 + i).append("\",\"duration\":").append(180000 + i).append(',')
+                    .append("\"permalink\":\"").append(slug).append("\",\"title\":\"").append(title).append("\",")
+                    .append("\"permalink_url\":\"https://soundcloud.com/fixture").append(i).append('/').append(slug).append("\",")
+                    .append("\"artwork_url\":\"https://i1.sndcdn.com/artworks-").append(i).append("-large.jpg\",")
+                    .append("\"stream_url\":\"https://api.soundcloud.com/tracks/").append(1000 + i).append("/stream\",")
+                    .append("\"created_at\":\"2016/05/12 10:15:00 +0000\",\"downloadable\":true,")
+                    .append("\"download_url\":\"https://api.soundcloud.com/tracks/").append(1000 + i).append("/download\",")
+                    .append("\"original_content_size\":").append(4000000 + i).append('}');
+        } else if ("archiveorg".equals(name)) {
+            sb.append("{\"title\":\"").append(title).append("\",\"mediatype\":\"audio\",\"description\":\"Fixture description ").append(i).append("\",")
+                    .append("\"licenseurl\":\"http://creativecommons.org/licenses/by/3.0/\",\"publicdate\":\"2016-05-12T10:15:00Z\",")
+                    .append("\"downloads\":").append(1000 + i).append(",\"week\":3,\"month\":9,\"num_reviews\":1,\"avg_rating\":4.5,")
+                    .append("\"identifier\":\"").append(slug).append("\",\"format\":[\"VBR MP3\",\"Ogg Vorbis\",\"Metadata\"],")
+                    .append("\"collection\":[\"opensource_audio\"]}");
+        }
+    }
+
+    private static Map<String, Object> file(long length, String name) {
+        Map<String, Object> file = new LinkedHashMap<>();
+        file.put("length", length);
+        file.put("path", asList((Object) name));
+        return file;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void bencode(ByteArrayOutputStream out, Object obj) {
+        if (obj instanceof Long) {
+            write(out, "i" + obj + "e");
+        } else if (obj instanceof String) {
+            byte[] b = ((String) obj).getBytes(UTF_8);
+            write(out, b.length + ":");
+            out.write(b, 0, b.length);
+        } else if (obj instanceof byte[]) {
+            byte[] b = (byte[]) obj;
+            write(out, b.length + ":");
+            out.write(b, 0, b.length);
+        } else if (obj instanceof List) {
+            out.write('l');
+            for (Object e : (List<Object>) obj) {
+                bencode(out, e);
+            }
+            out.write('e');
+        } else if (obj instanceof Map) {
+            // the keys are inserted already sorted
+            out.write('d');
+            for (Map.Entry<String, Object> e : ((Map<String, Object>) obj).entrySet()) {
+                bencode(out, e.getKey());
+                bencode(out, e.getValue());
+            }
+            out.write('e');
+        } else {
+            throw new IllegalArgumentException("Can't bencode: " + obj);
+        }
+    }
+
+    private static void write(ByteArrayOutputStream out, String s) {
+        byte[] b = s.getBytes(UTF_8);
+        out.write(b, 0, b.length);
+    }
+
+    private static byte[] recorded(String name) {
+        InputStream in = SearchFixtures.class.getResourceAsStream("/fixtures/" + name);
+        if (in == null) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] b = new byte[4096];
+            int n;
+            while ((n = in.read(b)) != -1) {
+                out.write(b, 0, n);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading fixture: " + name, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static void filler(StringBuilder sb, int n) {
+        for (int i = 0; i < n; i++) {
+            sb.append("<div class=\"sidebar-item\"><a href=\"/browse/").append(i).append("\">Category ").append(i)
+                    .append("</a><span class=\"count\">").append(i * 31).append("</span></div>\n");
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates a search with 20 engines, each one producing 50 crawlable
+ * results, to measure the scheduling and bookkeeping overhead of the
+ * {@link SearchManager}. The performers do no I/O at all.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SearchManagerBenchmark {
+
+    private static final int ENGINES = 20;
+    private static final int CRAWLS = 50;
+
+    private final AtomicLong tokens = new AtomicLong(0);
+    private final ConcurrentMap<Long, CountDownLatch> latches = new ConcurrentHashMap<>();
+
+    private SearchManager manager;
+
+    @Setup
+    public void setup() {
+        manager = SearchManager.getInstance();
+        manager.setListener(new SearchListener() {
+            @Override
+            public void onResults(long token, List<? extends SearchResult> results) {
+                CountDownLatch latch = latches.get(token);
+                if (latch != null) {
+                    for (int i = 0; i < results.size(); i++) {
+                        latch.countDown();
+                    }
+                }
+            }
+
+            @Override
+            public void onError(long token, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long token) {
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.setListener(null);
+    }
+
+    @Benchmark
+    public void searchAndCrawl() throws InterruptedException {
+        long token = tokens.incrementAndGet();
+        CountDownLatch latch = new CountDownLatch(ENGINES * CRAWLS);
+        latches.put(token, latch);
+
+        for (int i = 0; i < ENGINES; i++) {
+            manager.perform(new FakePerformer(token, "engine" + i));
+        }
+
+        latch.await();
+        latches.remove(token);
+    }
+
+    private static final class FakePerformer extends WebSearchPerformer {
+
+        private final String engine;
+
+        FakePerformer(long token, String engine) {
+            super(engine + ".com", token, "keywords", 10000);
+            this.engine = engine;
+        }
+
+        @Override
+        public void perform() {
+            List<FakeCrawlableSearchResult> results = new ArrayList<>(CRAWLS);
+            for (int i = 0; i < CRAWLS; i++) {
+                results.add(new FakeCrawlableSearchResult(engine, i));
+            }
+            onResults(results);
+        }
+
+        @Override
+        public void crawl(CrawlableSearchResult sr) {
+            FakeCrawlableSearchResult fsr = (FakeCrawlableSearchResult) sr;
+            onResults(Collections.singletonList(new FakeSearchResult(engine, fsr.index)));
+        }
+    }
+
+    private static class FakeSearchResult extends AbstractSearchResult {
+
+        final String engine;
+        final int index;
+
+        FakeSearchResult(String engine, int index) {
+            this.engine = engine;
+            this.index = index;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return engine + "-" + index;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return "http://" + engine + ".com/" + index;
+        }
+
+        @Override
+        public String getSource() {
+            return engine;
+        }
+    }
+
+    private static final class FakeCrawlableSearchResult extends FakeSearchResult implements CrawlableSearchResult {
+
+        FakeCrawlableSearchResult(String engine, int index) {
+            super(engine, index);
+        }
+
+        @Override
+        public boolean isComplete() {
+            return false;
+        }
+    }
+}
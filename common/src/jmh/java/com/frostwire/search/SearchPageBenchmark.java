@@ -0,0 +1,81 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scanning the search page fixtures of each engine as a string,
+ * reduced with a copy, against the streaming mode, where the page bytes
+ * go to a reusable {@link PageBuffer} and only the window between the
+ * markers is decoded.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SearchPageBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_RESULTS = 1000;
+
+    @Param({"tpb", "monova", "yify", "torlock", "torrentdownloads", "limetorrents", "eztv"})
+    public String engine;
+
+    private CrawlRegexSearchPerformer<?> performer;
+    private byte[] page;
+
+    @Setup
+    public void setup() {
+        performer = (CrawlRegexSearchPerformer<?>) SearchFixtures.engine(engine).newPerformer(0, "fixture");
+        page = SearchFixtures.page(engine);
+
+        int n = streaming().size();
+        if (n == 0 || n != string().size()) {
+            throw new IllegalStateException("Fixture of " + engine + " doesn't match, results: " + n);
+        }
+    }
+
+    @Benchmark
+    public List<? extends SearchResult> string() {
+        String html = new String(page, UTF_8);
+        String reduced = PerformersHelper.reduceHtml(html, performer.preliminaryHtmlPrefixOffset(html), performer.preliminaryHtmlSuffixOffset(html));
+        return PerformersHelper.searchPageHelper(performer, reduced, MAX_RESULTS);
+    }
+
+    @Benchmark
+    public List<? extends SearchResult> streaming() {
+        PageBuffer buffer = PageBuffer.get();
+        try {
+            buffer.write(page, 0, page.length);
+            CharSequence text = buffer.window(performer.preliminaryHtmlPrefix(), performer.preliminaryHtmlSuffix());
+            return PerformersHelper.searchPageHelper(performer, text, MAX_RESULTS);
+        } finally {
+            buffer.release();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.frostwire.transfers;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link SpeedStat} updates, done in each data callback of the
+ * http transfers. {@code update} is a single counter increment, and should
+ * take the same time with any mode and window, {@code contendedUpdate}
+ * does the same from 4 threads. {@code updateAndRead} reads the speed
+ * after every update, the worst case, since the sampling is done at most
+ * every 100ms.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SpeedStatBenchmark {
+
+    @Param({"EWMA", "WINDOW"})
+    public SpeedStat.Mode mode;
+
+    @Param({"1000", "60000"})
+    public long window;
+
+    private SpeedStat stat;
+
+    @Setup
+    public void setup() {
+        stat = new SpeedStat(mode, window);
+    }
+
+    @Benchmark
+    public void update() {
+        stat.update(16384);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void contendedUpdate() {
+        stat.update(16384);
+    }
+
+    @Benchmark
+    public long updateAndRead() {
+        stat.update(16384);
+        return stat.averageSpeed();
+    }
+}
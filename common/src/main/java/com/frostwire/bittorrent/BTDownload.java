@@ -27,7 +27,6 @@ import com.frostwire.transfers.BittorrentDownload;
 import com.frostwire.transfers.TransferItem;
 import com.frostwire.transfers.TransferState;
 import com.frostwire.util.Logger;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
@@ -56,9 +55,12 @@ public final class BTDownload implements BittorrentDownload {
 
     private final BTEngine engine;
     private final TorrentHandle th;
+    private final String infoHash;
     private final File savePath;
     private final Date created;
-    private final PiecesTracker piecesTracker;
+    // created with the first items, once the metadata is known
+    private volatile PiecesTracker piecesTracker;
+    private volatile List<TransferItem> items;
     private final File parts;
 
     private final Map<String, String> extra;
@@ -72,13 +74,17 @@ public final class BTDownload implements BittorrentDownload {
 
     private final InnerListener innerListener;
 
+    // the size never changes once the metadata is known
+    private long size;
+
     public BTDownload(BTEngine engine, TorrentHandle th) {
         this.engine = engine;
         this.th = th;
+        this.infoHash = th.infoHash().toString();
         this.savePath = new File(th.savePath());
         this.created = new Date(th.status().addedTime());
         TorrentInfo ti = th.torrentFile();
-        this.piecesTracker = ti != null ? new PiecesTracker(ti) : null;
+        this.size = ti != null ? ti.totalSize() : -1;
         this.parts = ti != null ? new File(savePath, "." + ti.infoHash() + ".parts") : null;
         this.extra = createExtra();
         this.paymentOptions = loadPaymentOptions(ti);
@@ -115,8 +121,18 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public long getSize() {
-        TorrentInfo ti = th.torrentFile();
-        return ti != null ? ti.totalSize() : 0;
+        if (size < 0) {
+            TorrentStatus status = status();
+            if (status == null || !status.hasMetadata()) {
+                return 0;
+            }
+            TorrentInfo ti = th.torrentFile();
+            if (ti == null) {
+                return 0;
+            }
+            size = ti.totalSize();
+        }
+        return size;
     }
 
     public PaymentOptions getPaymentOptions() {
@@ -124,15 +140,18 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public boolean isPaused() {
-        return th.isValid() && (th.status().isPaused() || engine.isPaused() || !engine.isRunning());
+        TorrentStatus status = status();
+        return status != null && (status.isPaused() || engine.isPaused() || !engine.isRunning());
     }
 
     public boolean isSeeding() {
-        return th.isValid() && th.status().isSeeding();
+        TorrentStatus status = status();
+        return status != null && status.isSeeding();
     }
 
     public boolean isFinished() {
-        return th.isValid() && th.status().isFinished();
+        TorrentStatus status = status();
+        return status != null && status.isFinished();
     }
 
     public TransferState getState() {
@@ -144,12 +163,12 @@ public final class BTDownload implements BittorrentDownload {
             return TransferState.PAUSED;
         }
 
-        if (!th.isValid()) {
+        final TorrentStatus status = status();
+
+        if (status == null) {
             return TransferState.ERROR;
         }
 
-        final TorrentStatus status = th.status();
-
         if (status.isPaused() && status.isFinished()) {
             return TransferState.FINISHED;
         }
@@ -205,11 +224,9 @@ public final class BTDownload implements BittorrentDownload {
 
     @Override
     public int getProgress() {
-        if (th == null || !th.isValid()) {
-            return 0;
-        }
+        final TorrentStatus status = status();
 
-        if (th.torrentFile() == null) {
+        if (status == null || !status.hasMetadata()) {
             return 0;
         }
 
@@ -219,22 +236,18 @@ public final class BTDownload implements BittorrentDownload {
         //perform sha1Hash check
         //}
 
-        if (th.status() == null) {
-            return 0;
-        }
-
-        float fp = th.status().progress();
-        TorrentStatus.State state = th.status().state();
+        float fp = status.progress();
+        TorrentStatus.State state = status.state();
 
         if (Float.compare(fp, 1f) == 0 && state != TorrentStatus.State.CHECKING_FILES) {
             return 100;
         }
 
-        int p = (int) (th.status().progress() * 100);
+        int p = (int) (fp * 100);
         if (p > 0 && state != TorrentStatus.State.CHECKING_FILES) {
             return Math.min(p, 100);
         }
-        final long received = getTotalBytesReceived();
+        final long received = status.allTimeDownload();
         final long size = getSize();
         if (size == received) {
             return 100;
@@ -253,27 +266,33 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public long getBytesReceived() {
-        return th.isValid() ? th.status().totalDownload() : 0;
+        TorrentStatus status = status();
+        return status != null ? status.totalDownload() : 0;
     }
 
     public long getTotalBytesReceived() {
-        return th.isValid() ? th.status().allTimeDownload() : 0;
+        TorrentStatus status = status();
+        return status != null ? status.allTimeDownload() : 0;
     }
 
     public long getBytesSent() {
-        return th.isValid() ? th.status().totalUpload() : 0;
+        TorrentStatus status = status();
+        return status != null ? status.totalUpload() : 0;
     }
 
     public long getTotalBytesSent() {
-        return th.isValid() ? th.status().allTimeUpload() : 0;
+        TorrentStatus status = status();
+        return status != null ? status.allTimeUpload() : 0;
     }
 
     public long getDownloadSpeed() {
-        return (!th.isValid() || isFinished() || isPaused() || isSeeding()) ? 0 : th.status().downloadPayloadRate();
+        TorrentStatus status = status();
+        return (status == null || isFinished() || isPaused() || isSeeding()) ? 0 : status.downloadPayloadRate();
     }
 
     public long getUploadSpeed() {
-        return (!th.isValid() || (isFinished() && !isSeeding()) || isPaused()) ? 0 : th.status().uploadPayloadRate();
+        TorrentStatus status = status();
+        return (status == null || (isFinished() && !isSeeding()) || isPaused()) ? 0 : status.uploadPayloadRate();
     }
 
     @Override
@@ -282,25 +301,29 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public int getConnectedPeers() {
-        return th.isValid() ? th.status().numPeers() : 0;
+        TorrentStatus status = status();
+        return status != null ? status.numPeers() : 0;
     }
 
     public int getTotalPeers() {
-        return th.isValid() ? th.status().listPeers() : 0;
+        TorrentStatus status = status();
+        return status != null ? status.listPeers() : 0;
     }
 
     public int getConnectedSeeds() {
-        return th.isValid() ? th.status().numSeeds() : 0;
+        TorrentStatus status = status();
+        return status != null ? status.numSeeds() : 0;
     }
 
     public int getTotalSeeds() {
-        return th.isValid() ? th.status().listSeeds() : 0;
+        TorrentStatus status = status();
+        return status != null ? status.listSeeds() : 0;
     }
 
     @Override
     public File getContentSavePath() {
         try {
-            if (!th.isValid()) {
+            if (!isValid()) {
                 return null;
             }
 
@@ -316,7 +339,7 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public String getInfoHash() {
-        return th.infoHash().toString();
+        return infoHash;
     }
 
     @Override
@@ -325,15 +348,15 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public long getETA() {
-        if (!th.isValid()) {
+        TorrentStatus status = status();
+        if (status == null) {
             return 0;
         }
-        TorrentInfo ti = th.torrentFile();
-        if (ti == null) {
+        long total = getSize();
+        if (total <= 0) {
             return 0;
         }
-        TorrentStatus status = th.status();
-        long left = ti.totalSize() - status.totalDone();
+        long left = total - status.totalDone();
         long rate = status.downloadPayloadRate();
         if (left <= 0) {
             return 0;
@@ -345,7 +368,7 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public void pause() {
-        if (!th.isValid()) {
+        if (!isValid()) {
             return;
         }
 
@@ -353,12 +376,13 @@ public final class BTDownload implements BittorrentDownload {
 
         th.setAutoManaged(false);
         th.pause();
+        engine.invalidateStatus(infoHash);
 
         doResumeData(true);
     }
 
     public void resume() {
-        if (!th.isValid()) {
+        if (!isValid()) {
             return;
         }
 
@@ -366,6 +390,7 @@ public final class BTDownload implements BittorrentDownload {
 
         th.setAutoManaged(true);
         th.resume();
+        engine.invalidateStatus(infoHash);
 
         doResumeData(true);
     }
@@ -384,7 +409,8 @@ public final class BTDownload implements BittorrentDownload {
 
         incompleteFilesToRemove = getIncompleteFiles();
 
-        if (th.isValid()) {
+        if (isValid()) {
+            engine.removeStatus(infoHash);
             if (deleteData) {
                 engine.remove(th, SessionHandle.Options.DELETE_FILES);
             } else {
@@ -399,8 +425,7 @@ public final class BTDownload implements BittorrentDownload {
             }
         }
 
-        engine.resumeDataFile(infoHash).delete();
-        engine.resumeTorrentFile(infoHash).delete();
+        engine.removeResumeData(infoHash);
     }
 
     public BTDownloadListener getListener() {
@@ -432,9 +457,15 @@ public final class BTDownload implements BittorrentDownload {
 
     private void torrentChecked() {
         try {
-            if (th.isValid()) {
-                // trigger items calculation
-                getItems();
+            if (isValid()) {
+                PiecesTracker tracker = piecesTracker;
+                if (tracker != null) {
+                    // the check could find fewer pieces than before
+                    tracker.setComplete(completePieces(), true);
+                } else {
+                    // trigger items calculation
+                    getItems();
+                }
             }
         } catch (Throwable e) {
             LOG.warn("Error handling torrent checked logic", e);
@@ -443,8 +474,9 @@ public final class BTDownload implements BittorrentDownload {
 
     private void pieceFinished(PieceFinishedAlert alert) {
         try {
-            if (piecesTracker != null) {
-                piecesTracker.setComplete(alert.pieceIndex(), true);
+            PiecesTracker tracker = piecesTracker;
+            if (tracker != null) {
+                tracker.setComplete(alert.pieceIndex(), true);
             }
         } catch (Throwable e) {
             LOG.warn("Error handling piece finished logic", e);
@@ -452,7 +484,7 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public boolean isPartial() {
-        if (th.isValid()) {
+        if (isValid()) {
             Priority[] priorities = th.filePriorities();
             for (Priority p : priorities) {
                 if (Priority.IGNORE.equals(p)) {
@@ -493,7 +525,7 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public Set<String> trackers() {
-        if (!th.isValid()) {
+        if (!isValid()) {
             return new HashSet<>();
         }
         List<AnnounceEntry> trackers = th.trackers();
@@ -513,30 +545,60 @@ public final class BTDownload implements BittorrentDownload {
         doResumeData(true);
     }
 
+    /**
+     * Returns the files of the torrent. The list is created once the
+     * metadata is known, the progress of the items is read from the
+     * pieces tracker, kept up to date with the piece finished alerts.
+     */
     @Override
     public List<TransferItem> getItems() {
-        ArrayList<TransferItem> items = new ArrayList<>();
-        if (th.isValid()) {
-            TorrentInfo ti = th.torrentFile();
-            if (ti != null && ti.isValid()) {
+        List<TransferItem> l = items;
+        if (l != null) {
+            return l;
+        }
+
+        if (!isValid()) {
+            return Collections.emptyList();
+        }
+
+        TorrentInfo ti = th.torrentFile();
+        if (ti == null || !ti.isValid()) {
+            return Collections.emptyList();
+        }
+
+        synchronized (this) {
+            if (items == null) {
+                PiecesTracker tracker = new PiecesTracker(ti);
+                piecesTracker = tracker;
+                // only adds, the alerts could be already marking new pieces
+                tracker.setComplete(completePieces(), false);
+
                 FileStorage fs = ti.files();
                 int numFiles = ti.numFiles();
+                List<TransferItem> list = new ArrayList<>(numFiles);
                 for (int i = 0; i < numFiles; i++) {
-                    BTDownloadItem item = new BTDownloadItem(th, i, fs.filePath(i), fs.fileSize(i), piecesTracker);
-                    items.add(item);
-                }
-                if (piecesTracker != null) {
-                    int numPieces = ti.numPieces();
-                    // perform piece complete check
-                    for (int i = 0; i < numPieces; i++) {
-                        if (th.havePiece(i)) {
-                            piecesTracker.setComplete(i, true);
-                        }
-                    }
+                    list.add(new BTDownloadItem(th, i, fs.filePath(i), fs.fileSize(i), tracker));
                 }
+                items = Collections.unmodifiableList(list);
+            }
+            return items;
+        }
+    }
+
+    /**
+     * Fetches the bitfield of the complete pieces in a single call,
+     * instead of asking for each piece.
+     */
+    private BitSet completePieces() {
+        PieceIndexBitfield bitfield = th.status(TorrentHandle.QUERY_PIECES).pieces();
+        int n = bitfield.size();
+        BitSet pieces = new BitSet(n);
+        for (int i = 0; i < n; i++) {
+            if (bitfield.getBit(i)) {
+                pieces.set(i);
             }
         }
-        return items;
+        return pieces;
     }
 
     public File getTorrentFile() {
@@ -546,7 +608,7 @@ public final class BTDownload implements BittorrentDownload {
     public Set<File> getIncompleteFiles() {
         Set<File> s = new HashSet<>();
         try {
-            if (!th.isValid()) {
+            if (!isValid()) {
                 return s;
             }
             long[] progress = th.fileProgress(TorrentHandle.FileProgressFlags.PIECE_GRANULARITY);
@@ -580,12 +642,14 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public boolean isSequentialDownload() {
-        return th.isValid() && th.status().isSequentialDownload();
+        TorrentStatus status = status();
+        return status != null && status.isSequentialDownload();
     }
 
     public void setSequentialDownload(boolean sequential) {
-        if (th.isValid()) {
+        if (isValid()) {
             th.setSequentialDownload(sequential);
+            engine.invalidateStatus(infoHash);
         }
     }
 
@@ -604,12 +668,11 @@ public final class BTDownload implements BittorrentDownload {
 
     private void serializeResumeData(SaveResumeDataAlert alert) {
         try {
-            if (th.isValid()) {
-                String infoHash = th.infoHash().toString();
-                File file = engine.resumeDataFile(infoHash);
+            if (isValid()) {
                 Entry e = alert.resumeData();
                 e.swig().dict().set(EXTRA_DATA_KEY, Entry.fromMap(extra).swig());
-                FileUtils.writeByteArrayToFile(file, e.bencode());
+                String savePath = e.swig().dict().get("save_path").string();
+                engine.saveResumeData(infoHash, e.bencode(), savePath);
             }
         } catch (Throwable e) {
             LOG.warn("Error saving resume data", e);
@@ -625,7 +688,7 @@ public final class BTDownload implements BittorrentDownload {
             return;
         }
         try {
-            if (th != null && th.isValid()) {
+            if (isValid()) {
                 th.saveResumeData();
             }
         } catch (Throwable e) {
@@ -636,10 +699,8 @@ public final class BTDownload implements BittorrentDownload {
     private Map<String, String> createExtra() {
         Map<String, String> map = new HashMap<>();
         try {
-            String infoHash = getInfoHash();
-            File file = engine.resumeDataFile(infoHash);
-            if (file.exists()) {
-                byte[] arr = FileUtils.readFileToByteArray(file);
+            byte[] arr = engine.readResumeData(infoHash);
+            if (arr != null) {
                 entry e = entry.bdecode(Vectors.bytes2byte_vector(arr));
                 string_entry_map d = e.dict();
                 if (d.has_key(EXTRA_DATA_KEY)) {
@@ -687,6 +748,19 @@ public final class BTDownload implements BittorrentDownload {
         }
     }
 
+    /**
+     * The last status snapshot of the torrent, kept up to date by the engine
+     * from the state update alerts, or {@code null} if the handle is not valid.
+     */
+    private TorrentStatus status() {
+        return engine.status(th, infoHash);
+    }
+
+    // from the snapshot, without a native call each time
+    private boolean isValid() {
+        return status() != null;
+    }
+
     private final class InnerListener implements AlertListener {
 
         @Override
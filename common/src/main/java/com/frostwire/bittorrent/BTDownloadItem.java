@@ -18,7 +18,6 @@
 
 package com.frostwire.bittorrent;
 
-import com.frostwire.jlibtorrent.PiecesTracker;
 import com.frostwire.jlibtorrent.Priority;
 import com.frostwire.jlibtorrent.TorrentHandle;
 import com.frostwire.transfers.TransferItem;
@@ -38,7 +37,7 @@ public class BTDownloadItem implements TransferItem {
     private final String name;
     private final long size;
 
-    private PiecesTracker piecesTracker;
+    private final PiecesTracker piecesTracker;
 
     public BTDownloadItem(TorrentHandle th, int index, String filePath, long fileSize, PiecesTracker piecesTracker) {
         this.th = th;
@@ -78,6 +77,10 @@ public class BTDownloadItem implements TransferItem {
 
     @Override
     public long getDownloaded() {
+        if (piecesTracker != null) {
+            return piecesTracker.getDownloadedBytes(index);
+        }
+
         if (!th.isValid()) {
             return 0;
         }
@@ -98,7 +101,7 @@ public class BTDownloadItem implements TransferItem {
         if (downloaded == size) {
             progress = 100;
         } else {
-            progress = (int) ((float) (getDownloaded() * 100) / (float) size);
+            progress = (int) ((float) (downloaded * 100) / (float) size);
         }
 
         return progress;
@@ -25,16 +25,28 @@ import com.frostwire.jlibtorrent.swig.*;
 import com.frostwire.platform.FileSystem;
 import com.frostwire.platform.Platforms;
 import com.frostwire.search.torrent.TorrentCrawledSearchResult;
+import com.frostwire.transfers.BandwidthScheduler;
 import com.frostwire.util.Logger;
+import com.frostwire.util.ThreadPool;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
 import java.io.FilenameFilter;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static com.frostwire.jlibtorrent.alerts.AlertType.*;
 
@@ -47,7 +59,10 @@ public final class BTEngine extends SessionManager {
     private static final Logger LOG = Logger.getLogger(BTEngine.class);
 
     private static final int[] INNER_LISTENER_TYPES = new int[]{
+            ADD_TORRENT.swig(),
             TORRENT_ADDED.swig(),
+            TORRENT_REMOVED.swig(),
+            STATE_UPDATE.swig(),
             LISTEN_SUCCEEDED.swig(),
             LISTEN_FAILED.swig(),
             EXTERNAL_IP.swig(),
@@ -60,17 +75,35 @@ public final class BTEngine extends SessionManager {
     private static final String TORRENT_ORIG_PATH_KEY = "torrent_orig_path";
     private static final String STATE_VERSION_KEY = "state_version";
     private static final String STATE_VERSION_VALUE = "1.2.0.6-RC4";
+    private static final long STATUS_UPDATE_INTERVAL_MILLIS = 1000;
+    private static final long RESUME_DATA_FLUSH_INTERVAL_MILLIS = 5000;
+    private static final long BANDWIDTH_UPDATE_INTERVAL_MILLIS = 1000;
+    private static final int RESTORE_BATCH_SIZE = 50;
+    private static final long RESTORE_BATCH_TIMEOUT_MILLIS = 10000;
     public static BTContext ctx;
 
     private final InnerListener innerListener;
-    private final Queue<RestoreDownloadTask> restoreDownloadsQueue;
+    private volatile RestorePipeline restorePipeline;
+
+    // last status of every torrent, by info hash
+    private final ConcurrentMap<String, TorrentStatus> statuses;
+    // torrents removed, their late state updates are ignored until added again
+    private final Set<String> removedStatuses;
+    private Timer timer;
+    // the session rate limits set by the user, while the bandwidth scheduler is in charge
+    private final Object rateLimitsLock = new Object();
+    private int[] userRateLimits;
+    private boolean applyingScheduledLimits; // guarded by rateLimitsLock
+
+    private ResumeDataStore resumeStore;
 
     private BTEngineListener listener;
 
     private BTEngine() {
         super(false);
         this.innerListener = new InnerListener();
-        this.restoreDownloadsQueue = new LinkedList<>();
+        this.statuses = new ConcurrentHashMap<>();
+        this.removedStatuses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     }
 
     private static class Loader {
@@ -107,21 +140,26 @@ public final class BTEngine extends SessionManager {
     @Override
     protected void onBeforeStart() {
         addListener(innerListener);
+        openResumeStore();
     }
 
     @Override
     protected void onAfterStart() {
+        updateSchedulerLimits();
+        startTimer();
         fireStarted();
     }
 
     @Override
     protected void onBeforeStop() {
+        stopTimer();
         removeListener(innerListener);
         saveSettings();
     }
 
     @Override
     protected void onAfterStop() {
+        closeResumeStore();
         fireStopped();
     }
 
@@ -176,7 +214,55 @@ public final class BTEngine extends SessionManager {
 
     @Override
     protected void onApplySettings(SettingsPack sp) {
-        saveSettings();
+        // only the limits set by the user are saved, not the scheduled ones
+        if (!(Thread.holdsLock(rateLimitsLock) && applyingScheduledLimits)) {
+            saveSettings();
+        }
+    }
+
+    /**
+     * The download rate limit set by the user, the session could be using
+     * a lower one while the bandwidth scheduler is in charge.
+     */
+    @Override
+    public int downloadRateLimit() {
+        synchronized (rateLimitsLock) {
+            return userRateLimits != null ? userRateLimits[0] : super.downloadRateLimit();
+        }
+    }
+
+    /**
+     * Sets the download rate limit of the user, it's the global limit of
+     * the HTTP transfers and the torrents session together.
+     */
+    @Override
+    public void downloadRateLimit(int limit) {
+        synchronized (rateLimitsLock) {
+            // applied and saved as is, the scheduled limits come back with the next update
+            restoreUserRateLimits();
+            super.downloadRateLimit(limit);
+            updateSchedulerLimits();
+        }
+    }
+
+    /**
+     * The upload rate limit set by the user, the session could be using
+     * a different one while the bandwidth scheduler is in charge.
+     */
+    @Override
+    public int uploadRateLimit() {
+        synchronized (rateLimitsLock) {
+            return userRateLimits != null ? userRateLimits[1] : super.uploadRateLimit();
+        }
+    }
+
+    @Override
+    public void uploadRateLimit(int limit) {
+        synchronized (rateLimitsLock) {
+            restoreUserRateLimits();
+            super.uploadRateLimit(limit);
+            updateSchedulerLimits();
+        }
     }
 
     @Override
@@ -347,43 +433,43 @@ public final class BTEngine extends SessionManager {
             return;
         }
 
-        File[] torrents = ctx.homeDir.listFiles(new FilenameFilter() {
-            @Override
-            public boolean accept(File dir, String name) {
-                return name != null && FilenameUtils.getExtension(name).toLowerCase().equals("torrent");
-            }
-        });
+        if (restorePipeline != null) {
+            LOG.warn("Downloads restore already in progress");
+            return;
+        }
 
-        if (torrents != null) {
-            for (File t : torrents) {
-                try {
-                    String infoHash = FilenameUtils.getBaseName(t.getName());
-                    if (infoHash != null) {
-                        File resumeFile = resumeDataFile(infoHash);
-
-                        File savePath = readSavePath(infoHash);
-                        if (setupSaveDir(savePath) == null) {
-                            LOG.warn("Can't create data dir or mount point is not accessible");
-                            return;
-                        }
+        long start = System.currentTimeMillis();
 
-                        restoreDownloadsQueue.add(new RestoreDownloadTask(t, null, null, resumeFile));
-                    }
-                } catch (Throwable e) {
-                    LOG.error("Error restoring torrent download: " + t, e);
-                }
+        List<RestoreDownloadTask> tasks = new ArrayList<>();
+
+        ResumeDataStore store = resumeStore();
+        if (store != null) {
+            for (String infoHash : store.infoHashes()) {
+                tasks.add(new RestoreDownloadTask(null, infoHash, null, null));
             }
         }
 
-        migrateVuzeDownloads();
+        migrateVuzeDownloads(tasks);
+
+        if (tasks.isEmpty()) {
+            return;
+        }
 
-        runNextRestoreDownloadTask();
+        // the parsing and the adds happen in the background, the
+        // downloads show up as their torrent added alerts arrive
+        restorePipeline = new RestorePipeline(tasks, start);
+        Thread t = new Thread(restorePipeline, "BTEngine-restoreDownloads");
+        t.setDaemon(true);
+        t.start();
     }
 
     File settingsFile() {
         return new File(ctx.homeDir, "settings.dat");
     }
 
+    /**
+     * Legacy resume torrent file, only read to migrate it to the resume data store.
+     */
     File resumeTorrentFile(String infoHash) {
         return new File(ctx.homeDir, infoHash + ".torrent");
     }
@@ -392,36 +478,145 @@ public final class BTEngine extends SessionManager {
         return new File(ctx.torrentsDir, name + ".torrent");
     }
 
+    /**
+     * Legacy resume data file, only read to migrate it to the resume data store.
+     */
     File resumeDataFile(String infoHash) {
         return new File(ctx.homeDir, infoHash + ".resume");
     }
 
     File readTorrentPath(String infoHash) {
-        File torrent = null;
+        ResumeDataStore store = resumeStore();
+        return store != null ? store.torrentPath(infoHash) : null;
+    }
+
+    File readSavePath(String infoHash) {
+        ResumeDataStore store = resumeStore();
+        return store != null ? store.savePath(infoHash) : null;
+    }
+
+    byte[] readResumeData(String infoHash) {
+        ResumeDataStore store = resumeStore();
+        return store != null ? store.resumeData(infoHash) : null;
+    }
+
+    /**
+     * Saves the bencoded resume data of the torrent, the write to disk is
+     * done in batch with the resume data of the other torrents.
+     */
+    void saveResumeData(String infoHash, byte[] data, String savePath) {
+        ResumeDataStore store = resumeStore();
+        if (store != null) {
+            store.putResumeData(infoHash, data, savePath);
+        }
+    }
+
+    void removeResumeData(String infoHash) {
+        ResumeDataStore store = resumeStore();
+        if (store != null) {
+            store.remove(infoHash);
+        }
+    }
+
+    private synchronized ResumeDataStore resumeStore() {
+        return resumeStore != null && resumeStore.isOpen() ? resumeStore : null;
+    }
+
+    private void openResumeStore() {
+        if (ctx.homeDir == null) {
+            LOG.warn("Wrong setup with BTEngine home dir");
+            return;
+        }
+
+        ResumeDataStore store;
+        synchronized (this) {
+            if (resumeStore == null) {
+                resumeStore = new ResumeDataStore(new File(ctx.homeDir, "resume.log"));
+            }
+            store = resumeStore;
+        }
 
+        // the store is thread safe, the migration of many files doesn't hold the engine
         try {
-            byte[] arr = FileUtils.readFileToByteArray(resumeTorrentFile(infoHash));
-            entry e = entry.bdecode(Vectors.bytes2byte_vector(arr));
-            torrent = new File(e.dict().get(TORRENT_ORIG_PATH_KEY).string());
+            store.open();
+            migrateResumeFiles(store);
         } catch (Throwable e) {
-            // can't recover original torrent path
+            LOG.error("Error opening the resume data store", e);
         }
+    }
 
-        return torrent;
+    private synchronized void closeResumeStore() {
+        if (resumeStore != null) {
+            resumeStore.close();
+        }
     }
 
-    File readSavePath(String infoHash) {
-        File savePath = null;
+    /**
+     * Moves the per torrent .torrent and .resume files of the old layout to
+     * the store, the files are deleted once the store is safely on disk.
+     */
+    private void migrateResumeFiles(ResumeDataStore store) {
+        File[] torrents = ctx.homeDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name != null && FilenameUtils.getExtension(name).toLowerCase().equals("torrent");
+            }
+        });
+
+        if (torrents == null || torrents.length == 0) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<File> migrated = new ArrayList<>(2 * torrents.length);
 
+        for (File t : torrents) {
+            try {
+                String infoHash = FilenameUtils.getBaseName(t.getName());
+                if (store.contains(infoHash)) {
+                    // already migrated, the delete failed
+                    migrated.add(t);
+                    continue;
+                }
+
+                byte[] arr = FileUtils.readFileToByteArray(t);
+                store.putTorrentData(infoHash, arr, readString(arr, TORRENT_ORIG_PATH_KEY));
+                migrated.add(t);
+
+                File resume = resumeDataFile(infoHash);
+                if (resume.exists()) {
+                    arr = FileUtils.readFileToByteArray(resume);
+                    store.putResumeData(infoHash, arr, readString(arr, "save_path"));
+                    migrated.add(resume);
+                }
+            } catch (Throwable e) {
+                LOG.error("Error migrating resume files of " + t, e);
+            }
+        }
+
+        if (!store.flush()) {
+            // keep the old files, the migration is tried again in the next start
+            LOG.error("Unable to write the migrated resume files to the store, old files kept");
+            return;
+        }
+
+        for (File f : migrated) {
+            if (!f.delete()) {
+                LOG.warn("Unable to delete migrated resume file " + f);
+            }
+        }
+
+        LOG.info("Migrated " + migrated.size() + " resume files in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private static String readString(byte[] arr, String key) {
         try {
-            byte[] arr = FileUtils.readFileToByteArray(resumeDataFile(infoHash));
             entry e = entry.bdecode(Vectors.bytes2byte_vector(arr));
-            savePath = new File(e.dict().get("save_path").string());
+            return e.dict().get(key).string();
         } catch (Throwable e) {
-            // can't recover original torrent path
+            // not in the data
+            return null;
         }
-
-        return savePath;
     }
 
     private void saveTorrent(TorrentInfo ti) {
@@ -447,11 +642,17 @@ public final class BTEngine extends SessionManager {
         try {
             String name = getEscapedFilename(ti);
 
+            String torrentPath = torrentFile(name).getAbsolutePath();
             entry e = ti.toEntry().swig();
-            e.dict().set(TORRENT_ORIG_PATH_KEY, new entry(torrentFile(name).getAbsolutePath()));
+            e.dict().set(TORRENT_ORIG_PATH_KEY, new entry(torrentPath));
             byte[] arr = Vectors.byte_vector2bytes(e.bencode());
 
-            FileUtils.writeByteArrayToFile(resumeTorrentFile(ti.infoHash().toString()), arr);
+            ResumeDataStore store = resumeStore();
+            if (store != null) {
+                store.putTorrentData(ti.infoHash().toString(), arr, torrentPath);
+                // a new torrent is worth a write right away
+                store.flush();
+            }
         } catch (Throwable e) {
             LOG.warn("Error saving resume torrent", e);
         }
@@ -500,6 +701,177 @@ public final class BTEngine extends SessionManager {
         }
     }
 
+    /**
+     * Returns the last status snapshot of the torrent. The snapshots are
+     * refreshed in batch, for all the torrents that changed, by the state
+     * update alerts, so reading them doesn't cost a native call. If there
+     * is no snapshot yet, the status is queried once.
+     * <p>
+     * The validity of the handle is checked only when there is no snapshot,
+     * a removed torrent has its snapshot dropped, see {@link #removeStatus(String)}.
+     *
+     * @return null if the handle is not valid
+     */
+    TorrentStatus status(TorrentHandle th, String infoHash) {
+        TorrentStatus status = statuses.get(infoHash);
+        if (status == null) {
+            if (removedStatuses.contains(infoHash) || !th.isValid()) {
+                return null;
+            }
+            status = th.status();
+            TorrentStatus old = statuses.putIfAbsent(infoHash, status);
+            if (old != null) {
+                status = old;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Drops the snapshot of the torrent, to see right away the result of
+     * an action like pause or resume, instead of waiting for the next update.
+     */
+    void invalidateStatus(String infoHash) {
+        statuses.remove(infoHash);
+    }
+
+    /**
+     * Drops the snapshot of a torrent being removed, and ignores the state
+     * updates for it still on the way, until it's added again.
+     */
+    void removeStatus(String infoHash) {
+        removedStatuses.add(infoHash);
+        statuses.remove(infoHash);
+    }
+
+    private void startTimer() {
+        stopTimer();
+        timer = new Timer("BTEngine-timer", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    // posts a single state update alert with the torrents that changed
+                    postTorrentUpdates();
+                } catch (Throwable e) {
+                    LOG.warn("Error posting torrent updates: " + e.getMessage());
+                }
+            }
+        }, STATUS_UPDATE_INTERVAL_MILLIS, STATUS_UPDATE_INTERVAL_MILLIS);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                // writes the resume data saved since the last run, of all torrents, in one batch
+                ResumeDataStore store = resumeStore();
+                if (store != null) {
+                    store.flush();
+                }
+            }
+        }, RESUME_DATA_FLUSH_INTERVAL_MILLIS, RESUME_DATA_FLUSH_INTERVAL_MILLIS);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    updateBandwidth();
+                } catch (Throwable e) {
+                    LOG.warn("Error updating the session rate limits: " + e.getMessage());
+                }
+            }
+        }, BANDWIDTH_UPDATE_INTERVAL_MILLIS, BANDWIDTH_UPDATE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Shares the global download budget with the HTTP transfers, the
+     * scheduler returns the session limits to apply, if it's active.
+     * Once inactive, the limits set by the user are restored.
+     */
+    private void updateBandwidth() {
+        if (swig() == null) {
+            return;
+        }
+
+        BandwidthScheduler.Limits limits = BandwidthScheduler.getInstance().update(downloadRate());
+        synchronized (rateLimitsLock) {
+            if (limits == null) {
+                restoreUserRateLimits();
+                return;
+            }
+
+            if (userRateLimits == null) {
+                userRateLimits = new int[]{super.downloadRateLimit(), super.uploadRateLimit()};
+            }
+            // no scheduled limit, the one of the user stays
+            int download = limits.downloadLimit() == BandwidthScheduler.UNLIMITED ?
+                    userRateLimits[0] : (int) Math.min(Integer.MAX_VALUE, limits.downloadLimit());
+            int upload = limits.uploadLimit() == BandwidthScheduler.UNLIMITED ?
+                    userRateLimits[1] : (int) Math.min(Integer.MAX_VALUE, limits.uploadLimit());
+
+            applyingScheduledLimits = true;
+            try {
+                if (super.downloadRateLimit() != download) {
+                    super.downloadRateLimit(download);
+                }
+                if (super.uploadRateLimit() != upload) {
+                    super.uploadRateLimit(upload);
+                }
+            } finally {
+                applyingScheduledLimits = false;
+            }
+        }
+    }
+
+    private void restoreUserRateLimits() {
+        synchronized (rateLimitsLock) {
+            if (userRateLimits != null) {
+                int[] limits = userRateLimits;
+                userRateLimits = null;
+                super.downloadRateLimit(limits[0]);
+                super.uploadRateLimit(limits[1]);
+            }
+        }
+    }
+
+    // the user limits are the global ones, of the HTTP transfers too
+    private void updateSchedulerLimits() {
+        BandwidthScheduler.getInstance().setLimits(downloadRateLimit(), uploadRateLimit());
+    }
+
+    private void stopTimer() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+        // the session settings are saved right after, without the scheduled limits
+        restoreUserRateLimits();
+        statuses.clear();
+        removedStatuses.clear();
+    }
+
+    private void onStateUpdate(StateUpdateAlert alert) {
+        List<String> infoHashes = new ArrayList<>();
+        try {
+            for (TorrentStatus status : alert.status()) {
+                String infoHash = status.infoHash().toString();
+                if (removedStatuses.contains(infoHash)) {
+                    continue;
+                }
+                // the alert owns the native status, it's gone after the alert
+                statuses.put(infoHash, new TorrentStatus(new torrent_status(status.swig())));
+                infoHashes.add(infoHash);
+            }
+        } catch (Throwable e) {
+            LOG.error("Error updating the torrents status", e);
+        }
+
+        try {
+            if (listener != null && !infoHashes.isEmpty()) {
+                listener.downloadsUpdated(this, infoHashes);
+            }
+        } catch (Throwable e) {
+            LOG.error("Error notifying the torrents status update", e);
+        }
+    }
+
     private void onListenSucceeded(ListenSucceededAlert alert) {
         try {
             String endp = alert.address() + ":" + alert.port();
@@ -517,7 +889,7 @@ public final class BTEngine extends SessionManager {
         LOG.info("Listen failed on " + s + " (error: " + message + ")");
     }
 
-    private void migrateVuzeDownloads() {
+    private void migrateVuzeDownloads(List<RestoreDownloadTask> tasks) {
         try {
             File dir = new File(ctx.homeDir.getParent(), "azureus");
             File file = new File(dir, "downloads.config");
@@ -543,7 +915,7 @@ public final class BTEngine extends SessionManager {
 
                         if (torrent.exists() && saveDir.exists()) {
                             LOG.info("Restored old vuze download: " + torrent);
-                            restoreDownloadsQueue.add(new RestoreDownloadTask(torrent, saveDir, priorities, null));
+                            tasks.add(new RestoreDownloadTask(torrent, null, saveDir, priorities));
                             saveResumeTorrent(new TorrentInfo(torrent));
                         }
                     } catch (Throwable e) {
@@ -586,20 +958,6 @@ public final class BTEngine extends SessionManager {
         return result;
     }
 
-    private void runNextRestoreDownloadTask() {
-        RestoreDownloadTask task = null;
-        try {
-            if (!restoreDownloadsQueue.isEmpty()) {
-                task = restoreDownloadsQueue.poll();
-            }
-        } catch (Throwable t) {
-            // on Android, LinkedList's .poll() implementation throws a NoSuchElementException
-        }
-        if (task != null) {
-            task.run();
-        }
-    }
-
     private void download(TorrentInfo ti, File saveDir, Priority[] priorities, File resumeFile, List<TcpEndpoint> peers) {
 
         TorrentHandle th = find(ti.infoHash());
@@ -643,10 +1001,23 @@ public final class BTEngine extends SessionManager {
             AlertType type = alert.type();
 
             switch (type) {
+                case ADD_TORRENT:
+                    onAddTorrent((AddTorrentAlert) alert);
+                    break;
                 case TORRENT_ADDED:
                     TorrentAlert<?> torrentAlert = (TorrentAlert<?>) alert;
+                    removedStatuses.remove(torrentAlert.handle().infoHash().toString());
                     fireDownloadAdded(torrentAlert);
-                    runNextRestoreDownloadTask();
+                    RestorePipeline pipeline = restorePipeline;
+                    if (pipeline != null) {
+                        pipeline.added(torrentAlert.handle().infoHash().toString());
+                    }
+                    break;
+                case TORRENT_REMOVED:
+                    removeStatus(((TorrentRemovedAlert) alert).infoHash().toString());
+                    break;
+                case STATE_UPDATE:
+                    onStateUpdate((StateUpdateAlert) alert);
                     break;
                 case LISTEN_SUCCEEDED:
                     onListenSucceeded((ListenSucceededAlert) alert);
@@ -669,6 +1040,27 @@ public final class BTEngine extends SessionManager {
         }
     }
 
+    /**
+     * A failed add (like a duplicate torrent) doesn't post a torrent added
+     * alert, let the restore pipeline know to not wait for it.
+     */
+    private void onAddTorrent(AddTorrentAlert alert) {
+        RestorePipeline pipeline = restorePipeline;
+        if (pipeline == null) {
+            return;
+        }
+
+        try {
+            if (alert.error().isError()) {
+                AddTorrentParams params = alert.params();
+                TorrentInfo ti = params.torrentInfo();
+                pipeline.added(ti != null ? ti.infoHash().toString() : params.infoHash().toString());
+            }
+        } catch (Throwable e) {
+            LOG.error("Error handling the add torrent alert", e);
+        }
+    }
+
     private void onExternalIpAlert(ExternalIpAlert alert) {
         try {
             // libtorrent perform all kind of tests
@@ -693,27 +1085,216 @@ public final class BTEngine extends SessionManager {
         System.out.println("Log: " + alert);
     }
 
-    private final class RestoreDownloadTask implements Runnable {
+    /**
+     * Adds a torrent with the resume data from the store, asynchronously.
+     */
+    private void download(TorrentInfo ti, byte[] resumeData) {
+        error_code ec = new error_code();
+        add_torrent_params p = add_torrent_params.read_resume_data(Vectors.bytes2byte_vector(resumeData), ec);
+        if (ec.value() != 0) {
+            LOG.warn("Unable to read resume data of " + ti.infoHash() + ": " + ec.message());
+            download(ti, setupSaveDir(null), null, null, null);
+            return;
+        }
+
+        p.set_ti(ti.swig());
+        swig().async_add_torrent(p);
+    }
 
-        private final File torrent;
+    /**
+     * Parses the torrent (and reads the resume data) of a download from the
+     * previous session, either from the resume data store or from a torrent
+     * file. It's safe to call from any thread, the add to the session is
+     * done later by the {@link RestorePipeline}.
+     */
+    private final class RestoreDownloadTask implements Callable<RestoreDownloadTask> {
+
+        private final File torrent; // null if in the store
+        private final String infoHash; // null if not in the store
         private final File saveDir;
         private final Priority[] priorities;
-        private final File resume;
 
-        public RestoreDownloadTask(File torrent, File saveDir, Priority[] priorities, File resume) {
+        private TorrentInfo ti;
+        private byte[] resume;
+
+        public RestoreDownloadTask(File torrent, String infoHash, File saveDir, Priority[] priorities) {
             this.torrent = torrent;
+            this.infoHash = infoHash;
             this.saveDir = saveDir;
             this.priorities = priorities;
-            this.resume = resume;
+        }
+
+        /**
+         * Returns this task, ready to be added, or {@code null} if the download can't be restored.
+         */
+        @Override
+        public RestoreDownloadTask call() {
+            try {
+                if (infoHash == null) {
+                    ti = new TorrentInfo(torrent);
+                    return this;
+                }
+
+                if (setupSaveDir(readSavePath(infoHash)) == null) {
+                    LOG.warn("Can't create data dir or mount point is not accessible (" + infoHash + ")");
+                    return null;
+                }
+
+                ResumeDataStore store = resumeStore();
+                byte[] data = store != null ? store.torrentData(infoHash) : null;
+                if (data == null) {
+                    return null;
+                }
+
+                ti = TorrentInfo.bdecode(data);
+                resume = store.resumeData(infoHash);
+                return this;
+            } catch (Throwable e) {
+                LOG.error("Unable to restore download from previous session. (" + name() + ")", e);
+                return null;
+            }
+        }
+
+        /**
+         * Adds the parsed torrent to the session, asynchronously.
+         */
+        void add() {
+            if (resume != null) {
+                download(ti, resume);
+            } else {
+                download(ti, saveDir != null ? saveDir : ctx.dataDir, null, priorities, null);
+            }
+        }
+
+        String name() {
+            return torrent != null ? torrent.getAbsolutePath() : infoHash;
+        }
+    }
+
+    /**
+     * Restores the downloads of the previous session in three overlapping
+     * phases: the torrent and resume files are parsed in parallel by a pool
+     * of threads, and the parsed torrents are added asynchronously to the
+     * session in batches, in the original order. A batch waits (up to a
+     * timeout) for the torrent added alerts of the previous one, to avoid
+     * flooding the session and the alert queue with hundreds of adds.
+     */
+    private final class RestorePipeline implements Runnable {
+
+        private final List<RestoreDownloadTask> tasks;
+        private final long start;
+        private final Set<String> pending;
+
+        private volatile CountDownLatch batchLatch;
+
+        RestorePipeline(List<RestoreDownloadTask> tasks, long start) {
+            this.tasks = tasks;
+            this.start = start;
+            this.pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
         }
 
         @Override
         public void run() {
+            long listTime = System.currentTimeMillis() - start;
+            long firstBatchTime = -1;
+            long parseTime = 0;
+            long waitTime = 0;
+            int restored = 0;
+
+            int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+            ThreadPool parsers = new ThreadPool("BTEngine-restoreParser", threads, threads, 1L, new LinkedBlockingQueue<Runnable>(), true);
+
             try {
-                download(new TorrentInfo(torrent), saveDir, resume, priorities, null);
+                List<Future<RestoreDownloadTask>> futures = new ArrayList<>(tasks.size());
+                for (RestoreDownloadTask task : tasks) {
+                    futures.add(parsers.submit(task));
+                }
+
+                List<RestoreDownloadTask> batch = new ArrayList<>(RESTORE_BATCH_SIZE);
+                for (int i = 0; i < futures.size(); i++) {
+                    RestoreDownloadTask task = null;
+                    try {
+                        task = futures.get(i).get();
+                    } catch (Throwable e) {
+                        LOG.error("Error parsing download from previous session", e);
+                    }
+                    if (task != null) {
+                        batch.add(task);
+                    }
+
+                    boolean last = i == futures.size() - 1;
+                    if (last) {
+                        parseTime = System.currentTimeMillis() - start;
+                    }
+
+                    if (batch.size() == RESTORE_BATCH_SIZE || (last && !batch.isEmpty())) {
+                        waitTime += addBatch(batch);
+                        restored += batch.size();
+                        batch.clear();
+                        if (firstBatchTime < 0) {
+                            firstBatchTime = System.currentTimeMillis() - start;
+                        }
+                    }
+                }
             } catch (Throwable e) {
-                LOG.error("Unable to restore download from previous session. (" + torrent.getAbsolutePath() + ")", e);
+                LOG.error("Error restoring downloads from previous session", e);
+            } finally {
+                parsers.shutdown();
+                restorePipeline = null;
+            }
+
+            LOG.info("Restored " + restored + "/" + tasks.size() + " downloads in " + (System.currentTimeMillis() - start) + "ms" +
+                    " (list: " + listTime + "ms, parse: " + parseTime + "ms, first batch: " + firstBatchTime + "ms" +
+                    ", waiting for adds: " + waitTime + "ms)");
+        }
+
+        /**
+         * Called from the alert thread with the info hash of every torrent
+         * added, or that failed to be added.
+         */
+        void added(String infoHash) {
+            CountDownLatch latch = batchLatch;
+            if (pending.remove(infoHash) && latch != null) {
+                latch.countDown();
+            }
+        }
+
+        /**
+         * Returns the time spent waiting for the torrent added alerts.
+         */
+        private long addBatch(List<RestoreDownloadTask> batch) throws InterruptedException {
+            CountDownLatch latch = new CountDownLatch(batch.size());
+            batchLatch = latch;
+
+            for (RestoreDownloadTask task : batch) {
+                String infoHash = task.ti.infoHash().toString();
+                if (!pending.add(infoHash)) {
+                    // the same torrent twice in the batch (torrent file and store)
+                    LOG.warn("Duplicate download from previous session, skipped. (" + task.name() + ")");
+                    latch.countDown();
+                    continue;
+                }
+                try {
+                    // a torrent already in the session is not added again, no alert
+                    boolean exists = find(task.ti.infoHash()) != null;
+                    task.add();
+                    if (exists && pending.remove(infoHash)) {
+                        latch.countDown();
+                    }
+                } catch (Throwable e) {
+                    LOG.error("Unable to restore download from previous session. (" + task.name() + ")", e);
+                    if (pending.remove(infoHash)) {
+                        latch.countDown();
+                    }
+                }
+            }
+
+            long t = System.currentTimeMillis();
+            if (!latch.await(RESTORE_BATCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Timeout waiting for " + latch.getCount() + " restored downloads to be added");
+                pending.clear();
             }
+            return System.currentTimeMillis() - t;
         }
     }
 
@@ -18,6 +18,8 @@
 
 package com.frostwire.bittorrent;
 
+import java.util.List;
+
 /**
  * @author gubatron
  * @author aldenml
@@ -39,4 +41,8 @@ public class BTEngineAdapter implements BTEngineListener {
     @Override
     public void downloadUpdate(BTEngine engine, BTDownload dl) {
     }
+
+    @Override
+    public void downloadsUpdated(BTEngine engine, List<String> infoHashes) {
+    }
 }
@@ -18,6 +18,8 @@
 
 package com.frostwire.bittorrent;
 
+import java.util.List;
+
 /**
  * @author gubatron
  * @author aldenml
@@ -31,4 +33,10 @@ public interface BTEngineListener {
     void downloadAdded(BTEngine engine, BTDownload dl);
 
     void downloadUpdate(BTEngine engine, BTDownload dl);
+
+    /**
+     * Called after each batch of state updates, with the info hashes of
+     * the torrents whose status changed since the previous batch.
+     */
+    void downloadsUpdated(BTEngine engine, List<String> infoHashes);
 }
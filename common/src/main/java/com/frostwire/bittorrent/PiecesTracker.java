@@ -0,0 +1,210 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.jlibtorrent.FileStorage;
+import com.frostwire.jlibtorrent.TorrentInfo;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bitmap of the complete pieces of a torrent, with the number of bytes
+ * downloaded per file, both kept up to date as pieces finish, so the file
+ * progress is read without walking the pieces or calling into libtorrent.
+ * <p>
+ * The bitmap is loaded in bulk with {@link #setComplete(BitSet, boolean)},
+ * then fed with {@link #setComplete(int, boolean)} from the piece finished
+ * alerts. Safe to update and read from different threads.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class PiecesTracker {
+
+    private final int numPieces;
+    private final long pieceLength;
+    private final long totalSize;
+    private final long[] fileOffsets;
+    private final long[] fileSizes;
+
+    private final AtomicLongArray bits;
+    private final AtomicLongArray fileDownloaded;
+    private final AtomicInteger numComplete;
+
+    public PiecesTracker(TorrentInfo ti) {
+        this(ti.numPieces(), ti.pieceLength(), ti.totalSize(), fileOffsets(ti.files()), fileSizes(ti.files()));
+    }
+
+    PiecesTracker(int numPieces, long pieceLength, long totalSize, long[] fileOffsets, long[] fileSizes) {
+        this.numPieces = numPieces;
+        this.pieceLength = pieceLength;
+        this.totalSize = totalSize;
+        this.fileOffsets = fileOffsets;
+        this.fileSizes = fileSizes;
+
+        this.bits = new AtomicLongArray((numPieces + 63) >>> 6);
+        this.fileDownloaded = new AtomicLongArray(fileSizes.length);
+        this.numComplete = new AtomicInteger(0);
+    }
+
+    public int getNumPieces() {
+        return numPieces;
+    }
+
+    public int getNumComplete() {
+        return numComplete.get();
+    }
+
+    public int getNumFiles() {
+        return fileSizes.length;
+    }
+
+    public boolean isComplete(int pieceIndex) {
+        return (bits.get(pieceIndex >>> 6) & (1L << (pieceIndex & 63))) != 0;
+    }
+
+    /**
+     * Marks the piece as complete (or not) and updates the downloaded
+     * bytes of the files it overlaps, if the state changed.
+     */
+    public void setComplete(int pieceIndex, boolean complete) {
+        if (pieceIndex < 0 || pieceIndex >= numPieces) {
+            return;
+        }
+
+        int w = pieceIndex >>> 6;
+        long mask = 1L << (pieceIndex & 63);
+        long old;
+        do {
+            old = bits.get(w);
+            if (((old & mask) != 0) == complete) {
+                return;
+            }
+        } while (!bits.compareAndSet(w, old, complete ? old | mask : old & ~mask));
+
+        int sign = complete ? 1 : -1;
+        numComplete.addAndGet(sign);
+
+        long start = pieceIndex * pieceLength;
+        long end = start + pieceSize(pieceIndex);
+        for (int f = fileAt(start); f < fileSizes.length && fileOffsets[f] < end; f++) {
+            long overlap = Math.min(end, fileOffsets[f] + fileSizes[f]) - Math.max(start, fileOffsets[f]);
+            if (overlap > 0) {
+                fileDownloaded.addAndGet(f, sign * overlap);
+            }
+        }
+    }
+
+    /**
+     * Loads the state of all the pieces at once, like after a check.
+     *
+     * @param pieces       the complete pieces.
+     * @param clearMissing if the pieces not in the set should be marked
+     *                     as not complete, or just left as they are.
+     */
+    public void setComplete(BitSet pieces, boolean clearMissing) {
+        for (int i = 0; i < numPieces; i++) {
+            boolean complete = pieces.get(i);
+            if (complete || clearMissing) {
+                setComplete(i, complete);
+            }
+        }
+    }
+
+    /**
+     * Bytes of the file in complete pieces.
+     */
+    public long getDownloadedBytes(int fileIndex) {
+        return fileDownloaded.get(fileIndex);
+    }
+
+    /**
+     * Bytes of the file downloaded from the beginning without gaps,
+     * what a player can use while downloading.
+     */
+    public long getSequentialDownloadedBytes(int fileIndex) {
+        long offset = fileOffsets[fileIndex];
+        long size = fileSizes[fileIndex];
+        if (size == 0) {
+            return 0;
+        }
+
+        int first = (int) (offset / pieceLength);
+        int last = (int) ((offset + size - 1) / pieceLength);
+        int p = nextIncomplete(first, last);
+        if (p > last) {
+            return size;
+        }
+
+        return Math.max(0, p * pieceLength - offset);
+    }
+
+    private long pieceSize(int pieceIndex) {
+        return pieceIndex == numPieces - 1 ? totalSize - pieceIndex * pieceLength : pieceLength;
+    }
+
+    // the last file starting at or before the offset, the one containing it
+    private int fileAt(long offset) {
+        int lo = 0;
+        int hi = fileOffsets.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (fileOffsets[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    // first piece not complete in [from, to], or to + 1, a word at a time
+    private int nextIncomplete(int from, int to) {
+        int w = from >>> 6;
+        long missing = ~bits.get(w) & (-1L << (from & 63));
+        while (true) {
+            if (missing != 0) {
+                return Math.min(to + 1, (w << 6) + Long.numberOfTrailingZeros(missing));
+            }
+            w++;
+            if ((w << 6) > to) {
+                return to + 1;
+            }
+            missing = ~bits.get(w);
+        }
+    }
+
+    private static long[] fileOffsets(FileStorage fs) {
+        long[] offsets = new long[fs.numFiles()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = fs.fileOffset(i);
+        }
+        return offsets;
+    }
+
+    private static long[] fileSizes(FileStorage fs) {
+        long[] sizes = new long[fs.numFiles()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = fs.fileSize(i);
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,625 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.util.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append only store of the resume data and the resume torrents of all the
+ * downloads, in a single log file instead of two small files per torrent.
+ * <p>
+ * Every record is written as {@code [length][crc32][payload]}, the puts are
+ * buffered in memory and appended in batch by {@link #flush()}, with a
+ * single sync to disk. On {@link #open()}, the log is replayed to build the
+ * in-memory index (offsets of the data, save paths and original torrent
+ * paths) and a torn or corrupted tail, from a crash in the middle of a
+ * write, is truncated. When most of the log is dead records, it's compacted
+ * to a temporary file that replaces the log once it's fully written.
+ * <p>
+ * This class is not tied to libtorrent, the data is stored as given.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class ResumeDataStore {
+
+    private static final Logger LOG = Logger.getLogger(ResumeDataStore.class);
+
+    private static final byte OP_RESUME = 1;
+    private static final byte OP_TORRENT = 2;
+    private static final byte OP_REMOVE = 3;
+
+    private static final int HEADER_SIZE = 8; // length and crc32
+    private static final int MAX_PAYLOAD_SIZE = 64 * 1024 * 1024;
+    private static final long MIN_COMPACT_SIZE = 1024 * 1024;
+
+    private final File file;
+    private final File tmp;
+    private final Map<String, Item> index;
+    private final List<Pending> pending;
+    // serializes the writers of the log, held before the store lock
+    private final Object flushLock;
+
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    public ResumeDataStore(File file) {
+        this.file = file;
+        this.tmp = new File(file.getPath() + ".tmp");
+        this.index = new LinkedHashMap<>();
+        this.pending = new ArrayList<>();
+        this.flushLock = new Object();
+    }
+
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Loads the index from the log, it's a no-op if already open.
+     */
+    public synchronized void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+
+        if (tmp.exists()) {
+            if (file.exists()) {
+                // incomplete compaction
+                tmp.delete();
+            } else {
+                // complete compaction, but not renamed
+                rename(tmp, file);
+            }
+        }
+
+        index.clear();
+        long valid = file.exists() ? load() : 0;
+
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        if (channel.size() > valid) {
+            LOG.warn("Truncating resume data log from " + channel.size() + " to " + valid + " bytes");
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+    }
+
+    public synchronized boolean isOpen() {
+        return channel != null;
+    }
+
+    /**
+     * Flushes the pending records and closes the log.
+     */
+    public void close() {
+        synchronized (flushLock) {
+            flush();
+
+            synchronized (this) {
+                if (channel == null) {
+                    return;
+                }
+
+                try {
+                    raf.close();
+                } catch (Throwable e) {
+                    LOG.warn("Error closing resume data log: " + e.getMessage());
+                }
+                raf = null;
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * The info hashes with a torrent, in the order they were first added.
+     */
+    public synchronized List<String> infoHashes() {
+        List<String> l = new ArrayList<>(index.size());
+        for (Map.Entry<String, Item> e : index.entrySet()) {
+            if (e.getValue().torrent != null) {
+                l.add(e.getKey());
+            }
+        }
+        return l;
+    }
+
+    public synchronized boolean contains(String infoHash) {
+        return index.containsKey(infoHash);
+    }
+
+    public synchronized byte[] resumeData(String infoHash) {
+        Item item = index.get(infoHash);
+        return item != null ? read(item.resume) : null;
+    }
+
+    public synchronized byte[] torrentData(String infoHash) {
+        Item item = index.get(infoHash);
+        return item != null ? read(item.torrent) : null;
+    }
+
+    public synchronized File savePath(String infoHash) {
+        Item item = index.get(infoHash);
+        return item != null && item.resume != null ? toFile(item.resume.path) : null;
+    }
+
+    public synchronized File torrentPath(String infoHash) {
+        Item item = index.get(infoHash);
+        return item != null && item.torrent != null ? toFile(item.torrent.path) : null;
+    }
+
+    public synchronized void putResumeData(String infoHash, byte[] data, String savePath) {
+        item(infoHash).resume = append(OP_RESUME, infoHash, savePath, data);
+    }
+
+    public synchronized void putTorrentData(String infoHash, byte[] data, String torrentPath) {
+        item(infoHash).torrent = append(OP_TORRENT, infoHash, torrentPath, data);
+    }
+
+    public synchronized void remove(String infoHash) {
+        if (index.remove(infoHash) != null) {
+            append(OP_REMOVE, infoHash, null, null);
+        }
+    }
+
+    /**
+     * Appends all the pending records to the log with a single write and
+     * sync, then compacts the log if it's mostly dead records. The write
+     * happens outside of the store lock, the puts are not blocked by the
+     * disk, and the records pending until then are read from memory.
+     *
+     * @return true if all the records pending at the call are on disk
+     */
+    public boolean flush() {
+        synchronized (flushLock) {
+            List<Pending> batch;
+            FileChannel ch;
+            synchronized (this) {
+                if (channel == null) {
+                    return false;
+                }
+                if (pending.isEmpty()) {
+                    return true;
+                }
+                batch = new ArrayList<>(pending);
+                pending.clear();
+                ch = channel;
+            }
+
+            long start = -1;
+            try {
+                int size = 0;
+                for (Pending p : batch) {
+                    size += p.record.length;
+                }
+
+                ByteBuffer buffer = ByteBuffer.allocate(size);
+                for (Pending p : batch) {
+                    buffer.put(p.record);
+                }
+                buffer.flip();
+
+                start = ch.size();
+                ch.position(start);
+                while (buffer.hasRemaining()) {
+                    ch.write(buffer);
+                }
+                ch.force(false);
+
+                boolean compact;
+                synchronized (this) {
+                    long pos = start;
+                    for (Pending p : batch) {
+                        if (p.slot != null) {
+                            p.slot.pos = pos + p.dataOffset;
+                            p.slot.data = null;
+                        }
+                        pos += p.record.length;
+                    }
+                    compact = start + size >= MIN_COMPACT_SIZE && start + size > 2 * liveSize();
+                }
+
+                if (compact) {
+                    try {
+                        compactLog();
+                    } catch (Throwable e) {
+                        // the records are on disk, only the compaction failed
+                        LOG.error("Error compacting resume data log", e);
+                    }
+                }
+
+                return true;
+            } catch (Throwable e) {
+                LOG.error("Error writing resume data log", e);
+                if (start >= 0) {
+                    // drop the partial batch, it will be written again in the next flush
+                    try {
+                        ch.truncate(start);
+                    } catch (Throwable t) {
+                        LOG.error("Error truncating resume data log", t);
+                    }
+                }
+                synchronized (this) {
+                    pending.addAll(0, batch);
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Rewrites the log with only the live records.
+     */
+    public void compact() throws IOException {
+        synchronized (flushLock) {
+            if (!flush()) {
+                return;
+            }
+
+            compactLog();
+        }
+    }
+
+    /**
+     * Must hold the flush lock. The live records are copied to the temporary
+     * file outside of the store lock, the puts and removes made meanwhile
+     * stay pending in memory and go to the new log in the next flush. Only
+     * the swap of the files blocks the store.
+     */
+    private void compactLog() throws IOException {
+        long start = System.currentTimeMillis();
+
+        List<Record> records = new ArrayList<>();
+        FileChannel in;
+        long oldSize;
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            in = channel;
+            oldSize = channel.size();
+            for (Map.Entry<String, Item> e : index.entrySet()) {
+                Item item = e.getValue();
+                // the pending ones are not in the log yet
+                if (item.torrent != null && item.torrent.data == null) {
+                    records.add(new Record(OP_TORRENT, e.getKey(), item.torrent));
+                }
+                if (item.resume != null && item.resume.data == null) {
+                    records.add(new Record(OP_RESUME, e.getKey(), item.resume));
+                }
+            }
+        }
+
+        // the slots only move with the flush lock, the reads are safe here
+        long[] positions = new long[records.size()];
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            out.setLength(0);
+            FileChannel ch = out.getChannel();
+            for (int i = 0; i < positions.length; i++) {
+                Record rec = records.get(i);
+                positions[i] = write(in, ch, rec.op, rec.infoHash, rec.slot);
+            }
+            ch.force(true);
+        } finally {
+            out.close();
+        }
+
+        synchronized (this) {
+            raf.close();
+            raf = null;
+            channel = null;
+
+            try {
+                rename(tmp, file);
+            } catch (IOException e) {
+                // recover from whatever file is left
+                open();
+                throw e;
+            }
+
+            // including the slots replaced meanwhile, not worth telling apart
+            for (int i = 0; i < positions.length; i++) {
+                records.get(i).slot.pos = positions[i];
+            }
+
+            raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+            channel.position(channel.size());
+
+            LOG.info("Compacted resume data log from " + oldSize + " to " + channel.size() + " bytes in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * The size of the log on disk.
+     */
+    public synchronized long size() {
+        try {
+            return channel != null ? channel.size() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The size the log would have if compacted now.
+     */
+    public synchronized long liveSize() {
+        long size = 0;
+        for (Item item : index.values()) {
+            size += item.resume != null ? item.resume.recordSize : 0;
+            size += item.torrent != null ? item.torrent.recordSize : 0;
+        }
+        return size;
+    }
+
+    private Item item(String infoHash) {
+        Item item = index.get(infoHash);
+        if (item == null) {
+            item = new Item();
+            index.put(infoHash, item);
+        }
+        return item;
+    }
+
+    private Slot append(byte op, String infoHash, String path, byte[] data) {
+        byte[] record = encode(op, infoHash, path, data);
+        Slot slot = null;
+        int dataOffset = 0;
+        if (data != null) {
+            dataOffset = record.length - data.length;
+            slot = new Slot(path, data.length, record.length);
+            slot.data = data;
+        }
+        pending.add(new Pending(slot, record, dataOffset));
+        return slot;
+    }
+
+    private byte[] read(Slot slot) {
+        if (slot == null) {
+            return null;
+        }
+        if (slot.data != null) {
+            return slot.data;
+        }
+        return channel != null ? read(channel, slot) : null;
+    }
+
+    private static byte[] read(FileChannel channel, Slot slot) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(slot.length);
+            long pos = slot.pos;
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, pos);
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                pos += n;
+            }
+            return buffer.array();
+        } catch (Throwable e) {
+            LOG.error("Error reading resume data log", e);
+            return null;
+        }
+    }
+
+    private static long write(FileChannel in, FileChannel ch, byte op, String infoHash, Slot slot) throws IOException {
+        byte[] data = read(in, slot);
+        if (data == null) {
+            throw new IOException("Unable to read live record of " + infoHash);
+        }
+        byte[] record = encode(op, infoHash, slot.path, data);
+        long pos = ch.position();
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            ch.write(buffer);
+        }
+        return pos + record.length - data.length;
+    }
+
+    /**
+     * Replays the log into the index, returns the length of the valid prefix.
+     */
+    private long load() throws IOException {
+        long pos = 0;
+        int records = 0;
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break; // clean end
+                }
+
+                if (length <= 0 || length > MAX_PAYLOAD_SIZE) {
+                    LOG.warn("Invalid record length in resume data log at " + pos);
+                    break;
+                }
+
+                int checksum = in.readInt();
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    LOG.warn("Invalid record checksum in resume data log at " + pos);
+                    break;
+                }
+
+                apply(payload, pos + HEADER_SIZE);
+                pos += HEADER_SIZE + length;
+                records++;
+            }
+        } catch (EOFException e) {
+            LOG.warn("Incomplete record in resume data log at " + pos);
+        } finally {
+            in.close();
+        }
+
+        LOG.info("Loaded " + records + " records (" + index.size() + " torrents) from resume data log");
+
+        return pos;
+    }
+
+    private void apply(byte[] payload, long payloadPos) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+
+        if (op != OP_RESUME && op != OP_TORRENT && op != OP_REMOVE) {
+            // from a newer version, the record is valid, just not for us
+            LOG.warn("Skipping unknown record type " + op + " in resume data log at " + payloadPos);
+            return;
+        }
+
+        String infoHash = in.readUTF();
+
+        if (op == OP_REMOVE) {
+            index.remove(infoHash);
+            return;
+        }
+
+        String path = in.readUTF();
+        int length = in.readInt();
+        Slot slot = new Slot(path, length, HEADER_SIZE + payload.length);
+        slot.pos = payloadPos + payload.length - length;
+
+        if (op == OP_RESUME) {
+            item(infoHash).resume = slot;
+        } else {
+            item(infoHash).torrent = slot;
+        }
+    }
+
+    private static byte[] encode(byte op, String infoHash, String path, byte[] data) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(HEADER_SIZE + 128 + (data != null ? data.length : 0));
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeInt(0); // length, patched below
+            out.writeInt(0); // crc32, patched below
+            out.writeByte(op);
+            out.writeUTF(infoHash);
+            if (data != null) {
+                out.writeUTF(path != null ? path : "");
+                out.writeInt(data.length);
+                out.write(data);
+            }
+            out.flush();
+
+            byte[] record = bos.toByteArray();
+            int length = record.length - HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            crc.update(record, HEADER_SIZE, length);
+            ByteBuffer.wrap(record).putInt(length).putInt((int) crc.getValue());
+            return record;
+        } catch (IOException e) {
+            // not possible with a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static File toFile(String path) {
+        return path != null && !path.isEmpty() ? new File(path) : null;
+    }
+
+    private static void rename(File src, File dst) throws IOException {
+        if (!src.renameTo(dst)) {
+            // not atomic on some platforms, open() recovers from a crash in between
+            dst.delete();
+            if (!src.renameTo(dst)) {
+                throw new IOException("Unable to rename " + src + " to " + dst);
+            }
+        }
+    }
+
+    private static final class Item {
+        Slot resume;
+        Slot torrent;
+    }
+
+    /**
+     * The location of a data blob in the log, or the data itself while it's
+     * pending to be written.
+     */
+    private static final class Slot {
+
+        final String path;
+        final int length;
+        final int recordSize;
+
+        long pos;
+        byte[] data;
+
+        Slot(String path, int length, int recordSize) {
+            this.path = path;
+            this.length = length;
+            this.recordSize = recordSize;
+        }
+    }
+
+    private static final class Record {
+
+        final byte op;
+        final String infoHash;
+        final Slot slot;
+
+        Record(byte op, String infoHash, Slot slot) {
+            this.op = op;
+            this.infoHash = infoHash;
+            this.slot = slot;
+        }
+    }
+
+    private static final class Pending {
+
+        final Slot slot;
+        final byte[] record;
+        final int dataOffset;
+
+        Pending(Slot slot, byte[] record, int dataOffset) {
+            this.slot = slot;
+            this.record = record;
+            this.dataOffset = dataOffset;
+        }
+    }
+}
@@ -27,7 +27,7 @@ import java.nio.ByteBuffer;
 public final class ChunkLargeOffsetBox extends FullBox {
 
     protected int entry_count;
-    protected Entry[] entries;
+    protected long[] chunk_offset;
 
     ChunkLargeOffsetBox() {
         super(co64);
@@ -39,13 +39,8 @@ public final class ChunkLargeOffsetBox extends FullBox {
 
         IO.read(ch, 4, buf);
         entry_count = buf.getInt();
-        entries = new Entry[entry_count];
-        for (int i = 0; i < entry_count; i++) {
-            Entry e = new Entry();
-            IO.read(ch, 8, buf);
-            e.get(buf);
-            entries[i] = e;
-        }
+        chunk_offset = new long[entry_count];
+        IO.read(ch, chunk_offset, buf);
     }
 
     @Override
@@ -54,7 +49,7 @@ public final class ChunkLargeOffsetBox extends FullBox {
 
         buf.putInt(entry_count);
         IO.write(ch, 4, buf);
-        IsoMedia.write(ch, entry_count, 8, entries, buf);
+        IO.write(ch, chunk_offset, entry_count, buf);
     }
 
     @Override
@@ -65,19 +60,4 @@ public final class ChunkLargeOffsetBox extends FullBox {
         s += entry_count * 8;
         length(s);
     }
-
-    public static final class Entry extends BoxEntry {
-
-        public long chunk_offset;
-
-        @Override
-        void get(ByteBuffer buf) throws IOException {
-            chunk_offset = buf.getLong();
-        }
-
-        @Override
-        void put(ByteBuffer buf) throws IOException {
-            buf.putLong(chunk_offset);
-        }
-    }
 }
@@ -27,7 +27,7 @@ import java.nio.ByteBuffer;
 public final class ChunkOffsetBox extends FullBox {
 
     protected int entry_count;
-    protected Entry[] entries;
+    protected int[] chunk_offset;
 
     ChunkOffsetBox() {
         super(stco);
@@ -39,13 +39,8 @@ public final class ChunkOffsetBox extends FullBox {
 
         IO.read(ch, 4, buf);
         entry_count = buf.getInt();
-        entries = new Entry[entry_count];
-        for (int i = 0; i < entry_count; i++) {
-            Entry e = new Entry();
-            IO.read(ch, 4, buf);
-            e.get(buf);
-            entries[i] = e;
-        }
+        chunk_offset = new int[entry_count];
+        IO.read(ch, chunk_offset, buf);
     }
 
     @Override
@@ -54,7 +49,7 @@ public final class ChunkOffsetBox extends FullBox {
 
         buf.putInt(entry_count);
         IO.write(ch, 4, buf);
-        IsoMedia.write(ch, entry_count, 4, entries, buf);
+        IO.write(ch, chunk_offset, entry_count, buf);
     }
 
     @Override
@@ -66,18 +61,10 @@ public final class ChunkOffsetBox extends FullBox {
         length(s);
     }
 
-    public static final class Entry extends BoxEntry {
-
-        public int chunk_offset;
-
-        @Override
-        void get(ByteBuffer buf) throws IOException {
-            chunk_offset = buf.getInt();
-        }
-
-        @Override
-        void put(ByteBuffer buf) throws IOException {
-            buf.putInt(chunk_offset);
-        }
+    /**
+     * Offsets are unsigned 32 bits values.
+     */
+    long offset(int index) {
+        return chunk_offset[index] & 0xFFFFFFFFL;
     }
 }
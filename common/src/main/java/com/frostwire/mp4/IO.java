@@ -56,6 +56,10 @@ final class IO {
             throw new IllegalArgumentException("len argument must be > 0");
         }
 
+        if (ch.skip(len)) {
+            return;
+        }
+
         int size = buf.clear().capacity();
         long a = len / size;
         int b = (int) (len % size);
@@ -134,6 +138,75 @@ final class IO {
         }
     }
 
+    /**
+     * Same as {@link #copy(InputChannel, OutputChannel, long, ByteBuffer)},
+     * but if both channels are files the data doesn't go through the
+     * buffer, the OS copies it directly.
+     */
+    public static void transfer(InputChannel src, OutputChannel dst, long len, ByteBuffer buf) throws IOException {
+        if (len <= 0) {
+            throw new IllegalArgumentException("len argument must be > 0");
+        }
+
+        if (!src.transferTo(len, dst)) {
+            copy(src, dst, len, buf);
+        }
+    }
+
+    /**
+     * Reads {@code arr.length} big endian ints, a buffer at a time.
+     */
+    public static void read(InputChannel ch, int[] arr, ByteBuffer buf) throws IOException {
+        int max = buf.capacity() / 4;
+        int i = 0;
+        while (i < arr.length) {
+            int n = Math.min(arr.length - i, max);
+            read(ch, n * 4, buf);
+            buf.asIntBuffer().get(arr, i, n);
+            i += n;
+        }
+    }
+
+    public static void read(InputChannel ch, long[] arr, ByteBuffer buf) throws IOException {
+        int max = buf.capacity() / 8;
+        int i = 0;
+        while (i < arr.length) {
+            int n = Math.min(arr.length - i, max);
+            read(ch, n * 8, buf);
+            buf.asLongBuffer().get(arr, i, n);
+            i += n;
+        }
+    }
+
+    /**
+     * Writes the first {@code count} ints of {@code arr}, a buffer at a time.
+     */
+    public static void write(OutputChannel ch, int[] arr, int count, ByteBuffer buf) throws IOException {
+        int max = buf.capacity() / 4;
+        int i = 0;
+        while (i < count) {
+            int n = Math.min(count - i, max);
+            buf.clear();
+            buf.asIntBuffer().put(arr, i, n);
+            buf.position(n * 4);
+            write(ch, n * 4, buf);
+            i += n;
+        }
+    }
+
+    public static void write(OutputChannel ch, long[] arr, int count, ByteBuffer buf) throws IOException {
+        int max = buf.capacity() / 8;
+        int i = 0;
+        while (i < count) {
+            int n = Math.min(count - i, max);
+            buf.clear();
+            buf.asLongBuffer().put(arr, i, n);
+            buf.position(n * 8);
+            write(ch, n * 8, buf);
+            i += n;
+        }
+    }
+
     public static ByteBuffer get(ByteBuffer buf, int[] arr) {
         for (int i = 0; i < arr.length; i++) {
             arr[i] = buf.getInt();
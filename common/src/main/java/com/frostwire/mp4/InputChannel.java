@@ -17,8 +17,10 @@
 
 package com.frostwire.mp4;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 
 /**
@@ -48,6 +50,49 @@ final class InputChannel implements ReadableByteChannel {
         return n;
     }
 
+    /**
+     * Moves forward without reading the data, only if the channel is a file.
+     *
+     * @return false if the channel is not a file
+     */
+    boolean skip(long len) throws IOException {
+        if (!(ch instanceof FileChannel)) {
+            return false;
+        }
+
+        FileChannel fc = (FileChannel) ch;
+        long pos = fc.position();
+        long remaining = fc.size() - pos;
+        if (len > remaining) {
+            fc.position(pos + remaining);
+            count += remaining;
+            throw new EOFException();
+        }
+
+        fc.position(pos + len);
+        count += len;
+        return true;
+    }
+
+    /**
+     * Copies the data with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * only if both channels are files.
+     *
+     * @return false if any of the channels is not a file
+     */
+    boolean transferTo(long len, OutputChannel dst) throws IOException {
+        if (!(ch instanceof FileChannel) || !dst.isFile()) {
+            return false;
+        }
+
+        FileChannel fc = (FileChannel) ch;
+        long pos = fc.position();
+        dst.transferFrom(fc, pos, len);
+        fc.position(pos + len);
+        count += len;
+        return true;
+    }
+
     @Override
     public boolean isOpen() {
         return ch.isOpen();
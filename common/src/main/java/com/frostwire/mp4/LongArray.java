@@ -0,0 +1,57 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.mp4;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of primitive longs, to build the sample tables without
+ * boxing every entry.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class LongArray {
+
+    private long[] data;
+    private int size;
+
+    LongArray() {
+        this.data = new long[64];
+        this.size = 0;
+    }
+
+    public void add(long value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, size * 2);
+        }
+        data[size++] = value;
+    }
+
+    public long get(int index) {
+        return data[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
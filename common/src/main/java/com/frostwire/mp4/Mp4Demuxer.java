@@ -22,15 +22,22 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.ListIterator;
 
 /**
+ * The media data is copied with {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * without going through the heap buffer, which is only used for the boxes.
+ *
  * @author gubatron
  * @author aldenml
  */
 public final class Mp4Demuxer {
 
+    private static final long MAX_UINT32 = 0xFFFFFFFFL;
+
     public static void audio(File input, File output, Mp4Info inf, DemuxerListener l) throws IOException {
         RandomAccessFile in = new RandomAccessFile(input, "r");
         RandomAccessFile out = new RandomAccessFile(output, "rw");
@@ -49,7 +56,7 @@ public final class Mp4Demuxer {
             boolean fragments = Box.findFirst(head, Box.mvex) != null;
 
             if (fragments) {
-                muxFragments(new RandomAccessFile[]{in}, out, inf, buf, l);
+                muxFragments(new InputChannel[]{new InputChannel(in.getChannel())}, new long[]{in.length()}, out, inf, buf, l);
             } else {
                 trackSimple(tkhd.trackId(), in, out, inf, buf, l);
             }
@@ -69,7 +76,9 @@ public final class Mp4Demuxer {
 
         try {
             ByteBuffer buf = ByteBuffer.allocate(100 * 1024);
-            muxFragments(new RandomAccessFile[]{v_in, a_in}, out, inf, buf, l);
+            InputChannel[] ins = {new InputChannel(v_in.getChannel()), new InputChannel(a_in.getChannel())};
+            long[] lens = {v_in.length(), a_in.length()};
+            muxFragments(ins, lens, out, inf, buf, l);
         } finally {
             IO.close(v_in);
             IO.close(a_in);
@@ -77,6 +86,31 @@ public final class Mp4Demuxer {
         }
     }
 
+    /**
+     * Same as {@link #muxFragments(File, File, File, Mp4Info, DemuxerListener)} but
+     * reading the tracks from channels, in one pass, as the data arrives. The
+     * fragments of both tracks are read in turns, so the channels can be fed
+     * by downloads still in progress, as long as a read blocks until there is
+     * data or the end of the track.
+     *
+     * @param videoLength the final length of the video track
+     * @param audioLength the final length of the audio track
+     */
+    public static void muxFragments(ReadableByteChannel video, long videoLength, ReadableByteChannel audio, long audioLength, File output, Mp4Info inf, DemuxerListener l) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(output, "rw");
+
+        out.setLength(0);
+
+        try {
+            ByteBuffer buf = ByteBuffer.allocate(100 * 1024);
+            InputChannel[] ins = {new InputChannel(video), new InputChannel(audio)};
+            long[] lens = {videoLength, audioLength};
+            muxFragments(ins, lens, out, inf, buf, l);
+        } finally {
+            IO.close(out);
+        }
+    }
+
     private static void trackSimple(int id, RandomAccessFile input, RandomAccessFile output, Mp4Info inf, ByteBuffer buf, final DemuxerListener l) throws IOException {
         int trackId = id;
         final InputChannel in = new InputChannel(input.getChannel());
@@ -136,58 +170,124 @@ public final class Mp4Demuxer {
         moov.boxes.add(udta);
 
         MediaDataBox mdat = Box.findFirst(boxes, Box.mdat);
-        SampleToChunkBox stsc = trak.findFirst(Box.stsc);
-        SampleSizeBox stsz = trak.findFirst(Box.stsz);
-        ChunkOffsetBox stco = trak.findFirst(Box.stco);
+        SampleTableBox stbl = trak.findFirst(Box.stbl);
+        SampleToChunkBox stsc = stbl.findFirst(Box.stsc);
+        SampleSizeBox stsz = stbl.findFirst(Box.stsz);
 
-        int[] chunkSize = new int[stco.entry_count];
+        long[] chunkOffsetOrg = chunkOffsets(stbl);
+        int chunkCount = chunkOffsetOrg.length;
+        long[] chunkSize = new long[chunkCount];
+        long dataSize = 0;
 
-        int chunkIdx = 0;
         int sampleIdx = 0;
         for (int i = 0; i < stsc.entry_count; i++) {
-            int a = stsc.entries[i].first_chunk;
-            int b = i < stsc.entry_count - 1 ? stsc.entries[i + 1].first_chunk : a + 1;
+            int a = stsc.first_chunk[i];
+            // the last entry is for all the remaining chunks
+            int b = i < stsc.entry_count - 1 ? stsc.first_chunk[i + 1] : chunkCount + 1;
             for (int j = a; j < b; j++) {
-                int sampleSize = 0;
-                for (int k = 0; k < stsc.entries[i].samples_per_chunk; k++) {
-                    sampleSize += stsz.sample_size != 0 ? stsz.sample_size : stsz.entries[sampleIdx].entry_size;
+                long sampleSize = 0;
+                for (int k = 0; k < stsc.samples_per_chunk[i]; k++) {
+                    sampleSize += stsz.size(sampleIdx);
                     sampleIdx++;
                 }
-                chunkSize[chunkIdx] += sampleSize;
-                chunkIdx++;
+                chunkSize[j - 1] = sampleSize;
+                dataSize += sampleSize;
             }
         }
 
-        int[] chunkOffsetOrg = new int[stco.entry_count];
-        int offset = (int) (ContainerBox.length(boxes) - mdat.length());
-        for (int i = 0; i < stco.entry_count; i++) {
-            chunkOffsetOrg[i] = stco.entries[i].chunk_offset;
-            stco.entries[i].chunk_offset = offset;
+        // only this track data goes in the output mdat, if it doesn't fit
+        // in 32 bits offsets, switch to co64, that changes the header size
+        mdat.length(dataSize);
+        long[] chunkOffset = new long[chunkCount];
+        chunkOffsets(stbl, chunkOffset, false);
+        long offset = ContainerBox.length(boxes) - dataSize;
+        boolean large = offset + dataSize > MAX_UINT32;
+        if (large) {
+            chunkOffsets(stbl, chunkOffset, true);
+            offset = ContainerBox.length(boxes) - dataSize;
+        }
+        for (int i = 0; i < chunkCount; i++) {
+            chunkOffset[i] = offset;
             offset += chunkSize[i];
         }
+        chunkOffsets(stbl, chunkOffset, large);
 
         IsoMedia.write(out, boxes, buf, IsoMedia.OnBoxListener.ALL);
 
-        for (int i = 0; i < stco.entry_count; i++) {
-            int pos = (int) in.count();
+        for (int i = 0; i < chunkCount; i++) {
+            long skp = chunkOffsetOrg[i] - in.count();
+            if (skp < 0) {
+                throw new IOException("Chunks not in file order");
+            }
+            if (skp > 0) {
+                IO.skip(in, skp, buf);
+                notifyCount(l, in.count());
+            }
+
+            if (chunkSize[i] > 0) {
+                IO.transfer(in, out, chunkSize[i], buf);
+                notifyCount(l, in.count());
+            }
+        }
+    }
+
+    /**
+     * Returns the chunk offsets of the table, from the stco or the co64 box.
+     */
+    private static long[] chunkOffsets(SampleTableBox stbl) {
+        ChunkOffsetBox stco = stbl.findFirst(Box.stco);
+        if (stco != null) {
+            long[] offsets = new long[stco.entry_count];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = stco.offset(i);
+            }
+            return offsets;
+        }
+
+        ChunkLargeOffsetBox co64 = stbl.findFirst(Box.co64);
+        return Arrays.copyOf(co64.chunk_offset, co64.entry_count);
+    }
 
-            int skp = chunkOffsetOrg[i] - pos;
-            IO.skip(in, skp, buf);
-            notifyCount(l, in.count());
+    /**
+     * Replaces the chunk offset box of the table with a stco, or with a
+     * co64 if {@code large}, in the same position.
+     */
+    private static void chunkOffsets(SampleTableBox stbl, long[] offsets, boolean large) {
+        Box b;
+        if (large) {
+            ChunkLargeOffsetBox co64 = new ChunkLargeOffsetBox();
+            co64.entry_count = offsets.length;
+            co64.chunk_offset = offsets;
+            b = co64;
+        } else {
+            ChunkOffsetBox stco = new ChunkOffsetBox();
+            stco.entry_count = offsets.length;
+            stco.chunk_offset = new int[offsets.length];
+            for (int i = 0; i < offsets.length; i++) {
+                stco.chunk_offset[i] = (int) offsets[i];
+            }
+            b = stco;
+        }
+        b.parent = stbl;
+        b.update();
 
-            IO.copy(in, out, chunkSize[i], buf);
-            notifyCount(l, in.count());
+        Box old = stbl.findFirst(Box.stco);
+        if (old == null) {
+            old = stbl.findFirst(Box.co64);
+        }
+        int index = old != null ? stbl.boxes.indexOf(old) : -1;
+        if (index >= 0) {
+            stbl.boxes.set(index, b);
+        } else {
+            stbl.boxes.add(b);
         }
     }
 
-    private static void muxFragments(RandomAccessFile[] inputs, RandomAccessFile output, Mp4Info inf, ByteBuffer buf, DemuxerListener l) throws IOException {
-        int n = inputs.length;
-        InputChannel[] ins = new InputChannel[n];
+    private static void muxFragments(InputChannel[] ins, long[] lens, RandomAccessFile output, Mp4Info inf, ByteBuffer buf, DemuxerListener l) throws IOException {
+        int n = ins.length;
         FragmentCtx[] ctxs = new FragmentCtx[n];
         for (int i = 0; i < n; i++) {
-            RandomAccessFile input = inputs[i];
-            ins[i] = new InputChannel(input.getChannel());
-            ctxs[i] = new FragmentCtx(input.length());
+            ctxs[i] = new FragmentCtx(lens[i]);
         }
         OutputChannel out = new OutputChannel(output.getChannel());
 
@@ -235,7 +335,7 @@ public final class Mp4Demuxer {
 
                 processChunk(ctx, mdatOffset + out.count());
 
-                IO.copy(in, out, ctx.mdat.length(), buf);
+                IO.transfer(in, out, ctx.mdat.length(), buf);
 
                 readCount += in.count();
             }
@@ -347,15 +447,10 @@ public final class Mp4Demuxer {
         TrackFragmentHeaderBox tfhd = ctx.moof.findFirst(Box.tfhd);
         TrackRunBox trun = ctx.moof.findFirst(Box.trun);
 
-        SampleToChunkBox.Entry stscEntry = new SampleToChunkBox.Entry();
-        stscEntry.first_chunk = ctx.chunkNumber;
-        stscEntry.samples_per_chunk = trun.sample_count;
-        stscEntry.sample_description_index = 1;
-        ctx.stscList.add(stscEntry);
+        ctx.stscFirstChunk.add(ctx.chunkNumber);
+        ctx.stscSamplesPerChunk.add(trun.sample_count);
 
-        ChunkOffsetBox.Entry stcoEntry = new ChunkOffsetBox.Entry();
-        stcoEntry.chunk_offset = (int) offset;
-        ctx.stcoList.add(stcoEntry);
+        ctx.stcoList.add(offset);
 
         boolean first = true;
         for (TrackRunBox.Entry entry : trun.entries) {
@@ -397,9 +492,7 @@ public final class Mp4Demuxer {
                 }
             }
 
-            SampleSizeBox.Entry stszEntry = new SampleSizeBox.Entry();
-            stszEntry.entry_size = entry.sample_size;
-            ctx.stszList.add(stszEntry);
+            ctx.stszList.add(entry.sample_size);
 
             int sampleFlags;
             if (trun.sampleFlagsPresent()) {
@@ -450,17 +543,20 @@ public final class Mp4Demuxer {
         if (stsz != null) {
             stsz.sample_size = 0;
             stsz.sample_count = ctx.stszList.size();
-            stsz.entries = ctx.stszList.toArray(new SampleSizeBox.Entry[0]);
+            stsz.entry_size = ctx.stszList.toArray();
         }
         SampleToChunkBox stsc = stbl.findFirst(Box.stsc);
         if (stsc != null) {
-            stsc.entry_count = ctx.stscList.size();
-            stsc.entries = ctx.stscList.toArray(new SampleToChunkBox.Entry[0]);
+            stsc.entry_count = ctx.stscFirstChunk.size();
+            stsc.first_chunk = ctx.stscFirstChunk.toArray();
+            stsc.samples_per_chunk = ctx.stscSamplesPerChunk.toArray();
+            stsc.sample_description_index = new int[stsc.entry_count];
+            Arrays.fill(stsc.sample_description_index, 1);
         }
-        ChunkOffsetBox stco = stbl.findFirst(Box.stco);
-        if (stco != null) {
-            stco.entry_count = ctx.stcoList.size();
-            stco.entries = ctx.stcoList.toArray(new ChunkOffsetBox.Entry[0]);
+        if (stbl.findFirst(Box.stco) != null || stbl.findFirst(Box.co64) != null) {
+            long[] offsets = ctx.stcoList.toArray();
+            boolean large = offsets.length > 0 && offsets[offsets.length - 1] > MAX_UINT32;
+            chunkOffsets(stbl, offsets, large);
         }
 
         TrackBox trak = ctx.moov.findFirst(Box.trak);
@@ -535,9 +631,10 @@ public final class Mp4Demuxer {
             sttsList = new LinkedList<>();
             cttsList = new LinkedList<>();
             stssList = new LinkedList<>();
-            stszList = new LinkedList<>();
-            stscList = new LinkedList<>();
-            stcoList = new LinkedList<>();
+            stszList = new IntArray();
+            stscFirstChunk = new IntArray();
+            stscSamplesPerChunk = new IntArray();
+            stcoList = new LongArray();
 
             sampleNumber = 1;
             chunkNumber = 1;
@@ -548,9 +645,10 @@ public final class Mp4Demuxer {
         final LinkedList<TimeToSampleBox.Entry> sttsList;
         final LinkedList<CompositionOffsetBox.Entry> cttsList;
         final LinkedList<SyncSampleBox.Entry> stssList;
-        final LinkedList<SampleSizeBox.Entry> stszList;
-        final LinkedList<SampleToChunkBox.Entry> stscList;
-        final LinkedList<ChunkOffsetBox.Entry> stcoList;
+        final IntArray stszList;
+        final IntArray stscFirstChunk;
+        final IntArray stscSamplesPerChunk;
+        final LongArray stcoList;
 
         MovieBox moov;
         TrackExtendsBox trex;
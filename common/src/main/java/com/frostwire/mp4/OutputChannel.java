@@ -17,8 +17,10 @@
 
 package com.frostwire.mp4;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 
 /**
@@ -48,6 +50,22 @@ final class OutputChannel implements WritableByteChannel {
         return n;
     }
 
+    boolean isFile() {
+        return ch instanceof FileChannel;
+    }
+
+    void transferFrom(FileChannel src, long position, long len) throws IOException {
+        long n = 0;
+        while (n < len) {
+            long r = src.transferTo(position + n, len - n, ch);
+            if (r <= 0) {
+                throw new EOFException();
+            }
+            n += r;
+            count += r;
+        }
+    }
+
     @Override
     public boolean isOpen() {
         return ch.isOpen();
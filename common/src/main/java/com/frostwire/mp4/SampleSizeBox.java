@@ -28,7 +28,7 @@ public final class SampleSizeBox extends FullBox {
 
     protected int sample_size;
     protected int sample_count;
-    protected Entry[] entries;
+    protected int[] entry_size;
 
     SampleSizeBox() {
         super(stsz);
@@ -41,12 +41,9 @@ public final class SampleSizeBox extends FullBox {
         IO.read(ch, 8, buf);
         sample_size = buf.getInt();
         sample_count = buf.getInt();
-        entries = new Entry[sample_count];
-        for (int i = 0; i < sample_count; i++) {
-            Entry e = new Entry();
-            IO.read(ch, 4, buf);
-            e.get(buf);
-            entries[i] = e;
+        if (sample_size == 0) {
+            entry_size = new int[sample_count];
+            IO.read(ch, entry_size, buf);
         }
     }
 
@@ -57,7 +54,9 @@ public final class SampleSizeBox extends FullBox {
         buf.putInt(sample_size);
         buf.putInt(sample_count);
         IO.write(ch, 8, buf);
-        IsoMedia.write(ch, sample_count, 4, entries, buf);
+        if (sample_size == 0) {
+            IO.write(ch, entry_size, sample_count, buf);
+        }
     }
 
     @Override
@@ -65,22 +64,13 @@ public final class SampleSizeBox extends FullBox {
         long s = 0;
         s += 4; // full box
         s += 8;
-        s += sample_count * 4;
+        if (sample_size == 0) {
+            s += sample_count * 4;
+        }
         length(s);
     }
 
-    public static final class Entry extends BoxEntry {
-
-        public int entry_size;
-
-        @Override
-        void get(ByteBuffer buf) throws IOException {
-            entry_size = buf.getInt();
-        }
-
-        @Override
-        void put(ByteBuffer buf) throws IOException {
-            buf.putInt(entry_size);
-        }
+    int size(int sample) {
+        return sample_size != 0 ? sample_size : entry_size[sample];
     }
 }
@@ -27,7 +27,9 @@ import java.nio.ByteBuffer;
 public final class SampleToChunkBox extends FullBox {
 
     protected int entry_count;
-    protected Entry[] entries;
+    protected int[] first_chunk;
+    protected int[] samples_per_chunk;
+    protected int[] sample_description_index;
 
     SampleToChunkBox() {
         super(stsc);
@@ -39,12 +41,15 @@ public final class SampleToChunkBox extends FullBox {
 
         IO.read(ch, 4, buf);
         entry_count = buf.getInt();
-        entries = new Entry[entry_count];
+        int[] arr = new int[entry_count * 3];
+        IO.read(ch, arr, buf);
+        first_chunk = new int[entry_count];
+        samples_per_chunk = new int[entry_count];
+        sample_description_index = new int[entry_count];
         for (int i = 0; i < entry_count; i++) {
-            Entry e = new Entry();
-            IO.read(ch, 12, buf);
-            e.get(buf);
-            entries[i] = e;
+            first_chunk[i] = arr[i * 3];
+            samples_per_chunk[i] = arr[i * 3 + 1];
+            sample_description_index[i] = arr[i * 3 + 2];
         }
     }
 
@@ -54,7 +59,13 @@ public final class SampleToChunkBox extends FullBox {
 
         buf.putInt(entry_count);
         IO.write(ch, 4, buf);
-        IsoMedia.write(ch, entry_count, 12, entries, buf);
+        int[] arr = new int[entry_count * 3];
+        for (int i = 0; i < entry_count; i++) {
+            arr[i * 3] = first_chunk[i];
+            arr[i * 3 + 1] = samples_per_chunk[i];
+            arr[i * 3 + 2] = sample_description_index[i];
+        }
+        IO.write(ch, arr, arr.length, buf);
     }
 
     @Override
@@ -65,25 +76,4 @@ public final class SampleToChunkBox extends FullBox {
         s += entry_count * 12;
         length(s);
     }
-
-    public static final class Entry extends BoxEntry {
-
-        public int first_chunk;
-        public int samples_per_chunk;
-        public int sample_description_index;
-
-        @Override
-        void get(ByteBuffer buf) throws IOException {
-            first_chunk = buf.getInt();
-            samples_per_chunk = buf.getInt();
-            sample_description_index = buf.getInt();
-        }
-
-        @Override
-        void put(ByteBuffer buf) throws IOException {
-            buf.putInt(first_chunk);
-            buf.putInt(samples_per_chunk);
-            buf.putInt(sample_description_index);
-        }
-    }
 }
@@ -20,8 +20,13 @@ package com.frostwire.platform;
 
 import com.frostwire.util.Logger;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Deque;
 import java.util.LinkedList;
@@ -34,6 +39,9 @@ public class DefaultFileSystem implements FileSystem {
 
     private static final Logger LOG = Logger.getLogger(DefaultFileSystem.class);
 
+    // how much to transfer between progress notifications
+    private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
     @Override
     public boolean isDirectory(File file) {
         return file.isDirectory();
@@ -96,6 +104,41 @@ public class DefaultFileSystem implements FileSystem {
         return false;
     }
 
+    @Override
+    public boolean move(File src, File dest, MoveListener listener) {
+        if (renameFile(src, dest)) {
+            return true;
+        }
+
+        // most likely in different file systems
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        try {
+            in = new FileInputStream(src);
+            out = new FileOutputStream(dest);
+            transferFile(in.getChannel(), out.getChannel(), listener);
+        } catch (Throwable e) {
+            LOG.error("Error in move file: " + src + " -> " + dest, e);
+            IOUtils.closeQuietly(out);
+            if (!dest.delete()) {
+                LOG.warn("Error deleting incomplete file while moving: " + dest);
+            }
+            return false;
+        } finally {
+            IOUtils.closeQuietly(in);
+            IOUtils.closeQuietly(out);
+        }
+
+        if (!dest.setLastModified(src.lastModified())) {
+            LOG.warn("Error setting last modified time while moving: " + dest);
+        }
+        if (!src.delete()) {
+            LOG.warn("Error deleting source file while moving: " + src);
+        }
+
+        return true;
+    }
+
     @Override
     public boolean write(File file, byte[] data) {
         try {
@@ -118,6 +161,49 @@ public class DefaultFileSystem implements FileSystem {
         walkFiles(Platforms.fileSystem(), file, filter);
     }
 
+    /**
+     * Renames the file, creating the parent folder of the destination
+     * if necessary and replacing the destination if it exists.
+     */
+    public static boolean renameFile(File src, File dest) {
+        File parent = dest.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            return false;
+        }
+
+        if (src.renameTo(dest)) {
+            return true;
+        }
+
+        // in windows the rename fails if the destination exists
+        return dest.isFile() && dest.delete() && src.renameTo(dest);
+    }
+
+    /**
+     * Transfers all the data in the channel {@code in} to the channel
+     * {@code out}, in chunks, letting the operating system copy the
+     * data directly if it can. The data is synced to the storage
+     * device before returning.
+     */
+    public static void transferFile(FileChannel in, FileChannel out, MoveListener listener) throws IOException {
+        long total = in.size();
+        long position = 0;
+
+        while (position < total) {
+            long n = in.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, total - position), out);
+            if (n <= 0) {
+                throw new IOException("Unable to transfer data at position " + position + " of " + total);
+            }
+            position += n;
+
+            if (listener != null) {
+                listener.onProgress(position, total);
+            }
+        }
+
+        out.force(false);
+    }
+
     public static void walkFiles(FileSystem fs, File file, FileFilter filter) {
         File[] arr = fs.listFiles(file, filter);
         if (arr == null) {
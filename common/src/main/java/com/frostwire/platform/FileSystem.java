@@ -48,6 +48,18 @@ public interface FileSystem {
 
     boolean copy(File src, File dest);
 
+    /**
+     * Moves the file, with a simple rename if possible. If the
+     * destination is in a different file system, the data is copied
+     * and then the source is deleted.
+     *
+     * @param src      the file to move.
+     * @param dest     the new location, replaced if it exists.
+     * @param listener the progress of the copy, could be {@code null}.
+     * @return {@code true} if the file is in the new location.
+     */
+    boolean move(File src, File dest, MoveListener listener);
+
     boolean write(File file, byte[] data);
 
     /**
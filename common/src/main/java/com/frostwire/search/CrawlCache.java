@@ -25,13 +25,38 @@ package com.frostwire.search;
  */
 public interface CrawlCache {
 
+    /**
+     * Returns the data of the entry, or {@code null} if there is no entry,
+     * the entry is expired or it is a negative entry.
+     */
     public byte[] get(String key);
 
     public void put(String key, byte[] data);
 
+    /**
+     * Puts an entry that expires {@code ttl} milliseconds from now.
+     */
+    public void put(String key, byte[] data, long ttl);
+
+    /**
+     * Puts a negative entry, to remember for {@code ttl} milliseconds
+     * that there is no data for this key (for example, a failed download).
+     * It replaces any data entry with the same key.
+     */
+    public void putNegative(String key, long ttl);
+
+    /**
+     * Returns {@code true} if there is a negative entry for the key that
+     * is not expired yet.
+     */
+    public boolean isNegative(String key);
+
     public void remove(String key);
 
     public void clear();
 
+    /**
+     * Returns the number of data entries, negative entries are not counted.
+     */
     public long size();
 }
@@ -25,6 +25,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author gubatron
@@ -37,6 +42,11 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
     private static final int DEFAULT_CRAWL_TIMEOUT = 10000; // 10 seconds.
     private static final int FAILED_CRAWL_URL_CACHE_LIFETIME = 600000; // 10 minutes.
     private static final int DEFAULT_MAGNET_DOWNLOAD_TIMEOUT_SECS = 20; // 20 seconds.
+    private static final int IN_FLIGHT_WAIT_TIMEOUT = 30000; // 30 seconds.
+    private static final long MEMORY_CACHE_MAX_WEIGHT = 4 * 1024 * 1024; // 4MB
+
+    // fetches in progress, keyed by infohash (or url), shared between all the engines
+    private static final ConcurrentMap<String, FutureTask<byte[]>> inFlight = new ConcurrentHashMap<>();
 
     private static CrawlCache cache = null;
     private static MagnetDownloader magnetDownloader = null;
@@ -59,10 +69,24 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
         this.numCrawls = numCrawls;
     }
 
+    /**
+     * Sets the crawl cache, it is always decorated with an in memory
+     * cache that serializes the access to it, then the backing cache
+     * doesn't need to be thread safe.
+     *
+     * @param cache the backing crawl cache
+     */
     public static void setCache(CrawlCache cache) {
+        if (cache != null && !(cache instanceof MemoryCrawlCache)) {
+            cache = new MemoryCrawlCache(cache, MEMORY_CACHE_MAX_WEIGHT);
+        }
         CrawlPagedWebSearchPerformer.cache = cache;
     }
 
+    public static CrawlCache getCache() {
+        return cache;
+    }
+
     public static MagnetDownloader getMagnetDownloader() {
         return magnetDownloader;
     }
@@ -83,21 +107,6 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
                 if (url != null) {
 
-                    // this block is an early check for failed in cache, quick return
-                    byte[] failed = cacheGet("failed:" + url);
-                    if (failed != null) {
-                        long failedWhen = array2long(failed);
-                        if ((System.currentTimeMillis() - failedWhen) < FAILED_CRAWL_URL_CACHE_LIFETIME) {
-                            //if the failed request is still fresh we stop
-                            //LOG.info("CrawlPagedWebSearchPerformer::crawl() - hit failed cache url");
-                            onResults(Collections.EMPTY_LIST);
-                            return;
-                        } else {
-                            cacheRemove("failed:" + url);
-                        }
-                    }
-
-
                     byte[] data = cacheGet(url);
 
                     if (sr instanceof TorrentSearchResult) {
@@ -110,32 +119,15 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                         }
                     }
 
-                    if (data == null) { // not a big deal about synchronization here
-                        //LOG.debug("Downloading data for: " + url);
-
-                        if (url.startsWith("magnet")) {
-                            data = fetchMagnet(url);
-                        } else {
-                            data = fetchBytes(url, sr.getDetailsUrl(), DEFAULT_CRAWL_TIMEOUT);
+                    if (data == null) {
+                        // the failed urls are kept in the cache as negative entries, quick return
+                        if (cacheIsNegative(url)) {
+                            //LOG.info("CrawlPagedWebSearchPerformer::crawl() - hit failed cache url");
+                            onResults(Collections.EMPTY_LIST);
+                            return;
                         }
 
-                        //we put this here optimistically hoping this is actually
-                        //valid data. if no data can be crawled from this we remove it
-                        //from the cache. we do this because this same data may come
-                        //from another search engine and this way we avoid the
-                        //expense of performing another download.
-                        if (data != null) {
-                            cachePut(url, data);
-
-                            if (sr instanceof TorrentSearchResult) {
-                                // if the search result has an infohash we can use...
-                                String infohash = ((TorrentSearchResult) sr).getHash();
-                                cachePut(infohash, data);
-                            }
-                        } else {
-                            //LOG.warn("Failed to download data: " + url);
-                            cachePut("failed:" + url, long2array(System.currentTimeMillis()));
-                        }
+                        data = fetchShared(url, sr);
                     }
 
                     try {
@@ -165,6 +157,70 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     protected abstract String getCrawlUrl(T sr);
 
+    /**
+     * Fetches the crawl data, merging concurrent requests for the same
+     * infohash (or url if not a torrent) into a single download. Only the
+     * thread performing the actual download updates the cache.
+     */
+    private byte[] fetchShared(final String url, final CrawlableSearchResult sr) {
+        final String infohash = sr instanceof TorrentSearchResult ? ((TorrentSearchResult) sr).getHash() : null;
+        String key = infohash != null && infohash.length() > 0 ? infohash : url;
+
+        FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return fetchAndCache(url, sr.getDetailsUrl(), infohash);
+            }
+        });
+
+        FutureTask<byte[]> current = inFlight.putIfAbsent(key, task);
+        if (current == null) {
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+            current = task;
+        }
+
+        try {
+            return current.get(IN_FLIGHT_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (Throwable e) {
+            LOG.warn("Error waiting for crawl data: " + "url=" + url + ", e=" + e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] fetchAndCache(String url, String referrer, String infohash) {
+        //LOG.debug("Downloading data for: " + url);
+        byte[] data;
+
+        if (url.startsWith("magnet")) {
+            data = fetchMagnet(url);
+        } else {
+            data = fetchBytes(url, referrer, DEFAULT_CRAWL_TIMEOUT);
+        }
+
+        //we put this here optimistically hoping this is actually
+        //valid data. if no data can be crawled from this we remove it
+        //from the cache. we do this because this same data may come
+        //from another search engine and this way we avoid the
+        //expense of performing another download.
+        if (data != null) {
+            cachePut(url, data);
+
+            if (infohash != null) {
+                // if the search result has an infohash we can use...
+                cachePut(infohash, data);
+            }
+        } else {
+            //LOG.warn("Failed to download data: " + url);
+            cachePutNegative(url, FAILED_CRAWL_URL_CACHE_LIFETIME);
+        }
+
+        return data;
+    }
+
     protected abstract List<? extends SearchResult> crawlResult(T sr, byte[] data) throws Exception;
 
     private byte[] fetchMagnet(String magnet) {
@@ -177,28 +233,33 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
     }
 
     private byte[] cacheGet(String key) {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
+        return cache != null ? cache.get(key) : null;
+    }
+
+    private void cachePut(String key, byte[] data) {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
         if (cache != null) {
-            synchronized (cache) {
-                return cache.get(key);
-            }
-        } else {
-            return null;
+            cache.put(key, data);
         }
     }
 
-    private void cachePut(String key, byte[] data) {
+    private void cachePutNegative(String key, long ttl) {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
         if (cache != null) {
-            synchronized (cache) {
-                cache.put(key, data);
-            }
+            cache.putNegative(key, ttl);
         }
     }
 
+    private boolean cacheIsNegative(String key) {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
+        return cache != null && cache.isNegative(key);
+    }
+
     private void cacheRemove(String key) {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
         if (cache != null) {
-            synchronized (cache) {
-                cache.remove(key);
-            }
+            cache.remove(key);
         }
     }
 
@@ -213,67 +274,15 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
         return null;
     }
 
-    private static byte[] long2array(long l) {
-        byte[] arr = new byte[Long.SIZE / Byte.SIZE];
-        longToByteArray(l, 0, arr, 0, arr.length);
-        return arr;
-    }
-
-    private static long array2long(byte[] arr) {
-        return byteArrayToLong(arr, 0, 0, 0, Long.SIZE / Byte.SIZE);
-    }
-
-
     public static void clearCache() {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
         if (cache != null) {
-            synchronized (cache) {
-                cache.clear();
-            }
+            cache.clear();
         }
     }
 
     public static long getCacheSize() {
-        long result = 0;
-        if (cache != null) {
-            synchronized (cache) {
-                result = cache.size();
-            }
-        }
-        return result;
-    }
-
-    private static long byteArrayToLong(final byte[] src, final int srcPos, final long dstInit, final int dstPos,
-                                        final int nBytes) {
-        if ((src.length == 0 && srcPos == 0) || 0 == nBytes) {
-            return dstInit;
-        }
-        if ((nBytes - 1) * 8 + dstPos >= 64) {
-            throw new IllegalArgumentException("(nBytes-1)*8+dstPos is greater or equal to than 64");
-        }
-        long out = dstInit;
-        int shift;
-        for (int i = 0; i < nBytes; i++) {
-            shift = i * 8 + dstPos;
-            final long bits = (0xffL & src[i + srcPos]) << shift;
-            final long mask = 0xffL << shift;
-            out = (out & ~mask) | bits;
-        }
-        return out;
-    }
-
-    private static byte[] longToByteArray(final long src, final int srcPos, final byte[] dst, final int dstPos,
-                                          final int nBytes) {
-        if (0 == nBytes) {
-            return dst;
-        }
-        if ((nBytes - 1) * 8 + srcPos >= 64) {
-            throw new IllegalArgumentException("(nBytes-1)*8+srcPos is greater or equal to than 64");
-        }
-        int shift;
-        for (int i = 0; i < nBytes; i++) {
-            shift = i * 8 + srcPos;
-            dst[dstPos + i] = (byte) (0xff & (src >> shift));
-        }
-        return dst;
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
+        return cache != null ? cache.size() : 0;
     }
 }
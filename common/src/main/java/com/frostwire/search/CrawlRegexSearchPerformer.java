@@ -15,17 +15,27 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package com.frostwire.search;
 
+import com.frostwire.util.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
 import java.util.List;
 
 /**
+ * By default the search pages are scanned in streaming mode, see
+ * {@link PageBuffer}, performers that need the page as a string, for
+ * instance to compute the offsets, must override {@link #isStreaming()}.
+ *
  * @author gubatron
  * @author aldenml
  */
 public abstract class CrawlRegexSearchPerformer<T extends CrawlableSearchResult> extends CrawlPagedWebSearchPerformer<T> implements RegexSearchPerformer<T> {
 
+    private static final Logger LOG = Logger.getLogger(CrawlRegexSearchPerformer.class);
+
     private final int regexMaxResults;
 
     public CrawlRegexSearchPerformer(String domainName, long token, String keywords, int timeout, int pages, int numCrawls, int regexMaxResults) {
@@ -33,18 +43,74 @@ public abstract class CrawlRegexSearchPerformer<T extends CrawlableSearchResult>
         this.regexMaxResults = regexMaxResults;
     }
 
+    @Override
+    protected List<? extends SearchResult> searchPage(int page) {
+        if (!isStreaming()) {
+            return super.searchPage(page);
+        }
+
+        List<? extends SearchResult> result = Collections.emptyList();
+        String url = null;
+        PageBuffer buffer = PageBuffer.get();
+        try {
+            url = getUrl(page, getEncodedKeywords());
+            buffer.contentType(fetchSearchPage(url, buffer));
+            CharSequence text = buffer.window(preliminaryHtmlPrefix(), preliminaryHtmlSuffix());
+            result = PerformersHelper.searchPageHelper(this, text, regexMaxResults);
+        } catch (Throwable e) {
+            if (url == null) {
+                url = "n.a";
+            }
+            LOG.error("Error searching page [" + url + "]: " + e.getMessage());
+        } finally {
+            buffer.release();
+        }
+        return result;
+    }
+
     @Override
     protected List<? extends SearchResult> searchPage(String page) {
         final int prefixOffset = preliminaryHtmlPrefixOffset(page);
-        String reducedPage = PerformersHelper.reduceHtml(page, prefixOffset, preliminaryHtmlSuffixOffset(page));
+        CharSequence reducedPage = PerformersHelper.htmlWindow(page, prefixOffset, preliminaryHtmlSuffixOffset(page));
         return PerformersHelper.searchPageHelper(this, reducedPage, regexMaxResults);
     }
 
+    /**
+     * Fetches the search page into the buffer, in streaming mode.
+     *
+     * @return the content type of the response, or {@code null} if unknown
+     */
+    protected String fetchSearchPage(String url, OutputStream out) throws IOException {
+        return fetch(url, null, null, out);
+    }
+
+    protected boolean isStreaming() {
+        return true;
+    }
+
+    /**
+     * The ASCII text where the results start in the page, {@code null}
+     * for the start of the page. Used in both modes.
+     */
+    protected String preliminaryHtmlPrefix() {
+        return null;
+    }
+
+    /**
+     * The ASCII text where the results end in the page, {@code null}
+     * for the end of the page. Used in both modes.
+     */
+    protected String preliminaryHtmlSuffix() {
+        return null;
+    }
+
     protected int preliminaryHtmlSuffixOffset(String page) {
-        return page.length();
+        String suffix = preliminaryHtmlSuffix();
+        return suffix != null ? page.indexOf(suffix) : page.length();
     }
 
     protected int preliminaryHtmlPrefixOffset(String page) {
-        return 0;
+        String prefix = preliminaryHtmlPrefix();
+        return prefix != null ? page.indexOf(prefix) : 0;
     }
 }
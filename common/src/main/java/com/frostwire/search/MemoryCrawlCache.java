@@ -0,0 +1,366 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.util.Logger;
+import com.frostwire.util.ThreadPool;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory LRU cache in front of another (usually disk based) crawl cache.
+ * <p>
+ * The entries are spread over a fixed number of shards, each one with
+ * its own lock and its own share of the total weight (in bytes), so
+ * concurrent crawls only contend when they hit the same shard. Puts are
+ * written to the backing cache in the background, in order, by a single
+ * writer thread. If the writer can't keep up, the caller writes it.
+ * <p>
+ * The backing cache doesn't need to be thread safe, all the access to it
+ * is serialized here. The entries found there are copied to memory, for
+ * a limited time, since the backing cache doesn't tell when they expire.
+ * <p>
+ * Expired entries are dropped lazily when found, the eviction by weight
+ * takes care of the rest.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class MemoryCrawlCache implements CrawlCache {
+
+    private static final Logger LOG = Logger.getLogger(MemoryCrawlCache.class);
+
+    private static final int NUM_SHARDS = 16; // power of two
+    private static final int MAX_PENDING_WRITES = 256;
+    // the backing cache doesn't tell the expiration of the entries it returns
+    private static final long PROMOTED_TTL = 10 * 60 * 1000;
+
+    private final CrawlCache backing;
+    private final Object backingLock;
+    private final Shard[] shards;
+    private final ThreadPool writer;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+    public MemoryCrawlCache(CrawlCache backing, long maxWeight) {
+        if (backing == null) {
+            throw new IllegalArgumentException("backing cache can't be null");
+        }
+
+        this.backing = backing;
+        this.backingLock = new Object();
+        this.shards = new Shard[NUM_SHARDS];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(maxWeight / NUM_SHARDS);
+        }
+        this.writer = new ThreadPool("MemoryCrawlCache", 1, 1, 1L, new LinkedBlockingQueue<Runnable>(MAX_PENDING_WRITES), true);
+        this.writer.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.evictions = new AtomicLong(0);
+    }
+
+    public CrawlCache backing() {
+        return backing;
+    }
+
+    @Override
+    public byte[] get(String key) {
+        Shard shard = shard(key);
+
+        Entry e = shard.get(key, System.currentTimeMillis());
+        if (e != null) {
+            hits.incrementAndGet();
+            return e.data;
+        }
+
+        misses.incrementAndGet();
+
+        synchronized (backingLock) {
+            byte[] data = backing.get(key);
+            if (data != null) {
+                // under the lock, a remove can't happen in between, see remove
+                evictions.addAndGet(shard.put(key, new Entry(data, expiresAt(PROMOTED_TTL))));
+            }
+            return data;
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] data) {
+        put(key, data, 0);
+    }
+
+    @Override
+    public void put(final String key, final byte[] data, final long ttl) {
+        if (key == null || data == null) {
+            return;
+        }
+
+        evictions.addAndGet(shard(key).put(key, new Entry(data, expiresAt(ttl))));
+
+        write(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (backingLock) {
+                    if (ttl > 0) {
+                        backing.put(key, data, ttl);
+                    } else {
+                        backing.put(key, data);
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void putNegative(final String key, final long ttl) {
+        if (key == null) {
+            return;
+        }
+
+        evictions.addAndGet(shard(key).put(key, new Entry(null, expiresAt(ttl))));
+
+        write(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (backingLock) {
+                    backing.putNegative(key, ttl);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isNegative(String key) {
+        Entry e = shard(key).get(key, System.currentTimeMillis());
+        if (e != null) {
+            return e.data == null;
+        }
+
+        synchronized (backingLock) {
+            return backing.isNegative(key);
+        }
+    }
+
+    /**
+     * Removes the entry from memory and from the backing cache, after all
+     * the pending writes are done, to avoid resurrecting a stale entry.
+     */
+    @Override
+    public void remove(final String key) {
+        shard(key).remove(key);
+
+        await(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (backingLock) {
+                    backing.remove(key);
+                    // in case a get promoted it meanwhile
+                    shard(key).remove(key);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void clear() {
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+
+        await(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (backingLock) {
+                    backing.clear();
+                    for (Shard shard : shards) {
+                        shard.clear();
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public long size() {
+        synchronized (backingLock) {
+            return backing.size();
+        }
+    }
+
+    /**
+     * Number of lookups resolved from memory.
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of lookups that needed to go to the backing cache.
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of entries dropped from memory to stay under the weight limit.
+     */
+    public long evictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Approximate number of bytes (keys and data) currently held in memory.
+     */
+    public long weight() {
+        long weight = 0;
+        for (Shard shard : shards) {
+            weight += shard.weight();
+        }
+        return weight;
+    }
+
+    private Shard shard(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & (NUM_SHARDS - 1)];
+    }
+
+    private static long expiresAt(long ttl) {
+        return ttl > 0 ? System.currentTimeMillis() + ttl : 0;
+    }
+
+    private void write(final Runnable r) {
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    r.run();
+                } catch (Throwable e) {
+                    LOG.warn("Error writing entry to backing crawl cache: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void await(Runnable r) {
+        try {
+            writer.submit(r).get();
+        } catch (Throwable e) {
+            LOG.warn("Error waiting for backing crawl cache operation: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A data entry, or a negative entry if {@code data} is {@code null}.
+     */
+    private static final class Entry {
+
+        final byte[] data;
+        final long expiresAt; // 0 means never
+
+        Entry(byte[] data, long expiresAt) {
+            this.data = data;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean expired(long now) {
+            return expiresAt != 0 && expiresAt <= now;
+        }
+
+        long weight(String key) {
+            return key.length() + (data != null ? data.length : 0);
+        }
+    }
+
+    private static final class Shard {
+
+        private final long maxWeight;
+        private final LinkedHashMap<String, Entry> map;
+        private long weight;
+
+        public Shard(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.map = new LinkedHashMap<>(16, 0.75f, true);
+            this.weight = 0;
+        }
+
+        public synchronized Entry get(String key, long now) {
+            Entry e = map.get(key);
+            if (e != null && e.expired(now)) {
+                remove(key);
+                e = null;
+            }
+            return e;
+        }
+
+        /**
+         * Returns the number of entries evicted to make room for the new one.
+         */
+        public synchronized int put(String key, Entry e) {
+            long w = e.weight(key);
+            if (w > maxWeight) {
+                // would evict the whole shard, better leave it in the backing cache only
+                remove(key);
+                return 0;
+            }
+
+            Entry old = map.put(key, e);
+            if (old != null) {
+                weight -= old.weight(key);
+            }
+            weight += w;
+
+            int evicted = 0;
+            Iterator<Map.Entry<String, Entry>> it = map.entrySet().iterator();
+            while (weight > maxWeight && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                weight -= eldest.getValue().weight(eldest.getKey());
+                it.remove();
+                evicted++;
+            }
+
+            return evicted;
+        }
+
+        public synchronized void remove(String key) {
+            Entry old = map.remove(key);
+            if (old != null) {
+                weight -= old.weight(key);
+            }
+        }
+
+        public synchronized void clear() {
+            map.clear();
+            weight = 0;
+        }
+
+        public synchronized long weight() {
+            return weight;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Per thread reusable buffer for the search pages.
+ * <p>
+ * The page is fetched as raw bytes, the relevant part is located with
+ * ASCII markers directly on the bytes (a UTF-8 multibyte sequence never
+ * contains ASCII bytes), and only that part is decoded, with the charset
+ * of the response, into a reusable char array exposed as a
+ * {@link CharSequence}. The regex groups taken from it are new strings,
+ * they don't keep the buffer alive.
+ * <p>
+ * The text returned by {@link #window(String, String)} is only valid
+ * until {@link #release()}.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class PageBuffer extends ByteArrayOutputStream {
+
+    private static final int INITIAL_SIZE = 64 * 1024;
+    // bigger buffers are not kept between pages
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    // markup that must encode to the same bytes for the markers to work
+    private static final String ASCII_PROBE = "<a href=\"x\">";
+
+    private static final ThreadLocal<PageBuffer> BUFFERS = new ThreadLocal<PageBuffer>() {
+        @Override
+        protected PageBuffer initialValue() {
+            return new PageBuffer();
+        }
+    };
+
+    private CharsetDecoder decoder;
+    private char[] chars;
+
+    private PageBuffer() {
+        super(INITIAL_SIZE);
+        this.decoder = newDecoder(UTF_8);
+        this.chars = new char[0];
+    }
+
+    public static PageBuffer get() {
+        PageBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        buffer.charset(UTF_8);
+        return buffer;
+    }
+
+    /**
+     * Takes the charset of the page from the content type of the response,
+     * UTF-8 if it's missing or not supported. A page in a charset that
+     * doesn't keep the ASCII bytes (like UTF-16) is converted to UTF-8, so
+     * the markers can still be found on the bytes.
+     */
+    public void contentType(String contentType) {
+        Charset charset = parseCharset(contentType);
+
+        if (!asciiCompatible(charset)) {
+            byte[] page = new String(buf, 0, count, charset).getBytes(UTF_8);
+            reset();
+            write(page, 0, page.length);
+            charset = UTF_8;
+        }
+
+        charset(charset);
+    }
+
+    /**
+     * Returns the decoded text from the prefix marker (inclusive) to the
+     * suffix marker (exclusive), or {@code null} if any of them is not
+     * found. A {@code null} marker means the start or the end of the page.
+     */
+    public CharSequence window(String prefix, String suffix) {
+        int start = 0;
+        if (prefix != null) {
+            start = indexOf(prefix, 0);
+            if (start == -1) {
+                return null;
+            }
+        }
+
+        int end = count;
+        if (suffix != null) {
+            end = indexOf(suffix, start);
+            if (end == -1) {
+                return null;
+            }
+        }
+
+        return decode(start, end);
+    }
+
+    /**
+     * Returns the position of the ASCII marker in the raw page, or -1.
+     */
+    public int indexOf(String marker, int from) {
+        int n = marker.length();
+        int last = count - n;
+
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < n; j++) {
+                if (buf[i + j] != (byte) marker.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+
+        return -1;
+    }
+
+    public CharSequence decode(int start, int end) {
+        int length = end - start;
+        if (chars.length < length) {
+            chars = new char[Math.max(length, Math.min(buf.length, MAX_RETAINED_SIZE))];
+        }
+
+        CharBuffer out = CharBuffer.wrap(chars);
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(buf, start, length), out, true);
+        decoder.flush(out);
+        out.flip();
+
+        return out;
+    }
+
+    private void charset(Charset charset) {
+        if (!decoder.charset().equals(charset)) {
+            decoder = newDecoder(charset);
+        }
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    static Charset parseCharset(String contentType) {
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                param = param.trim();
+                if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                    String name = param.substring(8).replace("\"", "").replace("'", "").trim();
+                    try {
+                        return Charset.forName(name);
+                    } catch (IllegalArgumentException e) {
+                        // illegal or unsupported charset name
+                        return UTF_8;
+                    }
+                }
+            }
+        }
+        return UTF_8;
+    }
+
+    private static boolean asciiCompatible(Charset charset) {
+        return charset.equals(UTF_8) ||
+                (charset.canEncode() && Arrays.equals(ASCII_PROBE.getBytes(charset), ASCII_PROBE.getBytes(US_ASCII)));
+    }
+
+    /**
+     * Forgets the page, dropping the arrays if they grew too much.
+     */
+    public void release() {
+        reset();
+        if (buf.length > MAX_RETAINED_SIZE) {
+            buf = new byte[INITIAL_SIZE];
+        }
+        if (chars.length > MAX_RETAINED_SIZE) {
+            chars = new char[0];
+        }
+    }
+}
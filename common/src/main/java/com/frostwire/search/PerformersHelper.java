@@ -24,6 +24,7 @@ import com.frostwire.search.torrent.TorrentCrawlableSearchResult;
 import com.frostwire.search.torrent.TorrentCrawledSearchResult;
 import com.frostwire.util.Logger;
 
+import java.nio.CharBuffer;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -40,7 +41,7 @@ public final class PerformersHelper {
     private PerformersHelper() {
     }
 
-    public static List<? extends SearchResult> searchPageHelper(RegexSearchPerformer<?> performer, String page, int regexMaxResults) {
+    public static List<? extends SearchResult> searchPageHelper(RegexSearchPerformer<?> performer, CharSequence page, int regexMaxResults) {
         List<SearchResult> result = new LinkedList<SearchResult>();
 
         if (page == null) {
@@ -48,7 +49,9 @@ public final class PerformersHelper {
             return result;
         }
 
-        SearchMatcher matcher = SearchMatcher.from(performer.getPattern().matcher(page));
+        // the groups of an array backed buffer are already new strings
+        boolean copy = !(page instanceof CharBuffer && ((CharBuffer) page).hasArray());
+        SearchMatcher matcher = new SearchMatcher(performer.getPattern().matcher(page), copy);
         int max = regexMaxResults;
         int i = 0;
         boolean matcherFound;
@@ -141,6 +144,20 @@ public final class PerformersHelper {
         return html;
     }
 
+    /**
+     * Same as {@link #reduceHtml(String, int, int)} but returns a view of
+     * the html instead of a copy.
+     */
+    public static CharSequence htmlWindow(String html, int prefixOffset, int suffixOffset) {
+        if (prefixOffset == -1 || suffixOffset == -1) {
+            return null;
+        } else if (prefixOffset > 0 || suffixOffset < html.length()) {
+            return CharBuffer.wrap(html, prefixOffset, suffixOffset);
+        } else {
+            return html;
+        }
+    }
+
     public static int daysOld(SearchResult sr) {
         if (sr.getCreationTime() == -1) {
             return 1;
@@ -40,8 +40,11 @@ import com.frostwire.util.ThreadPool;
 
 import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author gubatron
@@ -51,8 +54,18 @@ public final class SearchManager {
 
     private static final Logger LOG = Logger.getLogger(SearchManager.class);
 
+    /**
+     * Maximum number of crawls running at the same time against a single
+     * domain, leaving the rest of the threads for the other engines.
+     */
+    private static final int MAX_CRAWLS_PER_DOMAIN = 2;
+
     private final ExecutorService executor;
-    private final List<SearchTask> tasks;
+    private final ConcurrentMap<Long, TokenTasks> tasks;
+    // outlives the retired task entries, a token keeps counting until stopped
+    private final ConcurrentMap<Long, AtomicInteger> ordinals;
+    private final ConcurrentMap<String, DomainCrawls> crawls;
+    private final ConcurrentMap<Long, SearchResultMerger> mergers;
     private final List<WeakReference<SearchTable>> tables;
 
     private SearchListener listener;
@@ -60,7 +73,10 @@ public final class SearchManager {
 
     private SearchManager(int nThreads) {
         this.executor = new ThreadPool("SearchManager", nThreads, nThreads, 1L, new PriorityBlockingQueue<Runnable>(), true);
-        this.tasks = Collections.synchronizedList(new LinkedList<SearchTask>());
+        this.tasks = new ConcurrentHashMap<Long, TokenTasks>();
+        this.ordinals = new ConcurrentHashMap<Long, AtomicInteger>();
+        this.crawls = new ConcurrentHashMap<String, DomainCrawls>();
+        this.mergers = new ConcurrentHashMap<Long, SearchResultMerger>();
         this.tables = Collections.synchronizedList(new LinkedList<WeakReference<SearchTable>>());
     }
 
@@ -102,6 +118,10 @@ public final class SearchManager {
                 }
             });
 
+            if (!mergers.containsKey(performer.getToken())) {
+                mergers.putIfAbsent(performer.getToken(), new SearchResultMerger());
+            }
+
             SearchTask task = new PerformTask(this, performer, nextOrdinal(performer.getToken()));
             submit(task);
         } else {
@@ -111,10 +131,24 @@ public final class SearchManager {
 
     public void stop() {
         stopTasks(-1L);
+        mergers.clear();
+        ordinals.clear();
     }
 
     public void stop(long token) {
         stopTasks(token);
+        mergers.remove(token);
+        ordinals.remove(token);
+    }
+
+    /**
+     * Returns the merger with the duplicates folded so far for the search,
+     * or {@code null} if the search is unknown or finished. Only the first
+     * result of each key is delivered, the merged seeds and sources of its
+     * duplicates are here.
+     */
+    public SearchResultMerger merger(long token) {
+        return mergers.get(token);
     }
 
     public SearchTable newTable(long token) {
@@ -146,14 +180,78 @@ public final class SearchManager {
     }
 
     private void submit(SearchTask task) {
-        tasks.add(task);
-        executor.execute(task);
+        TokenTasks tt = acquire(task.token());
+        tt.add(task);
+        try {
+            if (task instanceof CrawlTask) {
+                ((CrawlTask) task).domain.submit(task);
+            } else {
+                executor.execute(task);
+            }
+        } catch (Throwable e) {
+            onFinished(task);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the registry entry for the token with one more pending task
+     * accounted, creating (or replacing a retired) entry if necessary.
+     */
+    private TokenTasks acquire(long token) {
+        while (true) {
+            TokenTasks tt = tokenTasks(token);
+            if (tt.acquire()) {
+                return tt;
+            }
+            // the entry was retired concurrently, get rid of it and retry
+            tasks.remove(token, tt);
+        }
+    }
+
+    private TokenTasks tokenTasks(long token) {
+        TokenTasks tt = tasks.get(token);
+        if (tt == null) {
+            TokenTasks newTT = new TokenTasks();
+            tt = tasks.putIfAbsent(token, newTT);
+            if (tt == null) {
+                tt = newTT;
+            }
+        }
+        return tt;
+    }
+
+    private void onFinished(SearchTask task) {
+        long token = task.token();
+        TokenTasks tt = tasks.get(token);
+        if (tt != null && tt.remove(task)) {
+            if (tt.release()) {
+                tasks.remove(token, tt);
+                mergers.remove(token);
+                onStopped(token);
+            }
+        }
     }
 
     private void onResults(SearchPerformer performer, List<? extends SearchResult> results) {
         List<SearchResult> list = new LinkedList<SearchResult>();
+        List<SearchResult> updated = new LinkedList<SearchResult>();
+        SearchResultMerger merger = mergers.get(performer.getToken());
 
         for (SearchResult sr : results) {
+            if (merger != null) {
+                // the duplicates are folded before the fan-out, neither
+                // delivered nor crawled again
+                SearchResultMerger.Fold fold = merger.add(sr);
+                if (fold != SearchResultMerger.Fold.NEW) {
+                    SearchResult first = merger.first(sr);
+                    if (fold == SearchResultMerger.Fold.CHANGED && first != null && !updated.contains(first)) {
+                        updated.add(first);
+                    }
+                    continue;
+                }
+            }
+
             if (sr instanceof CrawlableSearchResult) {
                 CrawlableSearchResult csr = (CrawlableSearchResult) sr;
 
@@ -170,6 +268,28 @@ public final class SearchManager {
         if (!list.isEmpty()) {
             onResults(performer.getToken(), list);
         }
+        if (!updated.isEmpty()) {
+            onUpdated(updated);
+        }
+    }
+
+    // the rows of the first results, with new merged seeds or sources
+    private void onUpdated(List<SearchResult> results) {
+        try {
+            synchronized (tables) {
+                Iterator<WeakReference<SearchTable>> it = tables.iterator();
+                while (it.hasNext()) {
+                    WeakReference<SearchTable> t = it.next();
+                    if (Ref.alive(t)) {
+                        t.get().update(results);
+                    } else {
+                        it.remove();
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error updating merged results: " + e.getMessage(), e);
+        }
     }
 
     private void onResults(long token, List<? extends SearchResult> results) {
@@ -217,7 +337,7 @@ public final class SearchManager {
     private void crawl(SearchPerformer performer, CrawlableSearchResult sr) {
         if (performer != null && !performer.isStopped()) {
             try {
-                SearchTask task = new CrawlTask(this, performer, sr, nextOrdinal(performer.getToken()));
+                SearchTask task = new CrawlTask(this, performer, sr, nextOrdinal(performer.getToken()), domainCrawls(performer));
                 submit(task);
             } catch (Throwable e) {
                 LOG.warn("Error scheduling crawling of search result: " + sr);
@@ -228,62 +348,171 @@ public final class SearchManager {
     }
 
     private void stopTasks(long token) {
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext()) {
-                SearchTask task = it.next();
-                if (token == -1L || task.token() == token) {
-                    task.stopSearch();
-                }
+        if (token == -1L) {
+            for (TokenTasks tt : tasks.values()) {
+                tt.stop();
+            }
+        } else {
+            TokenTasks tt = tasks.get(token);
+            if (tt != null) {
+                tt.stop();
             }
         }
     }
 
-    private void checkIfFinished(long token) {
-        SearchTask pendingTask = null;
+    private int nextOrdinal(long token) {
+        AtomicInteger ordinal = ordinals.get(token);
+        if (ordinal == null) {
+            AtomicInteger newOrdinal = new AtomicInteger(0);
+            ordinal = ordinals.putIfAbsent(token, newOrdinal);
+            if (ordinal == null) {
+                ordinal = newOrdinal;
+            }
+        }
+        return ordinal.getAndIncrement();
+    }
 
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext() && pendingTask == null) {
-                SearchTask task = it.next();
-                if (task.token() == token && !task.stopped()) {
-                    pendingTask = task;
-                }
+    private DomainCrawls domainCrawls(SearchPerformer performer) {
+        String domain = performer instanceof WebSearchPerformer ?
+                ((WebSearchPerformer) performer).getDomainName() :
+                performer.getClass().getName();
+
+        DomainCrawls dc = crawls.get(domain);
+        if (dc == null) {
+            DomainCrawls newDC = new DomainCrawls(executor);
+            dc = crawls.putIfAbsent(domain, newDC);
+            if (dc == null) {
+                dc = newDC;
+            }
+        }
+        return dc;
+    }
 
-                if (task.stopped()) {
-                    it.remove();
+    /**
+     * Per token bookkeeping of the in-flight tasks. All operations are O(1)
+     * and only contend with tasks of the same token.
+     * <p>
+     * The pending counter goes to -1 when the last task finishes, at that
+     * point the entry is retired and a new one is created if more tasks
+     * arrive for the same token.
+     */
+    private static final class TokenTasks {
+
+        private final AtomicInteger pending;
+        private final Set<SearchTask> tasks;
+
+        public TokenTasks() {
+            this.pending = new AtomicInteger(0);
+            this.tasks = Collections.newSetFromMap(new ConcurrentHashMap<SearchTask, Boolean>());
+        }
+
+        public boolean acquire() {
+            while (true) {
+                int n = pending.get();
+                if (n < 0) {
+                    return false;
+                }
+                if (pending.compareAndSet(n, n + 1)) {
+                    return true;
                 }
             }
         }
 
-        if (pendingTask == null) {
-            onStopped(token);
+        /**
+         * Returns {@code true} if this was the last pending task, in which
+         * case the entry is retired.
+         */
+        public boolean release() {
+            return pending.decrementAndGet() == 0 && pending.compareAndSet(0, -1);
+        }
+
+        public void add(SearchTask task) {
+            tasks.add(task);
+        }
+
+        public boolean remove(SearchTask task) {
+            return tasks.remove(task);
+        }
+
+        public void stop() {
+            for (SearchTask task : tasks) {
+                task.stopSearch();
+            }
         }
     }
 
-    private int nextOrdinal(long token) {
-        int ordinal = 0;
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext()) {
-                SearchTask task = it.next();
-                if (task.token() == token) {
-                    ordinal = ordinal + 1;
+    /**
+     * Limits the number of crawls running against the same domain, the
+     * extra crawls wait here (instead of in the executor queue) until one
+     * of the running crawls of the domain is finished.
+     */
+    private static final class DomainCrawls {
+
+        private final ExecutorService executor;
+        private final Queue<SearchTask> pending;
+        private int running;
+
+        public DomainCrawls(ExecutorService executor) {
+            this.executor = executor;
+            this.pending = new PriorityQueue<SearchTask>();
+            this.running = 0;
+        }
+
+        public void submit(SearchTask task) {
+            synchronized (this) {
+                if (running >= MAX_CRAWLS_PER_DOMAIN) {
+                    pending.add(task);
+                    return;
+                }
+                running++;
+            }
+            try {
+                executor.execute(task);
+            } catch (Throwable e) {
+                synchronized (this) {
+                    running--;
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Hands the slot of a finished crawl to the next pending one, or
+         * releases it if there is nothing left for this domain.
+         */
+        public void next() {
+            while (true) {
+                SearchTask task;
+                synchronized (this) {
+                    task = pending.poll();
+                    if (task == null) {
+                        running--;
+                        return;
+                    }
+                }
+                try {
+                    executor.execute(task);
+                    return;
+                } catch (Throwable e) {
+                    // the slot is still ours, give it to the next one
+                    LOG.warn("Error scheduling crawling task: " + task + ", e=" + e.getMessage());
+                    task.manager.onFinished(task);
                 }
             }
         }
-        return ordinal;
     }
 
     private static abstract class SearchTask extends Thread implements Comparable<SearchTask> {
 
         protected final SearchManager manager;
         protected final SearchPerformer performer;
+        private final int priority;
         private final int ordinal;
 
-        public SearchTask(SearchManager manager, SearchPerformer performer, int ordinal) {
+        public SearchTask(SearchManager manager, SearchPerformer performer, int priority, int ordinal) {
             this.manager = manager;
             this.performer = performer;
+            this.priority = priority;
             this.ordinal = ordinal;
             this.setName(performer.getClass().getName() + "-SearchTask");
         }
@@ -300,8 +529,15 @@ public final class SearchManager {
             performer.stop();
         }
 
+        /**
+         * Lower priority values go first (searches before crawls), then
+         * the tasks are ordered by ordinal.
+         */
         @Override
         public int compareTo(SearchTask o) {
+            if (priority != o.priority) {
+                return priority < o.priority ? -1 : 1;
+            }
             int x = ordinal;
             int y = o.ordinal;
             return (x < y) ? -1 : ((x == y) ? 0 : 1);
@@ -311,7 +547,7 @@ public final class SearchManager {
     private static final class PerformTask extends SearchTask {
 
         public PerformTask(SearchManager manager, SearchPerformer performer, int order) {
-            super(manager, performer, order);
+            super(manager, performer, 0, order);
         }
 
         @Override
@@ -323,9 +559,7 @@ public final class SearchManager {
             } catch (Throwable e) {
                 LOG.warn("Error performing search: " + performer + ", e=" + e.getMessage());
             } finally {
-                if (manager.tasks.remove(this)) {
-                    manager.checkIfFinished(performer.getToken());
-                }
+                manager.onFinished(this);
             }
         }
     }
@@ -333,10 +567,12 @@ public final class SearchManager {
     private static final class CrawlTask extends SearchTask {
 
         private final CrawlableSearchResult sr;
+        private final DomainCrawls domain;
 
-        public CrawlTask(SearchManager manager, SearchPerformer performer, CrawlableSearchResult sr, int order) {
-            super(manager, performer, order);
+        public CrawlTask(SearchManager manager, SearchPerformer performer, CrawlableSearchResult sr, int order, DomainCrawls domain) {
+            super(manager, performer, 1, order);
             this.sr = sr;
+            this.domain = domain;
         }
 
         @Override
@@ -348,9 +584,8 @@ public final class SearchManager {
             } catch (Throwable e) {
                 LOG.warn("Error performing crawling of: " + sr + ", e=" + e.getMessage());
             } finally {
-                if (manager.tasks.remove(this)) {
-                    manager.checkIfFinished(performer.getToken());
-                }
+                domain.next();
+                manager.onFinished(this);
             }
         }
     }
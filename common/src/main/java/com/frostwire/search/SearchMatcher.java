@@ -33,13 +33,24 @@ import com.frostwire.regex.Matcher;
 public final class SearchMatcher {
 
     private final Matcher matcher;
+    private final boolean copy;
 
     public static SearchMatcher from(Matcher matcher) {
         return new SearchMatcher(matcher);
     }
-    
+
     public SearchMatcher(Matcher matcher) {
+        this(matcher, true);
+    }
+
+    /**
+     * The copy can be skipped if the matcher input already creates new
+     * strings for the groups, like a {@link java.nio.CharBuffer} backed
+     * by a char array.
+     */
+    SearchMatcher(Matcher matcher, boolean copy) {
         this.matcher = matcher;
+        this.copy = copy;
     }
     
     public boolean find() {
@@ -55,8 +66,8 @@ public final class SearchMatcher {
     }
     
     private String copy(String str) {
-        if (str == null) {
-            return null;
+        if (str == null || !copy) {
+            return str;
         }
         return new String(str.toCharArray());
     }
@@ -0,0 +1,249 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.search.torrent.TorrentItemSearchResult;
+import com.frostwire.search.torrent.TorrentSearchResult;
+
+import java.util.*;
+
+/**
+ * Folds the results of the same search coming from different engines
+ * into one logical result.
+ * <p>
+ * Torrents are identified by info hash (and file path for the torrent
+ * items), the rest by normalized details URL, plus file name and size
+ * for file results. The first result with a given key owns the
+ * {@link Merged} entry, the duplicates are merged into it, with the
+ * maximum seeds and all the sources seen.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchResultMerger {
+
+    private final Map<String, Merged> merged;
+    private final IdentityHashMap<SearchResult, Merged> firsts;
+    private int duplicates;
+
+    public SearchResultMerger() {
+        this.merged = new HashMap<>();
+        this.firsts = new IdentityHashMap<>();
+        this.duplicates = 0;
+    }
+
+    /**
+     * Adds the result, if it's not the first one with its key it's merged
+     * into the entry of the first one.
+     *
+     * @return {@link Fold#NEW} for the first result with its key,
+     * {@link Fold#CHANGED} for a duplicate that changed the seeds or the
+     * sources of the entry, {@link Fold#DUPLICATE} otherwise
+     */
+    public synchronized Fold add(SearchResult sr) {
+        String key = key(sr);
+        if (key == null) {
+            return Fold.NEW;
+        }
+
+        Merged m = merged.get(key);
+        if (m == null) {
+            m = new Merged(sr);
+            merged.put(key, m);
+            firsts.put(sr, m);
+            return Fold.NEW;
+        }
+
+        duplicates++;
+        return m.merge(sr) ? Fold.CHANGED : Fold.DUPLICATE;
+    }
+
+    /**
+     * Returns the first result with the same key of the given one, or
+     * {@code null} if there is none.
+     */
+    public synchronized SearchResult first(SearchResult sr) {
+        String key = key(sr);
+        Merged m = key != null ? merged.get(key) : null;
+        return m != null ? m.first : null;
+    }
+
+    /**
+     * Returns the merged entry of a result previously let through by
+     * {@link #add(SearchResult)}, or {@code null} if unknown.
+     */
+    public synchronized Merged get(SearchResult sr) {
+        Merged m = firsts.get(sr);
+        return m != null ? m.copy() : null;
+    }
+
+    public synchronized int size() {
+        return merged.size();
+    }
+
+    /**
+     * Number of results folded into a previous one.
+     */
+    public synchronized int duplicates() {
+        return duplicates;
+    }
+
+    static String key(SearchResult sr) {
+        if (sr instanceof TorrentSearchResult) {
+            String hash = ((TorrentSearchResult) sr).getHash();
+            if (hash != null && hash.length() > 0) {
+                String key = "bt:" + hash.toLowerCase(Locale.US);
+                if (sr instanceof TorrentItemSearchResult) {
+                    key += "/" + ((TorrentItemSearchResult) sr).getFilePath();
+                } else if (sr instanceof CrawledSearchResult) {
+                    key += "#" + sr.getClass().getSimpleName() + ":" + sr.getDisplayName();
+                }
+                return key;
+            }
+        }
+
+        String url = normalizeUrl(sr.getDetailsUrl());
+        if (url == null) {
+            return null;
+        }
+
+        if (sr instanceof FileSearchResult) {
+            FileSearchResult fsr = (FileSearchResult) sr;
+            return url + "|" + fsr.getFilename() + "|" + fsr.getSize();
+        } else {
+            return url + "|" + sr.getDisplayName();
+        }
+    }
+
+    /**
+     * Lower cases the scheme and host, and drops the scheme difference
+     * between http and https, the fragment and the trailing slashes.
+     */
+    static String normalizeUrl(String url) {
+        if (url == null) {
+            return null;
+        }
+
+        String s = url.trim();
+        int fragment = s.indexOf('#');
+        if (fragment != -1) {
+            s = s.substring(0, fragment);
+        }
+
+        int scheme = s.indexOf("://");
+        if (scheme != -1) {
+            s = s.substring(scheme + 3);
+        }
+
+        int path = s.indexOf('/');
+        if (path == -1) {
+            s = s.toLowerCase(Locale.US);
+        } else {
+            s = s.substring(0, path).toLowerCase(Locale.US) + s.substring(path);
+        }
+
+        if (s.startsWith("www.")) {
+            s = s.substring(4);
+        }
+
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) == '/') {
+            end--;
+        }
+
+        return end > 0 ? s.substring(0, end) : null;
+    }
+
+    /**
+     * The logical result, the first one received plus what is known
+     * from its duplicates.
+     */
+    public static final class Merged {
+
+        private final SearchResult first;
+        private final LinkedHashSet<String> sources;
+        private int seeds;
+        private int count;
+
+        Merged(SearchResult first) {
+            this.first = first;
+            this.sources = new LinkedHashSet<>();
+            this.seeds = 0;
+            this.count = 0;
+
+            merge(first);
+        }
+
+        private Merged(Merged m) {
+            this.first = m.first;
+            this.sources = new LinkedHashSet<>(m.sources);
+            this.seeds = m.seeds;
+            this.count = m.count;
+        }
+
+        public SearchResult first() {
+            return first;
+        }
+
+        /**
+         * Maximum number of seeds reported by any of the engines, 0 if
+         * not a torrent.
+         */
+        public int seeds() {
+            return seeds;
+        }
+
+        public Set<String> sources() {
+            return Collections.unmodifiableSet(sources);
+        }
+
+        /**
+         * Number of results folded, including the first one.
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Returns {@code true} if the seeds or the sources changed.
+         */
+        boolean merge(SearchResult sr) {
+            boolean changed = false;
+            if (sr.getSource() != null) {
+                changed = sources.add(sr.getSource());
+            }
+            if (sr instanceof TorrentSearchResult) {
+                int n = ((TorrentSearchResult) sr).getSeeds();
+                if (n > seeds) {
+                    seeds = n;
+                    changed = true;
+                }
+            }
+            count++;
+            return changed;
+        }
+
+        Merged copy() {
+            return new Merged(this);
+        }
+    }
+
+    public enum Fold {
+        NEW, CHANGED, DUPLICATE
+    }
+}
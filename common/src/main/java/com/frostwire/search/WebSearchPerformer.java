@@ -25,6 +25,7 @@ import com.frostwire.util.UserAgentGenerator;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
 
 /**
@@ -88,6 +89,15 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
         return client.get(url, timeout, DEFAULT_USER_AGENT, null, cookie, customHeaders);
     }
 
+    /**
+     * Writes the web page to {@code out} as it arrives, see {@link PageBuffer}.
+     *
+     * @return the content type of the response, or {@code null} if unknown
+     */
+    public String fetch(String url, String cookie, Map<String, String> customHeaders, OutputStream out) throws IOException {
+        return client.get(url, timeout, DEFAULT_USER_AGENT, null, cookie, customHeaders, out);
+    }
+
     public String post(String url, Map<String, String> formData) {
         try {
             return client.post(url, timeout, DEFAULT_USER_AGENT, formData);
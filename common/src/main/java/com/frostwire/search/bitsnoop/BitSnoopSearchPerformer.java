@@ -65,6 +65,11 @@ public class BitSnoopSearchPerformer extends TorrentRegexSearchPerformer<BitSnoo
         return new BitSnoopSearchResult(sr.getDetailsUrl(), matcher);
     }
 
+    @Override
+    protected boolean isStreaming() {
+        return false; // the offsets have fallbacks
+    }
+
     @Override
     protected int preliminaryHtmlPrefixOffset(String html) {
         int offset = 0;
@@ -142,6 +142,11 @@ public class BtjunkieSearchPerformer extends CrawlRegexSearchPerformer<BtjunkieS
         return PerformersHelper.crawlTorrent(this, sr, data);
     }
 
+    @Override
+    protected boolean isStreaming() {
+        return false; // the offsets depend on the page length
+    }
+
     @Override
     protected int preliminaryHtmlPrefixOffset(String page) {
         return 18000;
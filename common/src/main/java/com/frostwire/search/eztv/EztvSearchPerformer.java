@@ -70,6 +70,11 @@ public class EztvSearchPerformer extends TorrentRegexSearchPerformer<EztvSearchR
         return page != null && isValidPage(page) ? page : null;
     }
 
+    @Override
+    protected boolean isStreaming() {
+        return false; // the search is a form post
+    }
+
     @Override
     protected String getUrl(int page, String encodedKeywords) {
         return "https://" + getDomainName() + "/search/";
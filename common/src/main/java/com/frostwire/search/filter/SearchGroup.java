@@ -19,31 +19,105 @@ package com.frostwire.search.filter;
 
 import com.frostwire.search.SearchResult;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Comparator;
+import java.util.List;
 
 /**
+ * The rows of a group, kept as table row numbers sorted by the filter
+ * comparator, and by insertion order for equal elements. Inserting is a
+ * binary search plus an array copy, and any page can be read without
+ * walking the elements before it.
+ *
  * @author gubatron
  * @author aldenml
  */
 public final class SearchGroup {
 
-    private final SortedSet<SearchResult> data;
+    private final SearchTable table;
+    private final Comparator<SearchResult> cmp;
+
+    private int[] rows;
+    private int size;
+
+    SearchGroup(SearchTable table, Comparator<SearchResult> cmp) {
+        this.table = table;
+        this.cmp = cmp;
 
-    SearchGroup(SearchFilter filter) {
-        this.data = new TreeSet<>(filter.comparator());
+        this.rows = new int[8];
+        this.size = 0;
     }
 
-    public SortedSet<SearchResult> data() {
-        return Collections.unmodifiableSortedSet(data);
+    public int size() {
+        synchronized (table.lock) {
+            return size;
+        }
     }
 
-    void add(SearchResult sr) {
-        data.add(sr);
+    public SearchResult get(int index) {
+        synchronized (table.lock) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+            }
+            return table.row(rows[index]);
+        }
+    }
+
+    /**
+     * Returns up to {@code count} elements starting at position {@code offset}
+     * in the sorted order.
+     */
+    public List<SearchResult> page(int offset, int count) {
+        synchronized (table.lock) {
+            if (offset < 0 || count < 0) {
+                throw new IllegalArgumentException("offset and count must be positive");
+            }
+            int end = (int) Math.min((long) offset + count, size);
+            if (offset >= end) {
+                return Collections.emptyList();
+            }
+
+            ArrayList<SearchResult> l = new ArrayList<>(end - offset);
+            for (int i = offset; i < end; i++) {
+                l.add(table.row(rows[i]));
+            }
+            return l;
+        }
+    }
+
+    /**
+     * Returns a copy of all the elements in sorted order, use
+     * {@link #page(int, int)} for large groups.
+     */
+    public List<SearchResult> data() {
+        return page(0, Integer.MAX_VALUE);
+    }
+
+    void insert(int row, SearchResult sr) {
+        // first position with an element greater than sr, rows come
+        // in increasing order, so equal elements stay in insertion order
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cmp.compare(table.row(rows[mid]), sr) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        System.arraycopy(rows, lo, rows, lo + 1, size - lo);
+        rows[lo] = row;
+        size++;
     }
 
     void clear() {
-        data.clear();
+        size = 0;
     }
 }
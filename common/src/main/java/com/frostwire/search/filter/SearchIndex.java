@@ -0,0 +1,121 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search.filter;
+
+import com.frostwire.search.SearchResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * The groups of a table for a given filter. The key of every row is
+ * computed once, when the row is added, and kept in a column parallel
+ * to the table rows ({@code null} if the row is not accepted).
+ * <p>
+ * All the methods must be called with the table lock held.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class SearchIndex {
+
+    private final SearchTable table;
+    private final SearchFilter filter;
+    private final TreeMap<FilterKey, SearchGroup> groups;
+
+    private FilterKey[] keys;
+    private int rows;
+    private int size;
+
+    SearchIndex(SearchTable table, SearchFilter filter) {
+        this.table = table;
+        this.filter = filter;
+        this.groups = new TreeMap<>();
+
+        this.keys = new FilterKey[16];
+        this.rows = 0;
+        this.size = 0;
+    }
+
+    public SearchFilter filter() {
+        return filter;
+    }
+
+    public TreeMap<FilterKey, SearchGroup> groups() {
+        return groups;
+    }
+
+    /**
+     * Number of accepted rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    public FilterKey key(int row) {
+        return row < rows ? keys[row] : null;
+    }
+
+    /**
+     * Indexes the rows from {@code from} to the end of the table, and
+     * returns the ones accepted by the filter.
+     */
+    public List<SearchResult> update(List<SearchResult> data, int from) {
+        int n = data.size();
+        if (n > keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(n, keys.length * 2));
+        }
+
+        ArrayList<SearchResult> added = new ArrayList<>(n - from);
+
+        for (int i = from; i < n; i++) {
+            SearchResult sr = data.get(i);
+            if (filter.accept(sr)) {
+                FilterKey key = filter.key(sr);
+                SearchGroup group = groups.get(key);
+
+                if (group == null) {
+                    group = new SearchGroup(table, filter.comparator());
+                    groups.put(key, group);
+                }
+
+                keys[i] = key;
+                group.insert(i, sr);
+                added.add(sr);
+                size++;
+            }
+        }
+
+        rows = n;
+
+        return added;
+    }
+
+    public void clear() {
+        for (SearchGroup g : groups.values()) {
+            g.clear();
+        }
+        groups.clear();
+
+        Arrays.fill(keys, 0, rows, null);
+        rows = 0;
+        size = 0;
+    }
+}
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2016, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
 
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,21 +24,34 @@ import java.lang.ref.WeakReference;
 import java.util.*;
 
 /**
+ * Holds the results of a search, stored once in insertion order.
+ * <p>
+ * For every filter in use the table keeps a {@link SearchIndex} with the
+ * precomputed keys and the sorted groups, updated incrementally as new
+ * results arrive. Views with the same filter share the same index, and
+ * switching a view back to a recently used filter reuses its index
+ * without looking at the results again.
+ *
  * @author gubatron
  * @author aldenml
  */
 public final class SearchTable {
 
+    // indexes kept around after their last view moved to another filter
+    private static final int MAX_UNUSED_INDEXES = 4;
+
     private final long token;
-    private final LinkedList<SearchResult> data;
+    private final ArrayList<SearchResult> rows;
 
+    private final LinkedHashMap<SearchFilter, SearchIndex> indexes;
     private final LinkedList<WeakReference<SearchView>> views;
-    private final Object lock;
+    final Object lock;
 
     public SearchTable(long token) {
         this.token = token;
-        this.data = new LinkedList<>();
+        this.rows = new ArrayList<>();
 
+        this.indexes = new LinkedHashMap<>(16, 0.75f, true);
         this.views = new LinkedList<>();
         this.lock = new Object();
     }
@@ -47,45 +60,98 @@ public final class SearchTable {
         return token;
     }
 
+    /**
+     * Returns a copy of the results, in insertion order.
+     */
     public List<SearchResult> data() {
-        return Collections.unmodifiableList(data);
+        synchronized (lock) {
+            return new ArrayList<>(rows);
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return rows.size();
+        }
     }
 
     public SearchView view(SearchFilter filter) {
-        SearchView v = new SearchView(this, filter);
         synchronized (lock) {
+            SearchView v = new SearchView(this, index(filter));
             views.add(Ref.weak(v));
+            return v;
         }
-        return v;
     }
 
     public void add(List<? extends SearchResult> results) {
-        data.addAll(results);
+        if (results.isEmpty()) {
+            return;
+        }
+
+        IdentityHashMap<SearchIndex, List<SearchResult>> added = new IdentityHashMap<>();
+        List<SearchView> notify;
+        List<SearchIndex> targets = new ArrayList<>();
+
+        synchronized (lock) {
+            int from = rows.size();
+            rows.addAll(results);
+
+            for (SearchIndex index : indexes.values()) {
+                added.put(index, index.update(rows, from));
+            }
+
+            notify = liveViews();
+            for (SearchView v : notify) {
+                targets.add(v.index());
+            }
+        }
+
+        for (int i = 0; i < notify.size(); i++) {
+            List<SearchResult> l = added.get(targets.get(i));
+            if (!l.isEmpty()) {
+                notify.get(i).fireAdded(l);
+            }
+        }
+    }
+
+    /**
+     * Notifies the views that the results changed, like the merged seeds
+     * of a result with new duplicates. Results not in the table are ignored.
+     */
+    public void update(List<? extends SearchResult> results) {
+        List<SearchView> notify;
+
         synchronized (lock) {
-            Iterator<WeakReference<SearchView>> it = views.iterator();
-            while (it.hasNext()) {
-                WeakReference<SearchView> r = it.next();
-                if (Ref.alive(r)) {
-                    r.get().add(results);
-                } else {
-                    it.remove();
-                }
+            Set<SearchResult> set = Collections.newSetFromMap(new IdentityHashMap<SearchResult, Boolean>());
+            set.addAll(results);
+            boolean found = false;
+            for (int i = 0; i < rows.size() && !found; i++) {
+                found = set.contains(rows.get(i));
             }
+            if (!found) {
+                return;
+            }
+            notify = liveViews();
+        }
+
+        for (SearchView v : notify) {
+            v.fireChanged();
         }
     }
 
     public void clear() {
-        data.clear();
+        List<SearchView> notify;
+
         synchronized (lock) {
-            Iterator<WeakReference<SearchView>> it = views.iterator();
-            while (it.hasNext()) {
-                WeakReference<SearchView> r = it.next();
-                if (Ref.alive(r)) {
-                    r.get().clear();
-                } else {
-                    it.remove();
-                }
+            rows.clear();
+            for (SearchIndex index : indexes.values()) {
+                index.clear();
             }
+            notify = liveViews();
+        }
+
+        for (SearchView v : notify) {
+            v.fireChanged();
         }
     }
 
@@ -98,4 +164,53 @@ public final class SearchTable {
     public void add(SearchResult sr) {
         add(Arrays.asList(sr));
     }
+
+    SearchResult row(int i) {
+        return rows.get(i);
+    }
+
+    /**
+     * Returns the index for the filter, building it if necessary. Must be
+     * called with the lock held.
+     */
+    SearchIndex index(SearchFilter filter) {
+        SearchIndex index = indexes.get(filter);
+        if (index == null) {
+            index = new SearchIndex(this, filter);
+            index.update(rows, 0);
+            indexes.put(filter, index);
+            trimIndexes();
+        }
+        return index;
+    }
+
+    private void trimIndexes() {
+        Set<SearchIndex> used = Collections.newSetFromMap(new IdentityHashMap<SearchIndex, Boolean>());
+        for (SearchView v : liveViews()) {
+            used.add(v.index());
+        }
+
+        int unused = indexes.size() - used.size();
+        Iterator<SearchIndex> it = indexes.values().iterator();
+        while (unused > MAX_UNUSED_INDEXES && it.hasNext()) {
+            if (!used.contains(it.next())) {
+                it.remove();
+                unused--;
+            }
+        }
+    }
+
+    private List<SearchView> liveViews() {
+        ArrayList<SearchView> l = new ArrayList<>(views.size());
+        Iterator<WeakReference<SearchView>> it = views.iterator();
+        while (it.hasNext()) {
+            WeakReference<SearchView> r = it.next();
+            if (Ref.alive(r)) {
+                l.add(r.get());
+            } else {
+                it.remove();
+            }
+        }
+        return l;
+    }
 }
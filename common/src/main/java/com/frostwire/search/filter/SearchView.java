@@ -22,59 +22,77 @@ import com.frostwire.search.SearchResult;
 import java.util.*;
 
 /**
+ * A grouped and sorted view of a table. The view doesn't hold any data
+ * itself, it reads from the table index of its current filter, so
+ * counts and pages are always up to date and changing the filter
+ * only needs to index the results if no other view is using it.
+ *
  * @author gubatron
  * @author aldenml
  */
 public final class SearchView {
 
     private final SearchTable table;
-    private final SearchFilter filter;
-    private final SortedMap<FilterKey, SearchGroup> groups;
+    private SearchIndex index;
 
     private SearchViewListener listener;
 
-    public SearchView(SearchTable table, SearchFilter filter) {
+    SearchView(SearchTable table, SearchIndex index) {
         this.table = table;
-        this.filter = filter;
-        this.groups = new TreeMap<>();
-
-        add(table.data());
+        this.index = index;
     }
 
     public SearchFilter filter() {
-        return filter;
-    }
-
-    public SortedMap<FilterKey, SearchGroup> groups() {
-        return Collections.unmodifiableSortedMap(groups);
+        synchronized (table.lock) {
+            return index.filter();
+        }
     }
 
-    public void add(List<? extends SearchResult> results) {
-        LinkedList<SearchResult> added = new LinkedList<>();
+    /**
+     * Changes the filter of this view, and notifies the listener.
+     */
+    public void filter(SearchFilter filter) {
+        synchronized (table.lock) {
+            index = table.index(filter);
+        }
 
-        for (SearchResult sr : results) {
-            if (filter.accept(sr)) {
-                FilterKey key = filter.key(sr);
-                SearchGroup group = groups.get(key);
+        fireChanged();
+    }
 
-                if (group == null) {
-                    group = new SearchGroup(filter);
-                    groups.put(key, group);
-                }
+    /**
+     * Returns a snapshot of the groups of this view.
+     */
+    public SortedMap<FilterKey, SearchGroup> groups() {
+        synchronized (table.lock) {
+            return Collections.unmodifiableSortedMap(new TreeMap<>(index.groups()));
+        }
+    }
 
-                group.add(sr);
-                added.add(sr);
-            }
+    /**
+     * Number of table results accepted by the filter.
+     */
+    public int size() {
+        synchronized (table.lock) {
+            return index.size();
         }
+    }
 
-        if (listener != null && added.size() > 0) {
-            listener.viewAdded(this, added);
+    /**
+     * Returns the precomputed key of the table row, or {@code null}
+     * if the filter doesn't accept it.
+     */
+    public FilterKey key(int row) {
+        synchronized (table.lock) {
+            return index.key(row);
         }
     }
 
+    /**
+     * Notifies the listener as if the whole view changed, the groups
+     * are always in sync with the table.
+     */
     public void refresh() {
-        clear();
-        add(table.data());
+        fireChanged();
     }
 
     public SearchViewListener getListener() {
@@ -85,14 +103,21 @@ public final class SearchView {
         this.listener = listener;
     }
 
-    public void clear() {
-        for (SearchGroup g : groups.values()) {
-            g.clear();
+    SearchIndex index() {
+        return index;
+    }
+
+    void fireAdded(List<SearchResult> results) {
+        SearchViewListener l = listener;
+        if (l != null) {
+            l.viewAdded(this, results);
         }
-        groups.clear();
+    }
 
-        if (listener != null) {
-            listener.viewChanged(this);
+    void fireChanged() {
+        SearchViewListener l = listener;
+        if (l != null) {
+            l.viewChanged(this);
         }
     }
 }
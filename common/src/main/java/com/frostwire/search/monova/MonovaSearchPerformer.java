@@ -23,6 +23,7 @@ import com.frostwire.search.SearchMatcher;
 import com.frostwire.search.torrent.TorrentRegexSearchPerformer;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * @author gubatron
@@ -31,6 +32,7 @@ import java.io.IOException;
 public final class MonovaSearchPerformer extends TorrentRegexSearchPerformer<MonovaSearchResult> {
 
     private static final int MAX_RESULTS = 10;
+    private static final String COOKIE = "MONOVA=1; MONOVA-ADULT=0; MONOVA-NON-ADULT=1;";
     private static final String REGEX = "(?is)<a href=\"//%s/torrent/(?<itemid>[0-9]*?)/(?<filename>.*?)\">";
     private static final String HTML_REGEX = "(?is)" +
             // filename
@@ -57,12 +59,17 @@ public final class MonovaSearchPerformer extends TorrentRegexSearchPerformer<Mon
 
     @Override
     public String fetchSearchPage(String url) throws IOException {
-        return fetch(url, "MONOVA=1; MONOVA-ADULT=0; MONOVA-NON-ADULT=1;", null);
+        return fetch(url, COOKIE, null);
     }
 
     @Override
-    protected int preliminaryHtmlPrefixOffset(String page) {
-        return page.indexOf("<div class=\"nav-wrapper\">");
+    protected String fetchSearchPage(String url, OutputStream out) throws IOException {
+        return fetch(url, COOKIE, null, out);
+    }
+
+    @Override
+    protected String preliminaryHtmlPrefix() {
+        return "<div class=\"nav-wrapper\">";
     }
 
     @Override
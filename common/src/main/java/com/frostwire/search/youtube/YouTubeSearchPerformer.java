@@ -123,6 +123,11 @@ public final class YouTubeSearchPerformer extends CrawlRegexSearchPerformer<YouT
         return PATTERN;
     }
 
+    @Override
+    protected boolean isStreaming() {
+        return false; // the secondary content is scanned from the whole page
+    }
+
     @Override
     protected int preliminaryHtmlPrefixOffset(String page) {
         int offset = page.indexOf("<div class=\"yt-uix-hovercard-content\">");
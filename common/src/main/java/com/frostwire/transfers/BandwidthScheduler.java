@@ -0,0 +1,298 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Global download budget shared by the HTTP transfers and the torrents
+ * session, so one can't starve the other on a shared link.
+ * <p>
+ * The HTTP reads are paced with a single token bucket, all the transfers
+ * treated the same. The torrents session takes part as a single flow: once
+ * a second the engine reports its speed and gets back the session rate
+ * limits to apply, see {@link #update(long)}. With HTTP transfers active,
+ * each side is guaranteed half of the limit, and can use what the other
+ * leaves.
+ * <p>
+ * The limits are the global transfer speeds set by the user, see
+ * {@link #setLimits(long, long)}, this means the BitTorrent download limit
+ * caps the HTTP downloads too. With no limits the scheduler is inactive,
+ * HTTP is not throttled and the session limits are untouched.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class BandwidthScheduler {
+
+    public static final long UNLIMITED = 0;
+
+    // each side always gets a minimum, to keep the connections alive
+    private static final long MIN_RATE = 8 * 1024;
+    private static final long MIN_BURST = 64 * 1024;
+    private static final long BURST_MILLIS = 250;
+    // a session speed older than this is not trusted, the engine could be stopped
+    private static final long SESSION_UPDATE_TIMEOUT_MILLIS = 3000;
+    private static final long THROTTLE_IDLE_MILLIS = 2000;
+    // the HTTP rate is refreshed from the reads too, if the engine is not updating it
+    private static final long UPDATE_INTERVAL_MILLIS = 1000;
+
+    private final Object lock;
+    private final Set<Throttle> throttles;
+    private final SpeedStat httpStat;
+
+    // guarded by lock
+    private long downloadLimit;
+    private long uploadLimit;
+
+    private long httpRate;
+    private double tokens;
+    private long refillTime;
+
+    private long sessionSpeed;
+    private long sessionUpdateTime;
+    private volatile long updateTime;
+
+    BandwidthScheduler() {
+        this.lock = new Object();
+        this.throttles = Collections.newSetFromMap(new ConcurrentHashMap<Throttle, Boolean>());
+        this.httpStat = new SpeedStat();
+
+        this.downloadLimit = UNLIMITED;
+        this.uploadLimit = UNLIMITED;
+
+        this.httpRate = UNLIMITED;
+        this.refillTime = System.nanoTime();
+    }
+
+    private static class Loader {
+        static final BandwidthScheduler INSTANCE = new BandwidthScheduler();
+    }
+
+    public static BandwidthScheduler getInstance() {
+        return Loader.INSTANCE;
+    }
+
+    /**
+     * Sets the global limits, of the HTTP transfers and the torrents session together.
+     *
+     * @param downloadLimit bytes per second, {@link #UNLIMITED} for no limit
+     * @param uploadLimit   bytes per second, {@link #UNLIMITED} for no limit
+     */
+    public void setLimits(long downloadLimit, long uploadLimit) {
+        synchronized (lock) {
+            this.downloadLimit = Math.max(UNLIMITED, downloadLimit);
+            this.uploadLimit = Math.max(UNLIMITED, uploadLimit);
+        }
+        update();
+    }
+
+    /**
+     * Total speed of the throttled HTTP reads, in bytes per second.
+     */
+    public long getHttpSpeed() {
+        return httpStat.averageSpeed();
+    }
+
+    /**
+     * Creates the throttle for the reads of a single HTTP transfer.
+     */
+    public Throttle newThrottle() {
+        return new Throttle(this);
+    }
+
+    /**
+     * Called by the engine once a second, with the current download speed
+     * of the torrents session.
+     *
+     * @return the rate limits to apply to the session, or {@code null}
+     * if the scheduler is inactive and the session limits should be left
+     * as configured by the user
+     */
+    public Limits update(long sessionDownloadSpeed) {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            sessionSpeed = sessionDownloadSpeed;
+            sessionUpdateTime = now;
+        }
+        return updateRates(now);
+    }
+
+    Limits update() {
+        return updateRates(System.currentTimeMillis());
+    }
+
+    private Limits updateRates(long now) {
+        updateTime = now;
+        Limits limits = currentLimits();
+        long httpSpeed = httpStat.averageSpeed();
+
+        synchronized (lock) {
+            if (limits == null) {
+                setHttpRate(UNLIMITED);
+                return null;
+            }
+
+            long limit = limits.downloadLimit;
+            if (limit == UNLIMITED) {
+                setHttpRate(UNLIMITED);
+                return limits;
+            }
+
+            long session = now - sessionUpdateTime <= SESSION_UPDATE_TIMEOUT_MILLIS ? sessionSpeed : 0;
+
+            long httpShare = isHttpActive(now) ? limit / 2 : 0;
+            long sessionShare = limit - httpShare;
+
+            // each side gets its share, plus what the other is not using
+            setHttpRate(Math.max(MIN_RATE, limit - Math.min(session, sessionShare)));
+            long sessionRate = Math.max(MIN_RATE, limit - Math.min(httpSpeed, httpShare));
+
+            return new Limits(sessionRate, limits.uploadLimit);
+        }
+    }
+
+    /**
+     * The current limits, {@code null} if there are no limits.
+     */
+    Limits currentLimits() {
+        synchronized (lock) {
+            if (downloadLimit == UNLIMITED && uploadLimit == UNLIMITED) {
+                return null;
+            }
+            return new Limits(downloadLimit, uploadLimit);
+        }
+    }
+
+    long getHttpRate() {
+        synchronized (lock) {
+            return httpRate;
+        }
+    }
+
+    // if any throttle had recent reads
+    private boolean isHttpActive(long now) {
+        boolean active = false;
+        for (Throttle t : throttles) {
+            if (now - t.lastRead > THROTTLE_IDLE_MILLIS) {
+                throttles.remove(t);
+            } else {
+                active = true;
+            }
+        }
+        return active;
+    }
+
+    private void setHttpRate(long rate) {
+        if (rate != httpRate) {
+            refill(System.nanoTime());
+            httpRate = rate;
+            tokens = Math.min(tokens, capacity());
+            lock.notifyAll();
+        }
+    }
+
+    private void acquire(Throttle t, int bytes) {
+        long now = System.currentTimeMillis();
+        t.lastRead = now;
+        httpStat.update(bytes);
+        if (throttles.add(t) || now - updateTime > UPDATE_INTERVAL_MILLIS) {
+            // a new transfer changes the shares
+            update();
+        }
+
+        synchronized (lock) {
+            if (httpRate == UNLIMITED) {
+                return;
+            }
+
+            try {
+                while (httpRate != UNLIMITED) {
+                    refill(System.nanoTime());
+                    double need = Math.min(bytes, capacity());
+                    if (tokens >= need) {
+                        // could go below zero, the debt is paid by the next ones
+                        tokens -= bytes;
+                        break;
+                    }
+
+                    long wait = (long) ((need - tokens) * TimeUnit.SECONDS.toNanos(1) / httpRate);
+                    TimeUnit.NANOSECONDS.timedWait(lock, Math.max(wait, 1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void refill(long nanos) {
+        long elapsed = nanos - refillTime;
+        refillTime = nanos;
+        if (httpRate != UNLIMITED && elapsed > 0) {
+            tokens = Math.min(capacity(), tokens + (double) elapsed * httpRate / TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    private double capacity() {
+        return Math.max(MIN_BURST, httpRate * BURST_MILLIS / 1000);
+    }
+
+    /**
+     * Paces the reads of a single transfer, call {@link #acquire(int)}
+     * after each read, blocks until the bytes fit in the budget.
+     */
+    public static final class Throttle {
+
+        private final BandwidthScheduler scheduler;
+
+        private volatile long lastRead;
+
+        private Throttle(BandwidthScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        public void acquire(int bytes) {
+            if (bytes > 0) {
+                scheduler.acquire(this, bytes);
+            }
+        }
+    }
+
+    public static final class Limits {
+
+        private final long downloadLimit;
+        private final long uploadLimit;
+
+        Limits(long downloadLimit, long uploadLimit) {
+            this.downloadLimit = downloadLimit;
+            this.uploadLimit = uploadLimit;
+        }
+
+        public long downloadLimit() {
+            return downloadLimit;
+        }
+
+        public long uploadLimit() {
+            return uploadLimit;
+        }
+    }
+}
@@ -20,6 +20,7 @@ package com.frostwire.transfers;
 
 import com.frostwire.util.Logger;
 import com.frostwire.platform.FileSystem;
+import com.frostwire.platform.MoveListener;
 import com.frostwire.platform.Platform;
 import com.frostwire.platform.Platforms;
 import com.frostwire.util.HttpClientFactory;
@@ -37,6 +38,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author gubatron
@@ -49,6 +51,9 @@ public abstract class BaseHttpDownload implements Transfer {
     // is 20 concurrent downloads enough?
     private static final ExecutorService THREAD_POOL = ThreadPool.newThreadPool("HttpDownload", 20, true);
 
+    // smaller files are not worth the extra connections
+    private static final long MIN_SEGMENTED_SIZE = 4 * 1024 * 1024;
+
     protected final Info info;
 
     protected final File savePath;
@@ -56,9 +61,13 @@ public abstract class BaseHttpDownload implements Transfer {
     protected final Date created;
 
     protected TransferState state;
-    protected SpeedStat stat;
+    protected final SpeedStat stat;
+    protected final BandwidthScheduler.Throttle throttle;
     protected boolean complete;
 
+    // progress of the data copy while moving to the final location, -1 if not copying
+    private volatile int moveProgress;
+
     protected BaseHttpDownload(Info info) {
         this.info = info;
 
@@ -79,8 +88,10 @@ public abstract class BaseHttpDownload implements Transfer {
         this.created = new Date();
 
         this.stat = new SpeedStat();
+        this.throttle = BandwidthScheduler.getInstance().newThrottle();
         this.state = TransferState.WAITING;
         this.complete = false;
+        this.moveProgress = -1;
     }
 
     @Override
@@ -150,7 +161,12 @@ public abstract class BaseHttpDownload implements Transfer {
 
     @Override
     public int getProgress() {
-        return !complete ? stat.progress(info.size()) : 100;
+        if (complete) {
+            return 100;
+        }
+
+        int p = moveProgress;
+        return p >= 0 ? p : stat.progress(info.size());
     }
 
     @Override
@@ -188,7 +204,7 @@ public abstract class BaseHttpDownload implements Transfer {
             return;
         }
 
-        THREAD_POOL.execute(new Thread(getDisplayName()) {
+        submit(new Thread(getDisplayName()) {
             public void run() {
                 try {
                     if (complete) {
@@ -197,6 +213,19 @@ public abstract class BaseHttpDownload implements Transfer {
 
                     state = TransferState.DOWNLOADING;
                     HttpClient client = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.DOWNLOAD);
+
+                    if (isSegmented()) {
+                        SegmentedHttpDownloader downloader = new SegmentedHttpDownloader(client, url, temp,
+                                SegmentedHttpDownloader.DEFAULT_CONNECTIONS, new SegmentListener());
+                        if (downloader.download(resume)) {
+                            if (!complete) {
+                                onHttpComplete();
+                            }
+                            return;
+                        }
+                        // no ranges, single stream below
+                    }
+
                     client.setListener(new DownloadListener());
                     client.save(url, temp, resume);
                 } catch (Throwable e) {
@@ -206,6 +235,27 @@ public abstract class BaseHttpDownload implements Transfer {
         });
     }
 
+    /**
+     * Runs the task in the download threads, if the transfer is not
+     * complete, any error is reported with {@link #error(Throwable)}.
+     */
+    protected final void execute(final Task task) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (complete) {
+                        return;
+                    }
+
+                    task.run();
+                } catch (Throwable e) {
+                    error(e);
+                }
+            }
+        });
+    }
+
     protected final void complete(TransferState state) {
         this.state = state;
         if (!complete) {
@@ -226,7 +276,7 @@ public abstract class BaseHttpDownload implements Transfer {
         }
 
         state = TransferState.FINISHING;
-        THREAD_POOL.execute(new Runnable() {
+        submit(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -242,6 +292,15 @@ public abstract class BaseHttpDownload implements Transfer {
         });
     }
 
+    // all the download threads busy, fails the transfer instead of throwing to the caller
+    private void submit(Runnable r) {
+        try {
+            THREAD_POOL.execute(r);
+        } catch (RejectedExecutionException e) {
+            error(e);
+        }
+    }
+
     protected final void error(Throwable e) {
         if (state != TransferState.CANCELED) {
             complete(TransferState.ERROR);
@@ -264,14 +323,22 @@ public abstract class BaseHttpDownload implements Transfer {
         }
     }
 
+    /**
+     * Moves the file to the final location, renaming it if possible,
+     * otherwise the progress of the copy is reported as the transfer
+     * progress while {@link TransferState#FINISHING}.
+     */
     protected void moveAndComplete(File src, File dst) {
         FileSystem fs = Platforms.fileSystem();
-        if (fs.copy(src, dst)) {
-
-            if (!fs.delete(src)) {
-                LOG.warn("Error deleting source file while moving: " + src);
+        boolean moved = fs.move(src, dst, new MoveListener() {
+            @Override
+            public void onProgress(long bytesMoved, long totalBytes) {
+                moveProgress = totalBytes > 0 ? (int) (bytesMoved * 100 / totalBytes) : 100;
             }
+        });
+        moveProgress = -1;
 
+        if (moved) {
             state = TransferState.SCANNING;
 
             fs.scan(dst);
@@ -282,6 +349,15 @@ public abstract class BaseHttpDownload implements Transfer {
         }
     }
 
+    /**
+     * Whether to download with several connections, if the server supports
+     * ranges. By default, only if the size is unknown or large enough.
+     */
+    protected boolean isSegmented() {
+        long size = info.size();
+        return size <= 0 || size >= MIN_SEGMENTED_SIZE;
+    }
+
     protected void onHttpComplete() throws Throwable {
         finish();
     }
@@ -352,6 +428,7 @@ public abstract class BaseHttpDownload implements Transfer {
         @Override
         public void onData(HttpClient client, byte[] buffer, int offset, int length) {
             stat.update(length);
+            throttle.acquire(length);
             if (complete) {
                 // ok, this is not the most elegant solution but it effectively breaks the
                 // download logic flow.
@@ -369,6 +446,28 @@ public abstract class BaseHttpDownload implements Transfer {
         }
     }
 
+    protected interface Task {
+        void run() throws Throwable;
+    }
+
+    private final class SegmentListener implements SegmentedHttpDownloader.Listener {
+
+        @Override
+        public void onData(long length) {
+            stat.update(length);
+        }
+
+        @Override
+        public void onRead(int length) {
+            throttle.acquire(length);
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return complete;
+        }
+    }
+
     public static final class Info {
 
         private final String url;
@@ -0,0 +1,177 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A file being written in order by a download, that can be read at the
+ * same time. The readers block until the download writes more data, and
+ * see the end of the file only when the download is complete.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class GrowingFile {
+
+    private final File file;
+    private final long length; // -1 if not known
+
+    private long written;
+    private boolean closed;
+    private IOException error;
+
+    GrowingFile(File file, long length) {
+        this.file = file;
+        this.length = length;
+    }
+
+    public File file() {
+        return file;
+    }
+
+    /**
+     * The final length of the file, or -1 if not known.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Called by the writer after the data is written.
+     */
+    public synchronized void onData(long n) {
+        written += n;
+        notifyAll();
+    }
+
+    /**
+     * Called by the writer when the download is done. If the final length
+     * is known and not reached, the readers get an error instead of the end.
+     */
+    public synchronized void complete() {
+        if (!closed && length >= 0 && written != length) {
+            error = new EOFException("Incomplete download, " + written + " of " + length + " bytes: " + file);
+        }
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized void fail(Throwable e) {
+        if (!closed) {
+            error = e instanceof IOException ? (IOException) e : new IOException(e);
+            closed = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the download is done, successfully or not.
+     */
+    public synchronized void await() throws IOException {
+        try {
+            while (!closed) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Opens a new channel to read the file from the start.
+     */
+    public ReadableByteChannel newChannel() throws IOException {
+        // the file is created by the download
+        available(0);
+        return new Reader(new RandomAccessFile(file, "r").getChannel());
+    }
+
+    /**
+     * Returns the number of bytes written, waiting until it's past
+     * {@code pos}, or the download is done.
+     */
+    private synchronized long available(long pos) throws IOException {
+        try {
+            while (written <= pos && !closed) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        if (error != null) {
+            throw error;
+        }
+        return written;
+    }
+
+    private final class Reader implements ReadableByteChannel {
+
+        private final FileChannel ch;
+        private long pos;
+
+        Reader(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!dst.hasRemaining()) {
+                return 0;
+            }
+
+            long available = available(pos);
+            if (available <= pos) {
+                return -1;
+            }
+
+            int limit = dst.limit();
+            dst.limit(dst.position() + (int) Math.min(dst.remaining(), available - pos));
+            try {
+                int n = ch.read(dst, pos);
+                if (n > 0) {
+                    pos += n;
+                }
+                return n;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return ch.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import com.frostwire.util.Logger;
+import com.frostwire.util.ThreadPool;
+import com.frostwire.util.http.HttpClient;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads a resource over several connections, each one fetching a
+ * segment of the file with a HTTP Range request and writing it at its
+ * position in the (preallocated) file.
+ * <p>
+ * When a connection is done with its segment, it takes over the second
+ * half of the segment with more bytes left, so all the connections stay
+ * busy until the end. The segments are saved to a state file next to the
+ * data file, to resume the download from where each segment was.
+ * <p>
+ * If the server doesn't support ranges, or there is a partial file from a
+ * single stream download to resume, {@link #download(boolean)} returns
+ * {@code false} and the caller is expected to fall back to a single stream.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class SegmentedHttpDownloader {
+
+    private static final Logger LOG = Logger.getLogger(SegmentedHttpDownloader.class);
+
+    static final int DEFAULT_CONNECTIONS = 4;
+
+    private static final ExecutorService THREAD_POOL = newThreadPool();
+
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024; // not worth a new connection for less
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int TIMEOUT = 10000;
+    private static final int MAX_RETRIES = 3;
+    private static final long SAVE_STATE_INTERVAL_MILLIS = 1000;
+    private static final int STATE_MAGIC = 0x46575347;
+
+    private final HttpClient client;
+    private final String url;
+    private final File file;
+    private final File stateFile;
+    private final int connections;
+    private final Listener listener;
+
+    private final List<Segment> segments; // guarded by this
+    private long size;
+    private volatile Throwable error;
+
+    SegmentedHttpDownloader(HttpClient client, String url, File file, int connections, Listener listener) {
+        this.client = client;
+        this.url = url;
+        this.file = file;
+        this.stateFile = new File(file.getPath() + ".segments");
+        this.connections = Math.max(1, connections);
+        this.listener = listener;
+        this.segments = new ArrayList<>();
+    }
+
+    /**
+     * Downloads the resource to the file, blocking until it's done or canceled.
+     *
+     * @param resume continue from the saved segments, if any
+     * @return {@code false} if the server doesn't support ranges, or if the file
+     * was partially downloaded with a single stream, nothing is written then
+     */
+    boolean download(boolean resume) throws IOException, InterruptedException {
+        InputStream first = null;
+
+        if (!resume || !loadState()) {
+            if (resume && !stateFile.exists() && file.length() > 0) {
+                // started without segments, only a single stream can continue it
+                return false;
+            }
+            stateFile.delete();
+
+            Map<String, List<String>> headers = new HashMap<>();
+            try {
+                first = client.openRange(url, 0, -1, TIMEOUT, null, headers);
+            } catch (HttpClient.RangeNotSupportedException e) {
+                LOG.info("Server does not support ranges, downloading with a single connection: " + url);
+                return false;
+            }
+
+            size = totalSize(headers);
+            if (size <= 0) {
+                closeQuietly(first);
+                return false;
+            }
+
+            split();
+            saveState(); // a later resume must not take the preallocated file as a single stream one
+        } else {
+            long downloaded = size;
+            for (Segment s : segments) {
+                downloaded -= s.end - s.pos + 1;
+            }
+            listener.onData(downloaded);
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            run(raf.getChannel(), first);
+            if (error == null && !listener.isCanceled()) {
+                raf.getChannel().force(false);
+            }
+        } finally {
+            closeQuietly(first);
+            raf.close();
+        }
+
+        if (listener.isCanceled()) {
+            stateFile.delete();
+            return true;
+        }
+
+        if (error != null) {
+            saveState();
+            throw error instanceof IOException ? (IOException) error : new IOException(error);
+        }
+
+        if (remaining() > 0) {
+            saveState();
+            throw new IOException("Incomplete segmented download: " + url);
+        }
+
+        stateFile.delete();
+        return true;
+    }
+
+    /**
+     * The number of bytes left to download, of all segments.
+     */
+    synchronized long remaining() {
+        long n = 0;
+        for (Segment s : segments) {
+            n += s.end - s.pos + 1;
+        }
+        return n;
+    }
+
+    synchronized int segments() {
+        return segments.size();
+    }
+
+    private void run(final FileChannel ch, InputStream first) throws InterruptedException {
+        int n;
+        synchronized (this) {
+            n = Math.min(connections, segments.size());
+            if (first != null) {
+                segments.get(0).active = true;
+            }
+        }
+
+        final CountDownLatch latch = new CountDownLatch(n);
+        for (int i = 0; i < n; i++) {
+            final InputStream in = i == 0 ? first : null;
+            try {
+                THREAD_POOL.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Segment initial;
+                            synchronized (SegmentedHttpDownloader.this) {
+                                initial = in != null ? segments.get(0) : next();
+                            }
+                            work(ch, initial, in);
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the running connections take over the segments of the missing ones
+                LOG.warn("Unable to start segment connection: " + e.getMessage());
+                if (in != null) {
+                    synchronized (this) {
+                        segments.get(0).active = false;
+                    }
+                }
+                for (; i < n; i++) {
+                    latch.countDown();
+                }
+            }
+        }
+
+        // the workers write to the channel, it can't be closed until all are done
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (latch.await(SAVE_STATE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+                if (!listener.isCanceled() && error == null) {
+                    saveState();
+                }
+            } catch (InterruptedException e) {
+                if (error == null) {
+                    error = e;
+                }
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            throw new InterruptedException();
+        }
+    }
+
+    private void work(FileChannel ch, Segment s, InputStream in) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (s != null && error == null && !listener.isCanceled()) {
+            try {
+                download(ch, s, in, buffer);
+            } catch (Throwable e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+            in = null;
+            synchronized (this) {
+                s.active = false;
+                s = error == null ? next() : null;
+            }
+        }
+    }
+
+    private void download(FileChannel ch, Segment s, InputStream in, byte[] buffer) throws IOException, InterruptedException {
+        int retries = 0;
+        while (true) {
+            try {
+                if (in == null) {
+                    long pos;
+                    long end;
+                    synchronized (this) {
+                        pos = s.pos;
+                        end = s.end;
+                    }
+                    if (pos > end) {
+                        return;
+                    }
+                    in = client.openRange(url, pos, end, TIMEOUT, null, null);
+                }
+                copy(ch, s, in, buffer);
+                return;
+            } catch (IOException e) {
+                if (++retries > MAX_RETRIES || listener.isCanceled() || error != null) {
+                    throw e;
+                }
+                LOG.warn("Error downloading segment, retrying (" + retries + "): " + e.getMessage());
+                Thread.sleep(1000 * retries);
+            } finally {
+                closeQuietly(in);
+                in = null;
+            }
+        }
+    }
+
+    private void copy(FileChannel ch, Segment s, InputStream in, byte[] buffer) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        while (!listener.isCanceled() && error == null) {
+            long pos;
+            long left;
+            synchronized (this) {
+                pos = s.pos;
+                left = s.end - s.pos + 1;
+            }
+            if (left <= 0) {
+                // done, or the rest was taken by another connection
+                return;
+            }
+
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+            if (n == -1) {
+                throw new EOFException("Segment ended at " + pos + " before its end");
+            }
+            listener.onRead(n);
+
+            bb.clear();
+            bb.limit(n);
+            long p = pos;
+            while (bb.hasRemaining()) {
+                p += ch.write(bb, p);
+            }
+
+            long counted;
+            synchronized (this) {
+                // the end could have moved while reading, the extra bytes are
+                // good data anyway, but they belong to the other segment now
+                counted = Math.max(0, Math.min(n, s.end - s.pos + 1));
+                s.pos += n;
+            }
+            listener.onData(counted);
+        }
+    }
+
+    /**
+     * Returns an idle segment with bytes left, or splits the busy segment with
+     * more bytes left, or {@code null} if there is nothing worth doing.
+     */
+    private Segment next() {
+        Segment largest = null;
+        long largestLeft = 0;
+
+        for (Segment s : segments) {
+            long left = s.end - s.pos + 1;
+            if (left <= 0) {
+                continue;
+            }
+            if (!s.active) {
+                s.active = true;
+                return s;
+            }
+            if (left > largestLeft) {
+                largest = s;
+                largestLeft = left;
+            }
+        }
+
+        if (largest == null || largestLeft < 2 * MIN_SEGMENT_SIZE) {
+            return null;
+        }
+
+        long mid = largest.pos + largestLeft / 2;
+        Segment s = new Segment(mid, largest.end);
+        s.active = true;
+        largest.end = mid - 1;
+        segments.add(s);
+        return s;
+    }
+
+    private synchronized void split() {
+        segments.clear();
+
+        int n = (int) Math.max(1, Math.min(connections, size / MIN_SEGMENT_SIZE));
+        long length = size / n;
+        long start = 0;
+        for (int i = 0; i < n; i++) {
+            long end = i == n - 1 ? size - 1 : start + length - 1;
+            segments.add(new Segment(start, end));
+            start = end + 1;
+        }
+    }
+
+    private synchronized boolean loadState() {
+        if (!stateFile.exists() || !file.exists()) {
+            return false;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(stateFile));
+            if (in.readInt() != STATE_MAGIC) {
+                return false;
+            }
+            long size = in.readLong();
+            if (size <= 0 || file.length() != size) {
+                return false;
+            }
+            int count = in.readInt();
+            List<Segment> l = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Segment s = new Segment(in.readLong(), in.readLong());
+                s.pos = in.readLong();
+                l.add(s);
+            }
+
+            this.size = size;
+            segments.clear();
+            segments.addAll(l);
+            return true;
+        } catch (Throwable e) {
+            LOG.warn("Unable to load download segments state: " + e.getMessage());
+            return false;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private synchronized void saveState() {
+        File tmp = new File(stateFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(tmp));
+            out.writeInt(STATE_MAGIC);
+            out.writeLong(size);
+            int count = 0;
+            for (Segment s : segments) {
+                if (s.pos <= s.end) {
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            for (Segment s : segments) {
+                if (s.pos <= s.end) {
+                    out.writeLong(s.start);
+                    out.writeLong(s.end);
+                    out.writeLong(s.pos);
+                }
+            }
+            out.close();
+            out = null;
+
+            if (!tmp.renameTo(stateFile)) {
+                stateFile.delete();
+                if (!tmp.renameTo(stateFile)) {
+                    LOG.warn("Unable to save download segments state: " + stateFile);
+                }
+            }
+        } catch (Throwable e) {
+            LOG.warn("Unable to save download segments state: " + e.getMessage());
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Total size from the {@code Content-Range: bytes 0-N/size} header,
+     * or -1 if not known.
+     */
+    static long totalSize(Map<String, List<String>> headers) {
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            if ("Content-Range".equalsIgnoreCase(e.getKey()) && e.getValue() != null && !e.getValue().isEmpty()) {
+                String value = e.getValue().get(0);
+                int i = value.lastIndexOf('/');
+                if (i != -1) {
+                    try {
+                        return Long.parseLong(value.substring(i + 1).trim());
+                    } catch (NumberFormatException ex) {
+                        return -1; // "*", unknown
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static ExecutorService newThreadPool() {
+        // queued, not rejected, when all threads are busy with other downloads
+        ThreadPool pool = new ThreadPool("HttpDownloadSegment", 64, 64, 1L, new LinkedBlockingQueue<Runnable>(), true);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static void closeQuietly(Closeable c) {
+        try {
+            if (c != null) {
+                c.close();
+            }
+        } catch (Throwable e) {
+            // ignore
+        }
+    }
+
+    interface Listener {
+
+        /**
+         * Called from the connection threads with the number of new bytes.
+         */
+        void onData(long length);
+
+        /**
+         * Called from the connection threads after each read, blocking
+         * here slows down the connection.
+         */
+        void onRead(int length);
+
+        boolean isCanceled();
+    }
+
+    private static final class Segment {
+
+        final long start;
+        long pos;
+        long end; // inclusive, moves down when the segment is split
+        boolean active;
+
+        Segment(long start, long end) {
+            this.start = start;
+            this.pos = start;
+            this.end = end;
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2016, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -18,49 +18,188 @@
 
 package com.frostwire.transfers;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
+ * Estimates the speed of a transfer from the bytes reported with
+ * {@link #update(long)}.
+ * <p>
+ * An update only adds to a counter, without reading the clock, so it's
+ * cheap enough to call in every data callback, from any thread. The speed
+ * is sampled lazily when it's read, by one thread at a time, the others
+ * get the last value. Two estimators are available:
+ * <ul>
+ * <li>{@link Mode#EWMA}, an exponentially weighted moving average with
+ * the window as time constant, smooth and good for the ETA.</li>
+ * <li>{@link Mode#WINDOW}, the average over the last window, reacts
+ * faster to the changes.</li>
+ * </ul>
+ * In both cases the speed drops to 0 after a full window without data.
+ *
  * @author gubatron
  * @author aldenml
  */
-final class SpeedStat {
+public final class SpeedStat {
+
+    public enum Mode {
+        EWMA, WINDOW
+    }
+
+    public static final long DEFAULT_WINDOW_MILLIS = 5000;
 
-    private static final int INTERVAL_MILLISECONDS = 1000;
+    // samples kept by the sliding window
+    private static final int WINDOW_SAMPLES = 20;
 
-    private long totalBytes;
-    private long averageSpeed; // in bytes
+    // shorter intervals make the rate too noisy
+    private static final long MIN_SAMPLE_INTERVAL_MILLIS = 100;
 
-    private long speedMarkTimestamp;
-    private long lastTotalBytes;
+    private final Mode mode;
+    private final long windowMillis;
+    private final long sampleInterval;
+
+    private final AtomicLong totalBytes;
+    private final AtomicBoolean sampling;
+    private volatile long averageSpeed; // in bytes per second
+
+    // guarded by the sampling flag
+    private long lastSampleTime;
+    private long lastSampleBytes;
+    private long lastDataTime;
+    private double ewma;
+    private boolean started;
+    private final long[] sampleTimes;
+    private final long[] sampleBytes;
+    private int head;
+    private int count;
 
     public SpeedStat() {
+        this(Mode.EWMA, DEFAULT_WINDOW_MILLIS);
+    }
+
+    public SpeedStat(Mode mode, long windowMillis) {
+        this(mode, windowMillis, now());
+    }
+
+    SpeedStat(Mode mode, long windowMillis, long now) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode can't be null");
+        }
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + windowMillis);
+        }
+
+        this.mode = mode;
+        this.windowMillis = windowMillis;
+        this.sampleInterval = mode == Mode.WINDOW ?
+                Math.max(MIN_SAMPLE_INTERVAL_MILLIS, windowMillis / WINDOW_SAMPLES) :
+                MIN_SAMPLE_INTERVAL_MILLIS;
+
+        this.totalBytes = new AtomicLong(0);
+        this.sampling = new AtomicBoolean(false);
+
+        this.lastSampleTime = now;
+        this.lastDataTime = now;
+        this.sampleTimes = mode == Mode.WINDOW ? new long[WINDOW_SAMPLES + 1] : null;
+        this.sampleBytes = mode == Mode.WINDOW ? new long[WINDOW_SAMPLES + 1] : null;
+        if (mode == Mode.WINDOW) {
+            addSample(now, 0);
+        }
     }
 
     public long totalBytes() {
-        return totalBytes;
+        return totalBytes.get();
     }
 
     public long averageSpeed() {
-        return averageSpeed;
+        return averageSpeed(now());
     }
 
     public void update(long numBytes) {
-        long now = System.currentTimeMillis();
+        totalBytes.addAndGet(numBytes);
+    }
+
+    public long eta(long size) {
+        return eta(size, totalBytes(), averageSpeed());
+    }
 
-        totalBytes += numBytes;
+    public int progress(long size) {
+        return progress(size, totalBytes());
+    }
 
-        if (now - speedMarkTimestamp > INTERVAL_MILLISECONDS) {
-            averageSpeed = ((totalBytes - lastTotalBytes) * 1000) / (now - speedMarkTimestamp);
-            speedMarkTimestamp = now;
-            lastTotalBytes = totalBytes;
+    long averageSpeed(long now) {
+        if (sampling.compareAndSet(false, true)) {
+            try {
+                if (now - lastSampleTime >= sampleInterval) {
+                    sample(now);
+                }
+            } finally {
+                sampling.set(false);
+            }
         }
+
+        return averageSpeed;
     }
 
-    public long eta(long size) {
-        return eta(size, totalBytes, averageSpeed);
+    private void sample(long now) {
+        long bytes = totalBytes.get();
+        long delta = bytes - lastSampleBytes;
+
+        if (delta > 0) {
+            lastDataTime = now;
+        }
+
+        if (now - lastDataTime >= windowMillis) {
+            // idle, avoids the long tail of the average
+            ewma = 0;
+            started = false;
+            averageSpeed = 0;
+            if (mode == Mode.WINDOW) {
+                count = 0;
+                addSample(now, bytes);
+            }
+        } else if (mode == Mode.EWMA) {
+            double rate = (delta * 1000.0) / (now - lastSampleTime);
+            if (started) {
+                double alpha = 1 - Math.exp(-(double) (now - lastSampleTime) / windowMillis);
+                ewma += alpha * (rate - ewma);
+            } else if (delta > 0) {
+                // first data, don't start from zero
+                ewma = rate;
+                started = true;
+            }
+            averageSpeed = Math.round(ewma);
+        } else {
+            addSample(now, bytes);
+            int oldest = (head - count + sampleTimes.length) % sampleTimes.length;
+            long dt = now - sampleTimes[oldest];
+            averageSpeed = dt > 0 ? ((bytes - sampleBytes[oldest]) * 1000) / dt : 0;
+        }
+
+        lastSampleTime = now;
+        lastSampleBytes = bytes;
     }
 
-    public int progress(long size) {
-        return progress(size, totalBytes);
+    private void addSample(long now, long bytes) {
+        sampleTimes[head] = now;
+        sampleBytes[head] = bytes;
+        head = (head + 1) % sampleTimes.length;
+        if (count < sampleTimes.length) {
+            count++;
+        }
+
+        // keep one sample at or before the start of the window
+        while (count > 2) {
+            int second = (head - count + 1 + sampleTimes.length) % sampleTimes.length;
+            if (now - sampleTimes[second] < windowMillis) {
+                break;
+            }
+            count--;
+        }
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
     }
 
     static long eta(long size, long total, long speed) {
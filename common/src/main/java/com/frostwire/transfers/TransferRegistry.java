@@ -0,0 +1,405 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registry of the transfers shown in the UI, indexed by info hash, URL
+ * and state, that keeps the number of active downloads and uploads and
+ * the bandwidth sums up to date as the transfers change, so the UI
+ * doesn't need to walk all the transfers on each refresh.
+ * <p>
+ * Transfers with events (like the torrents, with the state updates of
+ * the engine) should be refreshed with {@link #update(Object)}, the
+ * others are polled, at most once every {@link #POLL_INTERVAL_MILLIS},
+ * when a snapshot is requested. Readers never block, each transfer has
+ * its own lock for the updates.
+ * <p>
+ * The type of the transfers is generic because the desktop and android
+ * UI have their own types, the {@link Adapter} reads the values.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class TransferRegistry<T> {
+
+    public static final long POLL_INTERVAL_MILLIS = 500;
+
+    private final Adapter<T> adapter;
+
+    private final ConcurrentMap<T, Entry<T>> entries;
+    private final ConcurrentMap<String, T> byInfoHash;
+    private final ConcurrentMap<String, T> byUrl;
+    private final ConcurrentMap<TransferState, Set<T>> byState;
+    private final Set<Entry<T>> polled;
+    private final AtomicReference<List<T>> transfers;
+
+    private final AtomicInteger downloading;
+    private final AtomicInteger seeding;
+    private final AtomicLong downloadSpeed;
+    private final AtomicLong uploadSpeed;
+
+    private final AtomicLong version;
+    private final AtomicLong lastPoll;
+    private volatile Snapshot<T> snapshot;
+
+    public TransferRegistry(Adapter<T> adapter) {
+        this.adapter = adapter;
+
+        this.entries = new ConcurrentHashMap<>();
+        this.byInfoHash = new ConcurrentHashMap<>();
+        this.byUrl = new ConcurrentHashMap<>();
+        this.byState = new ConcurrentHashMap<>();
+        this.polled = Collections.newSetFromMap(new ConcurrentHashMap<Entry<T>, Boolean>());
+        this.transfers = new AtomicReference<>(Collections.<T>emptyList());
+
+        this.downloading = new AtomicInteger(0);
+        this.seeding = new AtomicInteger(0);
+        this.downloadSpeed = new AtomicLong(0);
+        this.uploadSpeed = new AtomicLong(0);
+
+        this.version = new AtomicLong(0);
+        this.lastPoll = new AtomicLong(0);
+    }
+
+    /**
+     * Adds the transfer, if not already in the registry.
+     *
+     * @return {@code true} if the transfer was added.
+     */
+    public boolean add(T t) {
+        if (t == null) {
+            return false;
+        }
+
+        Entry<T> e = new Entry<>(t, adapter.infoHash(t), adapter.url(t));
+        if (entries.putIfAbsent(t, e) != null) {
+            return false;
+        }
+
+        if (e.infoHash != null) {
+            byInfoHash.put(e.infoHash, t);
+        }
+        if (e.url != null) {
+            byUrl.put(e.url, t);
+        }
+
+        List<T> l;
+        List<T> n;
+        do {
+            l = transfers.get();
+            n = new ArrayList<>(l.size() + 1);
+            n.addAll(l);
+            n.add(t);
+        } while (!transfers.compareAndSet(l, Collections.unmodifiableList(n)));
+
+        update(e);
+
+        if (adapter.isPolled(t)) {
+            polled.add(e);
+        }
+
+        version.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Removes the transfer, the counters no longer include it.
+     *
+     * @return {@code true} if the transfer was in the registry.
+     */
+    public boolean remove(T t) {
+        Entry<T> e = t != null ? entries.remove(t) : null;
+        if (e == null) {
+            return false;
+        }
+
+        polled.remove(e);
+
+        synchronized (e) {
+            e.removed = true;
+            apply(e, null, 0, 0);
+        }
+
+        if (e.infoHash != null) {
+            byInfoHash.remove(e.infoHash, t);
+        }
+        if (e.url != null) {
+            byUrl.remove(e.url, t);
+        }
+
+        List<T> l;
+        List<T> n;
+        do {
+            l = transfers.get();
+            n = new ArrayList<>(l);
+            n.remove(t);
+        } while (!transfers.compareAndSet(l, Collections.unmodifiableList(n)));
+
+        version.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Reads again the state and speeds of the transfer, only the
+     * difference with the previous values is applied to the counters.
+     */
+    public void update(T t) {
+        Entry<T> e = t != null ? entries.get(t) : null;
+        if (e != null) {
+            update(e);
+        }
+    }
+
+    public boolean contains(T t) {
+        return t != null && entries.containsKey(t);
+    }
+
+    public T findByInfoHash(String infoHash) {
+        return infoHash != null ? byInfoHash.get(infoHash) : null;
+    }
+
+    public T findByUrl(String url) {
+        return url != null ? byUrl.get(url) : null;
+    }
+
+    /**
+     * Returns the transfers in the given state, the polled ones are
+     * refreshed first, like in {@link #snapshot()}.
+     */
+    public List<T> transfers(TransferState state) {
+        poll();
+
+        Set<T> s = byState.get(state);
+        return s != null ? new ArrayList<>(s) : Collections.<T>emptyList();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns an immutable view of the registry, the same instance is
+     * returned while nothing changes.
+     */
+    public Snapshot<T> snapshot() {
+        poll();
+
+        long v = version.get();
+        Snapshot<T> s = snapshot;
+        if (s == null || s.version != v) {
+            s = new Snapshot<>(v, transfers.get(),
+                    downloading.get(), seeding.get(),
+                    downloadSpeed.get(), uploadSpeed.get());
+            snapshot = s;
+        }
+
+        return s;
+    }
+
+    private void poll() {
+        long now = System.currentTimeMillis();
+        long last = lastPoll.get();
+        if (now - last < POLL_INTERVAL_MILLIS || !lastPoll.compareAndSet(last, now)) {
+            return;
+        }
+
+        for (Entry<T> e : polled) {
+            update(e);
+        }
+    }
+
+    private void update(Entry<T> e) {
+        TransferState state = adapter.state(e.transfer);
+        long down = adapter.downloadSpeed(e.transfer);
+        long up = adapter.uploadSpeed(e.transfer);
+
+        synchronized (e) {
+            if (!e.removed) {
+                apply(e, state, down, up);
+            }
+        }
+    }
+
+    // should be called with the entry lock held
+    private void apply(Entry<T> e, TransferState state, long down, long up) {
+        boolean changed = false;
+
+        if (e.state != state) {
+            if (e.state != null) {
+                Set<T> s = byState.get(e.state);
+                if (s != null) {
+                    s.remove(e.transfer);
+                }
+            }
+            if (state != null) {
+                Set<T> s = byState.get(state);
+                if (s == null) {
+                    Set<T> n = Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+                    s = byState.putIfAbsent(state, n);
+                    if (s == null) {
+                        s = n;
+                    }
+                }
+                s.add(e.transfer);
+            }
+
+            downloading.addAndGet(count(state, TransferState.DOWNLOADING) - count(e.state, TransferState.DOWNLOADING));
+            seeding.addAndGet(count(state, TransferState.SEEDING) - count(e.state, TransferState.SEEDING));
+
+            e.state = state;
+            changed = true;
+        }
+
+        if (e.downloadSpeed != down) {
+            downloadSpeed.addAndGet(down - e.downloadSpeed);
+            e.downloadSpeed = down;
+            changed = true;
+        }
+
+        if (e.uploadSpeed != up) {
+            uploadSpeed.addAndGet(up - e.uploadSpeed);
+            e.uploadSpeed = up;
+            changed = true;
+        }
+
+        if (changed) {
+            version.incrementAndGet();
+        }
+    }
+
+    private static int count(TransferState state, TransferState target) {
+        return state == target ? 1 : 0;
+    }
+
+    /**
+     * Reads the values of the transfers for the registry.
+     */
+    public interface Adapter<T> {
+
+        /**
+         * @return the info hash, or {@code null} if not a torrent.
+         */
+        String infoHash(T t);
+
+        /**
+         * @return the URL of the download, or {@code null} if none.
+         */
+        String url(T t);
+
+        TransferState state(T t);
+
+        /**
+         * The download speed, in bytes per second, to include in the
+         * total. Return 0 if it's accounted somewhere else.
+         */
+        long downloadSpeed(T t);
+
+        /**
+         * The upload speed, in bytes per second, to include in the
+         * total. Return 0 if it's accounted somewhere else.
+         */
+        long uploadSpeed(T t);
+
+        /**
+         * Whether the transfer has no events and should be read in
+         * each poll.
+         */
+        boolean isPolled(T t);
+    }
+
+    /**
+     * An immutable view of the registry at some point.
+     */
+    public static final class Snapshot<T> {
+
+        private final long version;
+        private final List<T> transfers;
+        private final int downloading;
+        private final int seeding;
+        private final long downloadSpeed;
+        private final long uploadSpeed;
+
+        Snapshot(long version, List<T> transfers, int downloading, int seeding, long downloadSpeed, long uploadSpeed) {
+            this.version = version;
+            this.transfers = transfers;
+            this.downloading = downloading;
+            this.seeding = seeding;
+            this.downloadSpeed = downloadSpeed;
+            this.uploadSpeed = uploadSpeed;
+        }
+
+        /**
+         * The transfers in the order they were added, unmodifiable.
+         */
+        public List<T> transfers() {
+            return transfers;
+        }
+
+        /**
+         * Number of transfers in {@link TransferState#DOWNLOADING}.
+         */
+        public int downloading() {
+            return downloading;
+        }
+
+        /**
+         * Number of transfers in {@link TransferState#SEEDING}.
+         */
+        public int seeding() {
+            return seeding;
+        }
+
+        public long downloadSpeed() {
+            return downloadSpeed;
+        }
+
+        public long uploadSpeed() {
+            return uploadSpeed;
+        }
+    }
+
+    private static final class Entry<T> {
+
+        final T transfer;
+        final String infoHash;
+        final String url;
+
+        // guarded by the entry lock
+        TransferState state;
+        long downloadSpeed;
+        long uploadSpeed;
+        boolean removed;
+
+        Entry(T transfer, String infoHash, String url) {
+            this.transfer = transfer;
+            this.infoHash = infoHash;
+            this.url = url;
+        }
+    }
+}
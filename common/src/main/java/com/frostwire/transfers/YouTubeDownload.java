@@ -28,6 +28,8 @@ import com.frostwire.platform.Platforms;
 import com.frostwire.search.youtube.YouTubeCrawledSearchResult;
 import com.frostwire.search.youtube.YouTubeExtractor;
 import com.frostwire.util.HttpClientFactory;
+import com.frostwire.util.ThreadPool;
+import com.frostwire.util.http.HttpClient;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 
@@ -35,6 +37,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * @author gubatron
@@ -44,6 +49,10 @@ public class YouTubeDownload extends BaseHttpDownload {
 
     private static final Logger LOG = Logger.getLogger(YouTubeDownload.class);
 
+    // the DASH tracks only wait for the network, they can be queued without
+    // blocking the muxers waiting for them in the download threads
+    private static final ExecutorService TRACKS_THREAD_POOL = newTracksThreadPool();
+
     private final YouTubeCrawledSearchResult sr;
     private final DownloadType downloadType;
 
@@ -52,6 +61,10 @@ public class YouTubeDownload extends BaseHttpDownload {
 
     private long demuxerReadCount;
 
+    // the DASH tracks being downloaded, for the muxer
+    private volatile GrowingFile dashVideo;
+    private volatile GrowingFile dashAudio;
+
     public YouTubeDownload(YouTubeCrawledSearchResult sr) {
         super(convert(sr));
         this.sr = sr;
@@ -82,18 +95,30 @@ public class YouTubeDownload extends BaseHttpDownload {
     }
 
     @Override
-    protected void onHttpComplete() throws Throwable {
-        boolean callSuper = true;
-        if (downloadType == DownloadType.DASH) {
-            FileSystem fs = Platforms.fileSystem();
-            if (fs.exists(tempVideo) && !fs.exists(tempAudio)) {
-                start(sr.getAudio().link, tempAudio, false);
-                callSuper = false;
-            }
+    public void remove(boolean deleteData) {
+        boolean wasComplete = isComplete();
+
+        super.remove(deleteData);
+
+        if (wasComplete) {
+            return;
+        }
+
+        // wakes up the muxer, if waiting for data
+        IOException canceled = new IOException("Transfer canceled");
+        if (dashVideo != null) {
+            dashVideo.fail(canceled);
+        }
+        if (dashAudio != null) {
+            dashAudio.fail(canceled);
         }
 
-        if (callSuper) {
-            super.onHttpComplete();
+        FileSystem fs = Platforms.fileSystem();
+        if (fs.exists(tempVideo) && !fs.delete(tempVideo)) {
+            LOG.warn("Error deleting temporary video file: " + tempVideo);
+        }
+        if (fs.exists(tempAudio) && !fs.delete(tempAudio)) {
+            LOG.warn("Error deleting temporary audio file: " + tempAudio);
         }
     }
 
@@ -119,35 +144,111 @@ public class YouTubeDownload extends BaseHttpDownload {
             if (!fs.delete(tempAudio)) {
                 LOG.warn("Error deleting temporary audio file: " + tempAudio);
             }
+        }
+    }
 
+    public void start() {
+        if (downloadType == DownloadType.DEMUX) {
+            start(sr.getAudio().link, tempAudio, false);
         } else if (downloadType == DownloadType.DASH) {
-            // intentionally not using FileSystem here
-            if (tempVideo.exists() && tempAudio.exists()) {
-                state = TransferState.DEMUXING;
-                Mp4Demuxer.muxFragments(tempVideo.getAbsoluteFile(), tempAudio.getAbsoluteFile(), tempPath.getAbsoluteFile(), buildMp4Info(false), null);
+            startDash();
+        } else {
+            start(sr.getVideo().link, tempVideo, false);
+        }
+    }
 
-                moveAndComplete(tempPath, savePath);
+    /**
+     * Downloads both tracks at the same time, while the muxer reads their
+     * fragments as they arrive and writes the result to the save path. The
+     * muxer runs in the download thread, the tracks in their own threads.
+     */
+    private void startDash() {
+        if (isComplete()) {
+            return;
+        }
 
-                FileSystem fs = Platforms.fileSystem();
-                if (!fs.delete(tempVideo)) {
-                    LOG.warn("Error deleting temporary video file: " + tempVideo);
-                }
-                if (!fs.delete(tempAudio)) {
-                    LOG.warn("Error deleting temporary audio file: " + tempAudio);
+        state = TransferState.DOWNLOADING;
+
+        execute(new Task() {
+            @Override
+            public void run() throws Throwable {
+                GrowingFile video = new GrowingFile(tempVideo, sr.getVideo().size > 0 ? sr.getVideo().size : -1);
+                GrowingFile audio = new GrowingFile(tempAudio, sr.getAudio().size > 0 ? sr.getAudio().size : -1);
+                dashVideo = video;
+                dashAudio = audio;
+
+                try {
+                    saveTrack(sr.getVideo().link, video);
+                    saveTrack(sr.getAudio().link, audio);
+                    muxDash(video, audio);
+                } catch (Throwable e) {
+                    video.fail(e);
+                    audio.fail(e);
+                    Platforms.fileSystem().delete(savePath);
+                    throw e;
                 }
+            }
+        });
+    }
 
-            } else {
-                complete(TransferState.ERROR);
+    private void saveTrack(final String url, final GrowingFile track) {
+        TRACKS_THREAD_POOL.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (isComplete()) {
+                        throw new IOException("Transfer canceled");
+                    }
+                    HttpClient client = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.DOWNLOAD);
+                    client.setListener(new TrackListener(track));
+                    client.save(url, track.file(), false);
+                    track.complete();
+                } catch (Throwable e) {
+                    // the muxer fails with it too
+                    track.fail(e);
+                }
             }
-        }
+        });
     }
 
-    public void start() {
-        if (downloadType == DownloadType.DEMUX) {
-            start(sr.getAudio().link, tempAudio, false);
+    private void muxDash(GrowingFile video, GrowingFile audio) throws IOException {
+        Mp4Info inf = buildMp4Info(false);
+
+        if (video.length() > 0 && audio.length() > 0) {
+            ReadableByteChannel v = video.newChannel();
+            ReadableByteChannel a = audio.newChannel();
+            try {
+                Mp4Demuxer.muxFragments(v, video.length(), a, audio.length(), savePath.getAbsoluteFile(), inf, null);
+            } finally {
+                IOUtils.closeQuietly(v);
+                IOUtils.closeQuietly(a);
+            }
+            video.await();
+            audio.await();
         } else {
-            start(sr.getVideo().link, tempVideo, false);
+            // without the final lengths, the tracks can't be read as they arrive
+            video.await();
+            audio.await();
+            state = TransferState.DEMUXING;
+            Mp4Demuxer.muxFragments(tempVideo.getAbsoluteFile(), tempAudio.getAbsoluteFile(), savePath.getAbsoluteFile(), inf, null);
+        }
+
+        if (isComplete()) {
+            // canceled
+            return;
         }
+
+        FileSystem fs = Platforms.fileSystem();
+        if (!fs.delete(tempVideo)) {
+            LOG.warn("Error deleting temporary video file: " + tempVideo);
+        }
+        if (!fs.delete(tempAudio)) {
+            LOG.warn("Error deleting temporary audio file: " + tempAudio);
+        }
+
+        state = TransferState.SCANNING;
+        fs.scan(savePath);
+        complete(TransferState.COMPLETE);
     }
 
     public int demuxingProgress() {
@@ -162,6 +263,12 @@ public class YouTubeDownload extends BaseHttpDownload {
         return 0;
     }
 
+    private static ExecutorService newTracksThreadPool() {
+        ThreadPool pool = new ThreadPool("YouTubeDashTrack", 40, 40, 1L, new LinkedBlockingQueue<Runnable>(), true);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
     private static Info convert(YouTubeCrawledSearchResult sr) {
         return new Info(sr.getDownloadUrl(), sr.getFilename(), sr.getDisplayName(), sr.getSize());
     }
@@ -227,4 +334,34 @@ public class YouTubeDownload extends BaseHttpDownload {
     private enum DownloadType {
         VIDEO, DASH, DEMUX
     }
+
+    private final class TrackListener extends HttpClient.HttpClientListenerAdapter {
+
+        private final GrowingFile track;
+
+        TrackListener(GrowingFile track) {
+            this.track = track;
+        }
+
+        @Override
+        public void onData(HttpClient client, byte[] buffer, int offset, int length) {
+            stat.update(length);
+            throttle.acquire(length);
+            track.onData(length);
+            if (isComplete()) {
+                // breaks the download loop, see BaseHttpDownload
+                throw new RuntimeException("Invalid status, transfer cancelled");
+            }
+        }
+
+        @Override
+        public void onError(HttpClient client, Throwable e) {
+            track.fail(e);
+        }
+
+        @Override
+        public void onCancel(HttpClient client) {
+            track.fail(new IOException("Track download canceled: " + track.file()));
+        }
+    }
 }
@@ -18,6 +18,7 @@
 package com.frostwire.util;
 
 import com.frostwire.util.http.HttpClient;
+import com.frostwire.util.http.HttpConnectionPool;
 import com.frostwire.util.http.JdkHttpClient;
 import com.frostwire.util.http.OKHTTPClient;
 
@@ -39,7 +40,7 @@ public class HttpClientFactory {
         MISC
     }
 
-    private static Map<HttpContext, ThreadPool> okHttpClientPools = null;
+    private static Map<HttpContext, HttpConnectionPool> okHttpClientPools = null;
 
     private HttpClientFactory() {
     }
@@ -53,17 +54,32 @@ public class HttpClientFactory {
             return new JdkHttpClient();
         }
 
+        return new OKHTTPClient(getConnectionPool(context));
+    }
+
+    /**
+     * The shared connection pool of the context, to tune it or to read
+     * its metrics.
+     */
+    public static synchronized HttpConnectionPool getConnectionPool(HttpContext context) {
         if (okHttpClientPools == null) {
-            okHttpClientPools = buildThreadPools();
+            okHttpClientPools = buildConnectionPools();
         }
-        return new OKHTTPClient(okHttpClientPools.get(context));
+        return okHttpClientPools.get(context);
     }
 
-    private static Map<HttpContext, ThreadPool> buildThreadPools() {
-        final HashMap<HttpContext, ThreadPool> map = new HashMap<>();
-        map.put(HttpContext.SEARCH, new ThreadPool("OkHttpClient-searches", 1, 5, 60, new LinkedBlockingQueue<Runnable>(), true));
-        map.put(HttpContext.DOWNLOAD, new ThreadPool("OkHttpClient-downloads", 1, 10, 5, new LinkedBlockingQueue<Runnable>(), true));
-        map.put(HttpContext.MISC, new ThreadPool("OkHttpClient-misc", 2, 10, 30, new LinkedBlockingQueue<Runnable>(), true));
+    private static Map<HttpContext, HttpConnectionPool> buildConnectionPools() {
+        final HashMap<HttpContext, HttpConnectionPool> map = new HashMap<>();
+        // search engines hit the same few hosts for every page and crawl
+        map.put(HttpContext.SEARCH, new HttpConnectionPool("searches",
+                new ThreadPool("OkHttpClient-searches", 1, 5, 60, new LinkedBlockingQueue<Runnable>(), true),
+                16, 5 * 60 * 1000, 4));
+        map.put(HttpContext.DOWNLOAD, new HttpConnectionPool("downloads",
+                new ThreadPool("OkHttpClient-downloads", 1, 10, 5, new LinkedBlockingQueue<Runnable>(), true),
+                5, 60 * 1000, 0));
+        map.put(HttpContext.MISC, new HttpConnectionPool("misc",
+                new ThreadPool("OkHttpClient-misc", 2, 10, 30, new LinkedBlockingQueue<Runnable>(), true),
+                5, 5 * 60 * 1000, 0));
         return map;
     }
 
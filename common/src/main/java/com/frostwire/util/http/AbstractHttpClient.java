@@ -38,6 +38,7 @@ import java.util.Map;
 public abstract class AbstractHttpClient implements HttpClient {
     private static final Logger LOG = Logger.getLogger(AbstractHttpClient.class);
     protected static final int DEFAULT_TIMEOUT = 10000;
+    protected static final int SAVE_BUFFER_SIZE = 64 * 1024;
     protected static final String DEFAULT_USER_AGENT = UserAgentGenerator.getUserAgent();
     protected static final SSLSocketFactory CUSTOM_SSL_SOCKET_FACTORY = createCustomSSLSocketFactory();
     protected HttpClientListener listener;
@@ -0,0 +1,128 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util.http;
+
+import com.squareup.okhttp.Dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small LRU cache of host name lookups, shared by all the connection pools.
+ * <p>
+ * The JVM already caches lookups, but only if the security policy allows
+ * it, and Android caches them for a couple of seconds. Failed lookups are
+ * kept for a shorter time, so a dead search engine doesn't cost a DNS
+ * round trip for every page and crawl.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class DnsCache implements Dns {
+
+    private static final int MAX_ENTRIES = 256;
+
+    private final Dns dns;
+    private final long ttl;
+    private final long negativeTtl;
+    private final Map<String, Lookup> map;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    DnsCache(Dns dns, long ttl, long negativeTtl) {
+        this.dns = dns;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.map = new LinkedHashMap<String, Lookup>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Lookup> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        long now = System.currentTimeMillis();
+
+        Lookup e;
+        synchronized (map) {
+            e = map.get(hostname);
+        }
+
+        if (e != null && e.expiresAt > now) {
+            hits.incrementAndGet();
+            if (e.addresses == null) {
+                throw new UnknownHostException(hostname);
+            }
+            return e.addresses;
+        }
+
+        misses.incrementAndGet();
+
+        List<InetAddress> addresses;
+        try {
+            addresses = dns.lookup(hostname);
+        } catch (UnknownHostException ex) {
+            put(hostname, new Lookup(null, now + negativeTtl));
+            throw ex;
+        }
+
+        put(hostname, new Lookup(addresses, now + ttl));
+        return addresses;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    private void put(String hostname, Lookup e) {
+        synchronized (map) {
+            map.put(hostname, e);
+        }
+    }
+
+    private static final class Lookup {
+
+        final List<InetAddress> addresses; // null means unknown host
+        final long expiresAt;
+
+        Lookup(List<InetAddress> addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -19,6 +19,8 @@ package com.frostwire.util.http;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -57,6 +59,15 @@ public interface HttpClient {
 
     String get(String url, int timeout, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException;
 
+    /**
+     * Writes the response body to {@code out} as it arrives, for the callers
+     * that want to reuse their own buffer instead of getting a new one.
+     * Error responses are not written, they throw an {@link IOException}.
+     *
+     * @return the content type of the response, or {@code null} if unknown
+     */
+    String get(String url, int timeout, String userAgent, String referrer, String cookie, Map<String, String> customHeaders, OutputStream out) throws IOException;
+
     byte[] getBytes(String url);
 
     byte[] getBytes(String url, int timeout);
@@ -75,6 +86,15 @@ public interface HttpClient {
 
     void save(String url, File file, boolean resume, int timeout, String userAgent, String referrer) throws IOException;
 
+    /**
+     * Opens a GET request for the bytes {@code [start, end]} of the resource,
+     * {@code end} inclusive or {@code -1} for the rest of the resource. The
+     * listener is not notified, the caller reads and closes the stream.
+     *
+     * @throws RangeNotSupportedException if the server ignores the range
+     */
+    InputStream openRange(String url, long start, long end, int timeout, String userAgent, Map<String, List<String>> outputHeaders) throws IOException;
+
     String post(String url, int timeout, String userAgent, Map<String, String> formData) throws IOException;
 
     String post(String url, int timeout, String userAgent, String content, boolean gzip) throws IOException;
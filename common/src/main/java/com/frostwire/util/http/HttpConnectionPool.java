@@ -0,0 +1,260 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util.http;
+
+import com.frostwire.util.ThreadPool;
+import com.squareup.okhttp.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection pool shared by all the {@link OKHTTPClient} instances of
+ * the same context (search, download, etc).
+ * <p>
+ * Idle connections are kept alive, so the engines that hit the same host
+ * for every page and crawl don't pay the TCP and TLS handshakes again,
+ * and HTTP/2 connections are multiplexed when the server supports it.
+ * The number of concurrent requests per host can be limited, the host
+ * lookups are cached, and gzip responses are decoded transparently.
+ * <p>
+ * The pool keeps track of how many requests reused a connection and of
+ * the average time to open a new one (DNS, connect and TLS handshake).
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class HttpConnectionPool {
+
+    private static final DnsCache DNS = new DnsCache(Dns.SYSTEM, 5 * 60 * 1000, 30 * 1000);
+
+    private final String name;
+    private final int maxRequestsPerHost;
+    private final ConnectionPool connections;
+    private final OkHttpClient client;
+
+    private final ConcurrentMap<String, Semaphore> hosts;
+    private final Set<Connection> seen;
+    private final ThreadLocal<long[]> mark;
+
+    private final AtomicLong requests;
+    private final AtomicLong reused;
+    private final AtomicLong connects;
+    private final AtomicLong connectTime;
+
+    /**
+     * @param maxIdleConnections idle connections kept alive
+     * @param keepAlive          how long (in milliseconds) an idle connection is kept
+     * @param maxRequestsPerHost concurrent requests per host, 0 for no limit
+     */
+    public HttpConnectionPool(String name, ThreadPool threadPool, int maxIdleConnections, long keepAlive, int maxRequestsPerHost) {
+        this.name = name;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.connections = new ConnectionPool(maxIdleConnections, keepAlive, TimeUnit.MILLISECONDS);
+
+        this.hosts = new ConcurrentHashMap<>();
+        this.seen = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<Connection, Boolean>()));
+        this.mark = new ThreadLocal<long[]>() {
+            @Override
+            protected long[] initialValue() {
+                return new long[1];
+            }
+        };
+
+        this.requests = new AtomicLong(0);
+        this.reused = new AtomicLong(0);
+        this.connects = new AtomicLong(0);
+        this.connectTime = new AtomicLong(0);
+
+        this.client = OKHTTPClient.newOkHttpClient(threadPool);
+        this.client.setConnectionPool(connections);
+        this.client.setDns(DNS);
+        if (maxRequestsPerHost > 0) {
+            this.client.getDispatcher().setMaxRequestsPerHost(maxRequestsPerHost);
+        }
+        this.client.interceptors().add(new HostInterceptor());
+        this.client.networkInterceptors().add(new ConnectionInterceptor());
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns a new client to configure for one request, sharing the
+     * connections, dispatcher and DNS cache of the pool.
+     */
+    OkHttpClient newClient() {
+        return client.clone();
+    }
+
+    /**
+     * Number of requests made, including redirects.
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    /**
+     * Number of requests that reused an already open connection.
+     */
+    public long reusedConnections() {
+        return reused.get();
+    }
+
+    /**
+     * Number of new connections opened.
+     */
+    public long newConnections() {
+        return connects.get();
+    }
+
+    /**
+     * Fraction of the requests that reused a connection, from 0 to 1.
+     */
+    public double reuseRatio() {
+        long n = requests.get();
+        return n > 0 ? (double) reused.get() / n : 0;
+    }
+
+    /**
+     * Average time in milliseconds to open a new connection, including
+     * the host lookup and the TLS handshake.
+     */
+    public long averageConnectTime() {
+        long n = connects.get();
+        return n > 0 ? connectTime.get() / n : 0;
+    }
+
+    public int idleConnections() {
+        return connections.getIdleConnectionCount();
+    }
+
+    public int multiplexedConnections() {
+        return connections.getMultiplexedConnectionCount();
+    }
+
+    public int totalConnections() {
+        return connections.getConnectionCount();
+    }
+
+    public static long dnsHits() {
+        return DNS.hits();
+    }
+
+    public static long dnsMisses() {
+        return DNS.misses();
+    }
+
+    /**
+     * Closes all the idle connections.
+     */
+    public void evictAll() {
+        connections.evictAll();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[requests=" + requests() + ", reuse=" + (int) (reuseRatio() * 100) + "%" +
+                ", connect=" + averageConnectTime() + "ms" +
+                ", idle=" + idleConnections() + "/" + totalConnections() +
+                ", dns=" + dnsHits() + "/" + (dnsHits() + dnsMisses()) + "]";
+    }
+
+    private Semaphore host(String host) {
+        Semaphore s = hosts.get(host);
+        if (s == null) {
+            s = new Semaphore(maxRequestsPerHost);
+            Semaphore old = hosts.putIfAbsent(host, s);
+            if (old != null) {
+                s = old;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Limits the concurrent requests per host, until the response headers
+     * are received, and marks the start of the request to time new
+     * connections. The permit is not tied to the response body, a caller
+     * that drops the body without closing it would hold it forever.
+     */
+    private final class HostInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            if (maxRequestsPerHost <= 0) {
+                mark.get()[0] = System.currentTimeMillis();
+                return chain.proceed(chain.request());
+            }
+
+            Semaphore s = host(chain.request().httpUrl().host());
+            try {
+                if (!s.tryAcquire(OKHTTPClient.DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    throw new InterruptedIOException("Too many requests to host " + chain.request().httpUrl().host());
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException(e.getMessage());
+            }
+
+            // after the wait for the permit, it's not connection time
+            mark.get()[0] = System.currentTimeMillis();
+
+            try {
+                return chain.proceed(chain.request());
+            } finally {
+                s.release();
+            }
+        }
+    }
+
+    /**
+     * Counts the reused connections and the time it took to open the new ones.
+     */
+    private final class ConnectionInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            requests.incrementAndGet();
+
+            long[] m = mark.get();
+            Connection connection = chain.connection();
+            if (connection != null && !seen.add(connection)) {
+                reused.incrementAndGet();
+            } else {
+                connects.incrementAndGet();
+                connectTime.addAndGet(System.currentTimeMillis() - m[0]);
+            }
+
+            try {
+                return chain.proceed(chain.request());
+            } finally {
+                // a redirect starts here
+                m[0] = System.currentTimeMillis();
+            }
+        }
+    }
+}
@@ -59,7 +59,7 @@ public final class JdkHttpClient extends AbstractHttpClient {
 
         try {
             baos = new ByteArrayOutputStream();
-            get(url, baos, timeout, userAgent, referrer, cookies, -1);
+            get(url, baos, timeout, userAgent, referrer, cookies, -1, -1, null, true);
 
             result = baos.toByteArray();
         } catch (Throwable e) {
@@ -79,7 +79,7 @@ public final class JdkHttpClient extends AbstractHttpClient {
 
         try {
             baos = new ByteArrayOutputStream();
-            get(url, baos, timeout, userAgent, referrer, cookie, -1, -1, customHeaders);
+            get(url, baos, timeout, userAgent, referrer, cookie, -1, -1, customHeaders, true);
 
             result = new String(baos.toByteArray(), "UTF-8");
         } catch (java.net.SocketTimeoutException timeoutException) {
@@ -93,6 +93,11 @@ public final class JdkHttpClient extends AbstractHttpClient {
         return result;
     }
 
+    @Override
+    public String get(String url, int timeout, String userAgent, String referrer, String cookie, Map<String, String> customHeaders, OutputStream out) throws IOException {
+        return get(url, out, timeout, userAgent, referrer, cookie, -1, -1, customHeaders, true);
+    }
+
     @Override
     public void save(String url, File file, boolean resume, int timeout, String userAgent, String referrer) throws IOException {
         FileOutputStream fos = null;
@@ -113,6 +118,35 @@ public final class JdkHttpClient extends AbstractHttpClient {
         }
     }
 
+    @Override
+    public InputStream openRange(String url, long start, long end, int timeout, String userAgent, Map<String, List<String>> outputHeaders) throws IOException {
+        final HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+
+        conn.setConnectTimeout(timeout);
+        conn.setReadTimeout(timeout);
+        conn.setRequestProperty("User-Agent", userAgent != null ? userAgent : DEFAULT_USER_AGENT);
+        conn.setInstanceFollowRedirects(true);
+
+        if (conn instanceof HttpsURLConnection) {
+            setHostnameVerifier((HttpsURLConnection) conn);
+        }
+
+        conn.setRequestProperty("Range", "bytes=" + start + "-" + (end >= start ? String.valueOf(end) : ""));
+
+        int httpResponseCode = conn.getResponseCode();
+        copyMultiMap(conn.getHeaderFields(), outputHeaders);
+
+        if (httpResponseCode != HttpURLConnection.HTTP_PARTIAL) {
+            closeQuietly(conn);
+            if (httpResponseCode == HttpURLConnection.HTTP_OK) {
+                throw new RangeNotSupportedException("Server does not support bytes range request");
+            }
+            throw new ResponseCodeNotSupportedException(httpResponseCode);
+        }
+
+        return conn.getInputStream();
+    }
+
     /**
      * Post a form Content-type: application/x-www-form-urlencoded
      */
@@ -232,10 +266,18 @@ public final class JdkHttpClient extends AbstractHttpClient {
     }
 
     private void get(String url, OutputStream out, int timeout, String userAgent, String referrer, String cookie, long rangeStart) throws IOException {
-        get(url, out, timeout, userAgent, referrer, cookie, rangeStart, -1, null);
+        get(url, out, timeout, userAgent, referrer, cookie, rangeStart, -1, null, false);
     }
 
-    private void get(String url, OutputStream out, int timeout, String userAgent, String referrer, String cookie, long rangeStart, long rangeLength, final Map<String, String> customHeaders) throws IOException {
+    /**
+     * The connection is left open for the JDK keep-alive cache, unless the
+     * response is not fully read. Use {@code gzip} only for responses that
+     * are not saved to a file, the content length and the ranges refer to
+     * the compressed bytes.
+     *
+     * @return the content type of the response, or {@code null} if unknown
+     */
+    private String get(String url, OutputStream out, int timeout, String userAgent, String referrer, String cookie, long rangeStart, long rangeLength, final Map<String, String> customHeaders, boolean gzip) throws IOException {
         canceled = false;
         final URL u = new URL(url);
         final URLConnection conn = u.openConnection();
@@ -267,6 +309,8 @@ public final class JdkHttpClient extends AbstractHttpClient {
 
         if (rangeStart > 0) {
             conn.setRequestProperty("Range", buildRange(rangeStart, rangeLength));
+        } else if (gzip) {
+            conn.setRequestProperty("Accept-Encoding", "gzip");
         }
 
         if (customHeaders != null && customHeaders.size() > 0) {
@@ -290,6 +334,7 @@ public final class JdkHttpClient extends AbstractHttpClient {
         onHeaders(conn.getHeaderFields());
         checkRangeSupport(rangeStart, conn);
 
+        boolean complete = false;
         try {
             byte[] b = new byte[4096];
             int n;
@@ -305,14 +350,19 @@ public final class JdkHttpClient extends AbstractHttpClient {
             if (canceled) {
                 onCancel();
             } else {
+                complete = true;
                 onComplete();
             }
         } catch (Exception e) {
             onError(e);
         } finally {
             closeQuietly(in);
-            closeQuietly(conn);
+            if (!complete) {
+                closeQuietly(conn);
+            }
         }
+
+        return conn.getContentType();
     }
 
     private void post(String url, OutputStream out, int timeout, String userAgent, Map<String, String> formData) throws IOException {
@@ -32,6 +32,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.util.List;
 import java.util.Map;
@@ -47,9 +48,16 @@ public class OKHTTPClient extends AbstractHttpClient {
 
     private static final Logger LOG = Logger.getLogger(OKHTTPClient.class);
     private final ThreadPool pool;
+    private final HttpConnectionPool connectionPool;
 
     public OKHTTPClient(final ThreadPool pool) {
         this.pool = pool;
+        this.connectionPool = null;
+    }
+
+    public OKHTTPClient(final HttpConnectionPool connectionPool) {
+        this.pool = null;
+        this.connectionPool = connectionPool;
     }
 
     @Override
@@ -63,8 +71,12 @@ public class OKHTTPClient extends AbstractHttpClient {
                 head().
                 build();
         Response resp = okHttpClient.newCall(req).execute();
-        copyMultiMap(resp.headers().toMultimap(), outputHeaders);
-        return resp.code();
+        try {
+            copyMultiMap(resp.headers().toMultimap(), outputHeaders);
+            return resp.code();
+        } finally {
+            closeQuietly(resp.body());
+        }
     }
 
     @Override
@@ -109,6 +121,37 @@ public class OKHTTPClient extends AbstractHttpClient {
         return result;
     }
 
+    @Override
+    public String get(String url, int timeout, String userAgent, String referrer, String cookie, Map<String, String> customHeaders, OutputStream out) throws IOException {
+        final OkHttpClient okHttpClient = newOkHttpClient();
+        final Request.Builder builder = prepareRequestBuilder(okHttpClient, url, timeout, userAgent, referrer, cookie);
+        addCustomHeaders(customHeaders, builder);
+        ResponseBody responseBody = null;
+        try {
+            final Response response = getSyncResponse(okHttpClient, builder);
+            responseBody = response.body();
+
+            if (!response.isSuccessful()) {
+                throw new ResponseCodeNotSupportedException(response.code());
+            }
+
+            final InputStream in = responseBody.byteStream();
+
+            byte[] b = new byte[4096];
+            int n;
+            while ((n = in.read(b, 0, b.length)) != -1) {
+                out.write(b, 0, n);
+            }
+
+            MediaType contentType = responseBody.contentType();
+            return contentType != null ? contentType.toString() : null;
+        } finally {
+            if (responseBody != null) {
+                closeQuietly(responseBody);
+            }
+        }
+    }
+
     @Override
     public void save(String url, File file, boolean resume, int timeout, String userAgent, String referrer) throws IOException {
         FileOutputStream fos;
@@ -130,16 +173,20 @@ public class OKHTTPClient extends AbstractHttpClient {
         onHeaders(headers);
         final InputStream in = response.body().byteStream();
 
-        byte[] b = new byte[4096];
-        int n;
-        while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
-            if (!canceled) {
-                fos.write(b, 0, n);
-                onData(b, 0, n);
+        try {
+            byte[] b = new byte[SAVE_BUFFER_SIZE];
+            int n;
+            while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
+                if (!canceled) {
+                    fos.write(b, 0, n);
+                    onData(b, 0, n);
+                }
             }
+        } finally {
+            // returns the connection to the pool
+            closeQuietly(fos);
+            closeQuietly(response.body());
         }
-        closeQuietly(fos);
-        closeQuietly(response.body());
         if (canceled) {
             onCancel();
         } else {
@@ -147,6 +194,26 @@ public class OKHTTPClient extends AbstractHttpClient {
         }
     }
 
+    @Override
+    public InputStream openRange(String url, long start, long end, int timeout, String userAgent, Map<String, List<String>> outputHeaders) throws IOException {
+        final OkHttpClient okHttpClient = newOkHttpClient();
+        final Request.Builder builder = prepareRequestBuilder(okHttpClient, url, timeout, userAgent, null, null);
+        addRangeHeader(start, end, builder);
+        final Response response = getSyncResponse(okHttpClient, builder);
+        copyMultiMap(response.headers().toMultimap(), outputHeaders);
+
+        int code = response.code();
+        if (code != HttpURLConnection.HTTP_PARTIAL) {
+            closeQuietly(response.body());
+            if (code == HttpURLConnection.HTTP_OK) {
+                throw new RangeNotSupportedException("Server does not support bytes range request");
+            }
+            throw new ResponseCodeNotSupportedException(code);
+        }
+
+        return response.body().byteStream();
+    }
+
     private void onHeaders(Headers headers) {
         if (getListener() != null) {
             try {
@@ -229,7 +296,6 @@ public class OKHTTPClient extends AbstractHttpClient {
         okHttpClient.setConnectTimeout(timeout, TimeUnit.MILLISECONDS);
         okHttpClient.setReadTimeout(timeout, TimeUnit.MILLISECONDS);
         okHttpClient.setWriteTimeout(timeout, TimeUnit.MILLISECONDS);
-        okHttpClient.interceptors().clear();
         Request.Builder builder = new Request.Builder();
         builder.url(url);
         if (!StringUtils.isNullOrEmpty(userAgent)) {
@@ -262,7 +328,7 @@ public class OKHTTPClient extends AbstractHttpClient {
     }
 
     private OkHttpClient newOkHttpClient() {
-        return newOkHttpClient(pool);
+        return connectionPool != null ? connectionPool.newClient() : newOkHttpClient(pool);
     }
 
     public static OkHttpClient newOkHttpClient(ThreadPool pool) {
@@ -278,8 +344,7 @@ public class OKHTTPClient extends AbstractHttpClient {
         });
         searchClient.setSslSocketFactory(CUSTOM_SSL_SOCKET_FACTORY);
         searchClient.setConnectTimeout(DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
-        // Maybe we should use a custom connection pool here. Using default.
-        //searchClient.setConnectionPool(?);
+        // see HttpConnectionPool for the shared connections
         return searchClient;
     }
 
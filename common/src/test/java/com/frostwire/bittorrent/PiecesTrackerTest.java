@@ -0,0 +1,109 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class PiecesTrackerTest {
+
+    // 3 files of 150, 0 and 170 bytes, in 100 bytes pieces
+    private static PiecesTracker newTracker() {
+        return new PiecesTracker(4, 100, 320, new long[]{0, 150, 150}, new long[]{150, 0, 170});
+    }
+
+    @Test
+    public void testDownloadedBytes() {
+        PiecesTracker tracker = newTracker();
+
+        tracker.setComplete(1, true);
+        assertEquals(1, tracker.getNumComplete());
+        assertEquals(50, tracker.getDownloadedBytes(0));
+        assertEquals(0, tracker.getDownloadedBytes(1));
+        assertEquals(50, tracker.getDownloadedBytes(2));
+
+        // already complete, nothing changes
+        tracker.setComplete(1, true);
+        assertEquals(1, tracker.getNumComplete());
+        assertEquals(50, tracker.getDownloadedBytes(0));
+
+        tracker.setComplete(0, true);
+        tracker.setComplete(3, true);
+        assertEquals(150, tracker.getDownloadedBytes(0));
+        assertEquals(50 + 20, tracker.getDownloadedBytes(2));
+
+        tracker.setComplete(1, false);
+        assertEquals(2, tracker.getNumComplete());
+        assertEquals(100, tracker.getDownloadedBytes(0));
+        assertEquals(20, tracker.getDownloadedBytes(2));
+    }
+
+    @Test
+    public void testSequentialDownloadedBytes() {
+        PiecesTracker tracker = newTracker();
+
+        tracker.setComplete(2, true);
+        assertEquals(0, tracker.getSequentialDownloadedBytes(0));
+        assertEquals(0, tracker.getSequentialDownloadedBytes(2));
+
+        tracker.setComplete(1, true);
+        assertEquals(0, tracker.getSequentialDownloadedBytes(0));
+        assertEquals(150, tracker.getSequentialDownloadedBytes(2));
+
+        tracker.setComplete(0, true);
+        assertEquals(150, tracker.getSequentialDownloadedBytes(0));
+
+        tracker.setComplete(3, true);
+        assertEquals(170, tracker.getSequentialDownloadedBytes(2));
+    }
+
+    @Test
+    public void testBulkLoad() {
+        int numPieces = 200;
+        PiecesTracker tracker = new PiecesTracker(numPieces, 10, numPieces * 10, new long[]{0}, new long[]{numPieces * 10});
+
+        BitSet pieces = new BitSet(numPieces);
+        pieces.set(0, 130);
+        tracker.setComplete(pieces, false);
+        assertEquals(130, tracker.getNumComplete());
+        assertEquals(1300, tracker.getDownloadedBytes(0));
+        assertEquals(1300, tracker.getSequentialDownloadedBytes(0));
+
+        // a new piece from the alerts, kept without clearing missing
+        tracker.setComplete(150, true);
+        tracker.setComplete(pieces, false);
+        assertTrue(tracker.isComplete(150));
+        assertEquals(131, tracker.getNumComplete());
+
+        // a recheck found less pieces
+        pieces.clear(64, 130);
+        tracker.setComplete(pieces, true);
+        assertFalse(tracker.isComplete(150));
+        assertFalse(tracker.isComplete(64));
+        assertEquals(64, tracker.getNumComplete());
+        assertEquals(640, tracker.getSequentialDownloadedBytes(0));
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class ResumeDataStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutAndReopen() throws Exception {
+        File f = new File(folder.getRoot(), "resume.log");
+
+        ResumeDataStore store = new ResumeDataStore(f);
+        store.open();
+        store.putTorrentData("a", new byte[]{1, 2}, "/torrents/a.torrent");
+        store.putResumeData("a", new byte[]{3}, "/data");
+        store.putTorrentData("b", new byte[]{4}, "/torrents/b.torrent");
+
+        // readable before the flush
+        assertArrayEquals(new byte[]{3}, store.resumeData("a"));
+        store.close();
+
+        store = new ResumeDataStore(f);
+        store.open();
+        assertEquals(Arrays.asList("a", "b"), store.infoHashes());
+        assertArrayEquals(new byte[]{1, 2}, store.torrentData("a"));
+        assertArrayEquals(new byte[]{3}, store.resumeData("a"));
+        assertEquals(new File("/data"), store.savePath("a"));
+        assertEquals(new File("/torrents/b.torrent"), store.torrentPath("b"));
+        assertNull(store.resumeData("b"));
+        assertNull(store.savePath("b"));
+        store.close();
+    }
+
+    @Test
+    public void testRemoveAndCompact() throws Exception {
+        File f = new File(folder.getRoot(), "resume.log");
+
+        ResumeDataStore store = new ResumeDataStore(f);
+        store.open();
+        store.putTorrentData("a", new byte[100], "t");
+        for (int i = 0; i < 10; i++) {
+            store.putResumeData("a", new byte[]{(byte) i}, "d");
+            store.flush();
+        }
+        store.putTorrentData("b", new byte[100], "t");
+        store.remove("b");
+        store.flush();
+
+        long size = store.size();
+        store.compact();
+        assertTrue(store.size() < size);
+        assertEquals(store.liveSize(), store.size());
+        assertArrayEquals(new byte[]{9}, store.resumeData("a"));
+        assertFalse(store.contains("b"));
+        store.close();
+
+        store = new ResumeDataStore(f);
+        store.open();
+        assertEquals(Arrays.asList("a"), store.infoHashes());
+        assertArrayEquals(new byte[]{9}, store.resumeData("a"));
+        store.close();
+    }
+
+    @Test
+    public void testTornTail() throws Exception {
+        File f = new File(folder.getRoot(), "resume.log");
+
+        ResumeDataStore store = new ResumeDataStore(f);
+        store.open();
+        store.putTorrentData("a", new byte[]{1}, "t");
+        store.flush();
+        long valid = store.size();
+        store.putTorrentData("b", new byte[]{2, 3, 4}, "t");
+        store.close();
+
+        // simulates a crash in the middle of the last write
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.setLength(raf.length() - 2);
+        raf.close();
+
+        store = new ResumeDataStore(f);
+        store.open();
+        assertEquals(Arrays.asList("a"), store.infoHashes());
+        assertEquals(valid, store.size());
+
+        // the log is still usable after the truncation
+        store.putTorrentData("c", new byte[]{5}, "t");
+        store.close();
+
+        store = new ResumeDataStore(f);
+        store.open();
+        assertEquals(Arrays.asList("a", "c"), store.infoHashes());
+        store.close();
+    }
+
+    @Test
+    public void testUnknownRecord() throws Exception {
+        File f = new File(folder.getRoot(), "resume.log");
+
+        ResumeDataStore store = new ResumeDataStore(f);
+        store.open();
+        assertFalse(new ResumeDataStore(f).flush()); // not open
+        store.putTorrentData("a", new byte[]{1}, "t");
+        assertTrue(store.flush());
+        store.close();
+
+        // a valid record of a type from a newer version
+        byte[] payload = {42, 0, 1, 'x'};
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.seek(raf.length());
+        raf.writeInt(payload.length);
+        raf.writeInt((int) crc.getValue());
+        raf.write(payload);
+        raf.close();
+
+        store = new ResumeDataStore(f);
+        store.open();
+        store.putTorrentData("b", new byte[]{2}, "t");
+        store.close();
+
+        store = new ResumeDataStore(f);
+        store.open();
+        assertEquals(Arrays.asList("a", "b"), store.infoHashes());
+        assertArrayEquals(new byte[]{2}, store.torrentData("b"));
+        store.close();
+    }
+
+    @Test
+    public void testInterruptedCompaction() throws Exception {
+        File f = new File(folder.getRoot(), "resume.log");
+        File tmp = new File(folder.getRoot(), "resume.log.tmp");
+
+        ResumeDataStore store = new ResumeDataStore(f);
+        store.open();
+        store.putTorrentData("a", new byte[]{1}, "t");
+        store.close();
+
+        // compacted log written but not renamed yet
+        assertTrue(f.renameTo(tmp));
+
+        store = new ResumeDataStore(f);
+        store.open();
+        assertFalse(tmp.exists());
+        assertArrayEquals(new byte[]{1}, store.torrentData("a"));
+        store.close();
+    }
+}
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.LinkedList;
 
 /**
@@ -45,9 +46,10 @@ public class FragmentedDemuxTest {
         final LinkedList<TimeToSampleBox.Entry> sttsList = new LinkedList<>();
         final LinkedList<CompositionOffsetBox.Entry> cttsList = new LinkedList<>();
         final LinkedList<SyncSampleBox.Entry> stssList = new LinkedList<>();
-        final LinkedList<SampleSizeBox.Entry> stszList = new LinkedList<>();
-        final LinkedList<SampleToChunkBox.Entry> stscList = new LinkedList<>();
-        final LinkedList<ChunkOffsetBox.Entry> stcoList = new LinkedList<>();
+        final IntArray stszList = new IntArray();
+        final IntArray stscFirstChunk = new IntArray();
+        final IntArray stscSamplesPerChunk = new IntArray();
+        final IntArray stcoList = new IntArray();
 
         final ByteBuffer buf = ByteBuffer.allocate(10 * 1024);
 
@@ -87,15 +89,10 @@ public class FragmentedDemuxTest {
                 TrackRunBox trun = lastTrun;
                 TrackFragmentHeaderBox tfhd = trun.parent.findFirst(Box.tfhd);
 
-                SampleToChunkBox.Entry e2 = new SampleToChunkBox.Entry();
-                e2.first_chunk = chunkNumber;
-                e2.samples_per_chunk = trun.sample_count;
-                e2.sample_description_index = 1;
-                stscList.add(e2);
+                stscFirstChunk.add(chunkNumber);
+                stscSamplesPerChunk.add(trun.sample_count);
 
-                ChunkOffsetBox.Entry e3 = new ChunkOffsetBox.Entry();
-                e3.chunk_offset = chunkOffset;
-                stcoList.add(e3);
+                stcoList.add(chunkOffset);
 
                 boolean first = true;
                 for (TrackRunBox.Entry entry : trun.entries) {
@@ -137,9 +134,7 @@ public class FragmentedDemuxTest {
                         }
                     }
 
-                    SampleSizeBox.Entry e1 = new SampleSizeBox.Entry();
-                    e1.entry_size = entry.sample_size;
-                    stszList.add(e1);
+                    stszList.add(entry.sample_size);
 
                     final int sampleFlags;
                     if (trun.sampleFlagsPresent()) {
@@ -202,17 +197,20 @@ public class FragmentedDemuxTest {
         if (stsz != null) {
             stsz.sample_size = 0;
             stsz.sample_count = stszList.size();
-            stsz.entries = stszList.toArray(new SampleSizeBox.Entry[0]);
+            stsz.entry_size = stszList.toArray();
         }
         SampleToChunkBox stsc = stbl.findFirst(Box.stsc);
         if (stsc != null) {
-            stsc.entry_count = stscList.size();
-            stsc.entries = stscList.toArray(new SampleToChunkBox.Entry[0]);
+            stsc.entry_count = stscFirstChunk.size();
+            stsc.first_chunk = stscFirstChunk.toArray();
+            stsc.samples_per_chunk = stscSamplesPerChunk.toArray();
+            stsc.sample_description_index = new int[stsc.entry_count];
+            Arrays.fill(stsc.sample_description_index, 1);
         }
         ChunkOffsetBox stco = stbl.findFirst(Box.stco);
         if (stco != null) {
             stco.entry_count = stcoList.size();
-            stco.entries = stcoList.toArray(new ChunkOffsetBox.Entry[0]);
+            stco.chunk_offset = stcoList.toArray();
         }
 
         Box mvex = Box.findFirst(boxes, Box.mvex);
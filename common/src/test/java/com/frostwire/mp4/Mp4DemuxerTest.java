@@ -0,0 +1,92 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2016, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.mp4;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Extracts the audio track of a synthetic interleaved mp4 and checks the
+ * output mdat and chunk offsets against the data written in each chunk.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public class Mp4DemuxerTest {
+
+    private static final int CHUNKS = 8;
+    private static final long CHUNK_PAIR = Mp4Fixtures.VIDEO_SAMPLES_PER_CHUNK * Mp4Fixtures.VIDEO_SAMPLE_SIZE +
+            Mp4Fixtures.AUDIO_SAMPLES_PER_CHUNK * Mp4Fixtures.AUDIO_SAMPLE_SIZE;
+    private static final long AUDIO_CHUNK = Mp4Fixtures.AUDIO_SAMPLES_PER_CHUNK * Mp4Fixtures.AUDIO_SAMPLE_SIZE;
+
+    @Test
+    public void testAudio() throws IOException {
+        testAudio(false);
+    }
+
+    @Test
+    public void testAudioFromLargeOffsets() throws IOException {
+        testAudio(true);
+    }
+
+    private static void testAudio(boolean large) throws IOException {
+        File input = Mp4Fixtures.interleaved(CHUNKS * CHUNK_PAIR, large);
+        File output = File.createTempFile("mp4demux", ".m4a");
+        output.deleteOnExit();
+
+        Mp4Demuxer.audio(input, output, Mp4Info.audio("ti", "au", "al", null), null);
+
+        RandomAccessFile out = new RandomAccessFile(output, "r");
+        try {
+            LinkedList<Box> head = IsoFile.head(out, ByteBuffer.allocate(100 * 1024));
+
+            MovieBox moov = Box.findFirst(head, Box.moov);
+            assertEquals(1, moov.<TrackBox>find(Box.trak).size());
+
+            MediaDataBox mdat = Box.findFirst(head, Box.mdat);
+            assertEquals(CHUNKS * AUDIO_CHUNK, mdat.length());
+
+            // the output offsets fit in 32 bits, always a stco
+            assertNull(Box.findFirst(head, Box.co64));
+            ChunkOffsetBox stco = Box.findFirst(head, Box.stco);
+            assertEquals(CHUNKS, stco.entry_count);
+
+            // the mdat data goes at the end of the file, chunk after chunk
+            assertEquals(out.length() - CHUNKS * AUDIO_CHUNK, stco.offset(0));
+            byte[] chunk = new byte[(int) AUDIO_CHUNK];
+            for (int i = 0; i < CHUNKS; i++) {
+                assertEquals(stco.offset(0) + i * AUDIO_CHUNK, stco.offset(i));
+
+                out.seek(stco.offset(i));
+                out.readFully(chunk);
+                for (byte b : chunk) {
+                    assertEquals((byte) i, b);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
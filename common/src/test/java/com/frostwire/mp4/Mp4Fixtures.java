@@ -0,0 +1,171 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.mp4;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * Writes a synthetic, non fragmented, mp4 with interleaved video and audio
+ * chunks. Only the boxes the demuxer needs are present, the samples are
+ * filled with the track and chunk numbers, so the output can be checked.
+ * Used by the tests and by the benchmarks.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class Mp4Fixtures {
+
+    static final int VIDEO_SAMPLES_PER_CHUNK = 10;
+    static final int VIDEO_SAMPLE_SIZE = 12 * 1024;
+    static final int AUDIO_SAMPLES_PER_CHUNK = 20;
+    static final int AUDIO_SAMPLE_SIZE = 2 * 1024;
+
+    private Mp4Fixtures() {
+    }
+
+    static File interleaved(long size) throws IOException {
+        return interleaved(size, false);
+    }
+
+    /**
+     * @param large write the chunk offsets in a co64 box instead of a stco
+     */
+    static File interleaved(long size, boolean large) throws IOException {
+        int chunkPair = VIDEO_SAMPLES_PER_CHUNK * VIDEO_SAMPLE_SIZE + AUDIO_SAMPLES_PER_CHUNK * AUDIO_SAMPLE_SIZE;
+        int chunks = (int) (size / chunkPair);
+
+        File f = File.createTempFile("mp4fixture", ".mp4");
+        f.deleteOnExit();
+
+        LinkedList<Box> boxes = new LinkedList<>();
+
+        FileTypeBox ftyp = new FileTypeBox();
+        ftyp.major_brand = Box.isom;
+        ftyp.compatible_brands = new int[]{Box.isom, Box.mp42};
+        boxes.add(ftyp);
+
+        MovieBox moov = new MovieBox();
+        MovieHeaderBox mvhd = new MovieHeaderBox();
+        mvhd.timescale = 1000;
+        mvhd.next_track_ID = 3;
+        moov.boxes.add(mvhd);
+        TrackBox video = trak(1, Box.vide, new VideoMediaHeaderBox(), chunks, VIDEO_SAMPLES_PER_CHUNK, VIDEO_SAMPLE_SIZE, large);
+        TrackBox audio = trak(2, Box.soun, new SoundMediaHeaderBox(), chunks, AUDIO_SAMPLES_PER_CHUNK, AUDIO_SAMPLE_SIZE, large);
+        moov.boxes.add(video);
+        moov.boxes.add(audio);
+        boxes.add(moov);
+
+        MediaDataBox mdat = new MediaDataBox();
+        mdat.length((long) chunks * chunkPair);
+        boxes.add(mdat);
+
+        long offset = ContainerBox.length(boxes) - mdat.length();
+        for (int i = 0; i < chunks; i++) {
+            chunkOffset(video, i, offset);
+            offset += VIDEO_SAMPLES_PER_CHUNK * VIDEO_SAMPLE_SIZE;
+            chunkOffset(audio, i, offset);
+            offset += AUDIO_SAMPLES_PER_CHUNK * AUDIO_SAMPLE_SIZE;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            OutputChannel out = new OutputChannel(raf.getChannel());
+            ByteBuffer buf = ByteBuffer.allocate(256 * 1024);
+            IsoMedia.write(out, boxes, buf, IsoMedia.OnBoxListener.ALL);
+
+            byte[] v = new byte[VIDEO_SAMPLES_PER_CHUNK * VIDEO_SAMPLE_SIZE];
+            byte[] a = new byte[AUDIO_SAMPLES_PER_CHUNK * AUDIO_SAMPLE_SIZE];
+            for (int i = 0; i < chunks; i++) {
+                Arrays.fill(v, (byte) 'v');
+                Arrays.fill(a, (byte) i);
+                raf.write(v);
+                raf.write(a);
+            }
+        } finally {
+            raf.close();
+        }
+
+        return f;
+    }
+
+    private static void chunkOffset(TrackBox trak, int index, long offset) {
+        ChunkOffsetBox stco = trak.findFirst(Box.stco);
+        if (stco != null) {
+            stco.chunk_offset[index] = (int) offset;
+        } else {
+            ChunkLargeOffsetBox co64 = trak.findFirst(Box.co64);
+            co64.chunk_offset[index] = offset;
+        }
+    }
+
+    private static TrackBox trak(int id, int handler, Box mhd, int chunks, int samplesPerChunk, int sampleSize, boolean large) {
+        TrackBox trak = new TrackBox();
+        TrackHeaderBox tkhd = new TrackHeaderBox();
+        tkhd.trackId(id);
+        trak.boxes.add(tkhd);
+
+        MediaBox mdia = new MediaBox();
+        trak.boxes.add(mdia);
+        MediaHeaderBox mdhd = new MediaHeaderBox();
+        mdhd.timescale = 1000;
+        mdia.boxes.add(mdhd);
+        HandlerBox hdlr = new HandlerBox();
+        hdlr.handler_type = handler;
+        mdia.boxes.add(hdlr);
+
+        MediaInformationBox minf = new MediaInformationBox();
+        mdia.boxes.add(minf);
+        minf.boxes.add(mhd);
+
+        SampleTableBox stbl = new SampleTableBox();
+        minf.boxes.add(stbl);
+
+        SampleToChunkBox stsc = new SampleToChunkBox();
+        stsc.entry_count = 1;
+        stsc.first_chunk = new int[]{1};
+        stsc.samples_per_chunk = new int[]{samplesPerChunk};
+        stsc.sample_description_index = new int[]{1};
+        stbl.boxes.add(stsc);
+
+        // explicit sizes, to have a full sample size table
+        SampleSizeBox stsz = new SampleSizeBox();
+        stsz.sample_count = chunks * samplesPerChunk;
+        stsz.entry_size = new int[stsz.sample_count];
+        Arrays.fill(stsz.entry_size, sampleSize);
+        stbl.boxes.add(stsz);
+
+        if (large) {
+            ChunkLargeOffsetBox co64 = new ChunkLargeOffsetBox();
+            co64.entry_count = chunks;
+            co64.chunk_offset = new long[chunks];
+            stbl.boxes.add(co64);
+        } else {
+            ChunkOffsetBox stco = new ChunkOffsetBox();
+            stco.entry_count = chunks;
+            stco.chunk_offset = new int[chunks];
+            stbl.boxes.add(stco);
+        }
+
+        return trak;
+    }
+}
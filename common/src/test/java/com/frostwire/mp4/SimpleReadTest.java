@@ -227,12 +227,12 @@ public class SimpleReadTest {
         int chunkIdx = 0;
         int sampleIdx = 0;
         for (int i = 0; i < stsc.entry_count; i++) {
-            int a = stsc.entries[i].first_chunk;
-            int b = i < stsc.entry_count - 1 ? stsc.entries[i + 1].first_chunk : a + 1;
+            int a = stsc.first_chunk[i];
+            int b = i < stsc.entry_count - 1 ? stsc.first_chunk[i + 1] : a + 1;
             for (int j = a; j < b; j++) {
                 int sampleSize = 0;
-                for (int k = 0; k < stsc.entries[i].samples_per_chunk; k++) {
-                    sampleSize += stsz.sample_size != 0 ? stsz.sample_size : stsz.entries[sampleIdx].entry_size;
+                for (int k = 0; k < stsc.samples_per_chunk[i]; k++) {
+                    sampleSize += stsz.size(sampleIdx);
                     sampleIdx++;
                 }
                 chunkSize[chunkIdx] += sampleSize;
@@ -252,7 +252,7 @@ public class SimpleReadTest {
         for (int i = 0; i < stco.entry_count; i++) {
             int pos = (int) chIn.count();
 
-            int skp = stco.entries[i].chunk_offset - pos;
+            int skp = stco.chunk_offset[i] - pos;
             IO.skip(chIn, skp, buf);
             IO.skip(chOut, skp, buf);
 
@@ -308,12 +308,12 @@ public class SimpleReadTest {
         int chunkIdx = 0;
         int sampleIdx = 0;
         for (int i = 0; i < stsc.entry_count; i++) {
-            int a = stsc.entries[i].first_chunk;
-            int b = i < stsc.entry_count - 1 ? stsc.entries[i + 1].first_chunk : a + 1;
+            int a = stsc.first_chunk[i];
+            int b = i < stsc.entry_count - 1 ? stsc.first_chunk[i + 1] : a + 1;
             for (int j = a; j < b; j++) {
                 int sampleSize = 0;
-                for (int k = 0; k < stsc.entries[i].samples_per_chunk; k++) {
-                    sampleSize += stsz.sample_size != 0 ? stsz.sample_size : stsz.entries[sampleIdx].entry_size;
+                for (int k = 0; k < stsc.samples_per_chunk[i]; k++) {
+                    sampleSize += stsz.size(sampleIdx);
                     sampleIdx++;
                 }
                 chunkSize[chunkIdx] += sampleSize;
@@ -324,8 +324,8 @@ public class SimpleReadTest {
         int[] chunkOffsetOrg = new int[stco.entry_count];
         int offset = (int) (ContainerBox.length(boxes) - mdat.length());
         for (int i = 0; i < stco.entry_count; i++) {
-            chunkOffsetOrg[i] = stco.entries[i].chunk_offset;
-            stco.entries[i].chunk_offset = offset;
+            chunkOffsetOrg[i] = stco.chunk_offset[i];
+            stco.chunk_offset[i] = offset;
             offset += chunkSize[i];
         }
 
@@ -0,0 +1,106 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.platform;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class FileSystemMoveTest {
+
+    DefaultFileSystem fs;
+    File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        fs = new DefaultFileSystem();
+        dir = File.createTempFile("frostwire", "move");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testRename() throws Exception {
+        byte[] data = randomData(1024);
+        File src = new File(dir, "src.bin");
+        File dest = new File(dir, "sub/dest.bin");
+        FileUtils.writeByteArrayToFile(src, data);
+
+        assertTrue(fs.move(src, dest, null));
+        assertFalse(src.exists());
+        assertArrayEquals(data, FileUtils.readFileToByteArray(dest));
+
+        // replaces the destination
+        FileUtils.writeByteArrayToFile(src, new byte[]{1, 2, 3});
+        assertTrue(fs.move(src, dest, null));
+        assertArrayEquals(new byte[]{1, 2, 3}, FileUtils.readFileToByteArray(dest));
+    }
+
+    @Test
+    public void testTransfer() throws Exception {
+        byte[] data = randomData(20 * 1024 * 1024 + 123);
+        final File src = new File(dir, "src.bin");
+        File dest = new File(dir, "dest.bin");
+        FileUtils.writeByteArrayToFile(src, data);
+
+        final AtomicLong progress = new AtomicLong(0);
+        FileInputStream in = new FileInputStream(src);
+        FileOutputStream out = new FileOutputStream(dest);
+        try {
+            DefaultFileSystem.transferFile(in.getChannel(), out.getChannel(), new MoveListener() {
+                @Override
+                public void onProgress(long bytesMoved, long totalBytes) {
+                    assertTrue(bytesMoved > progress.get());
+                    assertEquals(src.length(), totalBytes);
+                    progress.set(bytesMoved);
+                }
+            });
+        } finally {
+            in.close();
+            out.close();
+        }
+
+        assertEquals(data.length, progress.get());
+        assertArrayEquals(data, FileUtils.readFileToByteArray(dest));
+    }
+
+    private static byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class MemoryCrawlCacheTest {
+
+    @Test
+    public void testHitAndMiss() {
+        MapCrawlCache backing = new MapCrawlCache();
+        backing.put("a", new byte[]{1});
+
+        MemoryCrawlCache cache = new MemoryCrawlCache(backing, 1024 * 1024);
+
+        assertArrayEquals(new byte[]{1}, cache.get("a"));
+        assertEquals(1, cache.misses());
+        assertEquals(0, cache.hits());
+
+        // entries read from the backing cache are kept in memory
+        assertArrayEquals(new byte[]{1}, cache.get("a"));
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+
+        cache.put("a", new byte[]{2});
+        assertArrayEquals(new byte[]{2}, cache.get("a"));
+        assertEquals(2, cache.hits());
+
+        assertNull(cache.get("b"));
+        assertEquals(2, cache.misses());
+
+        // a remove doesn't leave the promoted copy behind
+        cache.remove("a");
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testWriteBehindAndRemove() {
+        MapCrawlCache backing = new MapCrawlCache();
+        MemoryCrawlCache cache = new MemoryCrawlCache(backing, 1024 * 1024);
+
+        cache.put("a", new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get("a"));
+        assertEquals(1 + 3, cache.weight());
+
+        // remove waits for the pending writes
+        cache.put("b", new byte[]{4});
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertArrayEquals(new byte[]{4}, backing.get("b"));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testExpirationAndNegative() throws InterruptedException {
+        MapCrawlCache backing = new MapCrawlCache();
+        MemoryCrawlCache cache = new MemoryCrawlCache(backing, 1024 * 1024);
+
+        cache.put("a", new byte[]{1}, 50);
+        cache.putNegative("b", 50);
+        assertArrayEquals(new byte[]{1}, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertTrue(cache.isNegative("b"));
+        assertFalse(cache.isNegative("a"));
+
+        Thread.sleep(100);
+
+        assertNull(cache.get("a"));
+        assertFalse(cache.isNegative("b"));
+    }
+
+    @Test
+    public void testEviction() {
+        MapCrawlCache backing = new MapCrawlCache();
+        // 16 shards of 10 bytes each
+        MemoryCrawlCache cache = new MemoryCrawlCache(backing, 16 * 10);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, new byte[5]);
+        }
+
+        assertTrue(cache.weight() <= 16 * 10);
+        assertTrue(cache.evictions() > 0);
+
+        cache.clear(); // flush
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, new byte[5]);
+        }
+        cache.remove("none"); // flush
+        assertEquals(100, cache.size());
+    }
+
+    // not thread safe, like the real backing caches
+    private static final class MapCrawlCache implements CrawlCache {
+
+        private final Map<String, byte[]> map = new HashMap<>();
+        private final Map<String, Long> expiration = new HashMap<>();
+
+        @Override
+        public byte[] get(String key) {
+            return alive(key) ? map.get(key) : null;
+        }
+
+        @Override
+        public void put(String key, byte[] data) {
+            put(key, data, 0);
+        }
+
+        @Override
+        public void put(String key, byte[] data, long ttl) {
+            map.put(key, data);
+            expiration.put(key, ttl > 0 ? System.currentTimeMillis() + ttl : 0);
+        }
+
+        @Override
+        public void putNegative(String key, long ttl) {
+            put(key, null, ttl);
+        }
+
+        @Override
+        public boolean isNegative(String key) {
+            return alive(key) && map.containsKey(key) && map.get(key) == null;
+        }
+
+        @Override
+        public void remove(String key) {
+            map.remove(key);
+            expiration.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+            expiration.clear();
+        }
+
+        private boolean alive(String key) {
+            Long t = expiration.get(key);
+            return t != null && (t == 0 || t > System.currentTimeMillis());
+        }
+
+        @Override
+        public long size() {
+            return map.size();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class PageBufferTest {
+
+    private static final String PAGE = "<html><div id=\"results\"><a>Caf\u00e9 del Mar</a></div></html>";
+
+    @Test
+    public void testContentTypeCharset() {
+        assertEquals(Charset.forName("UTF-8"), PageBuffer.parseCharset(null));
+        assertEquals(Charset.forName("UTF-8"), PageBuffer.parseCharset("text/html"));
+        assertEquals(Charset.forName("UTF-8"), PageBuffer.parseCharset("text/html; charset=bogus-charset"));
+        assertEquals(Charset.forName("ISO-8859-1"), PageBuffer.parseCharset("text/html; charset=\"ISO-8859-1\""));
+        assertEquals(Charset.forName("windows-1252"), PageBuffer.parseCharset("text/html;Charset=windows-1252"));
+    }
+
+    @Test
+    public void testLatin1Page() {
+        assertEquals("<div id=\"results\"><a>Caf\u00e9 del Mar</a>", window(PAGE, "text/html; charset=ISO-8859-1"));
+    }
+
+    @Test
+    public void testUtf16Page() {
+        assertEquals("<div id=\"results\"><a>Caf\u00e9 del Mar</a>", window(PAGE, "text/html; charset=UTF-16"));
+    }
+
+    private static String window(String page, String contentType) {
+        PageBuffer buffer = PageBuffer.get();
+        try {
+            byte[] bytes = page.getBytes(PageBuffer.parseCharset(contentType));
+            buffer.write(bytes, 0, bytes.length);
+            buffer.contentType(contentType);
+            return buffer.window("<div id=\"results\">", "</div>").toString();
+        } finally {
+            buffer.release();
+        }
+    }
+}
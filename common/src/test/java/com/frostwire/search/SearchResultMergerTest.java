@@ -0,0 +1,122 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.search.torrent.AbstractTorrentSearchResult;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class SearchResultMergerTest {
+
+    @Test
+    public void testMergeTorrentsByHash() {
+        SearchResultMerger merger = new SearchResultMerger();
+
+        TestTorrentSearchResult sr1 = new TestTorrentSearchResult("TPB", "http://tpb/1", "ABCDEF", 10);
+        TestTorrentSearchResult sr2 = new TestTorrentSearchResult("Monova", "http://monova/2", "abcdef", 25);
+        TestTorrentSearchResult sr3 = new TestTorrentSearchResult("Monova", "http://monova/3", "123456", 5);
+
+        TestTorrentSearchResult sr4 = new TestTorrentSearchResult("TPB", "http://tpb/4", "abcdef", 20);
+
+        assertEquals(SearchResultMerger.Fold.NEW, merger.add(sr1));
+        assertEquals(SearchResultMerger.Fold.CHANGED, merger.add(sr2));
+        assertEquals(SearchResultMerger.Fold.NEW, merger.add(sr3));
+        // same source, fewer seeds, nothing new
+        assertEquals(SearchResultMerger.Fold.DUPLICATE, merger.add(sr4));
+        assertSame(sr1, merger.first(sr2));
+
+        SearchResultMerger.Merged m = merger.get(sr1);
+        assertSame(sr1, m.first());
+        assertEquals(25, m.seeds());
+        assertEquals(3, m.count());
+        assertTrue(m.sources().contains("TPB"));
+        assertTrue(m.sources().contains("Monova"));
+
+        assertNull(merger.get(sr2));
+        assertEquals(2, merger.size());
+        assertEquals(2, merger.duplicates());
+    }
+
+    @Test
+    public void testNormalizeUrl() {
+        assertEquals("example.com/a/b", SearchResultMerger.normalizeUrl("https://www.Example.COM/a/b/#top"));
+        assertEquals("example.com/a/b", SearchResultMerger.normalizeUrl("http://example.com/a/b"));
+        assertEquals("example.com/A", SearchResultMerger.normalizeUrl("http://example.com/A"));
+        assertNull(SearchResultMerger.normalizeUrl("http:///"));
+    }
+
+    private static final class TestTorrentSearchResult extends AbstractTorrentSearchResult {
+
+        private final String source;
+        private final String detailsUrl;
+        private final String hash;
+        private final int seeds;
+
+        TestTorrentSearchResult(String source, String detailsUrl, String hash, int seeds) {
+            this.source = source;
+            this.detailsUrl = detailsUrl;
+            this.hash = hash;
+            this.seeds = seeds;
+        }
+
+        @Override
+        public String getTorrentUrl() {
+            return "magnet:?xt=urn:btih:" + hash;
+        }
+
+        @Override
+        public int getSeeds() {
+            return seeds;
+        }
+
+        @Override
+        public String getHash() {
+            return hash;
+        }
+
+        @Override
+        public String getFilename() {
+            return hash + ".torrent";
+        }
+
+        @Override
+        public long getSize() {
+            return 1024;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return hash;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return detailsUrl;
+        }
+
+        @Override
+        public String getSource() {
+            return source;
+        }
+    }
+}
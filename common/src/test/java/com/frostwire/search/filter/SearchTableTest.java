@@ -20,11 +20,14 @@ package com.frostwire.search.filter;
 import com.frostwire.search.SearchResult;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.SortedMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -81,4 +84,62 @@ public class SearchTableTest {
         t.clear();
         assertTrue(b2.get());
     }
+
+    @Test
+    public void testPageAndChangeFilter() {
+        SearchTable t = new SearchTable(0);
+
+        SearchView view = t.view(SearchFilter.NONE);
+
+        List<SearchResult> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(new TestSearchResult("r" + i).source(i % 2 == 0 ? "even" : "odd"));
+        }
+        t.add(results);
+
+        SearchGroup group = view.groups().get(FilterKey.NULL);
+        assertEquals(100, group.size());
+        assertEquals(100, view.size());
+
+        // equal elements keep the insertion order
+        List<SearchResult> page = group.page(90, 20);
+        assertEquals(10, page.size());
+        assertEquals("DisplayName:r90", page.get(0).getDisplayName());
+
+        view.filter(new SourceFilter(new SourceKey("even", 0), new SourceKey("odd", 1)));
+        assertEquals(2, view.groups().size());
+        assertEquals(100, view.size());
+        assertEquals("even", ((SourceKey) view.key(0)).source());
+
+        t.add(new TestSearchResult("last").source("odd"));
+        assertEquals(51, view.groups().get(view.key(1)).size());
+    }
+
+    @Test
+    public void testUpdate() {
+        SearchTable t = new SearchTable(0);
+        final AtomicBoolean changed = new AtomicBoolean(false);
+
+        SearchView view = t.view(SearchFilter.NONE);
+        view.setListener(new SearchViewListener() {
+            @Override
+            public void viewChanged(SearchView view) {
+                changed.set(true);
+            }
+
+            @Override
+            public void viewAdded(SearchView view, List<SearchResult> results) {
+            }
+        });
+
+        TestSearchResult sr = new TestSearchResult("a");
+        t.add(sr);
+
+        // not in the table
+        t.update(Arrays.asList(new TestSearchResult("a")));
+        assertFalse(changed.get());
+
+        t.update(Arrays.asList(sr));
+        assertTrue(changed.get());
+    }
 }
@@ -0,0 +1,96 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class BandwidthSchedulerTest {
+
+    @Test
+    public void testLimits() {
+        BandwidthScheduler scheduler = new BandwidthScheduler();
+        assertNull(scheduler.currentLimits());
+        assertNull(scheduler.update(0));
+
+        // only upload limited, the session download is left unlimited
+        scheduler.setLimits(BandwidthScheduler.UNLIMITED, 500);
+        BandwidthScheduler.Limits limits = scheduler.update(0);
+        assertEquals(BandwidthScheduler.UNLIMITED, limits.downloadLimit());
+        assertEquals(500, limits.uploadLimit());
+        assertEquals(BandwidthScheduler.UNLIMITED, scheduler.getHttpRate());
+
+        scheduler.setLimits(1000, BandwidthScheduler.UNLIMITED);
+        assertEquals(1000, scheduler.currentLimits().downloadLimit());
+        assertEquals(BandwidthScheduler.UNLIMITED, scheduler.currentLimits().uploadLimit());
+    }
+
+    @Test
+    public void testSessionShare() {
+        BandwidthScheduler scheduler = new BandwidthScheduler();
+        long limit = 1000 * 1024;
+        scheduler.setLimits(limit, BandwidthScheduler.UNLIMITED);
+
+        // no HTTP transfers, the session gets everything
+        BandwidthScheduler.Limits limits = scheduler.update(limit);
+        assertEquals(limit, limits.downloadLimit());
+        assertEquals(BandwidthScheduler.UNLIMITED, limits.uploadLimit());
+
+        // an HTTP transfer gets at least its share, half of the limit
+        BandwidthScheduler.Throttle throttle = scheduler.newThrottle();
+        throttle.acquire(1024);
+        scheduler.update(limit);
+        assertEquals(limit / 2, scheduler.getHttpRate());
+
+        // the session idle, the HTTP transfer can use everything
+        scheduler.update(0);
+        assertEquals(limit, scheduler.getHttpRate());
+
+        // more transfers don't take more from the session
+        scheduler.newThrottle().acquire(1024);
+        scheduler.update(limit);
+        assertEquals(limit / 2, scheduler.getHttpRate());
+
+        scheduler.setLimits(BandwidthScheduler.UNLIMITED, BandwidthScheduler.UNLIMITED);
+        assertNull(scheduler.update(limit));
+        assertEquals(BandwidthScheduler.UNLIMITED, scheduler.getHttpRate());
+    }
+
+    @Test
+    public void testThrottle() {
+        BandwidthScheduler scheduler = new BandwidthScheduler();
+        scheduler.setLimits(256 * 1024, BandwidthScheduler.UNLIMITED);
+
+        BandwidthScheduler.Throttle throttle = scheduler.newThrottle();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 16; i++) {
+            throttle.acquire(16 * 1024);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        // 256KB at 256KB/s, minus the initial burst
+        assertTrue("elapsed: " + elapsed, elapsed >= 600);
+        assertTrue("elapsed: " + elapsed, elapsed < 3000);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class GrowingFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadWhileWriting() throws Exception {
+        final byte[] data = new byte[256 * 1024];
+        new Random(3).nextBytes(data);
+
+        final File f = new File(folder.getRoot(), "track");
+        final GrowingFile gf = new GrowingFile(f, data.length);
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    FileOutputStream out = new FileOutputStream(f);
+                    for (int i = 0; i < data.length; i += 10000) {
+                        int n = Math.min(10000, data.length - i);
+                        out.write(data, i, n);
+                        gf.onData(n);
+                        Thread.sleep(1);
+                    }
+                    out.close();
+                    gf.complete();
+                } catch (Throwable e) {
+                    gf.fail(e);
+                }
+            }
+        };
+        writer.start();
+
+        assertArrayEquals(data, readAll(gf.newChannel()));
+        gf.await();
+    }
+
+    @Test
+    public void testIncomplete() throws Exception {
+        File f = new File(folder.getRoot(), "track");
+        FileOutputStream out = new FileOutputStream(f);
+        out.write(new byte[10]);
+        out.close();
+
+        GrowingFile gf = new GrowingFile(f, 20);
+        gf.onData(10);
+        gf.complete();
+
+        try {
+            readAll(gf.newChannel());
+            fail("incomplete download should be an error");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFailWakesUpReaders() throws Exception {
+        File f = new File(folder.getRoot(), "track");
+        FileOutputStream out = new FileOutputStream(f);
+        out.write(new byte[10]);
+        out.close();
+
+        final GrowingFile gf = new GrowingFile(f, -1);
+        gf.onData(10);
+
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                gf.fail(new IOException("canceled"));
+            }
+        }.start();
+
+        try {
+            readAll(gf.newChannel());
+            fail("failed download should be an error");
+        } catch (IOException e) {
+            assertEquals("canceled", e.getMessage());
+        }
+    }
+
+    private static byte[] readAll(ReadableByteChannel ch) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ByteBuffer buf = ByteBuffer.allocate(7000);
+        try {
+            while (ch.read(buf) != -1) {
+                bos.write(buf.array(), 0, buf.position());
+                buf.clear();
+            }
+        } finally {
+            ch.close();
+        }
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import com.frostwire.util.http.JdkHttpClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class SegmentedHttpDownloaderTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] data;
+    private HttpServer server;
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        data = new byte[9 * 1024 * 1024 + 123];
+        new Random(7).nextBytes(data);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/ranges", new Handler(true));
+        server.createContext("/noranges", new Handler(false));
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testSegmented() throws Exception {
+        File f = folder.newFile("data");
+        CountingListener listener = new CountingListener();
+
+        SegmentedHttpDownloader d = new SegmentedHttpDownloader(new JdkHttpClient(), url("/ranges"), f, 4, listener);
+        assertTrue(d.download(false));
+
+        assertArrayEquals(data, FileUtils.readFileToByteArray(f));
+        assertEquals(data.length, listener.bytes.get());
+        assertEquals(0, d.remaining());
+        // the initial segments, plus the splits of the connections done first
+        assertTrue(d.segments() >= 4);
+        assertTrue(rangeRequests.get() >= 4);
+        assertFalse(new File(f.getPath() + ".segments").exists());
+    }
+
+    @Test
+    public void testNoRanges() throws Exception {
+        File f = folder.newFile("data");
+        SegmentedHttpDownloader d = new SegmentedHttpDownloader(new JdkHttpClient(), url("/noranges"), f, 4, new CountingListener());
+        assertFalse(d.download(false));
+        assertEquals(0, f.length());
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        File f = folder.newFile("data");
+
+        // no state left after a cancel
+        CountingListener listener = new CountingListener() {
+            @Override
+            public boolean isCanceled() {
+                return bytes.get() > 0;
+            }
+        };
+        SegmentedHttpDownloader d = new SegmentedHttpDownloader(new JdkHttpClient(), url("/ranges"), f, 4, listener);
+        assertTrue(d.download(false));
+        assertFalse(new File(f.getPath() + ".segments").exists());
+
+        // the state is saved on error
+        d = new SegmentedHttpDownloader(new JdkHttpClient(), url("/ranges"), f, 2, new CountingListener() {
+            @Override
+            public void onData(long length) {
+                super.onData(length);
+                if (bytes.get() > 2 * 1024 * 1024) {
+                    throw new IllegalStateException("crash");
+                }
+            }
+        });
+        try {
+            d.download(false);
+            fail("crash expected");
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(new File(f.getPath() + ".segments").exists());
+        assertTrue(d.remaining() > 0);
+
+        listener = new CountingListener();
+        d = new SegmentedHttpDownloader(new JdkHttpClient(), url("/ranges"), f, 4, listener);
+        assertTrue(d.download(true));
+        assertArrayEquals(data, FileUtils.readFileToByteArray(f));
+        assertEquals(data.length, listener.bytes.get());
+    }
+
+    @Test
+    public void testResumeSingleStream() throws Exception {
+        File f = folder.newFile("data");
+        FileUtils.writeByteArrayToFile(f, Arrays.copyOf(data, 1000));
+
+        // a partial file without segments state is left to the single stream
+        SegmentedHttpDownloader d = new SegmentedHttpDownloader(new JdkHttpClient(), url("/ranges"), f, 4, new CountingListener());
+        assertFalse(d.download(true));
+        assertEquals(1000, f.length());
+        assertEquals(0, rangeRequests.get());
+    }
+
+    @Test
+    public void testManyDownloads() throws Exception {
+        // more connections than threads in the pool, the extra ones wait their turn
+        int n = 17;
+        final SegmentedHttpDownloader[] downloaders = new SegmentedHttpDownloader[n];
+        final File[] files = new File[n];
+        final Throwable[] errors = new Throwable[n];
+        Thread[] threads = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            files[i] = folder.newFile("data" + i);
+            downloaders[i] = new SegmentedHttpDownloader(new JdkHttpClient(), url("/ranges"), files[i], 4, new CountingListener());
+            final int k = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        downloaders[k].download(false);
+                    } catch (Throwable e) {
+                        errors[k] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < n; i++) {
+            threads[i].join();
+            assertNull(errors[i]);
+            assertArrayEquals(data, FileUtils.readFileToByteArray(files[i]));
+        }
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private final class Handler implements HttpHandler {
+
+        private final boolean ranges;
+
+        Handler(boolean ranges) {
+            this.ranges = ranges;
+        }
+
+        @Override
+        public void handle(HttpExchange ex) throws IOException {
+            String range = ex.getRequestHeaders().getFirst("Range");
+            Matcher m = range != null ? RANGE.matcher(range) : null;
+
+            int start = 0;
+            int end = data.length - 1;
+            if (ranges && m != null && m.matches()) {
+                rangeRequests.incrementAndGet();
+                start = Integer.parseInt(m.group(1));
+                if (!m.group(2).isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(m.group(2)));
+                }
+                ex.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+                ex.sendResponseHeaders(206, end - start + 1);
+            } else {
+                ex.sendResponseHeaders(200, data.length);
+            }
+
+            OutputStream out = ex.getResponseBody();
+            try {
+                out.write(data, start, end - start + 1);
+            } catch (IOException e) {
+                // client closed the connection
+            } finally {
+                ex.close();
+            }
+        }
+    }
+
+    private static class CountingListener implements SegmentedHttpDownloader.Listener {
+
+        final AtomicLong bytes = new AtomicLong();
+
+        @Override
+        public void onData(long length) {
+            bytes.addAndGet(length);
+        }
+
+        @Override
+        public void onRead(int length) {
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return false;
+        }
+    }
+}
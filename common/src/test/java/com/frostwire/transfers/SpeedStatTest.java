@@ -0,0 +1,119 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class SpeedStatTest {
+
+    @Test
+    public void testEwmaSteady() {
+        SpeedStat stat = new SpeedStat(SpeedStat.Mode.EWMA, 5000, 0);
+
+        // 100KB/s in chunks of 10KB every 100ms
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            now += 100;
+            stat.update(10 * 1024);
+            stat.averageSpeed(now);
+        }
+
+        assertEquals(100 * 1024, stat.averageSpeed(now), 1024);
+        assertEquals(1000 * 1024, stat.totalBytes());
+    }
+
+    @Test
+    public void testEwmaSmoothsBursts() {
+        SpeedStat stat = new SpeedStat(SpeedStat.Mode.EWMA, 5000, 0);
+
+        // 1MB every 2s, read every 500ms, the same 512KB/s on average
+        long now = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 1; i <= 80; i++) {
+            now += 500;
+            if (i % 4 == 0) {
+                stat.update(1024 * 1024);
+            }
+            long speed = stat.averageSpeed(now);
+            if (i > 40) {
+                min = Math.min(min, speed);
+                max = Math.max(max, speed);
+            }
+        }
+
+        assertTrue(min > 256 * 1024);
+        assertTrue(max < 1024 * 1024);
+    }
+
+    @Test
+    public void testWindow() {
+        SpeedStat stat = new SpeedStat(SpeedStat.Mode.WINDOW, 2000, 0);
+
+        long now = 0;
+        for (int i = 0; i < 50; i++) {
+            now += 100;
+            stat.update(1000);
+            stat.averageSpeed(now);
+        }
+        assertEquals(10000, stat.averageSpeed(now), 100);
+
+        // half the speed, the window forgets the old rate
+        for (int i = 0; i < 50; i++) {
+            now += 100;
+            stat.update(500);
+            stat.averageSpeed(now);
+        }
+        assertEquals(5000, stat.averageSpeed(now), 100);
+    }
+
+    @Test
+    public void testIdle() {
+        for (SpeedStat.Mode mode : SpeedStat.Mode.values()) {
+            SpeedStat stat = new SpeedStat(mode, 1000, 0);
+
+            stat.update(1000);
+            assertTrue(stat.averageSpeed(500) > 0);
+            stat.averageSpeed(1000);
+            assertEquals(0, stat.averageSpeed(1600));
+
+            // restarts from the new rate
+            stat.update(2000);
+            assertEquals(2000 * 1000 / 400, stat.averageSpeed(2000), 1);
+        }
+    }
+
+    @Test
+    public void testEta() {
+        SpeedStat stat = new SpeedStat(SpeedStat.Mode.EWMA, 5000, 0);
+        assertEquals(-1, SpeedStat.eta(1000, stat.totalBytes(), stat.averageSpeed(0)));
+
+        stat.update(500);
+        long speed = stat.averageSpeed(1000);
+        assertEquals(1, SpeedStat.eta(1000, stat.totalBytes(), speed));
+        assertEquals(0, SpeedStat.eta(500, stat.totalBytes(), speed));
+        assertEquals(50, stat.progress(1000));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class TransferRegistryTest {
+
+    @Test
+    public void testCounters() {
+        TransferRegistry<FakeTransfer> registry = new TransferRegistry<>(new FakeAdapter());
+
+        FakeTransfer t1 = new FakeTransfer("hash1", null, false);
+        FakeTransfer t2 = new FakeTransfer(null, "http://a.com/b", false);
+        t1.state = TransferState.DOWNLOADING;
+        t1.speed = 100;
+        t2.state = TransferState.DOWNLOADING;
+        t2.speed = 50;
+
+        assertTrue(registry.add(t1));
+        assertTrue(registry.add(t2));
+        assertFalse(registry.add(t1));
+
+        TransferRegistry.Snapshot<FakeTransfer> s = registry.snapshot();
+        assertEquals(2, s.transfers().size());
+        assertEquals(2, s.downloading());
+        assertEquals(0, s.seeding());
+        assertEquals(150, s.downloadSpeed());
+        assertSame(s, registry.snapshot());
+
+        t1.state = TransferState.SEEDING;
+        t1.speed = 0;
+        registry.update(t1);
+
+        s = registry.snapshot();
+        assertEquals(1, s.downloading());
+        assertEquals(1, s.seeding());
+        assertEquals(50, s.downloadSpeed());
+
+        assertTrue(registry.remove(t2));
+        assertFalse(registry.remove(t2));
+        registry.update(t2); // ignored
+
+        s = registry.snapshot();
+        assertEquals(1, s.transfers().size());
+        assertEquals(0, s.downloading());
+        assertEquals(0, s.downloadSpeed());
+    }
+
+    @Test
+    public void testIndexes() {
+        TransferRegistry<FakeTransfer> registry = new TransferRegistry<>(new FakeAdapter());
+
+        FakeTransfer t1 = new FakeTransfer("hash1", null, false);
+        FakeTransfer t2 = new FakeTransfer(null, "http://a.com/b", false);
+        t1.state = TransferState.SEEDING;
+        t2.state = TransferState.DOWNLOADING;
+        registry.add(t1);
+        registry.add(t2);
+
+        assertSame(t1, registry.findByInfoHash("hash1"));
+        assertSame(t2, registry.findByUrl("http://a.com/b"));
+        assertNull(registry.findByUrl("http://a.com/c"));
+
+        List<FakeTransfer> l = registry.transfers(TransferState.DOWNLOADING);
+        assertEquals(1, l.size());
+        assertSame(t2, l.get(0));
+
+        registry.remove(t1);
+        assertNull(registry.findByInfoHash("hash1"));
+        assertTrue(registry.transfers(TransferState.SEEDING).isEmpty());
+    }
+
+    @Test
+    public void testPolled() throws InterruptedException {
+        TransferRegistry<FakeTransfer> registry = new TransferRegistry<>(new FakeAdapter());
+
+        FakeTransfer t = new FakeTransfer(null, "http://a.com/b", true);
+        t.state = TransferState.DOWNLOADING;
+        t.speed = 10;
+        registry.add(t);
+        assertEquals(10, registry.snapshot().downloadSpeed());
+
+        t.speed = 20;
+        Thread.sleep(TransferRegistry.POLL_INTERVAL_MILLIS + 100);
+        assertEquals(20, registry.snapshot().downloadSpeed());
+
+        // the state is polled too, without a snapshot in between
+        t.state = TransferState.COMPLETE;
+        Thread.sleep(TransferRegistry.POLL_INTERVAL_MILLIS + 100);
+        assertTrue(registry.transfers(TransferState.DOWNLOADING).isEmpty());
+    }
+
+    private static final class FakeTransfer {
+
+        final String infoHash;
+        final String url;
+        final boolean polled;
+
+        TransferState state;
+        long speed;
+
+        FakeTransfer(String infoHash, String url, boolean polled) {
+            this.infoHash = infoHash;
+            this.url = url;
+            this.polled = polled;
+        }
+    }
+
+    private static final class FakeAdapter implements TransferRegistry.Adapter<FakeTransfer> {
+
+        @Override
+        public String infoHash(FakeTransfer t) {
+            return t.infoHash;
+        }
+
+        @Override
+        public String url(FakeTransfer t) {
+            return t.url;
+        }
+
+        @Override
+        public TransferState state(FakeTransfer t) {
+            return t.state;
+        }
+
+        @Override
+        public long downloadSpeed(FakeTransfer t) {
+            return t.speed;
+        }
+
+        @Override
+        public long uploadSpeed(FakeTransfer t) {
+            return 0;
+        }
+
+        @Override
+        public boolean isPolled(FakeTransfer t) {
+            return t.polled;
+        }
+    }
+}
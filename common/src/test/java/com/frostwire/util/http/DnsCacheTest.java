@@ -0,0 +1,68 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util.http;
+
+import com.squareup.okhttp.Dns;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class DnsCacheTest {
+
+    @Test
+    public void testHitAndNegative() throws Exception {
+        final int[] lookups = new int[1];
+        DnsCache dns = new DnsCache(new Dns() {
+            @Override
+            public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+                lookups[0]++;
+                if (hostname.equals("unknown")) {
+                    throw new UnknownHostException(hostname);
+                }
+                return Collections.singletonList(InetAddress.getByAddress(hostname, new byte[]{127, 0, 0, 1}));
+            }
+        }, 60000, 60000);
+
+        assertEquals(dns.lookup("a"), dns.lookup("a"));
+        assertEquals(1, lookups[0]);
+        assertEquals(1, dns.hits());
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                dns.lookup("unknown");
+                fail();
+            } catch (UnknownHostException e) {
+                // expected
+            }
+        }
+        assertEquals(2, lookups[0]);
+
+        dns.clear();
+        dns.lookup("a");
+        assertEquals(3, lookups[0]);
+    }
+}
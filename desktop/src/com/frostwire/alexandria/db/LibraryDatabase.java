@@ -18,15 +18,20 @@
 
 package com.frostwire.alexandria.db;
 
-import com.frostwire.alexandria.Playlist;
-import com.frostwire.alexandria.PlaylistItem;
-
 import java.io.File;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * All the writes go through a single connection, guarded by this object,
+ * while the reads are spread over a small pool of connections, so readers
+ * don't wait for the writers. Every connection keeps its own cache of
+ * prepared statements.
+ */
 public class LibraryDatabase {
 
     public static final int OBJECT_NOT_SAVED_ID = -1;
@@ -34,14 +39,28 @@ public class LibraryDatabase {
     public static final int STARRED_PLAYLIST_ID = -3;
     private static final int LIBRARY_DATABASE_VERSION = 4;
 
+    private static final int READ_POOL_SIZE = 4;
+    private static final int STATEMENT_CACHE_SIZE = 32;
+    private static final long READER_WAIT_SECONDS = 5;
+
     public static final String STARRED_TABLE_NAME_DO_NOT_TRANSLATE_THIS = "starred";
     
     private final File _databaseFile;
     private final String _name;
     
-    private Connection _connection;
+    private CachedConnection _connection;
+
+    private final BlockingQueue<CachedConnection> _readers;
+    private final AtomicInteger _numReaders;
+
+    private volatile boolean _closed;
 
-    private boolean _closed;
+    // without MVCC, the writes lock the tables until the transaction ends
+    private final boolean _mvcc;
+    private volatile boolean _inTransaction;
+
+    // a statement failed in the current transaction, it can only be rolled back
+    private boolean _rollbackOnly;
 
     static {
         try {
@@ -56,10 +75,14 @@ public class LibraryDatabase {
             databaseFile.mkdirs();
         }
 
+        _readers = new LinkedBlockingQueue<>();
+        _numReaders = new AtomicInteger(0);
+
         if (databaseFile != null && databaseFile.isDirectory() && databaseFile.canRead() && databaseFile.canWrite()) {
             _databaseFile = databaseFile;
             _name = databaseFile.getName();
-            _connection = openOrCreateDatabase(databaseFile, _name);
+            _connection = new CachedConnection(openOrCreateDatabase(databaseFile, _name));
+            _mvcc = isMultiVersion(_connection.connection);
         } else {
             if (databaseFile != null) {
                 throw new IllegalArgumentException("Invalid library database file parameter received: " + databaseFile.getAbsolutePath());
@@ -77,29 +100,75 @@ public class LibraryDatabase {
         return _closed;
     }
 
-    public synchronized List<List<Object>> query(String statementSql, Object... arguments) {
+    public List<List<Object>> query(String statementSql, Object... arguments) {
+        return query(new RowMapper<List<Object>>() {
+            @Override
+            public List<Object> map(ResultSet rs) throws SQLException {
+                int numColumns = rs.getMetaData().getColumnCount();
+                List<Object> row = new ArrayList<>(numColumns);
+                for (int i = 1; i <= numColumns; i++) {
+                    row.add(rs.getObject(i));
+                }
+                return row;
+            }
+        }, statementSql, arguments);
+    }
+
+    /**
+     * Runs the query in one of the read connections, mapping every row as
+     * it comes. Inside a transaction, it runs in the write connection, to
+     * see the changes not committed yet. If the database is not MVCC, the
+     * queries wait for the running transaction in the write connection too,
+     * a reader would only get a lock timeout.
+     */
+    public <T> List<T> query(RowMapper<T> mapper, String statementSql, Object... arguments) {
         if (isClosed()) {
             return new ArrayList<>();
         }
 
-        return query(_connection, statementSql, arguments);
+        if (Thread.holdsLock(this)) {
+            return query(_connection, mapper, statementSql, arguments);
+        }
+
+        if (!_mvcc && _inTransaction) {
+            synchronized (this) {
+                return query(_connection, mapper, statementSql, arguments);
+            }
+        }
+
+        CachedConnection reader = acquireReader();
+        if (reader == null) {
+            synchronized (this) {
+                return query(_connection, mapper, statementSql, arguments);
+            }
+        }
+
+        try {
+            return query(reader, mapper, statementSql, arguments);
+        } finally {
+            releaseReader(reader);
+        }
     }
 
-    /**
-     * This method is synchronized due to possible concurrent issues, specially
-     * during recently generated id retrieval.
-     */
     public synchronized int update(String statementSql, Object... arguments) {
         if (isClosed()) {
             return -1;
         }
 
-        return update(_connection, statementSql, arguments);
+        try {
+            PreparedStatement statement = _connection.prepare(statementSql, false);
+            bind(statement, arguments);
+            return statement.executeUpdate();
+        } catch (Exception e) {
+            e.printStackTrace();
+            _rollbackOnly = true;
+        }
+
+        return -1;
     }
 
     /**
-     * This method is synchronized due to possible concurrent issues, specially
-     * during recently generated id retrieval.
+     * Returns the generated id of the new row.
      */
     public synchronized int insert(String statementSql, Object... arguments) {
         if (isClosed()) {
@@ -110,13 +179,106 @@ public class LibraryDatabase {
             return OBJECT_INVALID_ID;
         }
 
-        if (update(statementSql, arguments) != -1) {
-            return getIdentity();
+        try {
+            PreparedStatement statement = _connection.prepare(statementSql, true);
+            bind(statement, arguments);
+            statement.executeUpdate();
+            return generatedId(statement);
+        } catch (Exception e) {
+            e.printStackTrace();
+            _rollbackOnly = true;
         }
 
         return OBJECT_INVALID_ID;
     }
 
+    /**
+     * Inserts all the rows with the same prepared statement, in one
+     * transaction (or as part of the current one). It's executed once per
+     * row, not as a JDBC batch, to get back the generated id of each one.
+     *
+     * @return the generated ids, in the order of the rows, or all of them
+     * {@link #OBJECT_INVALID_ID} if the batch failed
+     */
+    public synchronized int[] insertBatch(String statementSql, List<Object[]> rows) {
+        int[] ids = new int[rows.size()];
+        Arrays.fill(ids, OBJECT_INVALID_ID);
+
+        if (isClosed() || !statementSql.toUpperCase().startsWith("INSERT")) {
+            return ids;
+        }
+
+        boolean began = begin();
+        boolean ok = false;
+        try {
+            PreparedStatement statement = _connection.prepare(statementSql, true);
+            for (int i = 0; i < ids.length; i++) {
+                bind(statement, rows.get(i));
+                statement.executeUpdate();
+                ids[i] = generatedId(statement);
+            }
+            ok = true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            Arrays.fill(ids, OBJECT_INVALID_ID);
+            _rollbackOnly = true;
+        } finally {
+            end(began, ok);
+        }
+
+        return ids;
+    }
+
+    /**
+     * Executes the statement for all the rows as a JDBC batch, in one
+     * transaction (or as part of the current one).
+     *
+     * @return the update counts, or null if the batch failed
+     */
+    public synchronized int[] updateBatch(String statementSql, List<Object[]> rows) {
+        if (isClosed()) {
+            return null;
+        }
+
+        boolean began = begin();
+        boolean ok = false;
+        try {
+            int[] counts = executeBatch(_connection.prepare(statementSql, false), rows);
+            ok = true;
+            return counts;
+        } catch (Exception e) {
+            e.printStackTrace();
+            _rollbackOnly = true;
+        } finally {
+            end(began, ok);
+        }
+
+        return null;
+    }
+
+    /**
+     * Runs all the updates made by the runnable in one transaction, the
+     * nested calls join the outer one. It's rolled back if the runnable
+     * throws an exception or any of the updates fails.
+     *
+     * @return {@code true} if the transaction was committed
+     */
+    public synchronized boolean runInTransaction(Runnable runnable) {
+        if (isClosed()) {
+            return false;
+        }
+
+        boolean began = begin();
+        boolean ok = false;
+        try {
+            runnable.run();
+            ok = true;
+        } finally {
+            ok = end(began, ok);
+        }
+        return ok;
+    }
+
     public synchronized void close() {
         if (isClosed()) {
             return;
@@ -124,10 +286,16 @@ public class LibraryDatabase {
 
         _closed = true;
 
+        CachedConnection reader;
+        while ((reader = _readers.poll()) != null) {
+            reader.close();
+        }
+
         try {
-            Statement statement = _connection.createStatement();
+            _connection.closeStatements();
+            Statement statement = _connection.connection.createStatement();
             statement.execute("SHUTDOWN");
-            _connection.close();
+            _connection.connection.close();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -145,6 +313,83 @@ public class LibraryDatabase {
         }
     }
 
+    private CachedConnection acquireReader() {
+        CachedConnection reader = _readers.poll();
+        if (reader != null) {
+            return reader;
+        }
+
+        if (_numReaders.incrementAndGet() <= READ_POOL_SIZE) {
+            Connection connection = openConnection(_databaseFile, _name, false);
+            if (connection != null) {
+                return new CachedConnection(connection);
+            }
+        }
+        _numReaders.decrementAndGet();
+
+        try {
+            return _readers.poll(READER_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void releaseReader(CachedConnection reader) {
+        if (isClosed()) {
+            reader.close();
+        } else {
+            _readers.offer(reader);
+        }
+    }
+
+    // must hold the lock
+    private boolean begin() {
+        try {
+            if (_connection.connection.getAutoCommit()) {
+                _connection.connection.setAutoCommit(false);
+                _rollbackOnly = false;
+                _inTransaction = true;
+                return true;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    // must hold the lock, returns false if the transaction is (or will be) rolled back
+    private boolean end(boolean began, boolean commit) {
+        if (!commit) {
+            _rollbackOnly = true;
+        }
+        if (!began) {
+            // nested, the outer one commits or rolls back
+            return !_rollbackOnly;
+        }
+
+        commit = !_rollbackOnly;
+        _rollbackOnly = false;
+        try {
+            if (commit) {
+                _connection.connection.commit();
+            } else {
+                _connection.connection.rollback();
+            }
+            return commit;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            _inTransaction = false;
+            try {
+                _connection.connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     private void onUpdateDatabase(Connection connection, int oldVersion, int newVersion) {
         if (oldVersion == 1 && newVersion > 2) {
             setupLuceneIndex(connection);
@@ -229,7 +474,7 @@ public class LibraryDatabase {
         int numColumns = meta.getColumnCount();
         int i;
 
-        List<List<Object>> result = new LinkedList<>();
+        List<List<Object>> result = new ArrayList<>();
 
         while (resultSet.next()) {
             List<Object> row = new ArrayList<>(numColumns);
@@ -241,47 +486,68 @@ public class LibraryDatabase {
         return result;
     }
 
-    private int getIdentity() {
-        if (isClosed()) {
-            return OBJECT_INVALID_ID;
+    private static void bind(PreparedStatement statement, Object[] arguments) throws SQLException {
+        if (arguments != null) {
+            for (int i = 0; i < arguments.length; i++) {
+                statement.setObject(i + 1, arguments[i]);
+            }
         }
+    }
 
-        Statement statement = null;
-        ResultSet resultSet;
+    private static int generatedId(PreparedStatement statement) throws SQLException {
+        ResultSet keys = statement.getGeneratedKeys();
+        try {
+            return keys.next() ? keys.getInt(1) : OBJECT_INVALID_ID;
+        } finally {
+            keys.close();
+        }
+    }
+
+    private static int[] executeBatch(PreparedStatement statement, List<Object[]> rows) throws SQLException {
+        for (Object[] row : rows) {
+            bind(statement, row);
+            statement.addBatch();
+        }
+        return statement.executeBatch();
+    }
+
+    private <T> List<T> query(CachedConnection connection, RowMapper<T> mapper, String statementSql, Object... arguments) {
+        ResultSet resultSet = null;
 
         try {
-            statement = _connection.createStatement();
-            resultSet = statement.executeQuery("CALL IDENTITY()");
+            PreparedStatement statement = connection.prepare(statementSql, false);
+            bind(statement, arguments);
 
-            resultSet.next();
+            resultSet = statement.executeQuery();
 
-            return resultSet.getInt(1);
+            List<T> result = new ArrayList<>();
+            while (resultSet.next()) {
+                result.add(mapper.map(resultSet));
+            }
+            return result;
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (statement != null) {
+            if (resultSet != null) {
                 try {
-                    statement.close();
+                    resultSet.close();
                 } catch (SQLException ignored) {
                 }
             }
         }
 
-        return OBJECT_INVALID_ID;
+        return new ArrayList<>();
     }
 
+    // the methods with an explicit connection are used only while opening the database
+
     private List<List<Object>> query(Connection connection, String statementSql, Object... arguments) {
         PreparedStatement statement = null;
         ResultSet resultSet;
 
         try {
             statement = connection.prepareStatement(statementSql);
-
-            if (arguments != null) {
-                for (int i = 0; i < arguments.length; i++) {
-                    statement.setObject(i + 1, arguments[i]);
-                }
-            }
+            bind(statement, arguments);
 
             resultSet = statement.executeQuery();
 
@@ -306,16 +572,37 @@ public class LibraryDatabase {
 
         try {
             statement = connection.prepareStatement(statementSql);
+            bind(statement, arguments);
 
-            if (arguments != null) {
-                for (int i = 0; i < arguments.length; i++) {
-                    statement.setObject(i + 1, arguments[i]);
+            return statement.executeUpdate();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
                 }
             }
+        }
 
-            return statement.executeUpdate();
+        return -1;
+    }
+
+    private void updateBatch(Connection connection, String statementSql, List<Object[]> rows) {
+        PreparedStatement statement = null;
+
+        try {
+            connection.setAutoCommit(false);
+            statement = connection.prepareStatement(statementSql);
+            executeBatch(statement, rows);
+            connection.commit();
         } catch (Exception e) {
             e.printStackTrace();
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+            }
         } finally {
             if (statement != null) {
                 try {
@@ -323,9 +610,16 @@ public class LibraryDatabase {
                 } catch (SQLException ignored) {
                 }
             }
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException ignored) {
+            }
         }
+    }
 
-        return -1;
+    private boolean isMultiVersion(Connection connection) {
+        List<List<Object>> query = query(connection, "SELECT VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE NAME = 'MVCC'");
+        return query.size() > 0 && "TRUE".equalsIgnoreCase(String.valueOf(query.get(0).get(0)));
     }
 
     private int getDatabaseVersion(Connection connection) {
@@ -344,16 +638,82 @@ public class LibraryDatabase {
         // add new column
         update(connection, "ALTER TABLE PlaylistItems ADD sortIndex INTEGER");
         
-        // set initial playlist indexes
-        List<Playlist> playlists = PlaylistDB.getPlaylists(this);
-        
-        for( Playlist playlist : playlists ) {
-            List<PlaylistItem> items = playlist.getItems();
-            
-            for(int i=0; i < items.size(); i++) {
-                PlaylistItem item = items.get(i);
-                item.setSortIndexByTrackNumber(i+1); // set initial sort index (1-based)
-                item.save();
+        // set initial playlist indexes (1-based), in one batch
+        List<List<Object>> items = query(connection, "SELECT playlistItemId, playlistId FROM PlaylistItems ORDER BY playlistId, playlistItemId");
+        List<Object[]> rows = new ArrayList<>(items.size());
+
+        Object playlistId = null;
+        int sortIndex = 0;
+        for (List<Object> item : items) {
+            Object id = item.get(1);
+            if (id == null ? playlistId != null : !id.equals(playlistId)) {
+                playlistId = id;
+                sortIndex = 0;
+            }
+            rows.add(new Object[] { ++sortIndex, item.get(0) });
+        }
+
+        updateBatch(connection, "UPDATE PlaylistItems SET sortIndex = ? WHERE playlistItemId = ?", rows);
+    }
+
+    /**
+     * A connection with a LRU cache of its prepared statements, it must be
+     * used by one thread at a time.
+     */
+    private static final class CachedConnection {
+
+        final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+
+        CachedConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > STATEMENT_CACHE_SIZE) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        PreparedStatement prepare(String sql, boolean generatedKeys) throws SQLException {
+            String key = generatedKeys ? "+" + sql : sql;
+
+            PreparedStatement statement = statements.get(key);
+            if (statement == null || statement.isClosed()) {
+                statement = generatedKeys ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : connection.prepareStatement(sql);
+                statements.put(key, statement);
+            } else {
+                // a failed batch could have left rows behind
+                statement.clearParameters();
+                statement.clearBatch();
+            }
+
+            return statement;
+        }
+
+        void closeStatements() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+        }
+
+        void close() {
+            closeStatements();
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+
+        private static void closeQuietly(Statement statement) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
             }
         }
     }
@@ -31,25 +31,49 @@ public class PlaylistDB {
         p.refresh();
     }
 
-    public static void save(LibraryDatabase db, Playlist obj) {
+    /**
+     * Writes the playlist and all its items in one transaction, the items
+     * share a single prepared insert. If anything fails nothing is written,
+     * and the ids of the playlist and its items are left as they were.
+     */
+    public static void save(final LibraryDatabase db, final Playlist obj) {
         if (obj.getId() == LibraryDatabase.OBJECT_INVALID_ID) {
             return;
         }
 
-        if (obj.getId() == LibraryDatabase.OBJECT_NOT_SAVED_ID) {
-            int id = db.insert("INSERT INTO Playlists (name, description) VALUES (LEFT(?, 500), LEFT(?, 10000))", obj.getName(), obj.getDescription());
-            obj.setId(id);
-        } else {
-            db.update("DELETE FROM PlaylistItems WHERE playlistId = ?", obj.getId());
-            Object[] statementObjects = createPlaylistUpdateStatement(obj);
-            db.update((String) statementObjects[0], (Object[]) statementObjects[1]);
+        final int playlistId = obj.getId();
+        final List<PlaylistItem> items = new ArrayList<>(obj.getItems());
+        int[] itemIds = new int[items.size()];
+        for (int i = 0; i < itemIds.length; i++) {
+            itemIds[i] = items.get(i).getId();
         }
-        
-        List<PlaylistItem> items = new ArrayList<>(obj.getItems());
 
-        for (PlaylistItem item : items) {
-            item.setId(LibraryDatabase.OBJECT_NOT_SAVED_ID);
-            item.save();
+        boolean saved = db.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                if (obj.getId() == LibraryDatabase.OBJECT_NOT_SAVED_ID) {
+                    int id = db.insert("INSERT INTO Playlists (name, description) VALUES (LEFT(?, 500), LEFT(?, 10000))", obj.getName(), obj.getDescription());
+                    obj.setId(id);
+                } else {
+                    db.update("DELETE FROM PlaylistItems WHERE playlistId = ?", obj.getId());
+                    Object[] statementObjects = createPlaylistUpdateStatement(obj);
+                    db.update((String) statementObjects[0], (Object[]) statementObjects[1]);
+                }
+
+                for (PlaylistItem item : items) {
+                    item.setId(LibraryDatabase.OBJECT_NOT_SAVED_ID);
+                }
+
+                PlaylistItemDB.insertAll(db, items);
+            }
+        });
+
+        if (!saved) {
+            // rolled back, the ids assigned in the transaction don't exist
+            obj.setId(playlistId);
+            for (int i = 0; i < itemIds.length; i++) {
+                items.get(i).setId(itemIds[i]);
+            }
         }
     }
 
@@ -85,13 +109,11 @@ public class PlaylistDB {
     
     public static Playlist getStarredPlaylist(LibraryDatabase db) {
         String query = "SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred " + "FROM PlaylistItems WHERE starred = ?";
-        List<List<Object>> result = db.query(query, true);
         Playlist playlist = new Playlist(db, LibraryDatabase.STARRED_PLAYLIST_ID, LibraryDatabase.STARRED_TABLE_NAME_DO_NOT_TRANSLATE_THIS, LibraryDatabase.STARRED_TABLE_NAME_DO_NOT_TRANSLATE_THIS);
+        List<PlaylistItem> result = db.query(PlaylistItemDB.mapper(playlist), query, true);
         List<PlaylistItem> items = new ArrayList<>(result.size());
         Set<String> paths = new HashSet<>();
-        for (List<Object> row : result) {
-            PlaylistItem item = new PlaylistItem(playlist);
-            PlaylistItemDB.fill(row, item);
+        for (PlaylistItem item : result) {
             if (!paths.contains(item.getFilePath())) {
                 items.add(item);
                 paths.add(item.getFilePath());
@@ -21,21 +21,69 @@ package com.frostwire.alexandria.db;
 import com.frostwire.alexandria.Playlist;
 import com.frostwire.alexandria.PlaylistItem;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class PlaylistItemDB {
 
+    private static final String INSERT_SQL = "INSERT INTO PlaylistItems (playlistId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex) "
+            + " VALUES (?, LEFT(?, 10000), LEFT(?, 500), ?, LEFT(?, 10), LEFT(?, 500), ?, LEFT(?, 500), LEFT(?, 500), LEFT(?, 10000), LEFT(?, 10), LEFT(?, 500), LEFT(?, 20), LEFT(?, 6), LEFT(?, 6), ?, ?)";
+
+    private static final String UPDATE_STARRED_SQL = "UPDATE PlaylistItems SET starred = ? WHERE filePath = LEFT(?, 10000)";
+
     private PlaylistItemDB() {}
 
-    public static void fill(LibraryDatabase db, PlaylistItem obj) {
-        List<List<Object>> result = db
-                .query("SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred "
-                        + "FROM PlaylistItems WHERE playlistItemId = ?", obj.getId());
-        if (result.size() > 0) {
-            List<Object> row = result.get(0);
-            fill(row, obj);
-        }
+    public static void fill(LibraryDatabase db, final PlaylistItem obj) {
+        db.query(new RowMapper<PlaylistItem>() {
+            @Override
+            public PlaylistItem map(ResultSet rs) throws SQLException {
+                fill(rs, obj);
+                return obj;
+            }
+        }, "SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred "
+                + "FROM PlaylistItems WHERE playlistItemId = ?", obj.getId());
+    }
+
+    /**
+     * Fills the item from the current row, with the columns in the same
+     * order as {@link #fill(List, PlaylistItem)}.
+     */
+    public static void fill(ResultSet rs, PlaylistItem obj) throws SQLException {
+        obj.setId(rs.getInt(1));
+        obj.setFilePath(rs.getString(2));
+        obj.setFileName(rs.getString(3));
+        obj.setFileSize(rs.getLong(4));
+        obj.setFileExtension(rs.getString(5));
+        obj.setTrackTitle(rs.getString(6));
+        obj.setTrackDurationInSecs(rs.getFloat(7));
+        obj.setTrackArtist(rs.getString(8));
+        obj.setTrackAlbum(rs.getString(9));
+        obj.setCoverArtPath(rs.getString(10));
+        obj.setTrackBitrate(rs.getString(11));
+        obj.setTrackComment(rs.getString(12));
+        obj.setTrackGenre(rs.getString(13));
+        obj.setTrackNumber(rs.getString(14));
+        obj.setTrackYear(rs.getString(15));
+        obj.setStarred(rs.getBoolean(16));
+        obj.setSortIndexByTrackNumber(rs.getMetaData().getColumnCount() < 17 ? 0 : rs.getInt(17));
+    }
+
+    /**
+     * Returns a mapper creating the items of the playlist from the rows.
+     */
+    public static RowMapper<PlaylistItem> mapper(final Playlist playlist) {
+        return new RowMapper<PlaylistItem>() {
+            @Override
+            public PlaylistItem map(ResultSet rs) throws SQLException {
+                PlaylistItem item = new PlaylistItem(playlist);
+                fill(rs, item);
+                return item;
+            }
+        };
     }
 
     public static void fill(List<Object> row, PlaylistItem obj) {
@@ -100,6 +148,45 @@ public class PlaylistItemDB {
         }
     }
 
+    /**
+     * Inserts all the items, that must belong to a playlist, with a single
+     * prepared statement. It doesn't open a transaction by itself, see
+     * {@link PlaylistDB#save(LibraryDatabase, Playlist)}.
+     */
+    public static void insertAll(LibraryDatabase db, List<PlaylistItem> items) {
+        Set<String> starredPaths = getStarredFilePaths(db);
+
+        List<PlaylistItem> inserted = new ArrayList<>(items.size());
+        List<Object[]> rows = new ArrayList<>(items.size());
+        List<Object[]> starredRows = new ArrayList<>();
+
+        for (PlaylistItem item : items) {
+            if (item.getId() == LibraryDatabase.OBJECT_INVALID_ID || item.getPlaylist() == null) {
+                continue;
+            }
+            item.setStarred(item.isStarred() || starredPaths.contains(item.getFilePath()));
+            inserted.add(item);
+            rows.add((Object[]) createPlaylistItemInsert(item)[1]);
+            if (item.isStarred() && !starredPaths.contains(item.getFilePath())) {
+                starredRows.add((Object[]) updateStarred(item)[1]);
+            }
+        }
+
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        int[] ids = db.insertBatch(INSERT_SQL, rows);
+        for (int i = 0; i < ids.length; i++) {
+            inserted.get(i).setId(ids[i]);
+        }
+
+        // a starred file is starred in all the playlists
+        if (!starredRows.isEmpty()) {
+            db.updateBatch(UPDATE_STARRED_SQL, starredRows);
+        }
+    }
+
     public static void delete(LibraryDatabase db, PlaylistItem obj) {
         db.update("DELETE FROM PlaylistItems WHERE playlistItemId = ?", obj.getId());
     }
@@ -108,22 +195,11 @@ public class PlaylistItemDB {
         String query = "SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex "
                 + "FROM PlaylistItems WHERE playlistId = ? ORDER BY sortIndex ASC";
 
-        List<List<Object>> result = db.query(query, playlist.getId());
-
-        List<PlaylistItem> items = new ArrayList<>(result.size());
-
-        for (List<Object> row : result) {
-            PlaylistItem item = new PlaylistItem(playlist);
-            PlaylistItemDB.fill(row, item);
-            items.add(item);
-        }
-
-        return items;
+        return db.query(mapper(playlist), query, playlist.getId());
     }
     
     private static Object[] createPlaylistItemInsert(PlaylistItem item) {
-        String sql = "INSERT INTO PlaylistItems (playlistId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex) "
-                + " VALUES (?, LEFT(?, 10000), LEFT(?, 500), ?, LEFT(?, 10), LEFT(?, 500), ?, LEFT(?, 500), LEFT(?, 500), LEFT(?, 10000), LEFT(?, 10), LEFT(?, 500), LEFT(?, 20), LEFT(?, 6), LEFT(?, 6), ?, ?)";
+        String sql = INSERT_SQL;
 
         Object[] values = new Object[] { item.getPlaylist().getId(), item.getFilePath(), item.getFileName(), item.getFileSize(), item.getFileExtension(), item.getTrackTitle(),
                 item.getTrackDurationInSecs(), item.getTrackArtist(), item.getTrackAlbum(), item.getCoverArtPath(), item.getTrackBitrate(), item.getTrackComment(),
@@ -143,7 +219,7 @@ public class PlaylistItemDB {
     }
 
     private static Object[] updateStarred(PlaylistItem item) {
-        String sql = "UPDATE PlaylistItems SET starred = ? WHERE filePath = LEFT(?, 10000)";
+        String sql = UPDATE_STARRED_SQL;
         Object[] values = new Object[] { item.isStarred(), item.getFilePath() };
         return new Object[] { sql, values };
     }
@@ -157,4 +233,13 @@ public class PlaylistItemDB {
         
         return false;
     }
+
+    private static Set<String> getStarredFilePaths(LibraryDatabase db) {
+        return new HashSet<>(db.query(new RowMapper<String>() {
+            @Override
+            public String map(ResultSet rs) throws SQLException {
+                return rs.getString(1);
+            }
+        }, "SELECT DISTINCT filePath FROM PlaylistItems WHERE starred = TRUE"));
+    }
 }
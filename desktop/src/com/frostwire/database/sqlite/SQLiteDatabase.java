@@ -287,6 +287,45 @@ public class SQLiteDatabase {
         return executeSql(sql.toString(), bindArgs);
     }
 
+    /**
+     * Runs the statements of the transaction in one database transaction,
+     * holding the connection so the statements of other threads don't get
+     * mixed in. It's rolled back if the transaction returns false or throws.
+     *
+     * @return true if the transaction was committed
+     */
+    public boolean runInTransaction(Transaction transaction) {
+        verifyDbIsOpen();
+
+        synchronized (connection) {
+            boolean commit = false;
+            try {
+                connection.setAutoCommit(false);
+                commit = transaction.run(this);
+            } catch (Throwable e) {
+                LOG.warn("Error performing transaction", e);
+            } finally {
+                try {
+                    if (commit) {
+                        connection.commit();
+                    } else {
+                        connection.rollback();
+                    }
+                } catch (Throwable e) {
+                    LOG.warn("Error ending transaction", e);
+                    commit = false;
+                } finally {
+                    try {
+                        connection.setAutoCommit(true);
+                    } catch (Throwable e) {
+                        LOG.warn("Error restoring auto commit", e);
+                    }
+                }
+            }
+            return commit;
+        }
+    }
+
     /**
      * @return true if the DB is currently open (has not been closed)
      */
@@ -368,6 +407,17 @@ public class SQLiteDatabase {
         return statement;
     }
 
+    /**
+     * The work of {@link #runInTransaction(Transaction)}.
+     */
+    public interface Transaction {
+
+        /**
+         * @return true to commit the changes, false to roll them back
+         */
+        boolean run(SQLiteDatabase db);
+    }
+
     /**
      * Used to allow returning sub-classes of {@link Cursor} when calling query.
      */
@@ -379,7 +379,14 @@ final class BTDownloadDataLine extends AbstractDataLine<BTDownload> {
             paymentOptions = initializer.getPaymentOptions();
         }
 
-        if (getInitializeObject().isCompleted()) {
+        checkCompleted();
+    }
+
+    /**
+     * Shows the completion notification, once, if the download is complete.
+     */
+    void checkCompleted() {
+        if (!notificationShown && getInitializeObject().isCompleted()) {
             showNotification();
         }
     }
@@ -355,16 +355,7 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
         BTEngine engine = BTEngine.getInstance();
         double totalBandwidth = download ? engine.downloadRate() : engine.uploadRate();
         if (download) {
-            double httpBandwidth = 0;
-            for (BTDownload btDownload : this.getDownloads()) {
-                if (btDownload instanceof HttpDownload ||
-                        btDownload instanceof SoundcloudDownload ||
-                        btDownload instanceof YouTubeDownload) {
-                    httpBandwidth += btDownload.getDownloadSpeed();
-                }
-            }
-            httpBandwidth = httpBandwidth * 1000;
-            totalBandwidth += httpBandwidth;
+            totalBandwidth += DATA_MODEL.getHttpDownloadSpeed();
         }
         return totalBandwidth;
     }
@@ -792,25 +783,22 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
 
     public void updateDownload(com.frostwire.bittorrent.BTDownload dl) {
         try {
-            int count = TABLE.getRowCount();
-            for (int i = 0; i < count; i++) {
-                if (i < DATA_MODEL.getRowCount()) {
-                    BTDownloadDataLine line = DATA_MODEL.get(i);
-                    BTDownload downloader = line.getInitializeObject();
-                    if (downloader instanceof BittorrentDownload) {
-                        BittorrentDownload bt = (BittorrentDownload) downloader;
-                        if (bt.getHash().equals(dl.getInfoHash())) {
-                            ((BittorrentDownload) downloader).updateUI(dl);
-                            break;
-                        }
-                    }
-                }
+            BTDownload downloader = DATA_MODEL.find(dl.getInfoHash());
+            if (downloader instanceof BittorrentDownload) {
+                ((BittorrentDownload) downloader).updateUI(dl);
+                DATA_MODEL.refreshStatus(downloader);
             }
         } catch (Throwable e) {
             LOG.error("Error updating bittorrent download", e);
         }
     }
 
+    public void updateDownloads(List<String> infoHashes) {
+        for (String infoHash : infoHashes) {
+            DATA_MODEL.refreshStatus(DATA_MODEL.find(infoHash));
+        }
+    }
+
     /**
      * Load from the last settings saved the previous sorting preferences of this mediator.
      */
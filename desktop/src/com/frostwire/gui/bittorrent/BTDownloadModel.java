@@ -17,6 +17,7 @@ package com.frostwire.gui.bittorrent;
 
 import java.util.HashSet;
 
+import com.frostwire.transfers.TransferRegistry;
 import com.frostwire.transfers.TransferState;
 
 import com.limegroup.gnutella.gui.tables.BasicDataLineModel;
@@ -29,12 +30,17 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
 
     private HashSet<String> _hashDownloads;
 
+    private final TransferRegistry<BTDownload> registry;
+
     /**
      * Initialize the model by setting the class of its DataLines.
      */
     BTDownloadModel() {
         super(BTDownloadDataLine.class);
         _hashDownloads = new HashSet<>();
+        registry = new TransferRegistry<>(new RegistryAdapter());
+        // with many transfers, updating the rows out of view dominates the refresh
+        setRefreshVisibleOnly(true);
     }
 
     /**
@@ -45,29 +51,33 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
     }
 
     int getActiveDownloads() {
-        int size = getRowCount();
-        int count = 0;
-
-        for (int i = 0; i < size; i++) {
-            BTDownload downloader = get(i).getInitializeObject();
-            if (!downloader.isCompleted() && downloader.getState() == TransferState.DOWNLOADING) {
-                count++;
-            }
-        }
-        return count;
+        return registry.snapshot().downloading();
     }
 
     int getActiveUploads() {
-        int size = getRowCount();
-        int count = 0;
+        return registry.snapshot().seeding();
+    }
 
-        for (int i = 0; i < size; i++) {
-            BTDownload downloader = get(i).getInitializeObject();
-            if (downloader.isCompleted() && downloader.getState() == TransferState.SEEDING) {
-                count++;
-            }
-        }
-        return count;
+    /**
+     * The sum of the download speeds of the http transfers, in bytes
+     * per second, the torrents are accounted by the engine.
+     */
+    long getHttpDownloadSpeed() {
+        return registry.snapshot().downloadSpeed();
+    }
+
+    /**
+     * Finds the torrent download by info hash, without walking the rows.
+     */
+    BTDownload find(String infoHash) {
+        return registry.findByInfoHash(infoHash);
+    }
+
+    /**
+     * Updates the aggregated counters with the current state of the download.
+     */
+    void refreshStatus(BTDownload downloader) {
+        registry.update(downloader);
     }
 
     public int getTotalDownloads() {
@@ -80,14 +90,13 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
      */
     public Object refresh() {
         try {
-            int size = getRowCount();
+            super.refresh();
 
+            // the completion notification can't wait for the row to be in view
+            int size = getRowCount();
             for (int i = 0; i < size; i++) {
-                BTDownloadDataLine ud = get(i);
-                ud.update();
+                get(i).checkCompleted();
             }
-
-            fireTableRowsUpdated(0, size);
         } catch (Exception e) {
             System.out.println("ATTENTION: Send the following output to the FrostWire Development team.");
             System.out.println("===============================START COPY & PASTE=======================================");
@@ -102,12 +111,14 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
     @Override
     public int add(BTDownload downloader) {
         _hashDownloads.add(downloader.getHash());
+        registry.add(downloader);
         return super.add(downloader);
     }
 
     @Override
     public int add(BTDownload downloader, int row) {
         _hashDownloads.add(downloader.getHash());
+        registry.add(downloader);
         return super.add(downloader, row);
     }
 
@@ -117,9 +128,19 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
         BTDownload downloader = line.getInitializeObject();
         downloader.remove();
         _hashDownloads.remove(downloader.getHash());
+        registry.remove(downloader);
         super.remove(i);
     }
 
+    @Override
+    public void clear() {
+        int size = getRowCount();
+        for (int i = 0; i < size; i++) {
+            registry.remove(get(i).getInitializeObject());
+        }
+        super.clear();
+    }
+
     public void remove(String hash) {
         _hashDownloads.remove(hash);
     }
@@ -138,4 +159,38 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
                 columnIndex == BTDownloadDataLine.ACTIONS_COLUMN.getModelIndex() ||
                 columnIndex == BTDownloadDataLine.SEEDING_COLUMN.getModelIndex();
     }
+
+    private static final class RegistryAdapter implements TransferRegistry.Adapter<BTDownload> {
+
+        @Override
+        public String infoHash(BTDownload d) {
+            return d instanceof BittorrentDownload ? d.getHash() : null;
+        }
+
+        @Override
+        public String url(BTDownload d) {
+            return null;
+        }
+
+        @Override
+        public TransferState state(BTDownload d) {
+            return d.getState();
+        }
+
+        @Override
+        public long downloadSpeed(BTDownload d) {
+            // in kB/s, the torrents are accounted by the engine
+            return d instanceof HttpBTDownload ? (long) (d.getDownloadSpeed() * 1000) : 0;
+        }
+
+        @Override
+        public long uploadSpeed(BTDownload d) {
+            return 0;
+        }
+
+        @Override
+        public boolean isPolled(BTDownload d) {
+            return !(d instanceof BittorrentDownload);
+        }
+    }
 }
@@ -20,6 +20,8 @@ package com.frostwire.gui.bittorrent;
 
 import com.frostwire.bittorrent.CopyrightLicenseBroker;
 import com.frostwire.bittorrent.PaymentOptions;
+import com.frostwire.transfers.BandwidthScheduler;
+import com.frostwire.transfers.SpeedStat;
 import com.frostwire.transfers.TransferState;
 import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.Logger;
@@ -38,18 +40,16 @@ import java.util.Date;
  */
 abstract class HttpBTDownload implements BTDownload {
     private static final Logger LOG = Logger.getLogger(HttpBTDownload.class);
-    private static final int SPEED_AVERAGE_CALCULATION_INTERVAL_MILLISECONDS = 1000;
 
     final File completeFile;
     private final Date dateCreated;
 
     long size;
     TransferState state;
-    private long averageSpeed; // in bytes
+    private final SpeedStat stat;
+    private final BandwidthScheduler.Throttle throttle;
     long bytesReceived;
     private boolean deleteDataWhenRemoved;
-    private long speedMarkTimestamp;
-    private long totalReceivedSinceLastSpeedStamp;
 
 
     final HttpClient httpClient;
@@ -60,23 +60,20 @@ abstract class HttpBTDownload implements BTDownload {
         this.size = size;
         dateCreated = new Date();
         bytesReceived = 0;
+        stat = new SpeedStat();
+        throttle = BandwidthScheduler.getInstance().newThrottle();
         httpClient = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.DOWNLOAD);
         httpClient.setListener(createHttpClientListener());
     }
 
     abstract HttpClient.HttpClientListener createHttpClientListener();
 
-    void updateAverageDownloadSpeed() {
-        long now = System.currentTimeMillis();
-        if (isCompleted()) {
-            averageSpeed = 0;
-            speedMarkTimestamp = now;
-            totalReceivedSinceLastSpeedStamp = 0;
-        } else if (now - speedMarkTimestamp > SPEED_AVERAGE_CALCULATION_INTERVAL_MILLISECONDS) {
-            averageSpeed = ((bytesReceived - totalReceivedSinceLastSpeedStamp) * 1000) / (now - speedMarkTimestamp);
-            speedMarkTimestamp = now;
-            totalReceivedSinceLastSpeedStamp = bytesReceived;
-        }
+    /**
+     * Accounts the bytes read and blocks while over the global download budget.
+     */
+    void updateAverageDownloadSpeed(int length) {
+        stat.update(length);
+        throttle.acquire(length);
     }
 
     void cleanup() {
@@ -191,7 +188,7 @@ abstract class HttpBTDownload implements BTDownload {
     public double getDownloadSpeed() {
         double result = 0;
         if (state == TransferState.DOWNLOADING) {
-            result = averageSpeed / 1000;
+            result = stat.averageSpeed() / 1000;
         }
         return result;
     }
@@ -204,7 +201,7 @@ abstract class HttpBTDownload implements BTDownload {
     @Override
     public long getETA() {
         if (size > 0) {
-            long speed = averageSpeed;
+            long speed = stat.averageSpeed();
             return speed > 0 ? (size - getBytesReceived()) / speed : -1;
         } else {
             return -1;
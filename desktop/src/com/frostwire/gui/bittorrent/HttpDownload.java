@@ -228,7 +228,7 @@ public class HttpDownload extends HttpBTDownload {
         public void onData(HttpClient client, byte[] buffer, int offset, int length) {
             if (!state.equals(TransferState.PAUSING) && !state.equals(TransferState.CANCELING)) {
                 bytesReceived += length;
-                updateAverageDownloadSpeed();
+                updateAverageDownloadSpeed(length);
                 state = TransferState.DOWNLOADING;
             }
         }
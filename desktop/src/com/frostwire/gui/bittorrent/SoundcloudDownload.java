@@ -131,7 +131,7 @@ public class SoundcloudDownload extends HttpBTDownload {
         public void onData(HttpClient client, byte[] buffer, int offset, int length) {
             if (!state.equals(TransferState.PAUSING) && !state.equals(TransferState.CANCELING)) {
                 bytesReceived += length;
-                updateAverageDownloadSpeed();
+                updateAverageDownloadSpeed(length);
                 state = TransferState.DOWNLOADING;
             }
         }
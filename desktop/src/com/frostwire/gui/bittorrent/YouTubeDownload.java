@@ -157,7 +157,7 @@ public class YouTubeDownload extends HttpBTDownload {
         public void onData(HttpClient client, byte[] buffer, int offset, int length) {
             if (!state.equals(TransferState.PAUSING) && !state.equals(TransferState.CANCELING)) {
                 bytesReceived += length;
-                updateAverageDownloadSpeed();
+                updateAverageDownloadSpeed(length);
                 state = TransferState.DOWNLOADING;
             }
         }
@@ -0,0 +1,756 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library;
+
+import com.frostwire.gui.library.tags.TagsData;
+import com.frostwire.gui.library.tags.TagsReader;
+import com.frostwire.util.Logger;
+import com.limegroup.gnutella.MediaType;
+import com.limegroup.gnutella.settings.LibrarySettings;
+import com.limegroup.gnutella.settings.SharingSettings;
+import org.apache.commons.io.IOUtils;
+import org.limewire.concurrent.ExecutorsHelper;
+import org.limewire.util.CommonUtils;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Persistent inverted index of the files in the library folders, by the
+ * words of their path (relative to the library folder) and of their tags.
+ * <p>
+ * At startup the index is loaded from disk and reconciled in the background
+ * with the file system, reading the tags again only for the files that
+ * changed. From there, a {@link WatchService} keeps it fresh incrementally.
+ * All the updates run in a single processing queue, the queries only take
+ * the read lock.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class LibraryIndex {
+
+    private static final Logger LOG = Logger.getLogger(LibraryIndex.class);
+
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE = "library.idx";
+    private static final long SAVE_DELAY_MILLIS = 10000; // since the last change
+    // a file is indexed once modified events stop, not for every write of a download
+    private static final long MODIFY_DELAY_MILLIS = 3000;
+    private static final int MAX_TAG_LENGTH = 256;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final LibraryIndex INSTANCE = new LibraryIndex();
+
+    private final TreeMap<String, Doc> docs; // by absolute path
+    private final TreeMap<String, Set<String>> postings; // token to paths
+    private final ReentrantReadWriteLock lock;
+    private final ExecutorService queue;
+    private final Map<WatchKey, Path> keys; // only used in the queue
+    private final Map<Path, Long> modified; // time of the last modify event, updated in the queue
+
+    private volatile Set<File> roots;
+    private volatile Set<File> excluded;
+    private volatile boolean ready;
+    private volatile boolean dirty;
+
+    private WatchService watcher;
+    private boolean started;
+
+    private LibraryIndex() {
+        this.docs = new TreeMap<>();
+        this.postings = new TreeMap<>();
+        this.lock = new ReentrantReadWriteLock();
+        this.queue = ExecutorsHelper.newProcessingQueue("LibraryIndex");
+        this.keys = new HashMap<>();
+        this.modified = new ConcurrentHashMap<>();
+
+        this.roots = Collections.emptySet();
+        this.excluded = Collections.emptySet();
+    }
+
+    public static LibraryIndex instance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Loads the index and starts watching the library folders, the work
+     * is done in the background.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        queue.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+                startWatcher();
+                syncRoots();
+            }
+        });
+    }
+
+    /**
+     * Returns true if the index covers the current library folders. If the
+     * folders, or the excluded ones, changed since the last time, it
+     * schedules the reindex.
+     */
+    public boolean isReady() {
+        if (ready && (!libraryRoots().equals(roots) || !LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue().equals(excluded))) {
+            ready = false;
+            queue.execute(new Runnable() {
+                @Override
+                public void run() {
+                    syncRoots();
+                }
+            });
+        }
+        return ready;
+    }
+
+    /**
+     * Returns the files under the given folders having, for every word of
+     * the query, a word in the path or in the tags starting with it. An
+     * empty query returns all the files under the folders.
+     */
+    public List<File> search(String query, Collection<File> scopes) {
+        Set<String> tokens = new HashSet<>();
+        tokenize(query, tokens);
+
+        List<String> prefixes = new ArrayList<>(scopes.size());
+        for (File scope : scopes) {
+            if (scope != null) {
+                prefixes.add(scope.getAbsolutePath() + File.separator);
+            }
+        }
+
+        List<File> results = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            if (tokens.isEmpty()) {
+                for (String prefix : prefixes) {
+                    for (String path : docs.subMap(prefix, prefix + Character.MAX_VALUE).keySet()) {
+                        results.add(new File(path));
+                    }
+                }
+                return results;
+            }
+
+            Set<String> candidates = null;
+            for (String token : tokens) {
+                Set<String> paths = matches(token);
+                if (candidates == null) {
+                    candidates = paths;
+                } else {
+                    candidates.retainAll(paths);
+                }
+                if (candidates.isEmpty()) {
+                    return results;
+                }
+            }
+
+            for (String path : candidates) {
+                if (inScope(path, prefixes)) {
+                    results.add(new File(path));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return results;
+    }
+
+    /**
+     * Number of files in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Set<String> matches(String prefix) {
+        Set<String> paths = new HashSet<>();
+        for (Set<String> s : postings.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            paths.addAll(s);
+        }
+        return paths;
+    }
+
+    private static boolean inScope(String path, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The library folders, without the excluded ones and without the ones
+     * nested in another, those are indexed as part of the outer folder.
+     */
+    private static Set<File> libraryRoots() {
+        Set<File> dirs = new HashSet<>();
+        for (File dir : LibrarySettings.DIRECTORIES_TO_INCLUDE.getValue()) {
+            if (dir != null) {
+                dirs.add(dir.getAbsoluteFile());
+            }
+        }
+        dirs.add(SharingSettings.TORRENT_DATA_DIR_SETTING.getValue().getAbsoluteFile());
+        dirs.add(SharingSettings.TORRENTS_DIR_SETTING.getValue().getAbsoluteFile());
+        dirs.removeAll(LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+
+        Set<File> roots = new HashSet<>();
+        for (File dir : dirs) {
+            boolean nested = false;
+            for (File other : dirs) {
+                if (dir.getPath().startsWith(other.getPath() + File.separator)) {
+                    nested = true;
+                    break;
+                }
+            }
+            if (!nested) {
+                roots.add(dir);
+            }
+        }
+
+        return roots;
+    }
+
+    private void syncRoots() {
+        Set<File> newRoots = libraryRoots();
+        excluded = new HashSet<>(LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+
+        List<String> prefixes = new ArrayList<>(newRoots.size());
+        for (File root : newRoots) {
+            prefixes.add(root.getPath() + File.separator);
+        }
+
+        lock.writeLock().lock();
+        try {
+            Iterator<String> it = docs.keySet().iterator();
+            while (it.hasNext()) {
+                String path = it.next();
+                if (!inScope(path, prefixes)) {
+                    removePostings(docs.get(path));
+                    it.remove();
+                    dirty = true;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Iterator<Map.Entry<WatchKey, Path>> it = keys.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<WatchKey, Path> e = it.next();
+            if (!inScope(e.getValue().toString() + File.separator, prefixes)) {
+                e.getKey().cancel();
+                it.remove();
+            }
+        }
+
+        roots = newRoots;
+        for (File root : newRoots) {
+            scan(root.toPath());
+        }
+        ready = true;
+
+        if (dirty) {
+            save();
+        }
+    }
+
+    /**
+     * Reconciles the index with the files under the folder.
+     */
+    private void scan(final Path dir) {
+        if (!Files.isDirectory(dir)) {
+            remove(dir);
+            return;
+        }
+
+        final Set<String> seen = new HashSet<>();
+
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                    if (!d.equals(dir) && skip(d)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    register(d);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path f, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !skip(f)) {
+                        seen.add(f.toString());
+                        index(f, attrs);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path f, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (Throwable e) {
+            LOG.warn("Error scanning library folder: " + dir + ", " + e.getMessage());
+        }
+
+        String prefix = dir.toString() + File.separator;
+
+        lock.writeLock().lock();
+        try {
+            Iterator<Doc> it = docs.subMap(prefix, prefix + Character.MAX_VALUE).values().iterator();
+            while (it.hasNext()) {
+                Doc doc = it.next();
+                if (!seen.contains(doc.path)) {
+                    removePostings(doc);
+                    it.remove();
+                    dirty = true;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean skip(Path p) {
+        File f = p.toFile();
+        // covers the .parts files and .DS_Store too
+        return f.getName().startsWith(".") || f.isHidden() || excluded.contains(f);
+    }
+
+    private void index(Path f, BasicFileAttributes attrs) {
+        String path = f.toString();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        long length = attrs.size();
+
+        lock.readLock().lock();
+        try {
+            Doc old = docs.get(path);
+            if (old != null && old.lastModified == lastModified && old.length == length) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Set<String> tokens = new HashSet<>();
+        tokenize(relativeName(f), tokens);
+        readTags(f.toFile(), tokens);
+
+        Doc doc = new Doc(path, lastModified, length, tokens.toArray(new String[tokens.size()]));
+
+        lock.writeLock().lock();
+        try {
+            put(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        dirty = true;
+    }
+
+    /**
+     * Removes the file, or all the files under the folder.
+     */
+    private void remove(Path p) {
+        String path = p.toString();
+        String prefix = path + File.separator;
+
+        lock.writeLock().lock();
+        try {
+            Doc doc = docs.remove(path);
+            if (doc != null) {
+                removePostings(doc);
+            } else {
+                Iterator<Doc> it = docs.subMap(prefix, prefix + Character.MAX_VALUE).values().iterator();
+                while (it.hasNext()) {
+                    removePostings(it.next());
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        dirty = true;
+    }
+
+    private String relativeName(Path f) {
+        for (File root : roots) {
+            Path r = root.toPath();
+            if (f.startsWith(r)) {
+                return r.relativize(f).toString();
+            }
+        }
+        return f.getFileName().toString();
+    }
+
+    private static void readTags(File file, Set<String> tokens) {
+        String name = file.getName();
+        if (!MediaType.getAudioMediaType().matches(name) && !MediaType.getVideoMediaType().matches(name)) {
+            return;
+        }
+
+        try {
+            TagsData data = new TagsReader(file).parseEmbedded();
+            if (data != null) {
+                for (String s : new String[]{data.getTitle(), data.getArtist(), data.getAlbum(), data.getGenre(), data.getYear(), data.getComment()}) {
+                    if (s != null) {
+                        tokenize(s.length() > MAX_TAG_LENGTH ? s.substring(0, MAX_TAG_LENGTH) : s, tokens);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            LOG.warn("Unable to read tags of file: " + file + ", " + e.getMessage());
+        }
+    }
+
+    static void tokenize(String text, Set<String> tokens) {
+        String norm = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        norm = DIACRITICS.matcher(norm).replaceAll("").toLowerCase(Locale.US);
+
+        for (String token : SEPARATORS.split(norm)) {
+            if (token.length() > 0) {
+                tokens.add(token);
+            }
+        }
+    }
+
+    // must hold the write lock
+    private void put(Doc doc) {
+        Doc old = docs.put(doc.path, doc);
+        if (old != null) {
+            removePostings(old);
+        }
+        for (String token : doc.tokens) {
+            Set<String> paths = postings.get(token);
+            if (paths == null) {
+                paths = new HashSet<>();
+                postings.put(token, paths);
+            }
+            paths.add(doc.path);
+        }
+    }
+
+    // must hold the write lock
+    private void removePostings(Doc doc) {
+        for (String token : doc.tokens) {
+            Set<String> paths = postings.get(token);
+            if (paths != null) {
+                paths.remove(doc.path);
+                if (paths.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+
+    private void startWatcher() {
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+        } catch (Throwable e) {
+            LOG.warn("Unable to watch the library folders, the index will only be updated at startup: " + e.getMessage());
+            return;
+        }
+
+        Thread t = ExecutorsHelper.daemonThreadFactory("LibraryIndex-Watcher").newThread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        });
+        t.start();
+    }
+
+    private void register(Path dir) {
+        if (watcher == null) {
+            return;
+        }
+        try {
+            keys.put(dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+        } catch (Throwable e) {
+            LOG.warn("Unable to watch library folder: " + dir + ", " + e.getMessage());
+        }
+    }
+
+    private void watch() {
+        long lastEvent = System.currentTimeMillis();
+        while (true) {
+            final WatchKey key;
+            try {
+                key = watcher.poll(MODIFY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            if (key == null) {
+                if (!modified.isEmpty()) {
+                    queue.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            indexModified();
+                        }
+                    });
+                    continue;
+                }
+                // quiet for a while, good time to persist the changes
+                if (dirty && System.currentTimeMillis() - lastEvent >= SAVE_DELAY_MILLIS) {
+                    queue.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (dirty) {
+                                save();
+                            }
+                        }
+                    });
+                }
+                continue;
+            }
+
+            lastEvent = System.currentTimeMillis();
+            final List<WatchEvent<?>> events = key.pollEvents();
+            key.reset();
+
+            queue.execute(new Runnable() {
+                @Override
+                public void run() {
+                    process(key, events);
+                }
+            });
+        }
+    }
+
+    private void process(WatchKey key, List<WatchEvent<?>> events) {
+        Path dir = keys.get(key);
+        if (dir == null) {
+            return;
+        }
+
+        for (WatchEvent<?> event : events) {
+            WatchEvent.Kind<?> kind = event.kind();
+
+            if (kind == OVERFLOW) {
+                scan(dir);
+                continue;
+            }
+
+            Path child = dir.resolve((Path) event.context());
+
+            try {
+                if (kind == ENTRY_DELETE) {
+                    modified.remove(child);
+                    remove(child);
+                } else if (skip(child)) {
+                    // ignore
+                } else if (Files.isDirectory(child)) {
+                    if (kind == ENTRY_CREATE) {
+                        scan(child);
+                    }
+                } else if (kind == ENTRY_MODIFY) {
+                    // the tags are read once the writes are done, see indexModified
+                    modified.put(child, System.currentTimeMillis());
+                } else if (Files.isRegularFile(child)) {
+                    index(child, Files.readAttributes(child, BasicFileAttributes.class));
+                }
+            } catch (Throwable e) {
+                LOG.warn("Error updating library index for: " + child + ", " + e.getMessage());
+            }
+        }
+
+        if (!key.isValid()) {
+            keys.remove(key);
+        }
+
+        // the other files don't wait for a busy one to go quiet
+        indexModified();
+    }
+
+    /**
+     * Indexes the modified files with no modify events for a while.
+     */
+    private void indexModified() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Long>> it = modified.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Long> e = it.next();
+            if (now - e.getValue() < MODIFY_DELAY_MILLIS) {
+                continue;
+            }
+            it.remove();
+
+            Path f = e.getKey();
+            try {
+                if (Files.isRegularFile(f) && !skip(f)) {
+                    index(f, Files.readAttributes(f, BasicFileAttributes.class));
+                }
+            } catch (Throwable t) {
+                LOG.warn("Error updating library index for: " + f + ", " + t.getMessage());
+            }
+        }
+    }
+
+    private static File indexFile() {
+        return new File(CommonUtils.getUserSettingsDir(), INDEX_FILE);
+    }
+
+    private void load() {
+        File file = indexFile();
+        if (!file.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            if (in.readInt() != VERSION) {
+                return;
+            }
+
+            Set<File> savedRoots = new HashSet<>();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                savedRoots.add(new File(in.readUTF()));
+            }
+
+            lock.writeLock().lock();
+            try {
+                n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    String path = in.readUTF();
+                    long lastModified = in.readLong();
+                    long length = in.readLong();
+                    String[] tokens = new String[in.readInt()];
+                    for (int j = 0; j < tokens.length; j++) {
+                        tokens[j] = in.readUTF();
+                    }
+                    put(new Doc(path, lastModified, length, tokens));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // usable right away, the reconcile runs next
+            roots = savedRoots;
+            excluded = new HashSet<>(LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+            ready = savedRoots.equals(libraryRoots());
+        } catch (Throwable e) {
+            LOG.warn("Error loading library index, rebuilding it: " + e.getMessage());
+
+            lock.writeLock().lock();
+            try {
+                docs.clear();
+                postings.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private void save() {
+        File file = indexFile();
+        File temp = new File(file.getPath() + ".tmp");
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+            out.writeInt(VERSION);
+
+            Set<File> r = roots;
+            out.writeInt(r.size());
+            for (File root : r) {
+                out.writeUTF(root.getPath());
+            }
+
+            lock.readLock().lock();
+            try {
+                out.writeInt(docs.size());
+                for (Doc doc : docs.values()) {
+                    out.writeUTF(doc.path);
+                    out.writeLong(doc.lastModified);
+                    out.writeLong(doc.length);
+                    out.writeInt(doc.tokens.length);
+                    for (String token : doc.tokens) {
+                        out.writeUTF(token);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            out.close();
+            out = null;
+
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (Throwable e) {
+            LOG.warn("Error saving library index: " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    private static final class Doc {
+
+        final String path;
+        final long lastModified;
+        final long length;
+        final String[] tokens;
+
+        Doc(String path, long lastModified, long length, String[] tokens) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.tokens = tokens;
+        }
+    }
+}
@@ -114,6 +114,8 @@ public class LibraryMediator {
         DividerLocationSettingUpdater.install(splitPane, UISettings.UI_LIBRARY_MAIN_DIVIDER_LOCATION);
 
         MAIN_PANEL.add(splitPane);
+
+        LibraryIndex.instance().start();
     }
 
     private Object getSelectedKey() {
@@ -326,7 +326,8 @@ public class LibraryPlaylists extends AbstractLibraryListPanel {
         if (playlist != null) {
             if (playlist.getId() == LibraryDatabase.STARRED_PLAYLIST_ID){
                 playlist = LibraryMediator.getLibrary().getStarredPlaylist();
-            } else {
+            } else if (!isPlaylistImporting(playlist)) {
+                // while importing, the new items are only in memory until the playlist is saved
                 playlist.refresh();
             }
             LibraryMediator.instance().updateTableItems(playlist);
@@ -293,6 +293,10 @@ public class LibrarySearch extends JPanel {
                     }
                 });
 
+                if (searchIndex()) {
+                    return;
+                }
+
                 if (directoryHolder instanceof MediaTypeSavedFilesDirectoryHolder) {
                     List<File> cache = new ArrayList<File>(((MediaTypeSavedFilesDirectoryHolder) directoryHolder).getCache());
                     if (cache.size() > 0) {
@@ -338,6 +342,62 @@ public class LibrarySearch extends JPanel {
             }
         }
 
+        /**
+         * Answers the query from the {@link LibraryIndex}, without touching
+         * the file system.
+         *
+         * @return false if the index can't answer it yet
+         */
+        private boolean searchIndex() {
+            LibraryIndex index = LibraryIndex.instance();
+            if (!index.isReady()) {
+                return false;
+            }
+
+            Set<File> scopes = new HashSet<File>();
+
+            if (directoryHolder instanceof TorrentDirectoryHolder || directoryHolder instanceof SavedFilesDirectoryHolder) {
+                scopes.add(directoryHolder.getDirectory());
+            } else if (directoryHolder instanceof MediaTypeSavedFilesDirectoryHolder) {
+                Set<File> directories = new HashSet<File>(LibrarySettings.DIRECTORIES_TO_INCLUDE.getValue());
+                directories.removeAll(LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+                for (File dir : directories) {
+                    if (dir != null && !(dir.equals(LibrarySettings.USER_MUSIC_FOLDER.getValue()) && !((MediaTypeSavedFilesDirectoryHolder) directoryHolder).getMediaType().equals(MediaType.getAudioMediaType()))) {
+                        scopes.add(dir);
+                    }
+                }
+            } else {
+                return false;
+            }
+
+            Set<File> ignore = TorrentUtil.getIgnorableFiles();
+
+            final List<File> results = new ArrayList<File>();
+            for (File file : index.search(_query, scopes)) {
+                if (canceled) {
+                    return true;
+                }
+                if (ignore.contains(file)) {
+                    continue;
+                }
+                if (directoryHolder instanceof SavedFilesDirectoryHolder || directoryHolder.accept(file)) {
+                    results.add(file);
+                }
+            }
+
+            GUIMediator.safeInvokeLater(new Runnable() {
+                public void run() {
+                    LibraryMediator.instance().addFilesToLibraryTable(results);
+
+                    if (directoryHolder instanceof SavedFilesDirectoryHolder) {
+                        LibraryFilesTableMediator.instance().resetAudioPlayerFileView();
+                    }
+                }
+            });
+
+            return true;
+        }
+
         /**
          * It searches _query in haystackDir.
          * 
@@ -85,6 +85,9 @@ public class LibraryUtils {
                     mt.getTrack(),
                     mt.getYear(),
                     starred || playlist.isStarred());
+            // regular playlists are written in one batch by Playlist.save() once the import is done,
+            // the starred playlist is assembled from the items of the others and is saved as it goes
+            boolean save = playlist.isStarred();
             List<PlaylistItem> items = playlist.getItems();
             if (index != -1 && index < items.size()) {
                 // insert item
@@ -93,14 +96,18 @@ public class LibraryUtils {
                 for (int i = index; i < items.size(); i++) {
                     PlaylistItem curItem = items.get(i);
                     curItem.setSortIndexByTrackNumber(i+1);
-                    curItem.save();
+                    if (save) {
+                        curItem.save();
+                    }
                 }
             } else {
                 items.add(item);
                 item.setSortIndexByTrackNumber(items.size()); // fall back index would be it being the last track.
-                item.save(item.isStarred());
+                if (save) {
+                    item.save(item.isStarred());
+                }
             }
-            if (isPlaylistSelected(playlist)) {
+            if (save && isPlaylistSelected(playlist)) {
                 // refresh UI
                 LibraryMediator.instance().getLibraryPlaylists().refreshSelection();
             }
@@ -328,6 +335,10 @@ public class LibraryUtils {
             public void run() {
                 try {
                     addToPlaylist(playlist, lines);
+                    if (playlist.isStarred()) {
+                        playlist.refresh();
+                    }
+                    playlist.save();
                 } finally {
                     asyncAddToPlaylistFinalizer(playlist);
                 }
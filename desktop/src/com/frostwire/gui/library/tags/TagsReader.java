@@ -56,6 +56,22 @@ public class TagsReader {
         return data;
     }
 
+    /**
+     * Parses only the tags embedded in the file, without the mplayer
+     * fallback, so it's cheap enough for bulk indexing.
+     *
+     * @return the tags or null if the format has no native parser
+     */
+    public TagsData parseEmbedded() {
+        TagsParser parser = new TagsParserFactory().getInstance(file);
+
+        if (parser == null || parser instanceof MPlayerParser) {
+            return null;
+        }
+
+        return parser.parse();
+    }
+
     public BufferedImage getArtwork() {
         BufferedImage image = null;
 
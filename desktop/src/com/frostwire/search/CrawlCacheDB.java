@@ -18,6 +18,7 @@
 
 package com.frostwire.search;
 
+import java.io.File;
 import java.io.IOException;
 
 import com.frostwire.util.Logger;
@@ -51,7 +52,7 @@ public final class CrawlCacheDB {
 
     private static final String DATABASE_NAME = "crawldb";
 
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 2;
 
     private static final String TABLE_NAME = "CacheData";
 
@@ -111,6 +112,31 @@ public final class CrawlCacheDB {
         return db.insert(TABLE_NAME, "", values);
     }
 
+    /**
+     * Replaces all the entries with the key by the new one, in a single
+     * transaction.
+     *
+     * @return true if the entry was stored
+     */
+    public boolean replace(final String key, final ContentValues initialValues) {
+        final ContentValues values = new ContentValues(initialValues);
+
+        if (values.containsKey(Columns.DATE_ADDED) == false) {
+            values.put(Columns.DATE_ADDED, Long.valueOf(System.currentTimeMillis() / 1000));
+        }
+        values.put(Columns.KEY, key);
+
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+
+        return db.runInTransaction(new SQLiteDatabase.Transaction() {
+            @Override
+            public boolean run(SQLiteDatabase db) {
+                return db.delete(TABLE_NAME, Columns.KEY + " = ?", new String[]{key}) >= 0 &&
+                        db.insert(TABLE_NAME, "", values) > 0;
+            }
+        });
+    }
+
     public int delete(String where, String[] whereArgs) {
         SQLiteDatabase db = databaseHelper.getWritableDatabase();
 
@@ -128,6 +154,82 @@ public final class CrawlCacheDB {
         return count;
     }
 
+    /**
+     * Deletes all the entries (data and negative) expired at the given time.
+     *
+     * @param now the time in milliseconds
+     * @return the number of entries deleted
+     */
+    public int deleteExpired(long now) {
+        String where = Columns.EXPIRES_AT + " > 0 AND " + Columns.EXPIRES_AT + " <= ?";
+        String[] whereArgs = new String[]{String.valueOf(now)};
+
+        return delete(where, whereArgs);
+    }
+
+    /**
+     * Returns the total size in bytes of the data stored.
+     */
+    public long dataSize() {
+        long size = 0;
+
+        SQLiteDatabase db = databaseHelper.getReadableDatabase();
+
+        Cursor c = null;
+        try {
+            c = db.rawQueryWithFactory(null, "SELECT SUM(" + Columns.DATA_SIZE + ") FROM " + TABLE_NAME, null, TABLE_NAME);
+            if (c != null && c.moveToNext()) {
+                size = c.getLong(1);
+            }
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Deletes the oldest entries until the total size of the data stored
+     * is not greater than {@code maxSize}.
+     *
+     * @param maxSize the maximum size in bytes
+     * @return the number of entries deleted
+     */
+    public int trimToSize(long maxSize) {
+        long excess = dataSize() - maxSize;
+        if (excess <= 0) {
+            return 0;
+        }
+
+        // the ids are assigned in insertion order, find the newest id to
+        // delete and do a single range delete
+        long lastId = -1;
+
+        SQLiteDatabase db = databaseHelper.getReadableDatabase();
+
+        Cursor c = null;
+        try {
+            String sql = "SELECT " + Columns.ID + ", " + Columns.DATA_SIZE + " FROM " + TABLE_NAME + " ORDER BY " + Columns.ID + " ASC";
+            c = db.rawQueryWithFactory(null, sql, null, TABLE_NAME);
+            while (c != null && excess > 0 && c.moveToNext()) {
+                lastId = c.getLong(1);
+                excess -= c.getLong(2);
+            }
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+
+        if (lastId == -1) {
+            return 0;
+        }
+
+        return delete(Columns.ID + " <= ?", new String[]{String.valueOf(lastId)});
+    }
+
     public static final class Columns {
 
         private Columns() {
@@ -137,6 +239,8 @@ public final class CrawlCacheDB {
         public static final String KEY = "key";
         public static final String DATA = "data";
         public static final String DATE_ADDED = "dateAdded";
+        public static final String EXPIRES_AT = "expiresAt";
+        public static final String DATA_SIZE = "dataSize";
     }
 
     /**
@@ -144,9 +248,12 @@ public final class CrawlCacheDB {
      */
     private static class DatabaseHelper extends SQLiteOpenHelper {
 
+        private final Context context;
+
         // 4MB cache size and scan-resistant cache algorithm "Two Queue" (2Q) with second level soft reference
         DatabaseHelper(Context context) {
             super(context, DATABASE_NAME, null, DATABASE_VERSION, "CACHE_SIZE=4096;CACHE_TYPE=SOFT_TQ");
+            this.context = context;
         }
 
         @Override
@@ -159,12 +266,23 @@ public final class CrawlCacheDB {
                 }
             }
 
+            // the version is part of the database folder, the old crawl cache is just dropped
+            File oldFolder = new File(context.getDatabasePath(DATABASE_NAME).getAbsolutePath() + "." + (DATABASE_VERSION - 1));
+            if (oldFolder.exists()) {
+                try {
+                    FileUtils.deleteDirectory(oldFolder);
+                } catch (IOException e) {
+                    LOG.warn("Unable to delete old crawl cache database");
+                }
+            }
+
             db.execSQL("SET IGNORECASE TRUE");
 
-            db.execSQL("CREATE TABLE " + TABLE_NAME + " (" + Columns.ID + " INTEGER IDENTITY," + Columns.KEY + " VARCHAR," + Columns.DATA + " BINARY," + Columns.DATE_ADDED + " BIGINT" + ");");
+            db.execSQL("CREATE TABLE " + TABLE_NAME + " (" + Columns.ID + " INTEGER IDENTITY," + Columns.KEY + " VARCHAR," + Columns.DATA + " BINARY," + Columns.DATE_ADDED + " BIGINT," + Columns.EXPIRES_AT + " BIGINT," + Columns.DATA_SIZE + " INTEGER" + ");");
 
             db.execSQL("CREATE INDEX idx_" + TABLE_NAME + "_" + Columns.ID + " ON " + TABLE_NAME + " (" + Columns.ID + ")");
             db.execSQL("CREATE INDEX idx_" + TABLE_NAME + "_" + Columns.KEY + " ON " + TABLE_NAME + " (" + Columns.KEY + ")");
+            db.execSQL("CREATE INDEX idx_" + TABLE_NAME + "_" + Columns.EXPIRES_AT + " ON " + TABLE_NAME + " (" + Columns.EXPIRES_AT + ")");
         }
 
         @Override
@@ -23,6 +23,9 @@ import com.frostwire.util.Logger;
 import com.frostwire.search.CrawlCacheDB.Columns;
 import com.limegroup.gnutella.settings.SearchSettings;
 
+import java.util.Timer;
+import java.util.TimerTask;
+
 /**
  * 
  * @author gubatron
@@ -33,10 +36,21 @@ public class DatabaseCrawlCache implements CrawlCache {
 
     private static final Logger LOG = Logger.getLogger(DatabaseCrawlCache.class);
 
+    private static final long SWEEP_INTERVAL = 10 * 60 * 1000; // 10 minutes
+    private static final long MAX_DATA_SIZE = 128 * 1024 * 1024; // 128MB
+
     private CrawlCacheDB db;
 
     public DatabaseCrawlCache() {
         db = CrawlCacheDB.instance();
+
+        Timer sweeper = new Timer("DatabaseCrawlCache-sweeper", true);
+        sweeper.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        }, SWEEP_INTERVAL, SWEEP_INTERVAL);
     }
 
     @Override
@@ -47,8 +61,8 @@ public class DatabaseCrawlCache implements CrawlCache {
 
         try {
             String[] columns = new String[] { Columns.DATA };
-            String where = Columns.KEY + " = ?";
-            String[] whereArgs = new String[] { key };
+            String where = Columns.KEY + " = ? AND " + Columns.DATA + " IS NOT NULL AND " + notExpired();
+            String[] whereArgs = new String[] { key, now() };
 
             c = db.query(columns, where, whereArgs, null);
 
@@ -69,18 +83,42 @@ public class DatabaseCrawlCache implements CrawlCache {
 
     @Override
     public void put(String key, byte[] data) {
-        if (SearchSettings.SMART_SEARCH_ENABLED.getValue()) {
-            try {
-                ContentValues values = new ContentValues();
+        put(key, data, 0);
+    }
 
-                values.put(Columns.KEY, key);
-                values.put(Columns.DATA, data);
+    @Override
+    public void put(String key, byte[] data, long ttl) {
+        insert(key, data, ttl);
+    }
+
+    @Override
+    public void putNegative(String key, long ttl) {
+        insert(key, null, ttl);
+    }
 
-                db.insert(values);
-            } catch (Throwable e) {
-                LOG.warn("Error putting value to crawl cache: " + e.getMessage());
+    @Override
+    public boolean isNegative(String key) {
+        boolean negative = false;
+
+        Cursor c = null;
+
+        try {
+            String[] columns = new String[] { Columns.ID };
+            String where = Columns.KEY + " = ? AND " + Columns.DATA + " IS NULL AND " + notExpired();
+            String[] whereArgs = new String[] { key, now() };
+
+            c = db.query(columns, where, whereArgs, null);
+
+            negative = c.moveToNext();
+        } catch (Throwable e) {
+            LOG.warn("General failure getting cache negative entry with key: " + key, e);
+        } finally {
+            if (c != null) {
+                c.close();
             }
         }
+
+        return negative;
     }
 
     @Override
@@ -113,8 +151,8 @@ public class DatabaseCrawlCache implements CrawlCache {
         try {
 
             String[] columns = new String[] { Columns.ID };
-            String where = "";
-            String[] whereArgs = new String[] {};
+            String where = Columns.DATA + " IS NOT NULL AND " + notExpired();
+            String[] whereArgs = new String[] { now() };
 
             c = db.query(columns, where, whereArgs, null);
 
@@ -132,4 +170,51 @@ public class DatabaseCrawlCache implements CrawlCache {
 
         return size;
     }
+
+    /**
+     * Deletes the expired entries and then the oldest ones if the total
+     * size of the data is over the limit.
+     */
+    public void sweep() {
+        try {
+            int expired = db.deleteExpired(System.currentTimeMillis());
+            int trimmed = db.trimToSize(MAX_DATA_SIZE);
+            if (expired > 0 || trimmed > 0) {
+                LOG.info("Crawl cache sweep, expired: " + expired + ", trimmed: " + trimmed);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error sweeping the crawl cache: " + e.getMessage());
+        }
+    }
+
+    private void insert(String key, byte[] data, long ttl) {
+        if (!SearchSettings.SMART_SEARCH_ENABLED.getValue()) {
+            return;
+        }
+
+        try {
+            ContentValues values = new ContentValues();
+
+            if (data != null) {
+                values.put(Columns.DATA, data);
+            }
+            values.put(Columns.EXPIRES_AT, ttl > 0 ? System.currentTimeMillis() + ttl : 0);
+            values.put(Columns.DATA_SIZE, data != null ? data.length : 0);
+
+            // only one entry per key
+            if (!db.replace(key, values)) {
+                LOG.warn("Unable to put value to crawl cache with key: " + key);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error putting value to crawl cache: " + e.getMessage());
+        }
+    }
+
+    private static String notExpired() {
+        return "(" + Columns.EXPIRES_AT + " = 0 OR " + Columns.EXPIRES_AT + " > ?)";
+    }
+
+    private static String now() {
+        return String.valueOf(System.currentTimeMillis());
+    }
 }
@@ -3,6 +3,7 @@ package com.limegroup.gnutella;
 import com.frostwire.bittorrent.BTDownload;
 
 import java.io.File;
+import java.util.List;
 
 
 /**
@@ -28,6 +29,11 @@ public interface ActivityCallback {
 
     void updateDownload(BTDownload dl);
 
+    /**
+     * The status of these torrents changed, by info hash.
+     */
+    void updateDownloads(List<String> infoHashes);
+
     /**
      * Show active downloads
      */
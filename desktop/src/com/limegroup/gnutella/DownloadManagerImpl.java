@@ -22,6 +22,7 @@ import com.frostwire.util.Logger;
 import com.limegroup.gnutella.settings.UpdateSettings;
 
 import java.io.File;
+import java.util.List;
 
 public final class DownloadManagerImpl implements DownloadManager {
 
@@ -45,6 +46,10 @@ public final class DownloadManagerImpl implements DownloadManager {
         }
     }
 
+    private void updateDownloads(List<String> infoHashes) {
+        activityCallback.updateDownloads(infoHashes);
+    }
+
     public void loadSavedDownloadsAndScheduleWriting() {
         try {
             BTEngine engine = BTEngine.getInstance();
@@ -90,6 +95,11 @@ public final class DownloadManagerImpl implements DownloadManager {
                 public void downloadUpdate(BTEngine engine, BTDownload dl) {
                     updateDownload(dl);
                 }
+
+                @Override
+                public void downloadsUpdated(BTEngine engine, List<String> infoHashes) {
+                    updateDownloads(infoHashes);
+                }
             });
 
             engine.restoreDownloads();
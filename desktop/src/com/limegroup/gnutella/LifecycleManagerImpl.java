@@ -189,6 +189,7 @@ public class LifecycleManagerImpl implements LifecycleManager {
 
         // save frostwire.props & other settings
         SettingsGroupManager.instance().save();
+        SettingsGroupManager.instance().flush();
 
         BTEngine.getInstance().stop();
         
@@ -21,6 +21,7 @@ import com.limegroup.gnutella.ActivityCallback;
 
 import javax.swing.*;
 import java.io.File;
+import java.util.List;
 
 /**
  * This class is the gateway from the backend to the frontend.  It
@@ -117,6 +118,12 @@ public final class VisualConnectionCallback implements ActivityCallback {
         mf().getBTDownloadMediator().updateDownload(dl);
     }
 
+    @Override
+    public void updateDownloads(List<String> infoHashes) {
+        // no need of running this in the UI thread
+        mf().getBTDownloadMediator().updateDownloads(infoHashes);
+    }
+
     public boolean isRemoteDownloadsAllowed() {
         try {
             SwingUtilities.invokeAndWait(new Runnable() {
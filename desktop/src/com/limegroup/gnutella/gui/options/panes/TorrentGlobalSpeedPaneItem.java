@@ -35,6 +35,8 @@ public final class TorrentGlobalSpeedPaneItem extends AbstractPaneItem {
 
     public final static String DESCRIPTION_DOWNLOAD_SPEED = I18n.tr("Set the Maximum BitTorrent transfer speeds in KB/s.\nTip: Use your keyboard arrows for more precision");
 
+    public final static String NOTE_DOWNLOAD_SPEED = "<html>" + I18n.tr("Note: The download speed limit applies to the cloud downloads (YouTube, SoundCloud, etc) too.") + "</html>";
+
     private final String LABEL_DOWNLOAD_SPEED = I18n.tr("Download Speed:");
 
     /**
@@ -91,6 +93,7 @@ public final class TorrentGlobalSpeedPaneItem extends AbstractPaneItem {
         add(DOWNLOAD_SLIDER);
         add(getVerticalSeparator());
         add(comp.getComponent());
+        add(new JLabel(NOTE_DOWNLOAD_SPEED));
 
         ///
 
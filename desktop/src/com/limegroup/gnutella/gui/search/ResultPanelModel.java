@@ -20,6 +20,7 @@ import com.limegroup.gnutella.gui.tables.BasicDataLineModel;
 import com.limegroup.gnutella.gui.tables.LimeTableColumn;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /** 
@@ -42,9 +43,10 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
     protected final SearchTableColumns COLUMNS = new SearchTableColumns();
 
     /**
-     * HashMap for quick access to indexes based on SHA1 info.
+     * HashMap for quick access to the lines based on SHA1 info,
+     * the row of a line is found in O(log n).
      */
-    private final Map<String, Integer> _indexes = new HashMap<>();
+    private final Map<String, SearchResultDataLine> _hashes = new HashMap<>();
 
     private int _numResults;
 
@@ -100,12 +102,12 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
      * @param row  the index of the row to remove.
      */
     public void remove(int row) {
-        String sha1 = getHash(row);
-        if (sha1 != null)
-            _indexes.remove(sha1);
+        SearchResultDataLine tl = get(row);
+        String sha1 = tl.getHash();
+        if (sha1 != null && _hashes.get(sha1) == tl)
+            _hashes.remove(sha1);
         super.remove(row);
         _numResults -= 1;
-        remapIndexes(row);
     }
 
     /**
@@ -131,16 +133,31 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
     }
 
     /**
-     * Maintains the indexes HashMap & MetadataModel.
+     * Maintains the hashes HashMap & MetadataModel.
      */
     public int add(SearchResultDataLine tl, int row) {
         _numResults += 1;
         String sha1 = tl.getHash();
         if (sha1 != null)
-            _indexes.put(sha1, new Integer(row));
-        int addedAt = super.add(tl, row);
-        remapIndexes(addedAt + 1);
-        return addedAt;
+            _hashes.put(sha1, tl);
+        return super.add(tl, row);
+    }
+
+    /**
+     * Maintains the hashes HashMap.
+     */
+    @Override
+    public int addAll(List<SearchResultDataLine> lines, boolean sorted) {
+        int first = super.addAll(lines, sorted);
+        if (first != -1) {
+            _numResults += lines.size();
+            for (SearchResultDataLine tl : lines) {
+                String sha1 = tl.getHash();
+                if (sha1 != null)
+                    _hashes.put(sha1, tl);
+            }
+        }
+        return first;
     }
 
     /**
@@ -154,20 +171,19 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
             return super.getRow(tl);
     }
 
-    /** 
-     * Overrides the default sort to maintain the indexes HashMap,
-     * according to the current sort column and order.
+    /**
+     * Does nothing -- lines need no cleanup.
      */
-    protected void doResort() {
-        super.doResort();
-        _indexes.clear(); // it's easier & quicker to just clear & re-input
-        remapIndexes(0);
+    protected void cleanup() {
     }
 
     /**
-     * Does nothing -- lines need no cleanup.
+     * Clears the cached SHA1 lines too.
      */
-    protected void cleanup() {
+    @Override
+    public void clear() {
+        _hashes.clear();
+        super.clear();
     }
 
     /**
@@ -176,40 +192,10 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
      */
     protected void simpleClear() {
         _numResults = 0;
-        _indexes.clear();
+        _hashes.clear();
         super.clear();
     }
 
-    /**
-     * Remaps the indexes, starting at 'start' and going to the end of
-     * the list.  This is needed for when rows are added to the middle of
-     * the list to maintain the correct rows per objects.
-     */
-    private void remapIndexes(int start) {
-        remapIndexes(start, getRowCount());
-    }
-
-    /**
-     * Remaps the indexes, starting at 'start' and going to 'end'.
-     * This is useful for when we move a row from end to start or vice versa.
-     */
-    private void remapIndexes(int start, int end) {
-        for (int i = start; i < end; i++) {
-            String sha1 = getHash(i);
-            if (sha1 != null)
-                _indexes.put(sha1, new Integer(i));
-        }
-    }
-
-    /**
-     * Gets the SHA1 URN for a row.
-     */
-    private String getHash(int idx) {
-        if (idx >= getRowCount())
-            return null;
-        return get(idx).getHash();
-    }
-
     /**
      * Compares the count between two rows.
      */
@@ -223,11 +209,11 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
      * Fast match -- lookup in the table.
      */
     private int fastMatch(String sha1) {
-        Integer idx = _indexes.get(sha1);
-        if (idx == null)
+        SearchResultDataLine tl = _hashes.get(sha1);
+        if (tl == null)
             return -1;
         else
-            return idx.intValue();
+            return super.getRow(tl);
     }
 
     public int getTotalResults() {
@@ -30,6 +30,7 @@ import java.awt.event.MouseEvent;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.AbstractButton;
@@ -109,6 +110,23 @@ final class SchemaBox extends JPanel {
         }
     }
     
+    /**
+     * Updates the counters once per media type, for a batch of results.
+     */
+    public void updateCounters(List<UISearchResult> results) {
+        Map<NamedMediaType, Integer> counts = new HashMap<>();
+        for (UISearchResult sr : results) {
+            NamedMediaType nmt = NamedMediaType.getFromExtension(sr.getExtension());
+            if (nmt != null && buttonsMap.containsKey(nmt)) {
+                Integer n = counts.get(nmt);
+                counts.put(nmt, n != null ? n + 1 : 1);
+            }
+        }
+        for (Map.Entry<NamedMediaType, Integer> e : counts.entrySet()) {
+            incrementText(buttonsMap.get(e.getKey()), e.getKey(), e.getValue());
+        }
+    }
+
     public void resetCounters() {
         Collection<JToggleButton> values = buttonsMap.values();
         for (JToggleButton button : values) {
@@ -118,6 +136,10 @@ final class SchemaBox extends JPanel {
     }
 
     private void incrementText(JToggleButton button, NamedMediaType nmt) {
+        incrementText(button, nmt, 1);
+    }
+
+    private void incrementText(JToggleButton button, NamedMediaType nmt, int delta) {
         String text = button.getText();
         int n = 0;
         try { // only justified situation of using try-catch for logic flow, since regex is slower
@@ -125,7 +147,7 @@ final class SchemaBox extends JPanel {
         } catch (Throwable e) {
             // no an integer
         }
-        String incrementedCounterValue = String.valueOf(n + 1);
+        String incrementedCounterValue = String.valueOf(n + delta);
         button.setText(incrementedCounterValue);
         button.setToolTipText(String.format(tooltipPlaceHolders.get(nmt), incrementedCounterValue));
     }
@@ -15,7 +15,6 @@
 
 package com.limegroup.gnutella.gui.search;
 
-import com.frostwire.gui.filters.SearchFilter;
 import com.frostwire.gui.filters.SearchFilterFactory;
 import com.frostwire.gui.filters.SearchFilterFactoryImpl;
 import com.frostwire.gui.tabs.TransfersTab;
@@ -546,23 +545,8 @@ public final class SearchMediator {
                     return;
                 }
 
-                final List<UISearchResult> uiResults = convertResults(filtered, se, rp.getQuery());
-
-                GUIMediator.safeInvokeAndWait(new Runnable() {
-                    public void run() {
-                        try {
-                            SearchFilter filter = getSearchFilterFactory().createFilter();
-                            for (UISearchResult sr : uiResults) {
-                                if (filter.allow(sr)) {
-                                    getSearchResultDisplayer().addQueryResult(token, sr, rp);
-                                }
-                            }
-                        } catch (Exception e) {
-                            LOG.error("Error adding search result to UI", e);
-                        }
-                    }
-
-                });
+                // queued, added to the table in batches, the search threads never wait for the UI
+                rp.addResults(token, convertResults(filtered, se, rp.getQuery()));
             }
         }
     }
@@ -297,36 +297,6 @@ public final class SearchResultDisplayer implements RefreshListener {
         return panel;
     }
 
-    /**
-     * If i rp is no longer the i'th panel of this, returns silently. Otherwise
-     * adds line to rp under the given group. Updates the count on the tab in
-     * this and restarts the spinning lime.
-     */
-    void addQueryResult(long token, UISearchResult line, SearchResultMediator rp) {
-        if (rp.isStopped()) {
-            return;
-        }
-
-        //Actually add the line.   Must obtain rp's monitor first.
-        if (!rp.matches(token))//GUID of rp!=replyGuid
-            throw new IllegalArgumentException("guids don't match");
-
-        rp.add(line);
-
-        int resultPanelIndex;
-        // Search for the ResultPanel to verify it exists.
-        resultPanelIndex = entries.indexOf(rp);
-
-        // If we couldn't find it, silently exit.
-        if (resultPanelIndex == -1) {
-            return;
-        }
-
-        //Update index on tab.  Don't forget to add 1 since line hasn't
-        //actually been added!
-        tabbedPane.setTitleAt(resultPanelIndex, titleOf(rp));
-    }
-
     void updateSearchIcon(SearchResultMediator rp, boolean active) {
         int resultPanelIndex;
         // Search for the ResultPanel to verify it exists.
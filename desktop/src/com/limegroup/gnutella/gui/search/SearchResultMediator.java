@@ -20,6 +20,7 @@
 package com.limegroup.gnutella.gui.search;
 
 import com.frostwire.gui.bittorrent.TorrentUtil;
+import com.frostwire.gui.filters.SearchFilter;
 import com.frostwire.gui.filters.TableLineFilter;
 import com.frostwire.gui.theme.SkinMenu;
 import com.frostwire.gui.theme.SkinMenuItem;
@@ -58,8 +59,12 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.limegroup.gnutella.gui.I18n.tr;
 
@@ -71,6 +76,11 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
      * The TableSettings that all ResultPanels will use.
      */
     private static final TableSettings SEARCH_SETTINGS = new TableSettings("SEARCH_TABLE");
+    // the pending results are added to the table at most once per frame
+    private static final int FRAME_MILLIS = 1000 / 30;
+    // more than this is left for the next frame, to keep the UI responsive
+    private static final int MAX_RESULTS_PER_FRAME = 2000;
+
     private static final java.lang.String FROSTWIRE_FEATURED_DOWNLOADS_URL = "http://www.frostwire.com/featured-downloads/?from=desktop-"+ UrlUtils.encode(OSUtils.getFullOS() + "-" + FrostWireUtils.getFrostWireVersion() + "b" + FrostWireUtils.getBuildNumber());
 
     /**
@@ -81,7 +91,14 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
     /**
      * The search token of the last search. (Use this to match up results.)
      */
-    private long token;
+    private volatile long token;
+
+    /**
+     * Results waiting to be added, queued from the search threads.
+     */
+    private final Queue<PendingResults> pendingResults = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private javax.swing.Timer drainTimer;
 
     private final List<String> searchTokens;
 
@@ -911,4 +928,118 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
 
         schemaBox.updateCounters(o);
     }
+
+    /**
+     * Queues the results of the search with the given token, without
+     * blocking. The results are added to the table in the event dispatch
+     * thread, all the results of a frame at once.
+     */
+    void addResults(long token, List<UISearchResult> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+
+        pendingResults.offer(new PendingResults(token, results));
+        if (drainScheduled.compareAndSet(false, true)) {
+            GUIMediator.safeInvokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    if (drainTimer == null) {
+                        drainTimer = new javax.swing.Timer(FRAME_MILLIS, new ActionListener() {
+                            @Override
+                            public void actionPerformed(ActionEvent e) {
+                                drainResults();
+                            }
+                        });
+                        drainTimer.setRepeats(false);
+                    }
+                    drainTimer.start();
+                }
+            });
+        }
+    }
+
+    private void drainResults() {
+        // results queued from now on schedule another frame
+        drainScheduled.set(false);
+
+        List<UISearchResult> results = new ArrayList<>();
+        PendingResults p;
+        while (results.size() < MAX_RESULTS_PER_FRAME && (p = pendingResults.poll()) != null) {
+            // results of a previous search, or of a stopped one
+            if (matches(p.token) && !isStopped()) {
+                results.addAll(p.results);
+            }
+        }
+
+        if (!pendingResults.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+            drainTimer.start();
+        }
+
+        try {
+            SearchFilter filter = SearchMediator.getSearchFilterFactory().createFilter();
+            List<UISearchResult> allowed = new ArrayList<>(results.size());
+            for (UISearchResult sr : results) {
+                if (filter.allow(sr)) {
+                    allowed.add(sr);
+                }
+            }
+
+            if (!allowed.isEmpty()) {
+                addAll(allowed);
+                SearchMediator.setTabDisplayCount(this);
+            }
+        } catch (Exception e) {
+            SearchMediator.LOG.error("Error adding search results to UI", e);
+        }
+    }
+
+    /**
+     * Adds the results with a single table event, keeping the selection.
+     */
+    private void addAll(List<UISearchResult> results) {
+        if (TABLE.isEditing()) {
+            CellEditor editor = TABLE.getCellEditor();
+            editor.cancelCellEditing();
+        }
+
+        int[] rows = TABLE.getSelectedRows();
+        SearchResultDataLine[] selected = new SearchResultDataLine[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            selected[i] = DATA_MODEL.get(rows[i]);
+        }
+
+        List<SearchResultDataLine> lines = new ArrayList<>(results.size());
+        for (UISearchResult sr : results) {
+            SearchResultDataLine line = DATA_MODEL.getNewDataLine(sr);
+            if (line != null) {
+                lines.add(line);
+            }
+        }
+
+        boolean sorted = SETTINGS.REAL_TIME_SORT.getValue() && DATA_MODEL.isSorted();
+        if (DATA_MODEL.addAll(lines, sorted) != -1) {
+            // the inserted rows could take the selection, or the rows could have moved
+            TABLE.clearSelection();
+            for (SearchResultDataLine line : selected) {
+                int row = DATA_MODEL.getRow(line);
+                if (row != -1) {
+                    TABLE.addRowSelectionInterval(row, row);
+                }
+            }
+        }
+
+        schemaBox.updateCounters(results);
+    }
+
+    private static final class PendingResults {
+
+        final long token;
+        final List<UISearchResult> results;
+
+        PendingResults(long token, List<UISearchResult> results) {
+            this.token = token;
+            this.results = results;
+        }
+    }
 }
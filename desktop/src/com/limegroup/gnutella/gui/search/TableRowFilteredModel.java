@@ -96,6 +96,29 @@ public class TableRowFilteredModel extends ResultPanelModel {
         return -1;
     }
 
+    /**
+     * Determines which of the lines should be added, and adds them at once.
+     */
+    @Override
+    public int addAll(List<SearchResultDataLine> lines, boolean sorted) {
+        List<SearchResultDataLine> allowed = new ArrayList<SearchResultDataLine>(lines.size());
+        for (SearchResultDataLine tl : lines) {
+            boolean isNotJunk = junkFilter.allow(tl);
+
+            if (isNotJunk || !SearchSettings.hideJunk()) {
+                if (allow(tl)) {
+                    allowed.add(tl);
+                } else {
+                    HIDDEN.add(tl);
+                    _numResults += 1;
+                }
+            } else {
+                _numResults += 1;
+            }
+        }
+        return super.addAll(allowed, sorted);
+    }
+
     /**
      * Intercepts to clear the hidden map.
      */
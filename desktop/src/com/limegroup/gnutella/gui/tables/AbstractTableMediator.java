@@ -584,11 +584,23 @@ public abstract class AbstractTableMediator<T extends DataLineModel<E, I>, E ext
         // Upload & Download tables, since they cache data instead
         // of acting directly on the respective loaders.
         if (TABLE.isShowing()) {
+            setVisibleRows();
             doRefresh();
             resort();
         }
     }
 
+    /**
+     * Tells the model which rows are in view, for the models that
+     * only refresh the visible rows.
+     */
+    private void setVisibleRows() {
+        Rectangle visible = TABLE.getVisibleRect();
+        int first = TABLE.rowAtPoint(visible.getLocation());
+        int last = TABLE.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+        DATA_MODEL.setVisibleRows(first != -1 ? first : 0, last != -1 ? last : DATA_MODEL.getRowCount() - 1);
+    }
+
     /**
      * Exists for extending classes to overwrite.
      * Mostly used for updating the values of buttons/menu-items
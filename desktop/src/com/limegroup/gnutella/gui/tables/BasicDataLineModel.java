@@ -17,7 +17,9 @@ package com.limegroup.gnutella.gui.tables;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.table.AbstractTableModel;
 
@@ -40,8 +42,26 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
 
     /**
      * Internally used list object storing the DataLines.
+     * Inserts, removes and row lookups by DataLine are O(log n).
      */
-    protected List<T> _list = new ArrayList<T>();
+    protected List<T> _list = new IndexedList<T>();
+
+    /**
+     * The DataLines by their initialize object, for O(log n) getRow(E).
+     */
+    private final Map<Object, T> _lines = new HashMap<Object, T>();
+
+    /**
+     * Whether two DataLines were ever initialized with the same object.
+     */
+    private boolean _sharedInitializers = false;
+
+    /**
+     * Whether refresh() only updates the visible rows, see setVisibleRows.
+     */
+    private boolean _refreshVisibleOnly = false;
+    private int _firstVisibleRow = 0;
+    private int _lastVisibleRow = Integer.MAX_VALUE;
 
     private static final int ASCENDING = 1;
     private static final int DESCENDING = -1;
@@ -162,6 +182,8 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
     public void clear() {
         cleanup();
         _list.clear();
+        _lines.clear();
+        _sharedInitializers = false;
         fireTableDataChanged();
     }
     
@@ -182,6 +204,10 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
      * @return null
      */
     public Object refresh() {
+        if (_refreshVisibleOnly) {
+            refreshVisibleRows();
+            return null;
+        }
         int end = _list.size();
         for (int i = 0; i < end; i++)
             _list.get(i).update();
@@ -189,6 +215,71 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
         return null;
     }
 
+    /**
+     * Whether refresh() should only update the visible rows, and fire
+     * events only for the runs of rows whose values changed.
+     * The rows out of view are updated when they come into view, or
+     * all of them if the active sort column is dynamic.
+     */
+    public void setRefreshVisibleOnly(boolean visibleOnly) {
+        _refreshVisibleOnly = visibleOnly;
+    }
+
+    public boolean isRefreshVisibleOnly() {
+        return _refreshVisibleOnly;
+    }
+
+    //Implements DataLineModel interface.
+    public void setVisibleRows(int first, int last) {
+        _firstVisibleRow = Math.max(0, first);
+        _lastVisibleRow = last;
+    }
+
+    /**
+     * Updates the visible rows, firing an update event for each run
+     * of consecutive rows with changed values.
+     */
+    protected void refreshVisibleRows() {
+        int end = _list.size();
+        int first = Math.min(_firstVisibleRow, end);
+        int last = Math.min(_lastVisibleRow, end - 1);
+
+        if (needsResort()) {
+            // the sort compares the values of all the rows
+            for (int i = 0; i < first; i++)
+                _list.get(i).update();
+            for (int i = last + 1; i < end; i++)
+                _list.get(i).update();
+        }
+
+        int columns = getColumnCount();
+        Object[] values = new Object[columns];
+        int changedFrom = -1;
+        for (int row = first; row <= last; row++) {
+            T dl = _list.get(row);
+            for (int col = 0; col < columns; col++)
+                values[col] = dl.getValueAt(col);
+
+            dl.update();
+
+            boolean changed = false;
+            for (int col = 0; col < columns && !changed; col++) {
+                Object value = dl.getValueAt(col);
+                changed = value == null ? values[col] != null : !value.equals(values[col]);
+            }
+
+            if (changed) {
+                if (changedFrom == -1)
+                    changedFrom = row;
+            } else if (changedFrom != -1) {
+                fireTableRowsUpdated(changedFrom, row - 1);
+                changedFrom = -1;
+            }
+        }
+        if (changedFrom != -1)
+            fireTableRowsUpdated(changedFrom, last);
+    }
+
     /**
      * Update a specific DataLine
      * The DataLine updated is the one that was initialized by Object o
@@ -310,6 +401,7 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
      */
     public int add(T dl, int row) {
         _list.add(row, dl);
+        mapLine(dl);
         fireTableRowsInserted(row, row);
         return row;
     }
@@ -340,6 +432,63 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
         return add(dl, getSortedPosition(dl));
     }
 
+    /**
+     * Adds the DataLines with a single table event, appended at the end,
+     * or merged into their sorted positions if sorted is true.
+     *
+     * Extending classes should override this if they want
+     * to maintain a HashMap of any type for speedier access.
+     *
+     * @return the first row that changed, or -1 if nothing was added
+     */
+    public int addAll(List<T> lines, boolean sorted) {
+        if (lines.isEmpty()) {
+            return -1;
+        }
+
+        int size = _list.size();
+        int first = size;
+        if (!sorted) {
+            _list.addAll(lines);
+        } else {
+            List<T> added = new ArrayList<T>(lines);
+            Collections.sort(added, this);
+
+            // linear merge, the existing lines go first on ties, like a binary search insert
+            List<T> merged = new ArrayList<T>(size + added.size());
+            int i = 0;
+            int j = 0;
+            while (i < size && j < added.size()) {
+                if (compare(added.get(j), _list.get(i)) < 0) {
+                    first = Math.min(first, merged.size());
+                    merged.add(added.get(j++));
+                } else {
+                    merged.add(_list.get(i++));
+                }
+            }
+            while (i < size) {
+                merged.add(_list.get(i++));
+            }
+            while (j < added.size()) {
+                merged.add(added.get(j++));
+            }
+
+            _list.clear();
+            _list.addAll(merged);
+        }
+
+        for (T dl : lines) {
+            mapLine(dl);
+        }
+
+        if (first == size) {
+            fireTableRowsInserted(size, _list.size() - 1);
+        } else {
+            fireTableDataChanged();
+        }
+        return first;
+    }
+
     //Implements the DataLineModel interface.
     public T get(int row) {
         if(row == -1)
@@ -380,8 +529,10 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
      * Calls cleanup on the DataLine and then removes it from the list.
      */
     public void remove(int row) {
-        _list.get(row).cleanup();
+        T dl = _list.get(row);
+        dl.cleanup();
         _list.remove(row);
+        unmapLine(dl);
         fireTableRowsDeleted(row, row);
     }
 
@@ -399,18 +550,13 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
     /**
      * Helper function that resolves to remove(int).
      * Removes the DataLine that was initialized by the Object o.
-     * Uses a linear search through the list to find a match.
-     * Extending objects that have large lists and call remove(Object)
-     * often may wish to override this, add(Object, int) and sort using
-     * a HashMap for more timely access.
      */
     public void remove(Object o) {
-        int end = _list.size();
-        for (int i = 0; i < end; i++) {
-            if (_list.get(i).getInitializeObject().equals(o)) {
-                remove(i);
-                break;
-            }
+        T dl = _lines.get(o);
+        if (dl != null) {
+            int idx = _list.indexOf(dl);
+            if (idx != -1)
+                remove(idx);
         }
     }
 
@@ -447,18 +593,9 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
     /**
      * @return true if the List contains a DataLine that was initialized
      *  by Object o.
-     * @notes Extending classes may wish to override this function
-     *  if searching is done frequently, using a HashMap.
-     * The add(Object, int) & sort function should be overriden to intialize
-     * the HashMap.
      */
     public boolean contains(Object o) {
-        int end = _list.size();
-        for (int i = 0; i < end; i++) {
-            if (_list.get(i).getInitializeObject().equals(o))
-                return true;
-        }
-        return false;
+        return _lines.containsKey(o);
     }
 
     /**
@@ -486,19 +623,49 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
     }
 
    /**
-     * @return the index of the first DataLine that was initialized by Object o.
-     * @notes Extending classes may wish to override this function
-     *  if searching is done frequently, using a HashMap.
-     * The add(Object, int) & sort function should be overriden to initialize
-     * the HashMap.
+     * @return the index of a DataLine that was initialized by Object o.
      */
     public int getRow(E o) {
-        int end = _list.size();
-        for (int i = 0; i < end; i++) {
-            if (_list.get(i).getInitializeObject().equals(o))
-                return i;
+        T dl = _lines.get(o);
+        return dl != null ? _list.indexOf(dl) : -1;
+    }
+
+    /**
+     * Notifies the model that the initialize object of a line
+     * has changed.
+     */
+    public void initializeObjectChanged(E old, E now) {
+        T dl = _lines.remove(old);
+        if (dl != null)
+            _lines.put(now, dl);
+    }
+
+    private void mapLine(T dl) {
+        Object init = dl.getInitializeObject();
+        if (_lines.containsKey(init))
+            _sharedInitializers = true;
+        else
+            _lines.put(init, dl);
+    }
+
+    private void unmapLine(T dl) {
+        Object init = dl.getInitializeObject();
+        if (_lines.get(init) != dl)
+            return;
+
+        _lines.remove(init);
+        if (_sharedInitializers) {
+            // rare, look for another line with the same object
+            int end = _list.size();
+            for (int i = 0; i < end; i++) {
+                T other = _list.get(i);
+                Object o = other.getInitializeObject();
+                if (init == null ? o == null : init.equals(o)) {
+                    _lines.put(init, other);
+                    break;
+                }
+            }
         }
-        return -1;
     }
 
     /**
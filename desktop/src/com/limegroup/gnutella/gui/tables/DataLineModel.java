@@ -51,6 +51,12 @@ public interface DataLineModel<T extends DataLine<E>, E> extends Comparator<T>,
      */
     public Object refresh();
 
+    /**
+     * Sets the rows currently in view, used by models that only
+     * refresh the visible rows.
+     */
+    public void setVisibleRows(int first, int last);
+
     /**
      * Update a specific DataLine.
      * The dataline updated is one that was initialized by Object o.
@@ -35,4 +35,19 @@ public final class IconAndNameHolderImpl implements IconAndNameHolder,
 	public String toString() {
 	    return _name;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof IconAndNameHolderImpl)) {
+            return false;
+        }
+        IconAndNameHolderImpl other = (IconAndNameHolderImpl) o;
+        return (_icon == null ? other._icon == null : _icon.equals(other._icon)) &&
+                (_name == null ? other._name == null : _name.equals(other._name));
+    }
+
+    @Override
+    public int hashCode() {
+        return _name != null ? _name.hashCode() : 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.limegroup.gnutella.gui.tables;
+
+import java.util.AbstractList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.RandomAccess;
+
+/**
+ * List with O(log n) access, insert and remove by position, and O(log n)
+ * position lookup of an element, kept as an implicit treap (a randomized
+ * balanced tree ordered by position, with the size of each subtree).
+ * <p>
+ * The elements are looked up by identity, like the DataLines, which don't
+ * override equals. Not thread safe, like the table models using it.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class IndexedList<T> extends AbstractList<T> implements RandomAccess {
+
+    private final Random random;
+    private final Map<Object, Node<T>> nodes;
+    private Node<T> root;
+
+    IndexedList() {
+        this.random = new Random();
+        this.nodes = new IdentityHashMap<Object, Node<T>>();
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public T get(int index) {
+        return node(index).value;
+    }
+
+    @Override
+    public T set(int index, T element) {
+        Node<T> n = node(index);
+        T old = n.value;
+        unmap(n);
+        n.value = element;
+        nodes.put(element, n);
+        return old;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        Node<T> n = new Node<T>(element, random.nextInt());
+        nodes.put(element, n);
+
+        Node<T>[] parts = split(root, index);
+        root = merge(merge(parts[0], n), parts[1]);
+        root.parent = null;
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        Node<T>[] left = split(root, index);
+        Node<T>[] right = split(left[1], 1);
+        Node<T> n = right[0];
+        unmap(n);
+
+        root = merge(left[0], right[1]);
+        if (root != null) {
+            root.parent = null;
+        }
+        modCount++;
+        return n.value;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        nodes.clear();
+        modCount++;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        Node<T> n = nodes.get(o);
+        if (n == null) {
+            return -1;
+        }
+
+        int index = size(n.left);
+        while (n.parent != null) {
+            if (n == n.parent.right) {
+                index += size(n.parent.left) + 1;
+            }
+            n = n.parent;
+        }
+        return index;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return nodes.containsKey(o);
+    }
+
+    private Node<T> node(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        Node<T> n = root;
+        while (true) {
+            int leftSize = size(n.left);
+            if (index < leftSize) {
+                n = n.left;
+            } else if (index == leftSize) {
+                return n;
+            } else {
+                index -= leftSize + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    // the same element could be added twice, only the last node is mapped
+    private void unmap(Node<T> n) {
+        if (nodes.get(n.value) == n) {
+            nodes.remove(n.value);
+        }
+    }
+
+    /**
+     * Splits the tree in the first count elements and the rest.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] split(Node<T> n, int count) {
+        if (n == null) {
+            return new Node[]{null, null};
+        }
+
+        int leftSize = size(n.left);
+        if (count <= leftSize) {
+            Node<T>[] parts = split(n.left, count);
+            n.left = parts[1];
+            update(n);
+            parts[1] = n;
+            if (parts[0] != null) {
+                parts[0].parent = null;
+            }
+            return parts;
+        } else {
+            Node<T>[] parts = split(n.right, count - leftSize - 1);
+            n.right = parts[0];
+            update(n);
+            parts[0] = n;
+            if (parts[1] != null) {
+                parts[1].parent = null;
+            }
+            return parts;
+        }
+    }
+
+    private static <T> Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        } else {
+            b.left = merge(a, b.left);
+            update(b);
+            return b;
+        }
+    }
+
+    private static <T> void update(Node<T> n) {
+        n.size = 1 + size(n.left) + size(n.right);
+        if (n.left != null) {
+            n.left.parent = n;
+        }
+        if (n.right != null) {
+            n.right.parent = n;
+        }
+    }
+
+    private static int size(Node<?> n) {
+        return n != null ? n.size : 0;
+    }
+
+    private static final class Node<T> {
+
+        T value;
+        final int priority;
+        int size;
+        Node<T> left;
+        Node<T> right;
+        Node<T> parent;
+
+        Node(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+            this.size = 1;
+        }
+    }
+}
@@ -33,4 +33,14 @@ public class SeedsHolder implements Comparable<SeedsHolder> {
     public int compareTo(SeedsHolder other) {
         return (connected + seeds) - (other.connected + other.seeds);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SeedsHolder && stringForm.equals(((SeedsHolder) o).stringForm);
+    }
+
+    @Override
+    public int hashCode() {
+        return stringForm.hashCode();
+    }
 }
@@ -81,4 +81,18 @@ public final class SizeHolder implements Comparable<SizeHolder> {
     public long getSize() {
         return _size;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SizeHolder)) {
+            return false;
+        }
+        SizeHolder other = (SizeHolder) o;
+        return _size == other._size && _string.equals(other._string);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (_size ^ (_size >>> 32)) * 31 + _string.hashCode();
+    }
 }
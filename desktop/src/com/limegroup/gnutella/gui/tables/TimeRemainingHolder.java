@@ -43,4 +43,14 @@ public final class TimeRemainingHolder implements Comparable<TimeRemainingHolder
             return _timeRemaining == 0 ? "" : CommonUtils.seconds2time(_timeRemaining);
         }
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TimeRemainingHolder && _timeRemaining == ((TimeRemainingHolder) o)._timeRemaining;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (_timeRemaining ^ (_timeRemaining >>> 32));
+    }
 }
@@ -17,15 +17,21 @@ package org.limewire.setting;
 
 import java.awt.Color;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
 import org.limewire.util.FileUtils;
@@ -63,7 +69,8 @@ import org.limewire.util.FileUtils;
         2: 2984
  </pre>
 
-With the call sf.save(), setting.txt now includes:
+With the call sf.save(), and once the background writer is done (see
+{@link SettingsGroupManager#flush()}), setting.txt now includes:
  <pre>
         MAX_MESSAGE_SIZE=2984
  </pre>
@@ -107,8 +114,17 @@ public final class SettingsFactory implements Iterable<AbstractSetting> {
     /** <tt>Properties</tt> instance for the default values. */
     protected final Properties DEFAULT_PROPS = new Properties();
 
+    /** The keys changed since the last load or write of the settings file. */
+    private final Set<String> DIRTY_KEYS = Collections.synchronizedSet(new HashSet<String>());
+
     /** The <tt>Properties</tt> instance containing all settings.  */
-    protected final Properties PROPS = new Properties(DEFAULT_PROPS);
+    protected final Properties PROPS = new DirtyProperties(DEFAULT_PROPS, DIRTY_KEYS);
+
+    /** Serializes the writes of the settings file, in snapshot order. */
+    private final Object WRITE_LOCK = new Object();
+
+    /** Whether or not the last write failed, in which case the next save retries it. */
+    private volatile boolean writeFailed = false;
     
     /**
      * List of all settings associated with this factory 
@@ -184,18 +200,31 @@ public final class SettingsFactory implements Iterable<AbstractSetting> {
         // loading frostwire.props, but rather something like themes.txt,
         // we also return, as attempting to load an invalid file will
         // not do any good.
+        // a leftover of an interrupted write, the settings file is still the good one
+        File tmp = tempFile();
+        if (tmp.exists()) {
+            tmp.delete();
+        }
+
         if(!SETTINGS_FILE.isFile()) {
             setExpireValue();
             return;
         }
-        FileInputStream fis = null;
-        
+
+        // read it in one go, it's small and Properties.load does a lot of
+        // single char reads otherwise
+        byte[] data = null;
         try {
-            
-            fis = new FileInputStream(SETTINGS_FILE);
-            
+            data = Files.readAllBytes(SETTINGS_FILE.toPath());
+        } catch(NoSuchFileException e) {
+            // removed after the check, same as not there
+        } catch(IOException e) {
+            markFailure();
+        }
+
+        if (data != null) {
             try {
-                PROPS.load(fis);
+                PROPS.load(new ByteArrayInputStream(data));
             } catch(IllegalArgumentException e) {
                 // Ignored -- Use best guess
             } catch(StringIndexOutOfBoundsException e) {
@@ -204,20 +233,14 @@ public final class SettingsFactory implements Iterable<AbstractSetting> {
                 // Serious Problems --- Use defaults
                 markFailure();
             }
-            
-        } catch(FileNotFoundException e) {
-            
-            if (SETTINGS_FILE.exists()) {
-                markFailure();
-            }
-
-        } finally {
-            IOUtils.closeQuietly(fis);
         }
         
         // Reload all setting values
         for(Setting set : settings)
             set.reload();
+
+        // what is in memory now is what is in disk
+        DIRTY_KEYS.clear();
         
         setExpireValue();
     }
@@ -254,68 +277,112 @@ public final class SettingsFactory implements Iterable<AbstractSetting> {
     }
     
     /**
-     * Save setting information to property file
+     * Requests a save of the setting information to the property file.
+     * The file is written in the background by the {@link SettingsWriter},
+     * bursts of calls are coalesced in a single write.
+     *
+     * @see SettingsGroupManager#flush()
+     */
+    public void save() {
+        SettingsWriter.instance().schedule(this);
+    }
+
+    /**
+     * Writes the setting information to the property file, unless nothing
+     * changed since the last load or write.
      * We want to NOT save any properties which are the default value,
      * as well as any older properties that are no longer in use.
-     * To avoid having to manually encode the file, we clone
+     * To avoid having to manually encode the file, we copy
      * the existing properties and manually remove the ones
      * which are default and aren't required to be saved.
      * It is important to do it this way (as opposed to creating a new
      * properties object and adding only those that should be saved
      * or aren't default) because 'adding' properties may fail if
      * certain settings classes haven't been statically loaded yet.
-     * (Note that we cannot use 'store' since it's only available in 1.2)
+     * <p>
+     * The data goes to a temporary file first, which is synced and then
+     * renamed over the settings file, so a crash in the middle never
+     * leaves a truncated file behind.
      */
-    public synchronized void save() {
-        Properties toSave = (Properties) PROPS.clone();
+    void write() {
+        synchronized (WRITE_LOCK) {
+            Properties toSave;
+            Set<String> written;
+            synchronized (this) {
+                if (DIRTY_KEYS.isEmpty() && !writeFailed && SETTINGS_FILE.isFile()) {
+                    return;
+                }
 
-        //Add any settings which require saving or aren't default
-        for(Setting set : settings) {
-            if( !set.shouldAlwaysSave() && set.isDefault() )
-                toSave.remove( set.getKey() );
-        }
-        
-        OutputStream out = null;
-        try {
-            // some bugs were reported where the settings file was a directory.
-            if (SETTINGS_FILE.isDirectory())
-                SETTINGS_FILE.delete();
-
-            // some bugs were reported where the settings file's parent
-            // directory was deleted.
-            File parent = SETTINGS_FILE.getParentFile();
-            if(parent != null) {
-                parent.mkdirs();
-            }
-            
-            FileUtils.setWriteable(SETTINGS_FILE);
-            
-            if (SETTINGS_FILE.exists() && !SETTINGS_FILE.canRead()) {
-                SETTINGS_FILE.delete();
-            }
-            
-            try {
-                out = new BufferedOutputStream(new FileOutputStream(SETTINGS_FILE));
-            } catch(IOException ioe) {
-                // Try again.
-                if (SETTINGS_FILE.exists()) {
-                    SETTINGS_FILE.delete();
-                    out = new BufferedOutputStream(new FileOutputStream(SETTINGS_FILE));
+                // not a clone, it would share the dirty keys. The keys are
+                // cleared with the copy, under the PROPS lock, so a change
+                // made meanwhile is not lost
+                toSave = new Properties();
+                synchronized (PROPS) {
+                    written = new HashSet<String>(DIRTY_KEYS);
+                    DIRTY_KEYS.clear();
+                    toSave.putAll(PROPS);
+                }
+
+                //Add any settings which require saving or aren't default
+                for(Setting set : settings) {
+                    if( !set.shouldAlwaysSave() && set.isDefault() )
+                        toSave.remove( set.getKey() );
                 }
             }
 
-            if(out != null) {
-                // save the properties to disk.
-                toSave.store(out, HEADING);
-            } else {
+            try {
+                writeAtomically(toSave);
+                writeFailed = false;
+            } catch (IOException e) {
+                writeFailed = true;
+                DIRTY_KEYS.addAll(written);
                 markFailure();
             }
-            
-        } catch (IOException e) {
-            markFailure();
+        }
+    }
+
+    private void writeAtomically(Properties toSave) throws IOException {
+        // some bugs were reported where the settings file was a directory.
+        if (SETTINGS_FILE.isDirectory())
+            SETTINGS_FILE.delete();
+
+        // some bugs were reported where the settings file's parent
+        // directory was deleted.
+        File parent = SETTINGS_FILE.getParentFile();
+        if(parent != null) {
+            parent.mkdirs();
+        }
+
+        File tmp = tempFile();
+        if (tmp.exists()) {
+            FileUtils.setWriteable(tmp);
+            tmp.delete();
+        }
+
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            BufferedOutputStream out = new BufferedOutputStream(fos);
+            // save the properties to disk.
+            toSave.store(out, HEADING);
+            out.flush();
+            fos.getFD().sync();
         } finally {
-            IOUtils.closeQuietly(out);
+            IOUtils.closeQuietly(fos);
         }
+
+        if (SETTINGS_FILE.exists()) {
+            FileUtils.setWriteable(SETTINGS_FILE);
+        }
+
+        try {
+            Files.move(tmp.toPath(), SETTINGS_FILE.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), SETTINGS_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private File tempFile() {
+        return new File(SETTINGS_FILE.getPath() + ".tmp");
     }
     
     public String toString() {
@@ -586,6 +653,59 @@ public final class SettingsFactory implements Iterable<AbstractSetting> {
     
     private synchronized void handleSettingInternal(AbstractSetting setting, String remoteKey) {
         settings.add(setting);
+
+        // the reload backs the default value in PROPS, that's not a change
+        boolean dirty = DIRTY_KEYS.contains(setting.getKey());
         setting.reload();
+        if (!dirty) {
+            DIRTY_KEYS.remove(setting.getKey());
+        }
+    }
+
+    /**
+     * Records the keys whose value changes, to skip the writes when
+     * nothing changed.
+     */
+    private static final class DirtyProperties extends Properties {
+
+        private final Set<String> dirtyKeys;
+
+        DirtyProperties(Properties defaults, Set<String> dirtyKeys) {
+            super(defaults);
+            this.dirtyKeys = dirtyKeys;
+        }
+
+        @Override
+        public synchronized Object put(Object key, Object value) {
+            Object old = super.put(key, value);
+            if (old == null || !old.equals(value)) {
+                dirtyKeys.add(String.valueOf(key));
+            }
+            return old;
+        }
+
+        @Override
+        public synchronized Object remove(Object key) {
+            Object old = super.remove(key);
+            if (old != null) {
+                dirtyKeys.add(String.valueOf(key));
+            }
+            return old;
+        }
+
+        @Override
+        public synchronized void putAll(Map<?, ?> t) {
+            for (Map.Entry<?, ?> e : t.entrySet()) {
+                put(e.getKey(), e.getValue());
+            }
+        }
+
+        @Override
+        public synchronized void clear() {
+            for (Object key : keySet()) {
+                dirtyKeys.add(String.valueOf(key));
+            }
+            super.clear();
+        }
     }
 }
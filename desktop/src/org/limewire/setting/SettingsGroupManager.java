@@ -153,6 +153,14 @@ public final class SettingsGroupManager {
         return any;
     }
     
+    /**
+     * Writes now the property files with a save still pending in
+     * the background.
+     */
+    public void flush() {
+        SettingsWriter.instance().flush();
+    }
+    
     /**
      * Revert all settings to their default value.
      */
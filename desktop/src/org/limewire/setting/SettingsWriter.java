@@ -0,0 +1,133 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.limewire.setting;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.limewire.concurrent.ExecutorsHelper;
+
+/**
+ * Writes the settings files in a background thread. The save requests
+ * are coalesced: a factory is written once the requests stop for
+ * {@link #DELAY_MILLIS}, but never later than {@link #MAX_DELAY_MILLIS}
+ * after the first one. The pending writes are flushed at shutdown.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class SettingsWriter {
+
+    private static final long DELAY_MILLIS = 500;
+    private static final long MAX_DELAY_MILLIS = 5000;
+
+    private static final SettingsWriter INSTANCE = new SettingsWriter();
+
+    static SettingsWriter instance() {
+        return INSTANCE;
+    }
+
+    /**
+     * LOCKING: must hold this monitor
+     */
+    private final Set<SettingsFactory> pending;
+    private final Object flushLock;
+    private long firstRequest;
+    private long lastRequest;
+    private Thread thread;
+
+    private SettingsWriter() {
+        pending = new LinkedHashSet<SettingsFactory>();
+        flushLock = new Object();
+
+        Runtime.getRuntime().addShutdownHook(new Thread("SettingsWriter-Shutdown") {
+            @Override
+            public void run() {
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Requests a write of the factory, it returns immediately.
+     */
+    synchronized void schedule(SettingsFactory factory) {
+        long now = System.currentTimeMillis();
+        if (pending.isEmpty()) {
+            firstRequest = now;
+        }
+        lastRequest = now;
+        pending.add(factory);
+
+        if (thread == null) {
+            thread = ExecutorsHelper.daemonThreadFactory("SettingsWriter").newThread(new Runnable() {
+                public void run() {
+                    loop();
+                }
+            });
+            thread.start();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Writes all the pending factories now, in the caller thread. If the
+     * background thread is in the middle of a write, it waits for it.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            for (SettingsFactory factory : takePending()) {
+                factory.write();
+            }
+        }
+    }
+
+    private synchronized List<SettingsFactory> takePending() {
+        List<SettingsFactory> factories = new ArrayList<SettingsFactory>(pending);
+        pending.clear();
+        return factories;
+    }
+
+    private void loop() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (pending.isEmpty()) {
+                        wait();
+                    }
+
+                    long due = Math.min(lastRequest + DELAY_MILLIS, firstRequest + MAX_DELAY_MILLIS);
+                    long now = System.currentTimeMillis();
+                    if (now < due) {
+                        wait(due - now);
+                        continue;
+                    }
+                }
+
+                flush();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable e) {
+                // keep the writer alive, the failure is already reported by the factory
+            }
+        }
+    }
+}